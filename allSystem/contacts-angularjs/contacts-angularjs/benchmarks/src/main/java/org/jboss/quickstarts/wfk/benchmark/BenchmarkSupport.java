@@ -0,0 +1,149 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.benchmark;
+
+import java.lang.reflect.Field;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.logging.Logger;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import javax.validation.Validation;
+import javax.validation.Validator;
+
+import org.jboss.quickstarts.wfk.util.ReferenceResolver;
+
+/**
+ * <p>Stands in for the container when benchmarking the application classes outside of EAP.</p>
+ *
+ * <p>Repositories and validators receive their collaborators through <code>&#064;Inject</code> fields. There is no CDI
+ * container here, so the benchmarks build the objects themselves and hand them their dependencies with
+ * {@link #inject(Object, String, Object)}. The EntityManagerFactory is created once per JVM (i.e. per fork) against the
+ * in-memory H2 database described by <code>benchmark_pu</code>.</p>
+ */
+public final class BenchmarkSupport {
+
+    private static EntityManagerFactory emf;
+
+    private static Validator validator;
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * <p>Returns the shared EntityManagerFactory, creating it (and the schema) on first use.</p>
+     *
+     * @return the EntityManagerFactory for <code>benchmark_pu</code>
+     */
+    public static synchronized EntityManagerFactory entityManagerFactory() {
+        if (emf == null) {
+            emf = Persistence.createEntityManagerFactory("benchmark_pu");
+        }
+        return emf;
+    }
+
+    /**
+     * <p>Opens a new application-managed EntityManager.</p>
+     *
+     * @return a new EntityManager, the caller is responsible for closing it
+     */
+    public static EntityManager createEntityManager() {
+        return entityManagerFactory().createEntityManager();
+    }
+
+    /**
+     * <p>Returns the logger the <code>&#064;Named("logger")</code> producer would have injected into the given class.</p>
+     *
+     * @param type the class the logger is for
+     * @return the Logger
+     */
+    public static Logger logger(Class<?> type) {
+        return Logger.getLogger(type.getName());
+    }
+
+    /**
+     * <p>Returns the shared Bean Validation Validator, the one the container would inject into the validators.</p>
+     *
+     * @return the default Validator
+     */
+    public static synchronized Validator validator() {
+        if (validator == null) {
+            validator = Validation.buildDefaultValidatorFactory().getValidator();
+        }
+        return validator;
+    }
+
+    /**
+     * <p>Creates a {@link ReferenceResolver} working on the given EntityManager.</p>
+     *
+     * <p>In the application the resolver is request scoped, so a benchmark standing for one request should create a
+     * new one each time rather than reuse what an earlier invocation has already resolved.</p>
+     *
+     * @param em the EntityManager the resolver looks entities up with
+     * @return a new, empty ReferenceResolver
+     */
+    public static ReferenceResolver referenceResolver(EntityManager em) {
+        ReferenceResolver resolver = new ReferenceResolver();
+        inject(resolver, "em", em);
+        inject(resolver, "log", logger(ReferenceResolver.class));
+        return resolver;
+    }
+
+    /**
+     * <p>Returns midnight (local time) of the day the given number of days from today.</p>
+     *
+     * @param days the number of days from today, 1 being tomorrow
+     * @return the start of that day
+     */
+    public static Date day(int days) {
+        Calendar day = Calendar.getInstance();
+        day.set(Calendar.HOUR_OF_DAY, 0);
+        day.set(Calendar.MINUTE, 0);
+        day.set(Calendar.SECOND, 0);
+        day.set(Calendar.MILLISECOND, 0);
+        day.add(Calendar.DAY_OF_MONTH, days);
+        return day.getTime();
+    }
+
+    /**
+     * <p>Sets a (usually private, <code>&#064;Inject</code> annotated) field on the target, looking it up on the target's
+     * class and its super classes.</p>
+     *
+     * @param target the object to inject into
+     * @param fieldName the name of the field
+     * @param value the value to inject
+     * @return the target, to allow chaining
+     */
+    public static <T> T inject(T target, String fieldName, Object value) {
+        Class<?> type = target.getClass();
+        while (type != null) {
+            try {
+                Field field = type.getDeclaredField(fieldName);
+                field.setAccessible(true);
+                field.set(target, value);
+                return target;
+            } catch (NoSuchFieldException e) {
+                type = type.getSuperclass();
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Cannot inject " + fieldName + " into " + target.getClass().getName(), e);
+            }
+        }
+        throw new IllegalArgumentException("No field " + fieldName + " on " + target.getClass().getName());
+    }
+}
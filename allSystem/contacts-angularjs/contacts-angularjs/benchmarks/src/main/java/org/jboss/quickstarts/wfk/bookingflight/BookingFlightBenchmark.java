@@ -0,0 +1,195 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.bookingflight;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+import javax.validation.ValidationException;
+
+import org.jboss.quickstarts.wfk.benchmark.BenchmarkSupport;
+import org.jboss.quickstarts.wfk.contact.Contact;
+import org.jboss.quickstarts.wfk.flight.Flight;
+import org.jboss.quickstarts.wfk.util.Page;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Measures what BookingFlightService does per request, through the real {@link BookingFlightValidator} and
+ * {@link BookingFlightRepository}, as the booking history of the flight grows.</p>
+ *
+ * <p><code>validate</code> is a booking on a free date: bean validation, resolving the flight and the customer, and
+ * the (flight, date) availability check. <code>validateTaken</code> is the same booking on a date that is already
+ * taken, i.e. the 409 path. <code>create</code> validates, writes and flushes a booking in a transaction that is then
+ * rolled back, so the history keeps its size. Each invocation gets a new ReferenceResolver and an empty persistence
+ * context, as a request would.</p>
+ *
+ * <p>Run with: <code>java -jar target/benchmarks.jar BookingFlightBenchmark</code></p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookingFlightBenchmark {
+
+    /** Number of bookings the flight already has. */
+    @Param({"100", "10000", "100000"})
+    private int history;
+
+    private EntityManager em;
+    private BookingFlightRepository crud;
+    private BookingFlightValidator validator;
+
+    private Contact customer;
+    private Flight flight;
+    private Long[] ids;
+    private Date takenDate;
+    private Date freeDate;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        em = BenchmarkSupport.createEntityManager();
+        crud = new BookingFlightRepository();
+        BenchmarkSupport.inject(crud, "em", em);
+        BenchmarkSupport.inject(crud, "log", BenchmarkSupport.logger(BookingFlightRepository.class));
+        validator = new BookingFlightValidator();
+        BenchmarkSupport.inject(validator, "validator", BenchmarkSupport.validator());
+        BenchmarkSupport.inject(validator, "bcrud", crud);
+
+        em.getTransaction().begin();
+        customer = new Contact();
+        customer.setFirstName("John");
+        customer.setLastName("Smith");
+        customer.setEmail("john.smith.flight." + history + "@mailinator.com");
+        customer.setPhoneNumber("(012) 5555-1212");
+        em.persist(customer);
+
+        flight = new Flight();
+        flight.setFlightNumber("BM" + (100 + history % 900));
+        flight.setFlightDeparture("LHR");
+        flight.setFlightDestination("NCL");
+        em.persist(flight);
+
+        // One booking a day, starting from tomorrow
+        ids = new Long[history];
+        for (int i = 0; i < history; i++) {
+            BookingFlight bookingFlight = new BookingFlight();
+            bookingFlight.setCustomerID(em.getReference(Contact.class, customer.getId()));
+            bookingFlight.setFlightID(em.getReference(Flight.class, flight.getId()));
+            bookingFlight.setBookingFlightDate(BenchmarkSupport.day(i + 1));
+            em.persist(bookingFlight);
+            ids[i] = bookingFlight.getId();
+            if (i % 50 == 49) {
+                em.flush();
+                em.clear();
+            }
+        }
+        em.getTransaction().commit();
+        em.clear();
+
+        takenDate = BenchmarkSupport.day(history / 2 + 1);
+        freeDate = BenchmarkSupport.day(history + 1);
+    }
+
+    @Setup(Level.Invocation)
+    public void newRequest() {
+        BenchmarkSupport.inject(validator, "resolver", BenchmarkSupport.referenceResolver(em));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        em.close();
+    }
+
+    @Benchmark
+    public BookingFlight validate() {
+        BookingFlight bookingFlight = booking(freeDate);
+        validator.validateBookingFlight(bookingFlight);
+        em.clear();
+        return bookingFlight;
+    }
+
+    @Benchmark
+    public String validateTaken() {
+        try {
+            validator.validateBookingFlight(booking(takenDate));
+            throw new IllegalStateException("The flight is booked on " + takenDate);
+        } catch (ValidationException e) {
+            return e.getMessage();
+        } finally {
+            em.clear();
+        }
+    }
+
+    @Benchmark
+    public BookingFlight create() throws Exception {
+        BookingFlight bookingFlight = booking(freeDate);
+        em.getTransaction().begin();
+        try {
+            validator.validateBookingFlight(bookingFlight);
+            crud.create(bookingFlight);
+            em.flush();
+        } finally {
+            em.getTransaction().rollback();
+            em.clear();
+        }
+        return bookingFlight;
+    }
+
+    @Benchmark
+    public BookingFlight findById() {
+        BookingFlight bookingFlight = crud.findById(ids[next++ % history]);
+        em.clear();
+        return bookingFlight;
+    }
+
+    @Benchmark
+    public Page<BookingFlight> firstPage() {
+        Page<BookingFlight> page = crud.findPage(null, 100);
+        em.clear();
+        return page;
+    }
+
+    /** A booking as the REST layer hands it over: references carrying only the ids. */
+    private BookingFlight booking(Date date) {
+        Contact customerID = new Contact();
+        customerID.setId(customer.getId());
+        Flight flightID = new Flight();
+        flightID.setId(flight.getId());
+
+        BookingFlight bookingFlight = new BookingFlight();
+        bookingFlight.setCustomerID(customerID);
+        bookingFlight.setFlightID(flightID);
+        bookingFlight.setBookingFlightDate(date);
+        return bookingFlight;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.bookingtaxi;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+
+import org.jboss.quickstarts.wfk.benchmark.BenchmarkSupport;
+import org.jboss.quickstarts.wfk.contact.Contact;
+import org.jboss.quickstarts.wfk.taxi.Taxi;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Measures the (taxi, date) availability check made by {@link BookingTaxiValidator} on every create and update, as
+ * the booking history of the taxi grows.</p>
+ *
+ * <p><code>available</code> and <code>taken</code> go through the validator and the indexed lookup in
+ * {@link BookingTaxiRepository}; their cost should stay flat across <code>history</code>. <code>historyScan</code> is
+ * the previous implementation (load every booking of the taxi and walk the list) kept as a baseline, and grows
+ * linearly.</p>
+ *
+ * <p>Run with: <code>java -jar target/benchmarks.jar BookingTaxiAvailabilityBenchmark</code></p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookingTaxiAvailabilityBenchmark {
+
+    /** Number of bookings the taxi already has. */
+    @Param({"10", "1000", "10000", "100000"})
+    private int history;
+
+    private EntityManager em;
+    private BookingTaxiRepository crud;
+    private BookingTaxiValidator validator;
+
+    private Long taxiId;
+    private Date takenDate;
+    private Date freeDate;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        em = BenchmarkSupport.createEntityManager();
+        crud = new BookingTaxiRepository();
+        BenchmarkSupport.inject(crud, "em", em);
+        BenchmarkSupport.inject(crud, "log", BenchmarkSupport.logger(BookingTaxiRepository.class));
+        validator = new BookingTaxiValidator();
+        BenchmarkSupport.inject(validator, "crud", crud);
+
+        em.getTransaction().begin();
+        Contact customer = new Contact();
+        customer.setFirstName("John");
+        customer.setLastName("Smith");
+        customer.setEmail("john.smith." + history + "@mailinator.com");
+        customer.setPhoneNumber("(012) 5555-1212");
+        em.persist(customer);
+
+        Taxi taxi = new Taxi();
+        taxi.setRegistration("BM" + (10000 + history % 10000) + "");
+        taxi.setSeat("4");
+        em.persist(taxi);
+
+        // One booking a day, starting from today
+        Calendar day = today();
+        for (int i = 0; i < history; i++) {
+            BookingTaxi bookingTaxi = new BookingTaxi();
+            bookingTaxi.setCustomer(customer);
+            bookingTaxi.setTaxiid(taxi);
+            bookingTaxi.setTaxidate(day.getTime());
+            em.persist(bookingTaxi);
+            if (i == history / 2) {
+                takenDate = day.getTime();
+            }
+            day.add(Calendar.DAY_OF_MONTH, 1);
+            if (i % 50 == 49) {
+                em.flush();
+                em.clear();
+                customer = em.getReference(Contact.class, customer.getId());
+                taxi = em.getReference(Taxi.class, taxi.getId());
+            }
+        }
+        em.getTransaction().commit();
+        em.clear();
+
+        taxiId = taxi.getId();
+        // The day after the last booking: a miss has to rule out the whole history in the old implementation
+        freeDate = day.getTime();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        em.close();
+    }
+
+    @Benchmark
+    public boolean available() {
+        return validator.bookingTaxiExists(taxiId, null, freeDate);
+    }
+
+    @Benchmark
+    public boolean taken() {
+        return validator.bookingTaxiExists(taxiId, null, takenDate);
+    }
+
+    @Benchmark
+    public boolean historyScan() {
+        List<BookingTaxi> bookingTaxis = crud.findListByTaxiid(taxiId);
+        boolean found = false;
+        for (BookingTaxi temp : bookingTaxis) {
+            if (temp.getTaxidate().equals(freeDate)) {
+                found = true;
+            }
+        }
+        // Don't let the persistence context grow across invocations, a request would start with an empty one
+        em.clear();
+        return found;
+    }
+
+    private static Calendar today() {
+        Calendar day = Calendar.getInstance();
+        day.set(Calendar.HOUR_OF_DAY, 0);
+        day.set(Calendar.MINUTE, 0);
+        day.set(Calendar.SECOND, 0);
+        day.set(Calendar.MILLISECOND, 0);
+        return day;
+    }
+}
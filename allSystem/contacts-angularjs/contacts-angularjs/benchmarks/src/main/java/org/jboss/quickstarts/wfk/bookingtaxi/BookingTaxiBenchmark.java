@@ -0,0 +1,194 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.bookingtaxi;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+import javax.validation.ValidationException;
+
+import org.jboss.quickstarts.wfk.benchmark.BenchmarkSupport;
+import org.jboss.quickstarts.wfk.contact.Contact;
+import org.jboss.quickstarts.wfk.taxi.Taxi;
+import org.jboss.quickstarts.wfk.util.Page;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Measures what BookingTaxiService does per request, through the real {@link BookingTaxiValidator} and
+ * {@link BookingTaxiRepository}, as the booking history of the taxi grows.</p>
+ *
+ * <p><code>validate</code> is a booking on a free date: bean validation, resolving the taxi and the customer, and
+ * the (taxi, date) availability check. <code>validateTaken</code> is the same booking on a date that is already
+ * taken, i.e. the 409 path. <code>create</code> validates, writes and flushes a booking in a transaction that is then
+ * rolled back, so the history keeps its size. Each invocation gets a new ReferenceResolver and an empty persistence
+ * context, as a request would.</p>
+ *
+ * <p>Run with: <code>java -jar target/benchmarks.jar BookingTaxiBenchmark</code></p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookingTaxiBenchmark {
+
+    /** Number of bookings the taxi already has. */
+    @Param({"100", "10000", "100000"})
+    private int history;
+
+    private EntityManager em;
+    private BookingTaxiRepository crud;
+    private BookingTaxiValidator validator;
+
+    private Contact customer;
+    private Taxi taxi;
+    private Long[] ids;
+    private Date takenDate;
+    private Date freeDate;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        em = BenchmarkSupport.createEntityManager();
+        crud = new BookingTaxiRepository();
+        BenchmarkSupport.inject(crud, "em", em);
+        BenchmarkSupport.inject(crud, "log", BenchmarkSupport.logger(BookingTaxiRepository.class));
+        validator = new BookingTaxiValidator();
+        BenchmarkSupport.inject(validator, "validator", BenchmarkSupport.validator());
+        BenchmarkSupport.inject(validator, "crud", crud);
+
+        em.getTransaction().begin();
+        customer = new Contact();
+        customer.setFirstName("John");
+        customer.setLastName("Smith");
+        customer.setEmail("john.smith.taxi." + history + "@mailinator.com");
+        customer.setPhoneNumber("(012) 5555-1212");
+        em.persist(customer);
+
+        taxi = new Taxi();
+        taxi.setRegistration("BT" + (10000 + history % 10000));
+        taxi.setSeat("4");
+        em.persist(taxi);
+
+        // One booking a day, starting from tomorrow
+        ids = new Long[history];
+        for (int i = 0; i < history; i++) {
+            BookingTaxi bookingTaxi = new BookingTaxi();
+            bookingTaxi.setCustomer(em.getReference(Contact.class, customer.getId()));
+            bookingTaxi.setTaxiid(em.getReference(Taxi.class, taxi.getId()));
+            bookingTaxi.setTaxidate(BenchmarkSupport.day(i + 1));
+            em.persist(bookingTaxi);
+            ids[i] = bookingTaxi.getId();
+            if (i % 50 == 49) {
+                em.flush();
+                em.clear();
+            }
+        }
+        em.getTransaction().commit();
+        em.clear();
+
+        takenDate = BenchmarkSupport.day(history / 2 + 1);
+        freeDate = BenchmarkSupport.day(history + 1);
+    }
+
+    @Setup(Level.Invocation)
+    public void newRequest() {
+        BenchmarkSupport.inject(validator, "resolver", BenchmarkSupport.referenceResolver(em));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        em.close();
+    }
+
+    @Benchmark
+    public BookingTaxi validate() {
+        BookingTaxi bookingTaxi = booking(freeDate);
+        validator.validateBookingTaxi(bookingTaxi);
+        em.clear();
+        return bookingTaxi;
+    }
+
+    @Benchmark
+    public String validateTaken() {
+        try {
+            validator.validateBookingTaxi(booking(takenDate));
+            throw new IllegalStateException("The taxi is booked on " + takenDate);
+        } catch (ValidationException e) {
+            return e.getMessage();
+        } finally {
+            em.clear();
+        }
+    }
+
+    @Benchmark
+    public BookingTaxi create() throws Exception {
+        BookingTaxi bookingTaxi = booking(freeDate);
+        em.getTransaction().begin();
+        try {
+            validator.validateBookingTaxi(bookingTaxi);
+            crud.create(bookingTaxi);
+            em.flush();
+        } finally {
+            em.getTransaction().rollback();
+            em.clear();
+        }
+        return bookingTaxi;
+    }
+
+    @Benchmark
+    public BookingTaxi findById() {
+        BookingTaxi bookingTaxi = crud.findById(ids[next++ % history]);
+        em.clear();
+        return bookingTaxi;
+    }
+
+    @Benchmark
+    public Page<BookingTaxi> firstPage() {
+        Page<BookingTaxi> page = crud.findPage(null, 100);
+        em.clear();
+        return page;
+    }
+
+    /** A booking as the REST layer hands it over: references carrying only the ids. */
+    private BookingTaxi booking(Date date) {
+        Contact booker = new Contact();
+        booker.setId(customer.getId());
+        Taxi taxiid = new Taxi();
+        taxiid.setId(taxi.getId());
+
+        BookingTaxi bookingTaxi = new BookingTaxi();
+        bookingTaxi.setCustomer(booker);
+        bookingTaxi.setTaxiid(taxiid);
+        bookingTaxi.setTaxidate(date);
+        return bookingTaxi;
+    }
+}
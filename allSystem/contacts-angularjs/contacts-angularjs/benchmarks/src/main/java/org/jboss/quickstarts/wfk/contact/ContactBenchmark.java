@@ -0,0 +1,170 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.contact;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+
+import org.jboss.quickstarts.wfk.benchmark.BenchmarkSupport;
+import org.jboss.quickstarts.wfk.util.Page;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Measures what ContactService does per request, through the real {@link ContactValidator} and
+ * {@link ContactRepository}, as the number of registered contacts grows.</p>
+ *
+ * <p><code>validate</code> is a new registration (bean validation plus the email uniqueness lookup),
+ * <code>validateUpdate</code> an update keeping its email (which also loads the contact by id), <code>create</code>
+ * a validated registration written and flushed in a transaction that is then rolled back, so the table keeps its
+ * size. The finders are the ones the REST endpoints use.</p>
+ *
+ * <p>Run with: <code>java -jar target/benchmarks.jar ContactBenchmark</code></p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContactBenchmark {
+
+    /** Number of contacts already registered. */
+    @Param({"100", "10000", "100000"})
+    private int contacts;
+
+    private EntityManager em;
+    private ContactRepository crud;
+    private ContactValidator validator;
+
+    private Long[] ids;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        em = BenchmarkSupport.createEntityManager();
+        crud = new ContactRepository();
+        BenchmarkSupport.inject(crud, "em", em);
+        BenchmarkSupport.inject(crud, "log", BenchmarkSupport.logger(ContactRepository.class));
+        validator = new ContactValidator();
+        BenchmarkSupport.inject(validator, "validator", BenchmarkSupport.validator());
+        BenchmarkSupport.inject(validator, "crud", crud);
+
+        ids = new Long[contacts];
+        em.getTransaction().begin();
+        for (int i = 0; i < contacts; i++) {
+            Contact contact = contact("existing", i);
+            em.persist(contact);
+            ids[i] = contact.getId();
+            if (i % 50 == 49) {
+                em.flush();
+                em.clear();
+            }
+        }
+        em.getTransaction().commit();
+        em.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        em.close();
+    }
+
+    @Benchmark
+    public Contact validate() {
+        Contact contact = contact("new", next++);
+        validator.validateContact(contact);
+        em.clear();
+        return contact;
+    }
+
+    @Benchmark
+    public Contact validateUpdate() {
+        int i = nextIndex();
+        Contact contact = contact("existing", i);
+        contact.setId(ids[i]);
+        validator.validateContact(contact);
+        em.clear();
+        return contact;
+    }
+
+    @Benchmark
+    public Contact create() throws Exception {
+        Contact contact = contact("new", next++);
+        em.getTransaction().begin();
+        try {
+            validator.validateContact(contact);
+            crud.create(contact);
+            em.flush();
+        } finally {
+            em.getTransaction().rollback();
+            em.clear();
+        }
+        return contact;
+    }
+
+    @Benchmark
+    public Contact findById() {
+        Contact contact = crud.findById(ids[nextIndex()]);
+        em.clear();
+        return contact;
+    }
+
+    @Benchmark
+    public Contact findByEmail() {
+        Contact contact = crud.findByEmail(email("existing", nextIndex()));
+        em.clear();
+        return contact;
+    }
+
+    @Benchmark
+    public Page<Contact> firstPage() {
+        Page<Contact> page = crud.findPage(null, 100);
+        em.clear();
+        return page;
+    }
+
+    /** Walks through the existing contacts, so lookups don't keep hitting the same rows. */
+    private int nextIndex() {
+        return next++ % contacts;
+    }
+
+    private static Contact contact(String kind, int i) {
+        Contact contact = new Contact();
+        contact.setFirstName("John");
+        contact.setLastName("Smith");
+        contact.setEmail(email(kind, i));
+        contact.setPhoneNumber("(012) 5555-1212");
+        return contact;
+    }
+
+    private static String email(String kind, int i) {
+        return "john.smith." + kind + "." + i + "@mailinator.com";
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.jboss.quickstarts.wfk.booking.Booking;
+import org.jboss.quickstarts.wfk.contact.Contact;
+import org.jboss.quickstarts.wfk.contact.Hotel;
+import org.jboss.quickstarts.wfk.flight.Flight;
+import org.jboss.quickstarts.wfk.taxi.Taxi;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Measures the CPU time of writing a page of the booking list (<code>GET rest/bookings</code>) as it goes out
+ * through {@link CompressionFilter}: serialized by Jackson as JacksonConfig does and sent as it is
+ * (<code>encoding=identity</code>) or compressed at a given level (<code>encoding=gzip:6</code>).</p>
+ *
+ * <p>Next to the time, each result reports the bytes of the page through the {@link Sizes} counters: <i>wireBytes</i>
+ * as sent with the encoding and <i>jsonBytes</i> as serialized, so that they also land in the <code>-rf json</code>
+ * results.</p>
+ *
+ * <p>Run with: <code>java -jar target/benchmarks.jar CompressionBenchmark</code>; add
+ * <code>-jvmArgs -Dwfk.compression.threshold=...</code> to see where a small page stops being compressed.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionBenchmark {
+
+    @Param({"identity", "gzip:1", "gzip:6", "gzip:9", "deflate:6"})
+    private String encoding;
+
+    @Param({"20", "200"})
+    private int rows;
+
+    private ObjectMapper mapper;
+    private List<Booking> bookings;
+    private long json;
+
+    /**
+     * <p>The bytes of one page, reported by JMH next to the time of writing it. EVENTS counters add up what the
+     * threads count, so the benchmark runs on one thread and each operation sets the size rather than adding to it.</p>
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Sizes {
+        public long wireBytes;
+        public long jsonBytes;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        mapper = new ObjectMapper();
+        mapper.registerModule(new BookingDateModule());
+        mapper.registerModule(new EntityJsonModule());
+
+        bookings = bookings(rows);
+        json = mapper.writeValueAsBytes(bookings).length;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long write(Sizes sizes) throws Exception {
+        CountingStream wire = new CountingStream();
+        write(wire);
+        sizes.wireBytes = wire.count;
+        sizes.jsonBytes = json;
+        return wire.count;
+    }
+
+    private void write(OutputStream wire) throws Exception {
+        if ("identity".equals(encoding)) {
+            mapper.writeValue(wire, bookings);
+            return;
+        }
+        int colon = encoding.indexOf(':');
+        CompressingStream out = new CompressingStream(wire, encoding.substring(0, colon),
+            Integer.parseInt(encoding.substring(colon + 1)), CompressionFilter.THRESHOLD);
+        try {
+            mapper.writeValue(out, bookings);
+            out.finish();
+        } finally {
+            out.end();
+        }
+    }
+
+    /**
+     * <p>A page of bookings as the list returns them: a few customers, hotels, taxis and flights repeated over many
+     * rows, on consecutive days.</p>
+     */
+    private static List<Booking> bookings(int rows) throws Exception {
+        Calendar day = Calendar.getInstance();
+        day.setTime(new SimpleDateFormat("yyyy-MM-dd").parse("2015-06-30"));
+
+        List<Booking> bookings = new ArrayList<Booking>(rows);
+        for (int i = 0; i < rows; i++) {
+            int n = i % 17;
+
+            Contact contact = new Contact();
+            contact.setId(10000L + n);
+            contact.setFirstName("John" + n);
+            contact.setLastName("Smith");
+            contact.setEmail("john.smith" + n + "@mailinator.com");
+            contact.setPhoneNumber(String.format("(212) 555-%04d", n));
+
+            Hotel hotel = new Hotel();
+            hotel.setId(20000L + i % 5);
+            hotel.setHotelName("Grand" + i % 5);
+            hotel.setPhoneNumber("0191234567" + i % 5);
+            hotel.setPostcode("NE17RU");
+
+            Taxi taxi = new Taxi();
+            taxi.setId(30000L + i % 7);
+            taxi.setRegistration("AB12CD" + (char) ('A' + i % 7));
+            taxi.setSeat("4");
+
+            Flight flight = new Flight();
+            flight.setId(40000L + i % 11);
+            flight.setFlightNumber("AB1" + (10 + i % 11));
+            flight.setFlightDeparture("NCL");
+            flight.setFlightDestination("LHR");
+
+            Booking booking = new Booking();
+            booking.setId(50000L + i);
+            booking.setCustomer(contact);
+            booking.setHotel(hotel);
+            booking.setTaxiid(taxi);
+            booking.setFlightID(flight);
+            booking.setBookingDate(day.getTime());
+            bookings.add(booking);
+
+            day.add(Calendar.DATE, 1);
+        }
+        return bookings;
+    }
+
+    /**
+     * <p>Stands in for the socket: counts the bytes and drops them.</p>
+     */
+    private static final class CountingStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Measures writing and reading booking dates with 1 and 8 concurrent threads, for the old and the new ObjectMapper
+ * configuration.</p>
+ *
+ * <p><code>dates=simpleDateFormat</code> is the former JacksonConfig, a SimpleDateFormat("yyyy-MM-dd") that Jackson
+ * clones for every call; <code>dates=module</code> is the ObjectMapper JacksonConfig hands out now, with
+ * {@link BookingDateModule}. Each operation writes or reads a booking, i.e. a small object holding one date.</p>
+ *
+ * <p>Run with: <code>java -jar target/benchmarks.jar DateSerializationBenchmark</code></p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateSerializationBenchmark {
+
+    @Param({"simpleDateFormat", "module"})
+    private String dates;
+
+    private ObjectMapper mapper;
+    private Booking booking;
+    private String json;
+
+    /**
+     * <p>Stands in for the booking entities, so the benchmark measures the date handling rather than the entity graph.
+     * </p>
+     */
+    public static class Booking {
+        private Long id;
+        private Date bookingDate;
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+
+        public Date getBookingDate() {
+            return bookingDate;
+        }
+
+        public void setBookingDate(Date bookingDate) {
+            this.bookingDate = bookingDate;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        if ("module".equals(dates)) {
+            mapper = JacksonConfig.objectMapper();
+        } else {
+            mapper = new ObjectMapper();
+            mapper.setDateFormat(new SimpleDateFormat("yyyy-MM-dd"));
+        }
+        booking = new Booking();
+        booking.setId(42L);
+        booking.setBookingDate(new SimpleDateFormat("yyyy-MM-dd").parse("2015-06-30"));
+        json = mapper.writeValueAsString(booking);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String write01() throws Exception {
+        return mapper.writeValueAsString(booking);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String write08() throws Exception {
+        return mapper.writeValueAsString(booking);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Booking read01() throws Exception {
+        return mapper.readValue(json, Booking.class);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Booking read08() throws Exception {
+        return mapper.readValue(json, Booking.class);
+    }
+}
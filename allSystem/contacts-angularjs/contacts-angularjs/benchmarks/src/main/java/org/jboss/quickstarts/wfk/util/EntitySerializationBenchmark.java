@@ -0,0 +1,175 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.jboss.quickstarts.wfk.booking.Booking;
+import org.jboss.quickstarts.wfk.bookingflight.BookingFlight;
+import org.jboss.quickstarts.wfk.bookinghotel.BookingHotel;
+import org.jboss.quickstarts.wfk.bookingtaxi.BookingTaxi;
+import org.jboss.quickstarts.wfk.contact.Contact;
+import org.jboss.quickstarts.wfk.contact.Hotel;
+import org.jboss.quickstarts.wfk.flight.Flight;
+import org.jboss.quickstarts.wfk.taxi.Taxi;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Measures how many times per millisecond each REST entity is written to and read from JSON, with Jackson's
+ * reflective bean serializers (<code>serialization=reflective</code>) and with the ones in {@link EntityJsonModule}
+ * (<code>serialization=serializers</code>, what JacksonConfig uses).</p>
+ *
+ * <p>Before measuring, the setup checks that both write the same JSON for the entity, so a property added to an entity
+ * but not to its serializer fails the run instead of going unnoticed.</p>
+ *
+ * <p>Run with: <code>java -jar target/benchmarks.jar EntitySerializationBenchmark -prof gc</code>; the
+ * <i>gc.alloc.rate.norm</i> lines of the gc profiler are the bytes allocated per operation.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntitySerializationBenchmark {
+
+    @Param({"reflective", "serializers"})
+    private String serialization;
+
+    @Param({"Contact", "Hotel", "Flight", "Taxi", "Booking", "BookingFlight", "BookingHotel", "BookingTaxi"})
+    private String entity;
+
+    private ObjectMapper mapper;
+    private Object value;
+    private Class<?> type;
+    private byte[] json;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        ObjectMapper reflective = new ObjectMapper();
+        reflective.registerModule(new BookingDateModule());
+        if ("reflective".equals(serialization)) {
+            mapper = reflective;
+        } else {
+            mapper = new ObjectMapper();
+            mapper.registerModule(new BookingDateModule());
+            mapper.registerModule(new EntityJsonModule());
+        }
+
+        value = sample(entity);
+        type = value.getClass();
+        json = mapper.writeValueAsBytes(value);
+
+        if (!reflective.readTree(json).equals(reflective.readTree(reflective.writeValueAsBytes(value)))) {
+            throw new IllegalStateException(entity + " is written differently by its serializer: "
+                + new String(json, "UTF-8") + " instead of " + reflective.writeValueAsString(value));
+        }
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return mapper.writeValueAsBytes(value);
+    }
+
+    @Benchmark
+    public Object deserialize() throws Exception {
+        return mapper.readValue(json, type);
+    }
+
+    private static Object sample(String entity) throws Exception {
+        Date date = new SimpleDateFormat("yyyy-MM-dd").parse("2015-06-30");
+
+        Contact contact = new Contact();
+        contact.setId(1L);
+        contact.setFirstName("John");
+        contact.setLastName("Smith");
+        contact.setEmail("john.smith@mailinator.com");
+        contact.setPhoneNumber("(212) 555-1212");
+
+        Hotel hotel = new Hotel();
+        hotel.setId(2L);
+        hotel.setHotelName("Grand");
+        hotel.setPhoneNumber("01912345678");
+        hotel.setPostcode("NE17RU");
+
+        Flight flight = new Flight();
+        flight.setId(3L);
+        flight.setFlightNumber("AB123");
+        flight.setFlightDeparture("NCL");
+        flight.setFlightDestination("LHR");
+
+        Taxi taxi = new Taxi();
+        taxi.setId(4L);
+        taxi.setRegistration("AB12CDE");
+        taxi.setSeat("4");
+
+        if ("Contact".equals(entity)) {
+            return contact;
+        } else if ("Hotel".equals(entity)) {
+            return hotel;
+        } else if ("Flight".equals(entity)) {
+            return flight;
+        } else if ("Taxi".equals(entity)) {
+            return taxi;
+        } else if ("Booking".equals(entity)) {
+            Booking booking = new Booking();
+            booking.setId(5L);
+            booking.setCustomer(contact);
+            booking.setHotel(hotel);
+            booking.setTaxiid(taxi);
+            booking.setFlightID(flight);
+            booking.setBookingDate(date);
+            return booking;
+        } else if ("BookingFlight".equals(entity)) {
+            BookingFlight booking = new BookingFlight();
+            booking.setId(6L);
+            booking.setCustomerID(contact);
+            booking.setFlightID(flight);
+            booking.setBookingFlightDate(date);
+            return booking;
+        } else if ("BookingHotel".equals(entity)) {
+            BookingHotel booking = new BookingHotel();
+            booking.setId(7L);
+            booking.setCustomer(contact);
+            booking.setHotel(hotel);
+            booking.setBookingHotelDate(date);
+            return booking;
+        } else if ("BookingTaxi".equals(entity)) {
+            BookingTaxi booking = new BookingTaxi();
+            booking.setId(8L);
+            booking.setCustomer(contact);
+            booking.setTaxiid(taxi);
+            booking.setTaxidate(date);
+            return booking;
+        }
+        throw new IllegalArgumentException("Unknown entity " + entity);
+    }
+}
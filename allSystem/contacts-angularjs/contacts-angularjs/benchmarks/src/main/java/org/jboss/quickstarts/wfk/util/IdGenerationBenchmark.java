@@ -0,0 +1,98 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.jboss.quickstarts.wfk.benchmark.BenchmarkSupport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Measures insert throughput with 1, 8 and 32 concurrent writers, each insert in its own transaction as a REST
+ * create would be, for the old and the new id generation.</p>
+ *
+ * <p><code>generator=table</code> inserts {@link TableIdRow}, mapped with the former
+ * <code>&#064;GeneratedValue(strategy = GenerationType.TABLE)</code>; <code>generator=pooled</code> inserts
+ * {@link PooledIdRow}, mapped with {@link PooledIdGenerator} like the entities are now. Pass
+ * <code>-jvmArgs -Dwfk.id.allocationSize=N</code> to try other block sizes.</p>
+ *
+ * <p>Run with: <code>java -jar target/benchmarks.jar IdGenerationBenchmark</code></p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdGenerationBenchmark {
+
+    @Param({"table", "pooled"})
+    private String generator;
+
+    private EntityManagerFactory emf;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        emf = BenchmarkSupport.entityManagerFactory();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object writers01() {
+        return insert();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object writers08() {
+        return insert();
+    }
+
+    @Benchmark
+    @Threads(32)
+    public Object writers32() {
+        return insert();
+    }
+
+    private Object insert() {
+        Object row = "pooled".equals(generator) ? new PooledIdRow("row") : new TableIdRow("row");
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.persist(row);
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+        return row;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.loadtest;
+
+import java.util.Calendar;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.JSONObject;
+
+/**
+ * <p>Generates the values the requests carry: unique emails, phone numbers, flight numbers and registrations, booking
+ * days and references to the seeded entities.</p>
+ *
+ * <p>The unique values come from one sequence that starts at the time the run started, so repeated runs against the
+ * same deployment don't collide (flight numbers, with only 676,000 of them, eventually will; the conflicts show up as
+ * 409 responses of <code>POST /flights</code>).</p>
+ */
+public class DataSet {
+
+    private final AtomicLong sequence;
+    private final String[] days;
+
+    /**
+     * @param days the number of days, starting tomorrow, that bookings are spread over
+     */
+    public DataSet(int days) {
+        this.sequence = new AtomicLong(System.currentTimeMillis());
+        this.days = new String[days];
+        Calendar day = Calendar.getInstance();
+        for (int i = 0; i < days; i++) {
+            day.add(Calendar.DAY_OF_MONTH, 1);
+            this.days[i] = String.format("%04d-%02d-%02d", day.get(Calendar.YEAR), day.get(Calendar.MONTH) + 1,
+                day.get(Calendar.DAY_OF_MONTH));
+        }
+    }
+
+    /**
+     * @return a number no other call during this run returns
+     */
+    long unique() {
+        return sequence.getAndIncrement();
+    }
+
+    /**
+     * @param random the random source of the calling thread
+     * @return one of the booking days, as <i>yyyy-MM-dd</i>
+     */
+    String day(Random random) {
+        return days[random.nextInt(days.length)];
+    }
+
+    /**
+     * <p>Refers to a random seeded entity of the given resource, the way a booking refers to its customer.</p>
+     *
+     * @param resource the resource referred to
+     * @param random the random source of the calling thread
+     * @return <code>{"id": ...}</code>
+     */
+    JSONObject reference(Resource resource, Random random) {
+        return new JSONObject().put("id", resource.randomSeeded(random));
+    }
+
+    /**
+     * @return the phone number, <code>(0dd) dddd-dddd</code>, for n (modulo 10<sup>10</sup>)
+     */
+    static String phoneNumber(long n) {
+        long digits = Math.abs(n % 10000000000L);
+        return String.format("(0%02d) %04d-%04d", digits / 100000000L, digits / 10000L % 10000L, digits % 10000L);
+    }
+
+    /**
+     * @return the flight number, two letters and three digits, for n (modulo 676,000)
+     */
+    static String flightNumber(long n) {
+        int k = (int) Math.abs(n % 676000L);
+        return "" + (char) ('A' + k / 26000) + (char) ('A' + k / 1000 % 26) + String.format("%03d", k % 1000);
+    }
+
+    /**
+     * @return the taxi registration, seven letters and digits, for n (modulo 36<sup>7</sup>)
+     */
+    static String registration(long n) {
+        String registration = Long.toString(Math.abs(n % 78364164096L), 36).toUpperCase();
+        while (registration.length() < 7) {
+            registration = "0" + registration;
+        }
+        return registration;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.loadtest;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+
+/**
+ * <p>Latencies and response statuses of one endpoint.</p>
+ *
+ * <p>Latencies are recorded in microseconds into an HdrHistogram {@link Recorder}, which the clients write to without
+ * locking. Every report interval {@link #interval()} takes the interval histogram, appends it to the endpoint's
+ * histogram log and adds it to the total of the run.</p>
+ */
+public class EndpointStats {
+
+    /** Status recorded when no response was received at all. */
+    static final int NO_RESPONSE = 0;
+
+    private final String endpoint;
+    private final Recorder recorder = new Recorder(3);
+    private final Histogram total = new Histogram(3);
+    private final ConcurrentHashMap<Integer, AtomicLong> statuses = new ConcurrentHashMap<Integer, AtomicLong>();
+    private Histogram recycled;
+    private HistogramLogWriter log;
+
+    public EndpointStats(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * <p>Records one request.</p>
+     *
+     * @param startNanos when the request should have been sent, see {@link Worker}
+     * @param endNanos when the response had been read
+     * @param status the HTTP status, or {@link #NO_RESPONSE}
+     */
+    void record(long startNanos, long endNanos, int status) {
+        recorder.recordValue(TimeUnit.NANOSECONDS.toMicros(endNanos - startNanos));
+        AtomicLong count = statuses.get(status);
+        if (count == null) {
+            AtomicLong created = new AtomicLong();
+            count = statuses.putIfAbsent(status, created);
+            if (count == null) {
+                count = created;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    /**
+     * <p>Starts the histogram log of this endpoint, and the first interval.</p>
+     *
+     * @param directory the directory to write the log to
+     * @param startMillis the time measuring started, the base of the log's timestamps
+     * @throws FileNotFoundException if the log file cannot be created
+     */
+    void start(File directory, long startMillis) throws FileNotFoundException {
+        // Nothing is recorded before measuring starts, this only moves the start of the interval
+        recycled = recorder.getIntervalHistogram(recycled);
+        log = new HistogramLogWriter(new File(directory, fileName() + ".hlog"));
+        log.outputComment("Latencies of " + endpoint + " in microseconds");
+        log.outputLogFormatVersion();
+        log.outputStartTime(startMillis);
+        log.setBaseTime(startMillis);
+        log.outputLegend();
+    }
+
+    /**
+     * <p>Ends an interval: logs what was recorded since the previous one and adds it to the total.</p>
+     *
+     * @return the number of requests in the interval
+     */
+    long interval() {
+        recycled = recorder.getIntervalHistogram(recycled);
+        log.outputIntervalHistogram(recycled);
+        total.add(recycled);
+        return recycled.getTotalCount();
+    }
+
+    /**
+     * @return the latencies, in microseconds, recorded in all the intervals so far
+     */
+    Histogram getTotal() {
+        return total;
+    }
+
+    /**
+     * @return the number of responses by status, in status order
+     */
+    Map<Integer, Long> getStatuses() {
+        Map<Integer, Long> counts = new TreeMap<Integer, Long>();
+        for (Map.Entry<Integer, AtomicLong> entry : statuses.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().get());
+        }
+        return counts;
+    }
+
+    /**
+     * <p>Writes the percentile distribution of the whole run, in milliseconds, in the <i>.hgrm</i> format the
+     * HdrHistogram plotter reads.</p>
+     *
+     * @param directory the directory to write to
+     * @throws FileNotFoundException if the file cannot be created
+     */
+    void writeDistribution(File directory) throws FileNotFoundException {
+        PrintStream out = new PrintStream(new File(directory, fileName() + ".hgrm"));
+        try {
+            total.outputPercentileDistribution(out, 5, 1000.0);
+        } finally {
+            out.close();
+        }
+    }
+
+    void close() {
+        if (log != null) {
+            log.close();
+        }
+    }
+
+    /** PUT /contacts/{id} is written to PUT_contacts_id.hlog */
+    private String fileName() {
+        return endpoint.replaceAll("[^A-Za-z0-9]+", "_").replaceAll("_$", "");
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.json.JSONObject;
+
+/**
+ * <p>Drives the REST API of a deployed application with a mixed workload and reports the throughput and latency
+ * percentiles of every endpoint.</p>
+ *
+ * <p>A run has three phases:</p>
+ * <ol>
+ * <li>seed: <code>load.dataSize</code> contacts, hotels, flights and taxis, and as many bookings of each selected
+ * kind, are created. They are the working set of the reads and updates, and what the bookings refer to.</li>
+ * <li>warm up: the clients send requests for <code>load.warmup</code> seconds, nothing is recorded.</li>
+ * <li>measure: the clients go on for <code>load.duration</code> seconds. Every <code>load.reportInterval</code> a
+ * progress line is printed and the interval is appended to the HdrHistogram log of each endpoint.</li>
+ * </ol>
+ *
+ * <p>At the end the output directory holds, for every endpoint, the interval log (<i>.hlog</i>, for
+ * HistogramLogProcessor) and the percentile distribution of the whole run (<i>.hgrm</i>, for the HdrHistogram
+ * plotter), and <i>summary.txt</i> with the table printed to the console. See {@link LoadTestConfig} for the
+ * settings.</p>
+ */
+public final class LoadTest {
+
+    private final LoadTestConfig config;
+    private final Resource[] resources;
+    private final DataSet data;
+    private final Map<String, EndpointStats> stats = new LinkedHashMap<String, EndpointStats>();
+    private long measuredNanos;
+
+    private LoadTest(LoadTestConfig config) {
+        this.config = config;
+        this.resources = new Resource[config.resources.length];
+        for (int i = 0; i < resources.length; i++) {
+            resources[i] = Resource.forPath(config.resources[i]);
+        }
+        this.data = new DataSet(config.days);
+        for (Resource resource : resources) {
+            for (Operation operation : Operation.values()) {
+                String endpoint = operation.endpoint(resource);
+                stats.put(endpoint, new EndpointStats(endpoint));
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new LoadTest(LoadTestConfig.fromSystemProperties()).run();
+    }
+
+    private void run() throws IOException, InterruptedException, ExecutionException {
+        System.out.println("Load test: " + config);
+        if (!config.output.isDirectory() && !config.output.mkdirs()) {
+            throw new IOException("Cannot create " + config.output);
+        }
+
+        RestClient client = new RestClient(config.url, config.threads);
+        try {
+            seed(client);
+            measure(client);
+        } finally {
+            client.close();
+            for (EndpointStats endpoint : stats.values()) {
+                endpoint.close();
+            }
+        }
+        report();
+    }
+
+    /**
+     * <p>Creates the working set, the resources bookings refer to first.</p>
+     */
+    private void seed(RestClient client) throws InterruptedException, ExecutionException {
+        Set<Resource> toSeed = new LinkedHashSet<Resource>();
+        for (Resource resource : resources) {
+            for (Resource reference : resource.getReferences()) {
+                toSeed.add(reference);
+            }
+        }
+        for (Resource resource : resources) {
+            toSeed.add(resource);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(config.threads);
+        try {
+            long seed = config.seed;
+            for (Resource resource : toSeed) {
+                long started = System.nanoTime();
+                List<Future<Void>> created = new ArrayList<Future<Void>>(config.dataSize);
+                for (int i = 0; i < config.dataSize; i++) {
+                    created.add(executor.submit(new Seeder(client, resource, new Random(seed++))));
+                }
+                for (Future<Void> future : created) {
+                    future.get();
+                }
+                if (resource.seededCount() == 0) {
+                    throw new IllegalStateException("Could not create any " + resource + " at " + config.url);
+                }
+                System.out.println(String.format("Seeded %d %s in %d ms", resource.seededCount(), resource,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private void measure(RestClient client) throws IOException, InterruptedException {
+        long now = System.nanoTime();
+        long measureStart = now + TimeUnit.SECONDS.toNanos(config.warmupSeconds);
+        long end = measureStart + TimeUnit.SECONDS.toNanos(config.durationSeconds);
+        long intervalNanos = config.rate > 0 ? TimeUnit.SECONDS.toNanos(config.threads) / config.rate : 0;
+
+        Thread[] workers = new Thread[config.threads];
+        for (int i = 0; i < workers.length; i++) {
+            Random random = new Random(config.seed + 1000003L * (i + 1));
+            workers[i] = new Thread(new Worker(client, data, resources, config.mix, stats, random, measureStart, end,
+                intervalNanos), "load-client-" + i);
+            workers[i].start();
+        }
+
+        System.out.println("Warming up for " + config.warmupSeconds + " s");
+        sleepUntil(measureStart);
+        long startMillis = System.currentTimeMillis();
+        for (EndpointStats endpoint : stats.values()) {
+            endpoint.start(config.output, startMillis);
+        }
+
+        long interval = TimeUnit.SECONDS.toNanos(config.reportIntervalSeconds);
+        long next = measureStart;
+        while (next < end) {
+            long previous = next;
+            next = Math.min(next + interval, end);
+            sleepUntil(next);
+            if (next == end) {
+                // Behind schedule, a client goes on until it has sent every request due before the end
+                for (Thread worker : workers) {
+                    worker.join();
+                }
+                next = Math.max(end, System.nanoTime());
+            }
+            long requests = 0;
+            for (EndpointStats endpoint : stats.values()) {
+                requests += endpoint.interval();
+            }
+            System.out.println(String.format("%6d s %10.1f req/s", TimeUnit.NANOSECONDS.toSeconds(next - measureStart),
+                requests * 1e9 / (next - previous)));
+        }
+        measuredNanos = next - measureStart;
+    }
+
+    private void report() throws IOException {
+        PrintStream summary = new PrintStream(new File(config.output, "summary.txt"));
+        try {
+            report(System.out);
+            report(summary);
+        } finally {
+            summary.close();
+        }
+        for (EndpointStats endpoint : stats.values()) {
+            endpoint.writeDistribution(config.output);
+        }
+        System.out.println("Histograms written to " + config.output.getAbsolutePath());
+    }
+
+    private void report(PrintStream out) {
+        String format = "%-32s %9s %9s %9s %9s %9s %9s %9s  %s%n";
+        out.println(config);
+        out.printf(format, "endpoint", "requests", "req/s", "p50 ms", "p95 ms", "p99 ms", "p99.9 ms", "max ms",
+            "statuses");
+        Histogram all = new Histogram(3);
+        for (EndpointStats endpoint : stats.values()) {
+            Histogram total = endpoint.getTotal();
+            if (total.getTotalCount() > 0) {
+                row(out, format, endpoint.getEndpoint(), total, statuses(endpoint.getStatuses()));
+                all.add(total);
+            }
+        }
+        row(out, format, "all", all, "");
+    }
+
+    private void row(PrintStream out, String format, String name, Histogram latencies, String statuses) {
+        out.printf(format, name, latencies.getTotalCount(),
+            String.format("%.1f", latencies.getTotalCount() * 1e9 / measuredNanos),
+            millis(latencies.getValueAtPercentile(50)), millis(latencies.getValueAtPercentile(95)),
+            millis(latencies.getValueAtPercentile(99)), millis(latencies.getValueAtPercentile(99.9)),
+            millis(latencies.getMaxValue()), statuses);
+    }
+
+    private static String millis(long micros) {
+        return String.format("%.2f", micros / 1000.0);
+    }
+
+    private static String statuses(Map<Integer, Long> counts) {
+        StringBuilder statuses = new StringBuilder();
+        for (Map.Entry<Integer, Long> entry : counts.entrySet()) {
+            if (statuses.length() > 0) {
+                statuses.append(' ');
+            }
+            statuses.append(entry.getKey() == EndpointStats.NO_RESPONSE ? "none" : entry.getKey())
+                .append(':').append(entry.getValue());
+        }
+        return statuses.toString();
+    }
+
+    private static void sleepUntil(long nanos) throws InterruptedException {
+        long now;
+        while ((now = System.nanoTime()) < nanos) {
+            TimeUnit.NANOSECONDS.sleep(nanos - now);
+        }
+    }
+
+    /**
+     * <p>Creates one seeded entity. Bookings pick their date at random, so one may clash with an earlier booking and
+     * is retried a few times.</p>
+     */
+    private final class Seeder implements Callable<Void> {
+
+        private static final int ATTEMPTS = 5;
+
+        private final RestClient client;
+        private final Resource resource;
+        private final Random random;
+
+        Seeder(RestClient client, Resource resource, Random random) {
+            this.client = client;
+            this.resource = resource;
+            this.random = random;
+        }
+
+        @Override
+        public Void call() throws IOException {
+            for (int attempt = 0; attempt < ATTEMPTS; attempt++) {
+                JSONObject entity = resource.create(data, random);
+                RestClient.Response response = client.execute(client.post("/" + resource.getPath(), entity));
+                if (response.status == 201) {
+                    resource.addSeeded(new JSONObject(response.body).getLong("id"), entity);
+                    return null;
+                }
+            }
+            return null;
+        }
+    }
+}
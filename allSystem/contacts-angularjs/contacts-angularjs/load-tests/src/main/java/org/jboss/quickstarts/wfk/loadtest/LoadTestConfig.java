@@ -0,0 +1,109 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.loadtest;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>Settings of a load test run, read from system properties so a run can be repeated from its command line.</p>
+ *
+ * <table>
+ * <tr><td><code>load.url</code></td><td>base URL of the REST API</td></tr>
+ * <tr><td><code>load.threads</code></td><td>number of concurrent clients</td></tr>
+ * <tr><td><code>load.warmup</code></td><td>seconds of load before measuring starts</td></tr>
+ * <tr><td><code>load.duration</code></td><td>seconds of measured load</td></tr>
+ * <tr><td><code>load.rate</code></td><td>target requests per second over all clients, 0 to send as fast as the
+ * server answers</td></tr>
+ * <tr><td><code>load.dataSize</code></td><td>number of contacts, hotels, flights and taxis created before the run</td></tr>
+ * <tr><td><code>load.days</code></td><td>number of days ahead bookings are spread over</td></tr>
+ * <tr><td><code>load.mix</code></td><td>relative weights of the list, read, create, update and delete requests</td></tr>
+ * <tr><td><code>load.resources</code></td><td>the resources to load, by REST path</td></tr>
+ * <tr><td><code>load.seed</code></td><td>seed of the random choices, the same seed replays the same workload</td></tr>
+ * <tr><td><code>load.reportInterval</code></td><td>seconds between progress lines and histogram log intervals</td></tr>
+ * <tr><td><code>load.output</code></td><td>directory the histograms and the summary are written to</td></tr>
+ * </table>
+ */
+public final class LoadTestConfig {
+
+    final String url;
+    final int threads;
+    final int warmupSeconds;
+    final int durationSeconds;
+    final int rate;
+    final int dataSize;
+    final int days;
+    final Map<Operation, Integer> mix;
+    final String[] resources;
+    final long seed;
+    final int reportIntervalSeconds;
+    final File output;
+
+    private LoadTestConfig() {
+        url = stripTrailingSlash(System.getProperty("load.url", "http://localhost:8080/jboss-contacts-angularjs/rest"));
+        threads = Integer.getInteger("load.threads", 16);
+        warmupSeconds = Integer.getInteger("load.warmup", 30);
+        durationSeconds = Integer.getInteger("load.duration", 120);
+        rate = Integer.getInteger("load.rate", 0);
+        dataSize = Integer.getInteger("load.dataSize", 100);
+        days = Integer.getInteger("load.days", 365);
+        mix = parseMix(System.getProperty("load.mix", "list:10,read:50,create:15,update:15,delete:10"));
+        resources = System.getProperty("load.resources",
+            "contacts,hotels,flights,taxis,bookings,bookingFlights,bookingHotels,bookingtaxis").split(",");
+        seed = Long.getLong("load.seed", 42L);
+        reportIntervalSeconds = Integer.getInteger("load.reportInterval", 10);
+        output = new File(System.getProperty("load.output", "target/load-results"));
+
+        if (threads < 1 || durationSeconds < 1 || dataSize < 1 || days < 1 || reportIntervalSeconds < 1) {
+            throw new IllegalArgumentException("load.threads, load.duration, load.dataSize, load.days and "
+                + "load.reportInterval must be positive");
+        }
+    }
+
+    /**
+     * <p>Reads the configuration from the system properties, using the defaults for those not set.</p>
+     *
+     * @return the configuration of this run
+     */
+    public static LoadTestConfig fromSystemProperties() {
+        return new LoadTestConfig();
+    }
+
+    private static Map<Operation, Integer> parseMix(String value) {
+        Map<Operation, Integer> weights = new LinkedHashMap<Operation, Integer>();
+        for (String entry : value.split(",")) {
+            String[] pair = entry.split(":");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("load.mix entries are operation:weight, got " + entry);
+            }
+            weights.put(Operation.valueOf(pair[0].trim().toUpperCase()), Integer.valueOf(pair[1].trim()));
+        }
+        return weights;
+    }
+
+    private static String stripTrailingSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    @Override
+    public String toString() {
+        return "url=" + url + " threads=" + threads + " warmup=" + warmupSeconds + "s duration=" + durationSeconds
+            + "s rate=" + (rate == 0 ? "unlimited" : rate + "/s") + " dataSize=" + dataSize + " days=" + days
+            + " mix=" + mix + " seed=" + seed;
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.loadtest;
+
+/**
+ * <p>The kinds of request the load test sends to each resource.</p>
+ *
+ * <p>Reads and updates go to the entities created before the run, so <code>load.dataSize</code> sets the working set.
+ * Deletes only remove entities created during the run, which nothing else refers to.</p>
+ */
+public enum Operation {
+    LIST("GET", ""),
+    READ("GET", "/{id}"),
+    CREATE("POST", ""),
+    UPDATE("PUT", "/{id}"),
+    DELETE("DELETE", "/{id}");
+
+    private final String method;
+    private final String suffix;
+
+    private Operation(String method, String suffix) {
+        this.method = method;
+        this.suffix = suffix;
+    }
+
+    /**
+     * <p>Names the endpoint this operation calls on the given resource, the key the statistics are kept under.</p>
+     *
+     * @param resource the resource
+     * @return the endpoint, e.g. <code>PUT /contacts/{id}</code>
+     */
+    public String endpoint(Resource resource) {
+        return method + " /" + resource.getPath() + suffix;
+    }
+}
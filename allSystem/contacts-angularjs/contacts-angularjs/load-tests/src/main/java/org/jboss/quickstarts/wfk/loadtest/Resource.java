@@ -0,0 +1,280 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.loadtest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.json.JSONObject;
+
+/**
+ * <p>One REST resource of the application, with the entities of it the load test knows about.</p>
+ *
+ * <p>Subclasses know how to make a valid new entity and how to change an existing one; the ids are tracked here:
+ * <i>seeded</i> entities are created before the run and used for reads, updates and as the references of bookings,
+ * <i>disposable</i> ones are created during the run and are what deletes remove.</p>
+ */
+public abstract class Resource {
+
+    private static final String[] NAMES = {"Smith", "Jones", "Taylor", "Brown", "Wilson", "Evans", "Thomas", "Roberts"};
+    private static final String[] AIRPORTS = {"LHR", "NCL", "EDI", "MAN", "CDG", "AMS", "JFK", "DXB"};
+
+    public static final Resource CONTACTS = new Resource("contacts") {
+        @Override
+        JSONObject create(DataSet data, Random random) {
+            long n = data.unique();
+            return new JSONObject()
+                .put("firstName", "Load")
+                .put("lastName", pick(NAMES, random))
+                .put("email", "load." + n + "@mailinator.com")
+                .put("phoneNumber", DataSet.phoneNumber(random.nextInt(Integer.MAX_VALUE)));
+        }
+
+        @Override
+        void change(JSONObject contact, DataSet data, Random random) {
+            contact.put("lastName", pick(NAMES, random));
+        }
+    };
+
+    public static final Resource HOTELS = new Resource("hotels") {
+        @Override
+        JSONObject create(DataSet data, Random random) {
+            // The phone number is what identifies a hotel
+            return new JSONObject()
+                .put("hotelName", pick(NAMES, random))
+                .put("phoneNumber", DataSet.phoneNumber(data.unique()))
+                .put("postcode", "NE" + (1000 + random.nextInt(9000)));
+        }
+
+        @Override
+        void change(JSONObject hotel, DataSet data, Random random) {
+            hotel.put("hotelName", pick(NAMES, random));
+        }
+    };
+
+    public static final Resource FLIGHTS = new Resource("flights") {
+        @Override
+        JSONObject create(DataSet data, Random random) {
+            int departure = random.nextInt(AIRPORTS.length);
+            return new JSONObject()
+                .put("flightNumber", DataSet.flightNumber(data.unique()))
+                .put("flightDeparture", AIRPORTS[departure])
+                .put("flightDestination", AIRPORTS[(departure + 1 + random.nextInt(AIRPORTS.length - 1)) % AIRPORTS.length]);
+        }
+
+        @Override
+        void change(JSONObject flight, DataSet data, Random random) {
+            String departure = flight.getString("flightDeparture");
+            String destination;
+            do {
+                destination = pick(AIRPORTS, random);
+            } while (destination.equals(departure));
+            flight.put("flightDestination", destination);
+        }
+    };
+
+    public static final Resource TAXIS = new Resource("taxis") {
+        @Override
+        JSONObject create(DataSet data, Random random) {
+            return new JSONObject()
+                .put("registration", DataSet.registration(data.unique()))
+                .put("seat", String.valueOf(2 + random.nextInt(21)));
+        }
+
+        @Override
+        void change(JSONObject taxi, DataSet data, Random random) {
+            taxi.put("seat", String.valueOf(2 + random.nextInt(21)));
+        }
+    };
+
+    public static final Resource BOOKINGS = new Resource("bookings", HOTELS, CONTACTS, TAXIS, FLIGHTS) {
+        @Override
+        JSONObject create(DataSet data, Random random) {
+            return new JSONObject()
+                .put("hotel", data.reference(HOTELS, random))
+                .put("customer", data.reference(CONTACTS, random))
+                .put("taxiid", data.reference(TAXIS, random))
+                .put("flightID", data.reference(FLIGHTS, random))
+                .put("bookingDate", data.day(random));
+        }
+
+        @Override
+        void change(JSONObject booking, DataSet data, Random random) {
+            booking.put("bookingDate", data.day(random));
+        }
+    };
+
+    public static final Resource BOOKING_FLIGHTS = new Resource("bookingFlights", CONTACTS, FLIGHTS) {
+        @Override
+        JSONObject create(DataSet data, Random random) {
+            return new JSONObject()
+                .put("customerID", data.reference(CONTACTS, random))
+                .put("flightID", data.reference(FLIGHTS, random))
+                .put("bookingFlightDate", data.day(random));
+        }
+
+        @Override
+        void change(JSONObject bookingFlight, DataSet data, Random random) {
+            bookingFlight.put("bookingFlightDate", data.day(random));
+        }
+    };
+
+    public static final Resource BOOKING_HOTELS = new Resource("bookingHotels", HOTELS, CONTACTS) {
+        @Override
+        JSONObject create(DataSet data, Random random) {
+            return new JSONObject()
+                .put("hotel", data.reference(HOTELS, random))
+                .put("customer", data.reference(CONTACTS, random))
+                .put("bookingHotelDate", data.day(random));
+        }
+
+        @Override
+        void change(JSONObject bookingHotel, DataSet data, Random random) {
+            bookingHotel.put("bookingHotelDate", data.day(random));
+        }
+    };
+
+    public static final Resource BOOKING_TAXIS = new Resource("bookingtaxis", CONTACTS, TAXIS) {
+        @Override
+        JSONObject create(DataSet data, Random random) {
+            return new JSONObject()
+                .put("customer", data.reference(CONTACTS, random))
+                .put("taxiid", data.reference(TAXIS, random))
+                .put("taxidate", data.day(random));
+        }
+
+        @Override
+        void change(JSONObject bookingTaxi, DataSet data, Random random) {
+            bookingTaxi.put("taxidate", data.day(random));
+        }
+    };
+
+    private static final Resource[] ALL = {CONTACTS, HOTELS, FLIGHTS, TAXIS, BOOKINGS, BOOKING_FLIGHTS, BOOKING_HOTELS,
+        BOOKING_TAXIS};
+
+    private final String path;
+    private final Resource[] references;
+
+    private final List<Long> seeded = Collections.synchronizedList(new ArrayList<Long>());
+    private final ConcurrentHashMap<Long, String> entities = new ConcurrentHashMap<Long, String>();
+    private final ConcurrentLinkedQueue<Long> disposable = new ConcurrentLinkedQueue<Long>();
+
+    private Resource(String path, Resource... references) {
+        this.path = path;
+        this.references = references;
+    }
+
+    /**
+     * <p>Looks a resource up by its REST path.</p>
+     *
+     * @param path the path, e.g. <code>contacts</code>
+     * @return the resource
+     * @throws IllegalArgumentException if there is no resource at that path
+     */
+    public static Resource forPath(String path) {
+        for (Resource resource : ALL) {
+            if (resource.path.equals(path.trim())) {
+                return resource;
+            }
+        }
+        throw new IllegalArgumentException("Unknown resource " + path);
+    }
+
+    /**
+     * <p>Makes a new, valid entity of this resource.</p>
+     *
+     * @param data the data set, for unique values and references to other entities
+     * @param random the random source of the calling thread
+     * @return the JSON to POST
+     */
+    abstract JSONObject create(DataSet data, Random random);
+
+    /**
+     * <p>Changes an entity of this resource the way an update from the client would.</p>
+     *
+     * @param entity the JSON of the entity, changed in place
+     * @param data the data set
+     * @param random the random source of the calling thread
+     */
+    abstract void change(JSONObject entity, DataSet data, Random random);
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return the resources the entities of this one refer to, which have to be seeded first
+     */
+    Resource[] getReferences() {
+        return references;
+    }
+
+    void addSeeded(Long id, JSONObject entity) {
+        entities.put(id, entity.toString());
+        seeded.add(id);
+    }
+
+    int seededCount() {
+        return seeded.size();
+    }
+
+    /**
+     * <p>Picks one of the seeded entities.</p>
+     *
+     * @param random the random source of the calling thread
+     * @return its id, or null if nothing has been seeded
+     */
+    Long randomSeeded(Random random) {
+        synchronized (seeded) {
+            return seeded.isEmpty() ? null : seeded.get(random.nextInt(seeded.size()));
+        }
+    }
+
+    /**
+     * <p>Returns a copy of the JSON a seeded entity was created with, to be changed and sent back.</p>
+     *
+     * @param id the id of the entity
+     * @return a copy of its JSON
+     */
+    JSONObject entity(Long id) {
+        return new JSONObject(entities.get(id));
+    }
+
+    void addDisposable(Long id) {
+        disposable.add(id);
+    }
+
+    /**
+     * @return the oldest entity created during the run, removed from the pool; or null if there is none
+     */
+    Long takeDisposable() {
+        return disposable.poll();
+    }
+
+    static String pick(String[] values, Random random) {
+        return values[random.nextInt(values.length)];
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+}
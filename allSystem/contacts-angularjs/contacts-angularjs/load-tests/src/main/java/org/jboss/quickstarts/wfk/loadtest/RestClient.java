@@ -0,0 +1,126 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.loadtest;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.json.JSONObject;
+
+/**
+ * <p>The HTTP client all the load test's threads share, with a keep-alive connection per thread.</p>
+ */
+public class RestClient implements Closeable {
+
+    private final String url;
+    private final CloseableHttpClient httpClient;
+
+    /**
+     * @param url the base URL of the REST API
+     * @param connections the number of connections to keep open, one per client thread
+     */
+    public RestClient(String url, int connections) {
+        this.url = url;
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(connections);
+        connectionManager.setDefaultMaxPerRoute(connections);
+        RequestConfig requestConfig = RequestConfig.custom()
+            .setConnectTimeout(10000)
+            .setSocketTimeout(60000)
+            .build();
+        this.httpClient = HttpClients.custom()
+            .setConnectionManager(connectionManager)
+            .setDefaultRequestConfig(requestConfig)
+            .build();
+    }
+
+    HttpUriRequest get(String path) {
+        return new HttpGet(url + path);
+    }
+
+    HttpUriRequest post(String path, JSONObject body) {
+        return withBody(new HttpPost(url + path), body);
+    }
+
+    HttpUriRequest put(String path, JSONObject body) {
+        return withBody(new HttpPut(url + path), body);
+    }
+
+    HttpUriRequest delete(String path) {
+        return new HttpDelete(url + path);
+    }
+
+    /**
+     * <p>Sends the request and reads the whole response, so the connection can be reused.</p>
+     *
+     * @param request the request
+     * @return the response
+     * @throws IOException if no response was received
+     */
+    Response execute(HttpUriRequest request) throws IOException {
+        CloseableHttpResponse response = httpClient.execute(request);
+        try {
+            HttpEntity entity = response.getEntity();
+            return new Response(response.getStatusLine().getStatusCode(), entity == null ? null : EntityUtils.toString(entity));
+        } finally {
+            response.close();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        httpClient.close();
+    }
+
+    private static HttpUriRequest withBody(HttpEntityEnclosingRequestBase request, JSONObject body) {
+        request.setEntity(new StringEntity(body.toString(), ContentType.APPLICATION_JSON));
+        return request;
+    }
+
+    /**
+     * <p>Status and body of a response.</p>
+     */
+    static final class Response {
+
+        final int status;
+        final String body;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        boolean isSuccess() {
+            return status >= 200 && status < 300;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.loadtest;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.http.client.methods.HttpUriRequest;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * <p>One client of the load test: picks a resource and an operation, sends the request, records how long it took,
+ * and repeats until the run is over.</p>
+ *
+ * <p>Without a target rate each client sends its next request as soon as it has the previous response. With one, the
+ * client sends on a fixed schedule and measures each request from the time it <i>should</i> have been sent, so a
+ * server that stalls is charged for the requests that queued up behind the stall, rather than the stall hiding them
+ * (coordinated omission). A client that falls behind its schedule sends the requests it owes back to back, and keeps
+ * going past the end of the run until it has caught up.</p>
+ */
+class Worker implements Runnable {
+
+    private final RestClient client;
+    private final DataSet data;
+    private final Resource[] resources;
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+    private final Map<String, EndpointStats> stats;
+    private final Random random;
+    private final long measureStartNanos;
+    private final long endNanos;
+    private final long intervalNanos;
+
+    /**
+     * @param client the shared HTTP client
+     * @param data the shared data set
+     * @param resources the resources to send requests to, picked with equal probability
+     * @param mix the weights of the operations
+     * @param stats the statistics, by endpoint
+     * @param random the random source of this client
+     * @param measureStartNanos the end of the warm up, requests started before it are not recorded
+     * @param endNanos the end of the run
+     * @param intervalNanos the time between two requests of this client, 0 to send them back to back
+     */
+    Worker(RestClient client, DataSet data, Resource[] resources, Map<Operation, Integer> mix,
+        Map<String, EndpointStats> stats, Random random, long measureStartNanos, long endNanos, long intervalNanos) {
+        this.client = client;
+        this.data = data;
+        this.resources = resources;
+        this.operations = mix.keySet().toArray(new Operation[mix.size()]);
+        this.cumulativeWeights = new int[operations.length];
+        int sum = 0;
+        for (int i = 0; i < operations.length; i++) {
+            sum += mix.get(operations[i]);
+            cumulativeWeights[i] = sum;
+        }
+        this.stats = stats;
+        this.random = random;
+        this.measureStartNanos = measureStartNanos;
+        this.endNanos = endNanos;
+        this.intervalNanos = intervalNanos;
+    }
+
+    @Override
+    public void run() {
+        // Spread the clients over the first interval, so they don't all send at once
+        long next = System.nanoTime() + (intervalNanos > 0 ? (long) (random.nextDouble() * intervalNanos) : 0);
+        while (true) {
+            long start;
+            if (intervalNanos > 0) {
+                long now;
+                while ((now = System.nanoTime()) < next) {
+                    LockSupport.parkNanos(next - now);
+                }
+                start = next;
+                next += intervalNanos;
+            } else {
+                start = System.nanoTime();
+            }
+            if (start >= endNanos) {
+                return;
+            }
+            send(start);
+        }
+    }
+
+    private void send(long start) {
+        Resource resource = resources[random.nextInt(resources.length)];
+        Operation operation = pickOperation();
+        String path = "/" + resource.getPath();
+        HttpUriRequest request;
+        Long id;
+        switch (operation) {
+            case LIST:
+                request = client.get(path);
+                break;
+            case READ:
+                request = client.get(path + "/" + resource.randomSeeded(random));
+                break;
+            case UPDATE:
+                id = resource.randomSeeded(random);
+                JSONObject entity = resource.entity(id).put("id", id);
+                resource.change(entity, data, random);
+                request = client.put(path + "/" + id, entity);
+                break;
+            case DELETE:
+                id = resource.takeDisposable();
+                if (id != null) {
+                    request = client.delete(path + "/" + id);
+                    break;
+                }
+                // Nothing created yet that can be deleted, create instead
+                operation = Operation.CREATE;
+                // fall through
+            case CREATE:
+            default:
+                request = client.post(path, resource.create(data, random));
+                break;
+        }
+
+        int status;
+        String body = null;
+        try {
+            RestClient.Response response = client.execute(request);
+            status = response.status;
+            body = response.body;
+        } catch (IOException e) {
+            status = EndpointStats.NO_RESPONSE;
+        }
+        long end = System.nanoTime();
+
+        if (start >= measureStartNanos) {
+            stats.get(operation.endpoint(resource)).record(start, end, status);
+        }
+        if (operation == Operation.CREATE && status == 201 && body != null) {
+            try {
+                resource.addDisposable(new JSONObject(body).getLong("id"));
+            } catch (JSONException e) {
+                // Not the created entity, nothing to delete later
+            }
+        }
+    }
+
+    private Operation pickOperation() {
+        int r = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (r < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        throw new IllegalStateException();
+    }
+}
@@ -12,6 +12,12 @@ import org.jboss.quickstarts.wfk.contact.Contact;
 import org.jboss.quickstarts.wfk.contact.Hotel;
 import org.jboss.quickstarts.wfk.flight.Flight;
 import org.jboss.quickstarts.wfk.taxi.Taxi;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Index;
+import org.codehaus.jackson.annotate.JsonIgnore;
+import org.jboss.quickstarts.wfk.util.AvailabilityIndex;
+import org.jboss.quickstarts.wfk.util.PooledIdGenerator;
+import org.jboss.quickstarts.wfk.util.Versioned;
 
 /*
  * The @NamedQueries included here are for searching against the table that reflects this object.  This is the most efficient
@@ -19,38 +25,107 @@ import org.jboss.quickstarts.wfk.taxi.Taxi;
  */
 @Entity
 @NamedQueries({
-    @NamedQuery(name = Booking.FIND_ALL, query = "SELECT b FROM Booking b ORDER BY b.id ASC"),
+    @NamedQuery(name = Booking.FIND_ALL, query = "SELECT b FROM Booking b" + Booking.FETCH_REFERENCES + " ORDER BY b.id ASC"),
+    @NamedQuery(name = Booking.FIND_ALL_AFTER, query = "SELECT b FROM Booking b" + Booking.FETCH_REFERENCES + " WHERE b.id > :id ORDER BY b.id ASC"),
+    @NamedQuery(name = Booking.FIND_BY_ID, query = "SELECT b FROM Booking b" + Booking.FETCH_REFERENCES + " WHERE b.id = :id"),
+    @NamedQuery(name = Booking.FIND_ALL_SUMMARIES,
+        query = "SELECT NEW org.jboss.quickstarts.wfk.booking.BookingSummary("
+        + "b.id, b.bookingDate, c.id, c.firstName, c.lastName, h.id, h.hotelName, "
+        + "t.id, t.registration, f.id, f.flightNumber) "
+        + "FROM Booking b LEFT JOIN b.contact c LEFT JOIN b.hotel h LEFT JOIN b.taxiid t LEFT JOIN b.flightID f "
+        + "ORDER BY b.id ASC"),
+    @NamedQuery(name = Booking.FIND_ALL_SUMMARIES_AFTER,
+        query = "SELECT NEW org.jboss.quickstarts.wfk.booking.BookingSummary("
+        + "b.id, b.bookingDate, c.id, c.firstName, c.lastName, h.id, h.hotelName, "
+        + "t.id, t.registration, f.id, f.flightNumber) "
+        + "FROM Booking b LEFT JOIN b.contact c LEFT JOIN b.hotel h LEFT JOIN b.taxiid t LEFT JOIN b.flightID f "
+        + "WHERE b.id > :id ORDER BY b.id ASC"),
+    @NamedQuery(name = Booking.FIND_SUMMARIES_BY_CUSTOMER,
+        query = "SELECT NEW org.jboss.quickstarts.wfk.booking.BookingSummary("
+        + "b.id, b.bookingDate, c.id, c.firstName, c.lastName, h.id, h.hotelName, "
+        + "t.id, t.registration, f.id, f.flightNumber) "
+        + "FROM Booking b LEFT JOIN b.contact c LEFT JOIN b.hotel h LEFT JOIN b.taxiid t LEFT JOIN b.flightID f "
+        + "WHERE b.contact.id = :customerId ORDER BY b.bookingDate ASC, b.id ASC"),
+    @NamedQuery(name = Booking.FIND_SUMMARIES_BY_CUSTOMER_AFTER,
+        query = "SELECT NEW org.jboss.quickstarts.wfk.booking.BookingSummary("
+        + "b.id, b.bookingDate, c.id, c.firstName, c.lastName, h.id, h.hotelName, "
+        + "t.id, t.registration, f.id, f.flightNumber) "
+        + "FROM Booking b LEFT JOIN b.contact c LEFT JOIN b.hotel h LEFT JOIN b.taxiid t LEFT JOIN b.flightID f "
+        + "WHERE b.contact.id = :customerId AND (b.bookingDate > :date OR (b.bookingDate = :date AND b.id > :id)) "
+        + "ORDER BY b.bookingDate ASC, b.id ASC"),
     @NamedQuery(name = Booking.FIND_BY_DATE, query = "SELECT b FROM Booking b WHERE b.bookingDate = :bookingDate"),
-    @NamedQuery(name = Booking.FIND_BY_HOTEL, query = "SELECT b FROM Booking b WHERE b.hotel.id = :hotelId"),
-    @NamedQuery(name = Booking.FIND_BY_CUSTOMER, query = "SELECT b FROM Booking b WHERE b.contact.id = :customerId")
+    @NamedQuery(name = Booking.FIND_BY_HOTEL, query = "SELECT b FROM Booking b" + Booking.FETCH_REFERENCES + " WHERE b.hotel.id = :hotelId"),
+    @NamedQuery(name = Booking.FIND_BY_CUSTOMER, query = "SELECT b FROM Booking b" + Booking.FETCH_REFERENCES + " WHERE b.contact.id = :customerId"),
+    @NamedQuery(name = Booking.FIND_BY_TAXI, query = "SELECT b FROM Booking b" + Booking.FETCH_REFERENCES + " WHERE b.taxiid.id = :taxi_id"),
+    @NamedQuery(name = Booking.FIND_BY_FLIGHT, query = "SELECT b FROM Booking b" + Booking.FETCH_REFERENCES + " WHERE b.flightID.id = :flight_ID"),
+    @NamedQuery(name = Booking.FIND_ID_BY_HOTEL_AND_DATE, query = "SELECT b.id FROM Booking b WHERE b.hotel.id = :hotelId AND b.bookingDate = :bookingDate"),
+    @NamedQuery(name = Booking.FIND_OTHER_ID_BY_HOTEL_AND_DATE, query = "SELECT b.id FROM Booking b WHERE b.hotel.id = :hotelId AND b.bookingDate = :bookingDate AND b.id <> :id"),
+    @NamedQuery(name = Booking.FIND_DAYS_BY_HOTELS, query = "SELECT b.hotel.id, b.bookingDate FROM Booking b WHERE b.hotel.id IN :hotelIds AND b.bookingDate BETWEEN :first AND :last"),
+    @NamedQuery(name = Booking.FIND_VERSION,
+        query = "SELECT NEW org.jboss.quickstarts.wfk.util.EntityVersion(b.version, b.lastModified, "
+        + "c.version, c.lastModified, h.version, h.lastModified, t.version, t.lastModified, f.version, f.lastModified) "
+        + "FROM Booking b LEFT JOIN b.contact c LEFT JOIN b.hotel h LEFT JOIN b.taxiid t LEFT JOIN b.flightID f "
+        + "WHERE b.id = :id"),
+    @NamedQuery(name = Booking.FIND_DAYS, query = "SELECT b.id, b.hotel.id, b.bookingDate FROM Booking b")
 })
 @XmlRootElement
-@Table(name = "Booking", uniqueConstraints = @UniqueConstraint(columnNames = "id"))
-
-public class Booking implements Serializable {
+/*
+ * A hotel can be booked once per date. The unique constraint lets the database enforce that even when two bookings race
+ * past the validator, and its index is what the availability check and FIND_BY_HOTEL (a leading column prefix) use.
+ * The other lookups get an index of their own. The one on the customer goes on with the date, so that the itinerary of
+ * a customer (FIND_SUMMARIES_BY_CUSTOMER) is read in order from it.
+ */
+@Table(name = "Booking", uniqueConstraints = @UniqueConstraint(columnNames = {"hotelId", "booking_date"}))
+@org.hibernate.annotations.Table(appliesTo = "Booking", indexes = {
+    @Index(name = "IDX_BOOKING_CUSTOMER", columnNames = {"customerId", "booking_date"}),
+    @Index(name = "IDX_BOOKING_TAXI", columnNames = "taxi_id"),
+    @Index(name = "IDX_BOOKING_FLIGHT", columnNames = "flight_ID"),
+    @Index(name = "IDX_BOOKING_DATE", columnNames = "booking_date")
+})
+public class Booking implements Serializable, Versioned {
     /** Default value included to remove warning. Remove or modify at will. **/
     private static final long serialVersionUID = 1L;
     
     public static final String FIND_ALL = "Booking.findAll";
+    public static final String FIND_ALL_AFTER = "Booking.findAllAfter";
+    public static final String FIND_BY_ID = "Booking.findById";
+    public static final String FIND_ALL_SUMMARIES = "Booking.findAllSummaries";
+    public static final String FIND_ALL_SUMMARIES_AFTER = "Booking.findAllSummariesAfter";
+    public static final String FIND_SUMMARIES_BY_CUSTOMER = "Booking.findSummariesByCustomer";
+    public static final String FIND_SUMMARIES_BY_CUSTOMER_AFTER = "Booking.findSummariesByCustomerAfter";
     public static final String FIND_BY_DATE = "Booking.findByDate";
     public static final String FIND_BY_HOTEL = "Booking.findByHotel";
     public static final String FIND_BY_CUSTOMER = "Booking.findByCustomer";
     public static final String FIND_BY_TAXI = "Booking.findByTaxi";
     public static final String FIND_BY_FLIGHT = "Booking.findByFlight";
+    public static final String FIND_ID_BY_HOTEL_AND_DATE = "Booking.findIdByHotelAndDate";
+    public static final String FIND_OTHER_ID_BY_HOTEL_AND_DATE = "Booking.findOtherIdByHotelAndDate";
+    public static final String FIND_DAYS_BY_HOTELS = "Booking.findDaysByHotels";
+    public static final String FIND_VERSION = "Booking.findVersion";
+    public static final String FIND_DAYS = "Booking.findDays";
+
+    /*
+     * The customer, hotel, taxi and flight of a Booking are lazy, so that loading it for a check (em.find(), the
+     * validators) reads its own row only. The queries whose result goes back to the client in full fetch them along in
+     * the same statement instead.
+     */
+    static final String FETCH_REFERENCES =
+        " LEFT JOIN FETCH b.hotel LEFT JOIN FETCH b.contact"
+        + " LEFT JOIN FETCH b.taxiid LEFT JOIN FETCH b.flightID";
     
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "hotelId")
     private Hotel hotel;
     
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "customerId")
     private Contact contact;
     
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
        @JoinColumn(name = "taxi_id")
        private Taxi taxiid;
     
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "flight_ID")
     private Flight flightID;
     
@@ -66,8 +141,16 @@ public class Booking implements Serializable {
 
     
     @Id
-    @GeneratedValue(strategy = GenerationType.TABLE)
+    @GeneratedValue(generator = PooledIdGenerator.NAME)
+    @GenericGenerator(name = PooledIdGenerator.NAME, strategy = PooledIdGenerator.STRATEGY)
     private Long id;
+
+    @Version
+    private long version;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "last_modified")
+    private Date lastModified;
     
     @NotNull
     @Future(message = "Bookingdates can not be in the past. Please choose one from the future")
@@ -117,5 +200,45 @@ public class Booking implements Serializable {
         this.bookingDate = bookingDate;
     }
 
+    @JsonIgnore
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    @JsonIgnore
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    @JsonIgnore
+    @Override
+    public Date getLastModified() {
+        return lastModified;
+    }
 
-}
\ No newline at end of file
+    @JsonIgnore
+    public void setLastModified(Date lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        lastModified = new Date();
+    }
+
+    /**
+     * <p>Keeps the {@link AvailabilityIndex} up to date, once the transaction commits.</p>
+     */
+    @PostPersist
+    @PostUpdate
+    void claimDay() {
+        AvailabilityIndex.BOOKINGS.claimAfterCommit(id, hotel == null ? null : hotel.getId(), bookingDate);
+    }
+
+    @PostRemove
+    void releaseDay() {
+        AvailabilityIndex.BOOKINGS.releaseAfterCommit(id);
+    }
+}
@@ -1,15 +1,19 @@
 package org.jboss.quickstarts.wfk.booking;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.ejb.NoSuchEntityException;
 import javax.ejb.Stateless;
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.interceptor.Interceptors;
 import javax.persistence.NoResultException;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
@@ -21,13 +25,26 @@ import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.WebApplicationException;
 
 import org.jboss.quickstarts.wfk.bookingflight.BookingFlight;
 import org.jboss.quickstarts.wfk.bookingtaxi.BookingTaxi;
+import org.jboss.quickstarts.wfk.util.BulkBatch;
+import org.jboss.quickstarts.wfk.util.BulkMode;
+import org.jboss.quickstarts.wfk.util.ConditionalRequests;
+import org.jboss.quickstarts.wfk.util.EntityVersion;
+import org.jboss.quickstarts.wfk.util.JsonExporter;
+import org.jboss.quickstarts.wfk.util.MetricsInterceptor;
+import org.jboss.quickstarts.wfk.util.Page;
+import org.jboss.quickstarts.wfk.util.PageCursor;
+import org.jboss.quickstarts.wfk.util.View;
 
 /*
  * The Path annotation defines this as a REST Web Service using JAX-RS.
@@ -43,41 +60,84 @@ import org.jboss.quickstarts.wfk.bookingtaxi.BookingTaxi;
 @Consumes(MediaType.APPLICATION_JSON)
 @Produces(MediaType.APPLICATION_JSON)
 @Stateless
+@Interceptors(MetricsInterceptor.class)
 public class BookingRESTService {
     @Inject
     private @Named("logger") Logger log;
     
     @Inject
     private BookingService service;
+
+    @Inject
+    private JsonExporter exporter;
     
     /**
-     * <p>Search for and return all the Bookings.  They are sorted alphabetically by name.</p>
+     * <p>Search for and return the Bookings, one page at a time.  They are sorted by id.</p>
+     *
+     * <p>Each response carries the cursor of the following page in the {@value PageCursor#NEXT_CURSOR_HEADER} header,
+     * which is absent on the last page. Add stream=true to get all of them at once instead, for an export.</p>
+     *
+     * <p>Add view=summary to get a {@link BookingSummary} of each Booking instead, with only the ids, the date and the
+     * names to show. It is read in a single statement, without loading the Bookings and everything they refer to.</p>
      * 
+     * @param cursor The cursor of the page to return; or null for the first page
+     * @param limit The maximum number of Bookings to return; or null for the default page size
+     * @param stream If true, all the Bookings are streamed back in a single response and cursor and limit are ignored
+     * @param view summary for BookingSummary objects instead of Bookings; or null for the full view
      * @return A Response containing a list of Bookings
      */
     @GET
-    public Response retrieveAllBookings() {
-        List<Booking> bookings = service.findAllOrderedById();
-        return Response.ok(bookings).build();
+    public Response retrieveAllBookings(@QueryParam("cursor") String cursor, @QueryParam("limit") Integer limit,
+            @QueryParam("stream") boolean stream, @QueryParam("view") String view) {
+        boolean summary = View.of(view) == View.SUMMARY;
+        if (stream) {
+            // Written row by row as RESTEasy sends the response, instead of being built in memory first
+            String query = summary ? Booking.FIND_ALL_SUMMARIES : Booking.FIND_ALL;
+            return Response.ok(exporter.stream(query)).build();
+        }
+        int pageSize = PageCursor.limit(limit);
+        if (summary) {
+            Page<BookingSummary> summaries = service.findSummaryPage(PageCursor.decode(cursor, 1), pageSize);
+            return Response.ok(summaries.getItems())
+                .header(PageCursor.NEXT_CURSOR_HEADER, summaries.getNextCursor()).build();
+        }
+        Page<Booking> bookings = service.findPage(PageCursor.decode(cursor, 1), pageSize);
+        return Response.ok(bookings.getItems()).header(PageCursor.NEXT_CURSOR_HEADER, bookings.getNextCursor()).build();
     }
 
     
     /**
      * <p>Search for and return a Booking identified by id.</p>
+     *
+     * <p>The response carries the versions of the Booking and of what it refers to as its ETag, and the latest of their
+     * Last-Modified, as the representation embeds them. A client that sends them back in If-None-Match or
+     * If-Modified-Since gets a 304 (Not Modified) while its copy is current, found out from the versions alone without
+     * loading the Booking.</p>
      * 
      * @param id The long parameter value provided as a Booking's id
+     * @param request The request, to evaluate its preconditions
+     * @param headers The headers of the request
      * @return A Response containing a single Booking
      */
     @GET
     @Path("/{id:[0-9]+}")
-    public Response retrieveBookingById(@PathParam("id") long id) {
-        Booking booking = service.findById(id);
+    public Response retrieveBookingById(@PathParam("id") long id, @Context Request request, @Context HttpHeaders headers) {
+        if (ConditionalRequests.isConditional(headers)) {
+            Response notModified = ConditionalRequests.notModified(request, headers, service.findVersion(id));
+            if (notModified != null) {
+                return notModified;
+            }
+        }
+        Booking booking = service.findWithReferences(id);
         if (booking == null) {
             throw new WebApplicationException(Response.Status.NOT_FOUND);
         }
-        log.info("findById " + id + ": found Booking = " + booking.getId() + " " + booking.getCustomer()+ " " + booking.getHotel() + " " + booking.getBookingDate());
+        log.log(Level.FINE, "findById {0}: found Booking = {1} {2} {3} {4}",
+            new Object[] {id, booking.getId(), booking.getCustomer(), booking.getHotel(), booking.getBookingDate()});
         
-        return Response.ok(booking).build();
+        // The representation embeds what the Booking refers to, so does its version
+        return ConditionalRequests.ok(booking,
+                EntityVersion.of(booking, booking.getCustomer(), booking.getHotel(), booking.getTaxiid(), booking.getFlightID())).build();
     }
     
     @GET
@@ -135,8 +195,8 @@ public class BookingRESTService {
     @SuppressWarnings("unused")
     @POST
     public Response createBooking(Booking booking) {
-        log.info("createBooking started. Booking = " + booking.getId() + " " + booking.getCustomer()+ " " + booking.getHotel() + " " 
-    +booking.getTaxiid()+ " " +booking.getFlightID() +" "+ booking.getBookingDate());
+        log.log(Level.FINE, "createBooking started. Booking = {0} {1} {2} {3} {4} {5}",
+            new Object[] {booking.getId(), booking.getCustomer(), booking.getHotel(), booking.getTaxiid(), booking.getFlightID(), booking.getBookingDate()});
         if (booking == null) {
             throw new WebApplicationException(Response.Status.BAD_REQUEST);
         }
@@ -150,14 +210,14 @@ public class BookingRESTService {
             // Create a "Resource Created" 201 Response and pass the booking back in case it is needed.
             builder = Response.status(Response.Status.CREATED).entity(booking);
             
-            log.info("createBooking completed. Booking = " + booking.getId() + " " + booking.getCustomer()+ " " + booking.getHotel() + " " 
-            + booking.getTaxiid()+ " " +booking.getFlightID() +" "+ booking.getBookingDate());
+            log.log(Level.FINE, "createBooking completed. Booking = {0} {1} {2} {3} {4} {5}",
+                new Object[] {booking.getId(), booking.getCustomer(), booking.getHotel(), booking.getTaxiid(), booking.getFlightID(), booking.getBookingDate()});
         } catch (ConstraintViolationException ce) {
-            log.info("ConstraintViolationException - " + ce.toString());
+            log.log(Level.INFO, "ConstraintViolationException - {0}", ce);
             // Handle bean validation issues
             builder = createViolationResponse(ce.getConstraintViolations());
         } catch (ValidationException e) {
-            log.info("ValidationException - " + e.toString());
+            log.log(Level.INFO, "ValidationException - {0}", e);
             // Handle the unique constrain violation
             Map<String, String> responseObj = new HashMap<String, String>();
             //responseObj.put("bookingDate", "That hotel is already booked that day, please use book another day");
@@ -175,7 +235,7 @@ public class BookingRESTService {
                 responseObj.put("booking", "That hotel is already booked that day");
                 builder = Response.status(Response.Status.CONFLICT).entity(responseObj);
         } catch (Exception e) {
-            log.info("Exception - " + e.toString());
+            log.log(Level.INFO, "Exception - {0}", e);
             // Handle generic exceptions
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("error", e.getMessage());
@@ -185,32 +245,90 @@ public class BookingRESTService {
         return builder.build();
     }
 
+    /**
+     * <p>Creates several Bookings at once from a JSON array of Booking objects.</p>
+     *
+     * <p>The whole batch is validated in one go, with the same checks and errors as {@link #createBooking(Booking)}, and the
+     * items that pass are inserted in JDBC batches. In <i>atomic</i> mode (the default) either all the Bookings are
+     * created, with a 201, or none is, with a 400 or 409. In <i>bestEffort</i> mode the valid ones are created anyway and
+     * the response is a 207. Either way the body gives the status, id or errors of every item, in order.</p>
+     *
+     * @param bookings The Booking objects, constructed automatically from JSON input
+     * @param mode atomic or bestEffort; or null for atomic
+     * @return A Response indicating the outcome of every create
+     */
+    @POST
+    @Path("/bulk")
+    public Response createBookings(List<Booking> bookings, @QueryParam("mode") String mode) {
+        BulkMode bulkMode = BulkMode.of(mode);
+        return createAll(new BulkBatch<Booking>(bookings), bulkMode);
+    }
+
+    /**
+     * <p>Creates several Bookings at once from newline delimited JSON, one Booking object per line. Otherwise the same as
+     * {@link #createBookings(List, String)}; a line that cannot be read is rejected with a 400 of its own.</p>
+     *
+     * @param body The request body, in {@value BulkBatch#NDJSON}
+     * @param mode atomic or bestEffort; or null for atomic
+     * @return A Response indicating the outcome of every create
+     * @throws IOException If the request body cannot be read
+     */
+    @POST
+    @Path("/bulk")
+    @Consumes(BulkBatch.NDJSON)
+    public Response createBookingsFromNdjson(InputStream body, @QueryParam("mode") String mode) throws IOException {
+        BulkMode bulkMode = BulkMode.of(mode);
+        return createAll(BulkBatch.fromNdjson(body, Booking.class), bulkMode);
+    }
+
+    private Response createAll(BulkBatch<Booking> batch, BulkMode mode) {
+        log.log(Level.FINE, "createBookings started. {0} Bookings, {1}", new Object[] {batch.size(), mode});
+
+        service.createAll(batch, mode);
+        Response response = batch.toResponse(mode);
+
+        log.log(Level.FINE, "createBookings completed. Status = {0}", response.getStatus());
+        return response;
+    }
+
     /**
      * <p>Updates a booking with the ID provided in the Booking. Performs validation, and will return a JAX-RS response with either 200 ok,
      * or with a map of fields, and related errors.</p>
+     *
+     * <p>If the client sends the ETag it read in If-Match, or its Last-Modified in If-Unmodified-Since, the update is only
+     * applied if the Booking has not changed since; otherwise the response is a 412 (Precondition Failed).</p>
      * 
      * @param booking The Booking object, constructed automatically from JSON input, to be <i>updated</i> via {@link BookingService#update(Booking)}
      * @param id The long parameter value provided as the id of the Booking to be updated
+     * @param request The request, to evaluate its If-Match or If-Unmodified-Since
+     * @param headers The headers of the request
      * @return A Response indicating the outcome of the create operation
      */
     @PUT
     @Path("/{id:[0-9][0-9]*}")
-    public Response updateBooking(@PathParam("id") long id, Booking booking) {
+    public Response updateBooking(@PathParam("id") long id, Booking booking, @Context Request request,
+            @Context HttpHeaders headers) {
         if (booking == null) {
             throw new WebApplicationException(Response.Status.BAD_REQUEST);
         }
-        log.info("updateBooking started. Booking = " +  booking.getId() + " " + booking.getCustomer()+ " " + booking.getHotel() + " " 
-        + booking.getTaxiid()+ " " +booking.getFlightID() +" "+ booking.getBookingDate());
+        log.log(Level.FINE, "updateBooking started. Booking = {0} {1} {2} {3} {4} {5}",
+            new Object[] {booking.getId(), booking.getCustomer(), booking.getHotel(), booking.getTaxiid(), booking.getFlightID(), booking.getBookingDate()});
 
         if (booking.getId() != id) {
             // The client attempted to update the read-only Id. This is not permitted.
             Response response = Response.status(Response.Status.CONFLICT).entity("The booking ID cannot be modified").build();
             throw new WebApplicationException(response);
         }
-        if (service.findById(booking.getId()) == null) {
+        Booking current = service.findById(booking.getId());
+        if (current == null) {
             // Verify if the contact exists. Return 404, if not present.
             throw new WebApplicationException(Response.Status.NOT_FOUND);
         }
+        // Checked against the version of the representation the client read, references included
+        ConditionalRequests.checkUnchanged(request, headers, service.findVersion(id));
+        // The update replaces the version that was just checked, and the timestamp only moves if something changed
+        booking.setVersion(current.getVersion());
+        booking.setLastModified(current.getLastModified());
         
         Response.ResponseBuilder builder = null;
         
@@ -222,21 +340,21 @@ public class BookingRESTService {
             // Create an OK Response and pass the booking back in case it is needed.
             builder = Response.ok(booking);
 
-            log.info("updateBooking completed. Booking = " + booking.getId()+ " " + booking.getCustomer()+ " " + booking.getHotel() + " " 
-            + booking.getTaxiid()+ " " +booking.getFlightID() +" "+ booking.getBookingDate());
+            log.log(Level.FINE, "updateBooking completed. Booking = {0} {1} {2} {3} {4} {5}",
+                new Object[] {booking.getId(), booking.getCustomer(), booking.getHotel(), booking.getTaxiid(), booking.getFlightID(), booking.getBookingDate()});
         } catch (ConstraintViolationException ce) {
-            log.info("ConstraintViolationException - " + ce.toString());
+            log.log(Level.INFO, "ConstraintViolationException - {0}", ce);
             // Handle bean validation issues
             builder = createViolationResponse(ce.getConstraintViolations());
         } catch (ValidationException e) {
-            log.info("ValidationException - " + e.toString());
+            log.log(Level.INFO, "ValidationException - {0}", e);
             // Handle the unique constrain violation
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("error", "This is where errors are displayed that are not related to a specific field");
             responseObj.put("anotherError", "You can find this error message in /src/main/java/org/jboss/quickstarts/wfk/rest/ContactRESTService.java line 242.");
             builder = Response.status(Response.Status.CONFLICT).entity(responseObj);
         } catch (Exception e) {
-            log.info("Exception - " + e.toString());
+            log.log(Level.INFO, "Exception - {0}", e);
             // Handle generic exceptions
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("error", e.getMessage());
@@ -257,7 +375,7 @@ public class BookingRESTService {
     @DELETE
     @Path("/{id:[0-9][0-9]*}")
     public Response deleteBooking(@PathParam("id") Long id) {
-        log.info("deleteBooking started. Booking ID = " + id);
+        log.log(Level.FINE, "deleteBooking started. Booking ID = {0}", id);
         Response.ResponseBuilder builder = null;
 
         Map<String, String> responseObj = new HashMap<String, String>();
@@ -273,7 +391,7 @@ public class BookingRESTService {
             builder = Response.noContent();
            // log.info("deleteBooking completed. Booking = " + booking.getId() + " " + booking.getCustomer()+ " " + booking.getHotel() + " " + booking.getBookingDate());
         } catch (Exception e) {
-            log.info("Exception - " + e.toString());
+            log.log(Level.INFO, "Exception - {0}", e);
             // Handle generic exceptions
             responseObj.put("error", e.getMessage());
             builder = Response.status(Response.Status.BAD_REQUEST).entity(responseObj);
@@ -290,7 +408,7 @@ public class BookingRESTService {
      * @return A Bad Request (400) Response containing all violation messages
      */
     private Response.ResponseBuilder createViolationResponse(Set<ConstraintViolation<?>> violations) {
-        log.fine("Validation completed. violations found: " + violations.size());
+        log.log(Level.FINE, "Validation completed. violations found: {0}", violations.size());
 
         Map<String, String> responseObj = new HashMap<String, String>();
 
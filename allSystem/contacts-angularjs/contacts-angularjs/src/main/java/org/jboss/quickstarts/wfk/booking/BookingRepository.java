@@ -10,9 +10,19 @@ import javax.validation.ValidationException;
 import org.jboss.quickstarts.wfk.bookingflight.BookingFlight;
 import org.jboss.quickstarts.wfk.bookingtaxi.BookingTaxi;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.jboss.quickstarts.wfk.util.BulkBatch;
+import org.jboss.quickstarts.wfk.util.Claims;
+import org.jboss.quickstarts.wfk.util.EntityVersion;
+import org.jboss.quickstarts.wfk.util.Page;
+import org.jboss.quickstarts.wfk.util.PageCursor;
 
 public class BookingRepository {
 
@@ -26,6 +36,63 @@ public class BookingRepository {
         TypedQuery<Booking> query = em.createNamedQuery(Booking.FIND_ALL, Booking.class); 
         return query.getResultList();
     }
+
+    /**
+     * <p>Returns one page of persisted {@link Booking} objects, in the order of {@link Booking#FIND_ALL}, starting right
+     * after the given sort key.</p>
+     *
+     * @param after The sort key (id) of the last Booking of the previous page; or null for the first page
+     * @param limit The maximum number of Booking objects to return
+     * @return The Page of Booking objects
+     */
+    Page<Booking> findPage(String[] after, int limit) {
+        TypedQuery<Booking> query;
+        if (after == null) {
+            query = em.createNamedQuery(Booking.FIND_ALL, Booking.class);
+        } else {
+            query = em.createNamedQuery(Booking.FIND_ALL_AFTER, Booking.class)
+                .setParameter("id", Long.valueOf(after[0]));
+        }
+        // One more than asked for, to know whether there is a next page
+        List<Booking> rows = query.setMaxResults(limit + 1).getResultList();
+        return PageCursor.page(rows, limit, SORT_KEY);
+    }
+
+    private static final PageCursor.SortKey<Booking> SORT_KEY = new PageCursor.SortKey<Booking>() {
+        @Override
+        public Object[] of(Booking booking) {
+            return new Object[] {booking.getId()};
+        }
+    };
+
+    /**
+     * <p>Returns one page of the {@link BookingSummary} of persisted Booking objects, in the order of
+     * {@link Booking#FIND_ALL_SUMMARIES}, starting right after the given sort key. The page is read in a single
+     * statement, without loading any Booking or what it refers to.</p>
+     *
+     * @param after The sort key (id) of the last Booking of the previous page; or null for the first page
+     * @param limit The maximum number of BookingSummary objects to return
+     * @return The Page of BookingSummary objects
+     */
+    Page<BookingSummary> findSummaryPage(String[] after, int limit) {
+        TypedQuery<BookingSummary> query;
+        if (after == null) {
+            query = em.createNamedQuery(Booking.FIND_ALL_SUMMARIES, BookingSummary.class);
+        } else {
+            query = em.createNamedQuery(Booking.FIND_ALL_SUMMARIES_AFTER, BookingSummary.class)
+                .setParameter("id", Long.valueOf(after[0]));
+        }
+        List<BookingSummary> rows = query.setMaxResults(limit + 1).getResultList();
+        return PageCursor.page(rows, limit, SUMMARY_SORT_KEY);
+    }
+
+    private static final PageCursor.SortKey<BookingSummary> SUMMARY_SORT_KEY =
+        new PageCursor.SortKey<BookingSummary>() {
+            @Override
+            public Object[] of(BookingSummary summary) {
+                return new Object[] {summary.getId()};
+            }
+        };
     
     List<Booking> findByHotelId(Long hotelId) {
         TypedQuery<Booking> query = em.createNamedQuery(Booking.FIND_BY_HOTEL, Booking.class).setParameter("hotelId", hotelId); 
@@ -37,6 +104,26 @@ public class BookingRepository {
         return query.getResultList();
     }
 
+    /**
+     * <p>Checks whether the given hotel already has a Booking on the given date, without loading any Booking.</p>
+     *
+     * @param hotelId The id of the hotel to check
+     * @param bookingDate The date to check
+     * @param excludeId The id of a Booking to ignore (the one being updated); or null
+     * @return true if another booking holds the hotel on that date
+     */
+    boolean existsByHotelAndDate(Long hotelId, Date bookingDate, Long excludeId) {
+        TypedQuery<Long> query;
+        if (excludeId == null) {
+            query = em.createNamedQuery(Booking.FIND_ID_BY_HOTEL_AND_DATE, Long.class);
+        } else {
+            query = em.createNamedQuery(Booking.FIND_OTHER_ID_BY_HOTEL_AND_DATE, Long.class)
+                .setParameter("id", excludeId);
+        }
+        query.setParameter("hotelId", hotelId).setParameter("bookingDate", bookingDate).setMaxResults(1);
+        return !query.getResultList().isEmpty();
+    }
+
     /**
      * <p>Returns a single Booking object, specified by a Long id.<p/>
      *
@@ -46,6 +133,32 @@ public class BookingRepository {
     Booking findById(Long id) {
         return em.find(Booking.class, id);
     }
+
+    /**
+     * <p>Returns a single Booking object, specified by a Long id, together with its customer, hotel, taxi and flight,
+     * all read in one statement. {@link #findById(Long)} leaves them to be loaded on first use, which is what a check
+     * needs; this is for a Booking that is sent back to the client in full.</p>
+     *
+     * @param id The id field of the Booking to be returned
+     * @return The Booking with the specified id; or null if there is none
+     */
+    Booking findWithReferences(Long id) {
+        List<Booking> rows = em.createNamedQuery(Booking.FIND_BY_ID, Booking.class)
+            .setParameter("id", id).getResultList();
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    /**
+     * <p>Returns the version and last modification time of a Booking, specified by a Long id, without loading it.</p>
+     *
+     * @param id The id field of the Booking
+     * @return The version of the Booking with the specified id; or null if there is none
+     */
+    EntityVersion findVersion(Long id) {
+        List<EntityVersion> versions = em.createNamedQuery(Booking.FIND_VERSION, EntityVersion.class)
+            .setParameter("id", id).getResultList();
+        return versions.isEmpty() ? null : versions.get(0);
+    }
     
     Booking findByDate(Date bookingDate){
     	TypedQuery<Booking> query = em.createNamedQuery(Booking.FIND_BY_DATE, Booking.class) .setParameter("bookingDate", bookingDate);
@@ -80,6 +193,29 @@ public class BookingRepository {
 	}
 
     
+    /**
+     * <p>Returns the days on which the given hotels are booked between first and last, as
+     * {@link BulkBatch#dayKey(Long, Date)} keys, for the validation of a bulk create. One query per
+     * {@value BulkBatch#IN_LIST_SIZE} hotels, instead of one per Booking.</p>
+     *
+     * @param hotelIds The ids of the hotels
+     * @param first The first day to look at
+     * @param last The last day to look at
+     * @return The keys of the days the hotels are taken
+     */
+    Set<Object> findTakenDays(Collection<Long> hotelIds, Date first, Date last) {
+        Set<Object> taken = new HashSet<Object>();
+        for (List<Long> part : BulkBatch.partition(new ArrayList<Long>(hotelIds), BulkBatch.IN_LIST_SIZE)) {
+            List<?> rows = em.createNamedQuery(Booking.FIND_DAYS_BY_HOTELS)
+                .setParameter("hotelIds", part).setParameter("first", first).setParameter("last", last).getResultList();
+            for (Object row : rows) {
+                Object[] columns = (Object[]) row;
+                taken.add(BulkBatch.dayKey((Long) columns[0], (Date) columns[1]));
+            }
+        }
+        return taken;
+    }
+
     /**
      * <p>Persists the provided Booking object to the application database using the EntityManager.</p>
      *
@@ -93,10 +229,11 @@ public class BookingRepository {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     Booking create(Booking booking) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("BookingRepository.create() - Creating " + booking.getId());
+        log.log(Level.FINE, "BookingRepository.create() - Creating {0}", booking.getId());
         
-        // Write the booking to the database.
+        // Write the booking to the database. Flushed now, so that losing its day to a concurrent booking shows here.
         em.persist(booking);
+        Claims.flush(em, "Unique booking Violation");
         
         return booking;
     }
@@ -115,10 +252,11 @@ public class BookingRepository {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     Booking update(Booking booking) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("BookingRepository.update() - Updating " + booking.getId());
+        log.log(Level.FINE, "BookingRepository.update() - Updating {0}", booking.getId());
         
         // Either update the booking or add it if it can't be found.
         em.merge(booking);
+        Claims.flush(em, "Unique booking Violation");
         
         return booking;
     }
@@ -131,7 +269,7 @@ public class BookingRepository {
      * @throws Exception
      */
     Booking delete(Booking booking) throws Exception {
-        log.info("BookingRepository.delete() - Deleting " + booking.getId());
+        log.log(Level.FINE, "BookingRepository.delete() - Deleting {0}", booking.getId());
         
         if (booking.getId() != null) {
             /*
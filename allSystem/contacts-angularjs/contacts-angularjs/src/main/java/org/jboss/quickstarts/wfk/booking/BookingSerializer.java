@@ -0,0 +1,56 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.booking;
+
+import java.io.IOException;
+
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.io.SerializedString;
+import org.codehaus.jackson.map.SerializerProvider;
+import org.jboss.quickstarts.wfk.contact.ContactSerializer;
+import org.jboss.quickstarts.wfk.contact.HotelSerializer;
+import org.jboss.quickstarts.wfk.flight.FlightSerializer;
+import org.jboss.quickstarts.wfk.taxi.TaxiSerializer;
+import org.jboss.quickstarts.wfk.util.EntitySerializer;
+
+/**
+ * <p>Writes a {@link Booking} as JSON without reflection, with the same properties Jackson's bean serializer would
+ * write.</p>
+ *
+ * @see org.jboss.quickstarts.wfk.util.EntityJsonModule
+ */
+public class BookingSerializer extends EntitySerializer<Booking> {
+
+    public static final BookingSerializer INSTANCE = new BookingSerializer();
+
+    private static final SerializedString HOTEL = new SerializedString("hotel");
+    private static final SerializedString CUSTOMER = new SerializedString("customer");
+    private static final SerializedString TAXIID = new SerializedString("taxiid");
+    private static final SerializedString FLIGHT_ID = new SerializedString("flightID");
+    private static final SerializedString ID = new SerializedString("id");
+    private static final SerializedString BOOKING_DATE = new SerializedString("bookingDate");
+
+    @Override
+    protected void serializeFields(Booking value, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+        writeEntity(jgen, HOTEL, value.getHotel(), HotelSerializer.INSTANCE, provider);
+        writeEntity(jgen, CUSTOMER, value.getCustomer(), ContactSerializer.INSTANCE, provider);
+        writeEntity(jgen, TAXIID, value.getTaxiid(), TaxiSerializer.INSTANCE, provider);
+        writeEntity(jgen, FLIGHT_ID, value.getFlightID(), FlightSerializer.INSTANCE, provider);
+        writeNumber(jgen, ID, value.getId());
+        writeDate(jgen, BOOKING_DATE, value.getBookingDate(), provider);
+    }
+}
@@ -12,7 +12,13 @@ import javax.validation.ValidationException;
 
 import java.util.Date;
 import java.util.List;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.jboss.quickstarts.wfk.util.BulkBatch;
+import org.jboss.quickstarts.wfk.util.BulkMode;
+import org.jboss.quickstarts.wfk.util.BulkWriter;
+import org.jboss.quickstarts.wfk.util.EntityVersion;
+import org.jboss.quickstarts.wfk.util.Page;
 
 
 //@Dependent annotation designates the default scope, listed here so that you know what scope is being used.
@@ -25,6 +31,9 @@ public class BookingService {
     @Inject
     private BookingValidator validator;
 
+    @Inject
+    private BulkWriter writer;
+
     @Inject
     private BookingRepository crud;
 
@@ -40,6 +49,29 @@ public class BookingService {
         return crud.findAllOrderedById();
     }
 
+    /**
+     * <p>Returns one page of {@link Booking} objects, see {@link BookingRepository#findPage(String[], int)}.</p>
+     *
+     * @param after The sort key of the last Booking of the previous page; or null for the first page
+     * @param limit The maximum number of Booking objects to return
+     * @return The Page of Booking objects
+     */
+    Page<Booking> findPage(String[] after, int limit) {
+        return crud.findPage(after, limit);
+    }
+
+    /**
+     * <p>Returns one page of {@link BookingSummary} objects, see
+     * {@link BookingRepository#findSummaryPage(String[], int)}.</p>
+     *
+     * @param after The sort key of the last Booking of the previous page; or null for the first page
+     * @param limit The maximum number of BookingSummary objects to return
+     * @return The Page of BookingSummary objects
+     */
+    Page<BookingSummary> findSummaryPage(String[] after, int limit) {
+        return crud.findSummaryPage(after, limit);
+    }
+
     /**
      * <p>Returns a single Booking object, specified by a Long id.<p/>
      * 
@@ -49,6 +81,28 @@ public class BookingService {
     Booking findById(Long id) {
         return crud.findById(id);
     }
+
+    /**
+     * <p>Returns a single Booking object with everything it refers to, see
+     * {@link BookingRepository#findWithReferences(Long)}.</p>
+     *
+     * @param id The id field of the Booking to be returned
+     * @return The Booking with the specified id; or null if there is none
+     */
+    Booking findWithReferences(Long id) {
+        return crud.findWithReferences(id);
+    }
+
+    /**
+     * <p>Returns the version and last modification time of a Booking, specified by a Long id, to answer a conditional
+     * request without loading the Booking.</p>
+     *
+     * @param id The id field of the Booking
+     * @return The version of the Booking with the specified id; or null if there is none
+     */
+    EntityVersion findVersion(Long id) {
+        return crud.findVersion(id);
+    }
     
     Booking findByDate(Date bookingDate) {
         return crud.findByDate(bookingDate);
@@ -78,7 +132,8 @@ public class BookingService {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     Booking create(Booking booking) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("BookingService.create() - Creating " + booking.getId() + " " + booking.getCustomer() +" " + booking.getHotel() + " " + booking.getTaxiid()+ " " +booking.getFlightID());
+        log.log(Level.FINE, "BookingService.create() - Creating {0} {1} {2} {3} {4}",
+            new Object[] {booking.getId(), booking.getCustomer(), booking.getHotel(), booking.getTaxiid(), booking.getFlightID()});
         
         // Check to make sure the data fits with the parameters in the Booking model and passes validation.
         validator.validateBooking(booking);
@@ -87,6 +142,25 @@ public class BookingService {
         return crud.create(booking);
     }
 
+    /**
+     * <p>Writes the Booking objects of a bulk create to the application database.</p>
+     *
+     * <p>The whole batch is validated at once by {@link BookingValidator#validateBookings(BulkBatch)}, then the items that passed
+     * are inserted by a {@link BulkWriter} in JDBC batches. The outcome of every item is recorded in the batch.</p>
+     *
+     * @param batch The Booking objects to be written
+     * @param mode Whether the batch is written all or nothing, or item by item
+     */
+    void createAll(BulkBatch<Booking> batch, BulkMode mode) {
+        log.log(Level.FINE, "BookingService.createAll() - Creating {0} Bookings, {1}", new Object[] {batch.size(), mode});
+
+        // Check the whole batch against the Booking model and the database, rejecting the items that fail.
+        validator.validateBookings(batch);
+
+        // Write the others to the database.
+        writer.write(batch, mode);
+    }
+
     /**
      * <p>Updates an existing Booking object in the application database with the provided Booking object.<p/>
      *
@@ -97,7 +171,8 @@ public class BookingService {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     Booking update(Booking booking) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("BookingService.update() - Updating " + booking.getId() + " " + booking.getCustomer() +" " + booking.getHotel() + " " + booking.getTaxiid()+ " " +booking.getFlightID());
+        log.log(Level.FINE, "BookingService.update() - Updating {0} {1} {2} {3} {4}",
+            new Object[] {booking.getId(), booking.getCustomer(), booking.getHotel(), booking.getTaxiid(), booking.getFlightID()});
         
         // Check to make sure the data fits with the parameters in the Booking model and passes validation.
         validator.validateBooking(booking);
@@ -113,7 +188,8 @@ public class BookingService {
      * @throws Exception
      */
     Booking delete(Booking booking) throws Exception {
-        log.info("BookingService.delete() - Deleting " + booking.getId() + " " + booking.getCustomer() +" " + booking.getHotel() + " " + booking.getTaxiid()+ " " +booking.getFlightID());
+        log.log(Level.FINE, "BookingService.delete() - Deleting {0} {1} {2} {3} {4}",
+            new Object[] {booking.getId(), booking.getCustomer(), booking.getHotel(), booking.getTaxiid(), booking.getFlightID()});
         
         Booking deletedBooking = null;
         
@@ -0,0 +1,84 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.booking;
+
+import java.util.Date;
+
+import org.jboss.quickstarts.wfk.util.Summary;
+
+/**
+ * <p>The summary view of a {@link Booking}: its hotel, taxi and flight by id and name only.</p>
+ *
+ * @see Booking#FIND_ALL_SUMMARIES
+ */
+public class BookingSummary extends Summary {
+
+    /** The {@link #getType() type} of a BookingSummary. */
+    public static final String TYPE = "bookings";
+
+    private final Long hotelId;
+
+    private final String hotelName;
+
+    private final Long taxiId;
+
+    private final String taxiRegistration;
+
+    private final Long flightId;
+
+    private final String flightNumber;
+
+    public BookingSummary(Long id, Date bookingDate, Long customerId, String firstName, String lastName, Long hotelId,
+            String hotelName, Long taxiId, String taxiRegistration, Long flightId, String flightNumber) {
+        super(id, bookingDate, customerId, firstName, lastName);
+        this.hotelId = hotelId;
+        this.hotelName = hotelName;
+        this.taxiId = taxiId;
+        this.taxiRegistration = taxiRegistration;
+        this.flightId = flightId;
+        this.flightNumber = flightNumber;
+    }
+
+    public Long getHotelId() {
+        return hotelId;
+    }
+
+    public String getHotelName() {
+        return hotelName;
+    }
+
+    public Long getTaxiId() {
+        return taxiId;
+    }
+
+    public String getTaxiRegistration() {
+        return taxiRegistration;
+    }
+
+    public Long getFlightId() {
+        return flightId;
+    }
+
+    public String getFlightNumber() {
+        return flightNumber;
+    }
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+}
@@ -6,18 +6,16 @@ import java.util.List;
 import java.util.Set;
 
 import javax.inject.Inject;
-import javax.persistence.NoResultException;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
 import javax.validation.Validator;
 
 import org.jboss.quickstarts.wfk.contact.Contact;
-import org.jboss.quickstarts.wfk.contact.ContactRepository;
 import org.jboss.quickstarts.wfk.contact.Hotel;
-import org.jboss.quickstarts.wfk.contact.HotelRepository;
-import org.jboss.quickstarts.wfk.flight.FlightRepository;
-import org.jboss.quickstarts.wfk.taxi.TaxiRepository;
+import org.jboss.quickstarts.wfk.util.AvailabilityIndex;
+import org.jboss.quickstarts.wfk.util.BulkBatch;
+import org.jboss.quickstarts.wfk.util.ReferenceResolver;
 
 
 public class BookingValidator {
@@ -27,13 +25,7 @@ public class BookingValidator {
     @Inject
     private BookingRepository crud;
     @Inject
-    private ContactRepository ccrud;
-    @Inject
-    private HotelRepository hcrud;
-    @Inject
-    private TaxiRepository tcrud;
-    @Inject
-    private FlightRepository fcrud;
+    private ReferenceResolver resolver;
 
     /**
      * <p>Validates the given Booking object and throws validation exceptions based on the type of error. If the error is standard
@@ -49,88 +41,131 @@ public class BookingValidator {
         if (!violations.isEmpty()) {
             throw new ConstraintViolationException(new HashSet<ConstraintViolation<?>>(violations));
         }
-        if (booking != null){
-        	if((hotelAlreadyExist(booking.getHotel().getId(), booking.getId()) == false) || (customerAlreadyExist(booking.getCustomer().getId(), booking.getId()) == false))
-        	{
-        		if ((hotelAlreadyExist(booking.getHotel().getId(), booking.getId()) == false) && (customerAlreadyExist(booking.getCustomer().getId(), booking.getId()) == false))
-        			throw new ValidationException("Unique cnh Violation");
-        		else if ((hotelAlreadyExist(booking.getHotel().getId(), booking.getId()) == false))
-        			throw new ValidationException("Unique hotel Violation");
-        		else if ((customerAlreadyExist(booking.getCustomer().getId(), booking.getId()) == false))
-        			throw new ValidationException("Unique customer Violation");
-        	}
-        	if (bookingExist(booking.getHotel().getId(), booking.getId(), booking.getBookingDate()))
-    			throw new ValidationException("Unique booking Violation");
+        if (booking != null) {
+            Long hotelId = booking.getHotel() == null ? null : booking.getHotel().getId();
+            Long customerId = booking.getCustomer() == null ? null : booking.getCustomer().getId();
+
+            // Load the hotel and the customer together, the checks below are then answered from memory
+            resolver.resolve(ReferenceResolver.ref(Hotel.class, hotelId), ReferenceResolver.ref(Contact.class, customerId));
+            boolean hotelFound = hotelAlreadyExist(hotelId, booking.getId());
+            boolean customerFound = customerAlreadyExist(customerId, booking.getId());
+
+            if (!hotelFound && !customerFound)
+                throw new ValidationException("Unique cnh Violation");
+            else if (!hotelFound)
+                throw new ValidationException("Unique hotel Violation");
+            else if (!customerFound)
+                throw new ValidationException("Unique customer Violation");
+
+            if (bookingExist(hotelId, booking.getId(), booking.getBookingDate()))
+                throw new ValidationException("Unique booking Violation");
         }
   
     } 
 
-    boolean customerAlreadyExist(Long customerId, Long id) {
-        Contact booking = null;
-        Contact bookingWithID = null;
-        try {
-        	booking = ccrud.findById(customerId);
-        } catch (NoResultException e) {
-            // ignore
+    /**
+     * <p>Validates all the Bookings of a bulk create at once. The items the single create would reject are rejected in
+     * the batch instead, with the same errors: those with bean validation errors with a 400, and with a 409 those whose
+     * hotel or customer does not exist, or whose hotel is already booked that day, in the database or by an earlier
+     * item of the batch.</p>
+     *
+     * <p>The hotels and the customers of the whole batch are loaded through {@link ReferenceResolver#resolveAll},
+     * and the days the hotels are booked with one more query, rather than a few queries per item.</p>
+     *
+     * @param batch The Booking objects to be validated
+     */
+    void validateBookings(BulkBatch<Booking> batch) {
+        batch.validateBeans(validator);
+
+        List<Integer> pending = batch.pending();
+        Set<Long> hotelIds = new HashSet<Long>();
+        Set<Long> customerIds = new HashSet<Long>();
+        Date first = null;
+        Date last = null;
+        for (int index : pending) {
+            Booking booking = batch.get(index);
+            hotelIds.add(booking.getHotel() == null ? null : booking.getHotel().getId());
+            customerIds.add(booking.getCustomer() == null ? null : booking.getCustomer().getId());
+            Date date = booking.getBookingDate();
+            if (date != null) {
+                first = first == null || date.before(first) ? date : first;
+                last = last == null || date.after(last) ? date : last;
+            }
         }
+        hotelIds.remove(null);
+        resolver.resolveAll(Hotel.class, hotelIds);
+        resolver.resolveAll(Contact.class, customerIds);
+        Set<Object> taken = hotelIds.isEmpty() || first == null
+            ? new HashSet<Object>() : crud.findTakenDays(hotelIds, first, last);
 
-        if (booking != null && id != null) {
-            try {
-            	bookingWithID = ccrud.findById(id);
-                if (bookingWithID != null && bookingWithID.getId().equals(customerId)) {
-                	booking = null;
-                }
-            } catch (NoResultException e) {
-                // ignore
+        for (int index : pending) {
+            Booking booking = batch.get(index);
+            Long hotelId = booking.getHotel() == null ? null : booking.getHotel().getId();
+            Long customerId = booking.getCustomer() == null ? null : booking.getCustomer().getId();
+            boolean hotelFound = resolver.exists(Hotel.class, hotelId);
+            boolean customerFound = resolver.exists(Contact.class, customerId);
+            Object day = BulkBatch.dayKey(hotelId, booking.getBookingDate());
+
+            if (!hotelFound && !customerFound) {
+                batch.conflict(index, "cnh", "That hotel and customer are not existed");
+            } else if (!hotelFound) {
+                batch.conflict(index, "hotel", "That hotel is not existed");
+            } else if (!customerFound) {
+                batch.conflict(index, "customer", "That customer is not existed");
+            } else if (day != null && !taken.add(day)) {
+                // Taken in the database, or by an earlier item of the batch
+                batch.conflict(index, "booking", "That hotel is already booked that day");
             }
         }
-        return booking != null;
+    }
+
+    /**
+     * <p>Checks that the customer making the booking exists.</p>
+     *
+     * <p>The customer is looked up through the request's {@link ReferenceResolver}, so asking again after
+     * validateBooking() has resolved it does not go back to the database.</p>
+     *
+     * @param customerId The id of the customer to check
+     * @param id The id of the booking being validated
+     * @return boolean which represents whether the customer was found
+     */
+    boolean customerAlreadyExist(Long customerId, Long id) {
+        return resolver.exists(Contact.class, customerId);
     }
     
+    /**
+     * <p>Checks that the hotel being booked exists.</p>
+     *
+     * @param hotelId The id of the hotel to check
+     * @param id The id of the booking being validated
+     * @return boolean which represents whether the hotel was found
+     */
     boolean hotelAlreadyExist(Long hotelId, Long id) {
-        Hotel booking = null;
-        Hotel bookingWithID = null;
-        try {
-        	booking = hcrud.findById(hotelId);
-        } catch (NoResultException e) {
-            // ignore
-        }
-
-        if (booking != null && id != null) {
-            try {
-            	bookingWithID = hcrud.findById(id);
-                if (bookingWithID != null && bookingWithID.getId().equals(hotelId)) {
-                	booking = null;
-                }
-            } catch (NoResultException e) {
-                // ignore
-            }
-        }
-        return booking != null;
+        return resolver.exists(Hotel.class, hotelId);
     }
     
+    /**
+     * <p>Checks if the hotel is already booked on the given date by a booking other than the one being validated.</p>
+     *
+     * <p>It is answered from the {@link AvailabilityIndex} once that is loaded, and by the database until then. A day
+     * the index has not heard of yet reads as free, the unique constraint still turns the booking down on insert. A day
+     * it has as taken is confirmed by the database, since it may have been freed on another node.</p>
+     *
+     * @param hotelId The id of the hotel to check
+     * @param bookingId The id of the booking being updated; or null when creating
+     * @param date The date to check
+     * @return boolean which represents whether the hotel is already taken on that date
+     */
     boolean bookingExist(Long hotelId, Long bookingId, Date date) {
-    	List<Booking> bookings = null;
-        Booking booking = null;
-        try {
-        	bookings = crud.findByHotelId(hotelId);
-        } catch (NoResultException e) {
-            // ignore
+        if (hotelId == null || date == null) {
+            return false;
         }
-        
-        try{
-        	for(Booking temp: bookings){
-        		//System.out.println("XXXXXXXBooking");
-        		System.out.println(temp.getId());
-        		System.out.println(temp.getBookingDate());
-        		if(temp.getBookingDate().equals(date) && temp.getId()!= bookingId)
-        		   booking = temp;     		
-        	}
-        }catch (Exception e){
-        	
+        // Most days are free, and the index says so without a query. One it has as taken may have been freed on
+        // another node, so the database has the last word before the booking is turned down.
+        if (AvailabilityIndex.BOOKINGS.isReady() && !AvailabilityIndex.BOOKINGS.isTaken(hotelId, date, bookingId)) {
+            return false;
         }
-
-        return booking != null;
+        return crud.existsByHotelAndDate(hotelId, date, bookingId);
     }
  
   
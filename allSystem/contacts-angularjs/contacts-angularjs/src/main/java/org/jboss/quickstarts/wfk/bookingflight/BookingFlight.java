@@ -33,9 +33,14 @@ import org.jboss.quickstarts.wfk.flight.Flight;
 
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.ManyToOne;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Index;
+import org.codehaus.jackson.annotate.JsonIgnore;
+import org.jboss.quickstarts.wfk.util.AvailabilityIndex;
+import org.jboss.quickstarts.wfk.util.PooledIdGenerator;
+import org.jboss.quickstarts.wfk.util.Versioned;
 
 /**
  * <p>This is a the Domain object. The BookingFlight class represents how bookingFlight resources are represented in the application
@@ -52,21 +57,80 @@ import javax.persistence.ManyToOne;
  */
 @Entity
 @NamedQueries({
-    @NamedQuery(name = BookingFlight.FIND_ALL, query = "SELECT c FROM BookingFlight c ORDER BY c.id ASC"),
-    @NamedQuery(name = BookingFlight.FIND_BY_CUSTOMERID, query = "SELECT c FROM BookingFlight c WHERE c.customerID.id = :customer_ID"),
-    @NamedQuery(name = BookingFlight.FIND_BY_FLIGHTID, query = "SELECT c FROM BookingFlight c WHERE c.flightID.id = :flight_ID"),
-    @NamedQuery(name = BookingFlight.FIND_BY_BOOKINGDATE, query = "SELECT c FROM BookingFlight c WHERE c.bookingFlightDate = :bookingFlight_Date")
+    @NamedQuery(name = BookingFlight.FIND_ALL, query = "SELECT c FROM BookingFlight c" + BookingFlight.FETCH_REFERENCES + " ORDER BY c.id ASC"),
+    @NamedQuery(name = BookingFlight.FIND_ALL_AFTER, query = "SELECT c FROM BookingFlight c" + BookingFlight.FETCH_REFERENCES + " WHERE c.id > :id ORDER BY c.id ASC"),
+    @NamedQuery(name = BookingFlight.FIND_BY_ID, query = "SELECT c FROM BookingFlight c" + BookingFlight.FETCH_REFERENCES + " WHERE c.id = :id"),
+    @NamedQuery(name = BookingFlight.FIND_ALL_SUMMARIES,
+        query = "SELECT NEW org.jboss.quickstarts.wfk.bookingflight.BookingFlightSummary("
+        + "b.id, b.bookingFlightDate, c.id, c.firstName, c.lastName, f.id, f.flightNumber) "
+        + "FROM BookingFlight b LEFT JOIN b.customerID c LEFT JOIN b.flightID f "
+        + "ORDER BY b.id ASC"),
+    @NamedQuery(name = BookingFlight.FIND_ALL_SUMMARIES_AFTER,
+        query = "SELECT NEW org.jboss.quickstarts.wfk.bookingflight.BookingFlightSummary("
+        + "b.id, b.bookingFlightDate, c.id, c.firstName, c.lastName, f.id, f.flightNumber) "
+        + "FROM BookingFlight b LEFT JOIN b.customerID c LEFT JOIN b.flightID f "
+        + "WHERE b.id > :id ORDER BY b.id ASC"),
+    @NamedQuery(name = BookingFlight.FIND_SUMMARIES_BY_CUSTOMER,
+        query = "SELECT NEW org.jboss.quickstarts.wfk.bookingflight.BookingFlightSummary("
+        + "b.id, b.bookingFlightDate, c.id, c.firstName, c.lastName, f.id, f.flightNumber) "
+        + "FROM BookingFlight b LEFT JOIN b.customerID c LEFT JOIN b.flightID f "
+        + "WHERE b.customerID.id = :customerId ORDER BY b.bookingFlightDate ASC, b.id ASC"),
+    @NamedQuery(name = BookingFlight.FIND_SUMMARIES_BY_CUSTOMER_AFTER,
+        query = "SELECT NEW org.jboss.quickstarts.wfk.bookingflight.BookingFlightSummary("
+        + "b.id, b.bookingFlightDate, c.id, c.firstName, c.lastName, f.id, f.flightNumber) "
+        + "FROM BookingFlight b LEFT JOIN b.customerID c LEFT JOIN b.flightID f "
+        + "WHERE b.customerID.id = :customerId AND (b.bookingFlightDate > :date OR (b.bookingFlightDate = :date AND b.id > :id)) "
+        + "ORDER BY b.bookingFlightDate ASC, b.id ASC"),
+    @NamedQuery(name = BookingFlight.FIND_BY_CUSTOMERID, query = "SELECT c FROM BookingFlight c" + BookingFlight.FETCH_REFERENCES + " WHERE c.customerID.id = :customer_ID"),
+    @NamedQuery(name = BookingFlight.FIND_BY_FLIGHTID, query = "SELECT c FROM BookingFlight c" + BookingFlight.FETCH_REFERENCES + " WHERE c.flightID.id = :flight_ID"),
+    @NamedQuery(name = BookingFlight.FIND_BY_BOOKINGDATE, query = "SELECT c FROM BookingFlight c WHERE c.bookingFlightDate = :bookingFlight_Date"),
+    @NamedQuery(name = BookingFlight.FIND_ID_BY_FLIGHT_AND_DATE, query = "SELECT c.id FROM BookingFlight c WHERE c.flightID.id = :flight_ID AND c.bookingFlightDate = :bookingFlight_Date"),
+    @NamedQuery(name = BookingFlight.FIND_OTHER_ID_BY_FLIGHT_AND_DATE, query = "SELECT c.id FROM BookingFlight c WHERE c.flightID.id = :flight_ID AND c.bookingFlightDate = :bookingFlight_Date AND c.id <> :id"),
+    @NamedQuery(name = BookingFlight.FIND_DAYS_BY_FLIGHTS, query = "SELECT c.flightID.id, c.bookingFlightDate FROM BookingFlight c WHERE c.flightID.id IN :flight_IDs AND c.bookingFlightDate BETWEEN :first AND :last"),
+    @NamedQuery(name = BookingFlight.FIND_VERSION,
+        query = "SELECT NEW org.jboss.quickstarts.wfk.util.EntityVersion(c.version, c.lastModified, "
+        + "cu.version, cu.lastModified, f.version, f.lastModified) "
+        + "FROM BookingFlight c LEFT JOIN c.customerID cu LEFT JOIN c.flightID f WHERE c.id = :id"),
+    @NamedQuery(name = BookingFlight.FIND_DAYS, query = "SELECT c.id, c.flightID.id, c.bookingFlightDate FROM BookingFlight c")
 })
 @XmlRootElement
-@Table(name = "BookingFlight", uniqueConstraints = @UniqueConstraint(columnNames = "id"))
-public class BookingFlight implements Serializable {
+/*
+ * A flight can be booked once per date. The unique constraint lets the database enforce that even when two bookings
+ * race past the validator, and its index is what the availability check and FIND_BY_FLIGHTID (a leading column prefix)
+ * use. The other lookups get an index of their own. The one on the customer goes on with the date, so that the
+ * itinerary of a customer (FIND_SUMMARIES_BY_CUSTOMER) is read in order from it.
+ */
+@Table(name = "BookingFlight", uniqueConstraints = @UniqueConstraint(columnNames = {"flight_ID", "bookingFlight_Date"}))
+@org.hibernate.annotations.Table(appliesTo = "BookingFlight", indexes = {
+    @Index(name = "IDX_BOOKINGFLIGHT_CUSTOMER", columnNames = {"customer_ID", "bookingFlight_Date"}),
+    @Index(name = "IDX_BOOKINGFLIGHT_DATE", columnNames = "bookingFlight_Date")
+})
+public class BookingFlight implements Serializable, Versioned {
     /** Default value included to remove warning. Remove or modify at will. **/
     private static final long serialVersionUID = 1L;
     
     public static final String FIND_ALL = "BookingFlight.findAll";
+    public static final String FIND_ALL_AFTER = "BookingFlight.findAllAfter";
+    public static final String FIND_BY_ID = "BookingFlight.findById";
+    public static final String FIND_ALL_SUMMARIES = "BookingFlight.findAllSummaries";
+    public static final String FIND_ALL_SUMMARIES_AFTER = "BookingFlight.findAllSummariesAfter";
+    public static final String FIND_SUMMARIES_BY_CUSTOMER = "BookingFlight.findSummariesByCustomer";
+    public static final String FIND_SUMMARIES_BY_CUSTOMER_AFTER = "BookingFlight.findSummariesByCustomerAfter";
     public static final String FIND_BY_CUSTOMERID = "BookingFlight.findByCustomerID";
     public static final String FIND_BY_FLIGHTID = "BookingFlight.findByFlightID";
     public static final String FIND_BY_BOOKINGDATE = "BookingFlight.findByBookingFlightDate";
+    public static final String FIND_ID_BY_FLIGHT_AND_DATE = "BookingFlight.findIdByFlightAndDate";
+    public static final String FIND_OTHER_ID_BY_FLIGHT_AND_DATE = "BookingFlight.findOtherIdByFlightAndDate";
+    public static final String FIND_DAYS_BY_FLIGHTS = "BookingFlight.findDaysByFlights";
+    public static final String FIND_VERSION = "BookingFlight.findVersion";
+    public static final String FIND_DAYS = "BookingFlight.findDays";
+
+    /*
+     * The customer and flight of a BookingFlight are lazy, so that loading it for a check (em.find(), the validators)
+     * reads its own row only. The queries whose result goes back to the client in full fetch them along in the same
+     * statement instead.
+     */
+    static final String FETCH_REFERENCES = " LEFT JOIN FETCH c.customerID LEFT JOIN FETCH c.flightID";
     
     /*
      * The  error messages match the ones in the UI so that the user isn't confused by two similar error messages for
@@ -78,14 +142,22 @@ public class BookingFlight implements Serializable {
      * variable occurs it can be sent to the correct input field on the form.  
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.TABLE)
+    @GeneratedValue(generator = PooledIdGenerator.NAME)
+    @GenericGenerator(name = PooledIdGenerator.NAME, strategy = PooledIdGenerator.STRATEGY)
     private Long id;
 
-    @ManyToOne
+    @Version
+    private long version;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "last_modified")
+    private Date lastModified;
+
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "customer_ID")
     private Contact customerID;
     
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "flight_ID")
     private Flight flightID;
     
@@ -127,4 +199,46 @@ public class BookingFlight implements Serializable {
     public void setBookingFlightDate(Date bookingFlightDate) {
         this.bookingFlightDate = bookingFlightDate;
     }
-}
\ No newline at end of file
+
+    @JsonIgnore
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    @JsonIgnore
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    @JsonIgnore
+    @Override
+    public Date getLastModified() {
+        return lastModified;
+    }
+
+    @JsonIgnore
+    public void setLastModified(Date lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        lastModified = new Date();
+    }
+
+    /**
+     * <p>Keeps the {@link AvailabilityIndex} up to date, once the transaction commits.</p>
+     */
+    @PostPersist
+    @PostUpdate
+    void claimDay() {
+        AvailabilityIndex.FLIGHTS.claimAfterCommit(id, flightID == null ? null : flightID.getId(), bookingFlightDate);
+    }
+
+    @PostRemove
+    void releaseDay() {
+        AvailabilityIndex.FLIGHTS.releaseAfterCommit(id);
+    }
+}
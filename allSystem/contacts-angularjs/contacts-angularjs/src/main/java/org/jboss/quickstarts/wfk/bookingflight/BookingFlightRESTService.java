@@ -16,16 +16,20 @@
  */
 package org.jboss.quickstarts.wfk.bookingflight;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.ejb.NoSuchEntityException;
 import javax.ejb.Stateless;
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.interceptor.Interceptors;
 import javax.persistence.NoResultException;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
@@ -37,13 +41,26 @@ import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.WebApplicationException;
 
 import org.jboss.quickstarts.wfk.contact.Contact;
 import org.jboss.quickstarts.wfk.flight.Flight;
+import org.jboss.quickstarts.wfk.util.BulkBatch;
+import org.jboss.quickstarts.wfk.util.BulkMode;
+import org.jboss.quickstarts.wfk.util.ConditionalRequests;
+import org.jboss.quickstarts.wfk.util.EntityVersion;
+import org.jboss.quickstarts.wfk.util.JsonExporter;
+import org.jboss.quickstarts.wfk.util.MetricsInterceptor;
+import org.jboss.quickstarts.wfk.util.Page;
+import org.jboss.quickstarts.wfk.util.PageCursor;
+import org.jboss.quickstarts.wfk.util.View;
 
 /**
  * <p>This class exposes the functionality of {@link BookingFlightService} over HTTP endpoints as a RESTful resource via
@@ -71,22 +88,50 @@ import org.jboss.quickstarts.wfk.flight.Flight;
 @Consumes(MediaType.APPLICATION_JSON)
 @Produces(MediaType.APPLICATION_JSON)
 @Stateless
+@Interceptors(MetricsInterceptor.class)
 public class BookingFlightRESTService {
     @Inject
     private @Named("logger") Logger log;
     
     @Inject
     private BookingFlightService service;
+
+    @Inject
+    private JsonExporter exporter;
     
     /**
-     * <p>Search for and return all the BookingFlights.  They are sorted alphabetically by name.</p>
+     * <p>Search for and return the BookingFlights, one page at a time.  They are sorted by id.</p>
+     *
+     * <p>Each response carries the cursor of the following page in the {@value PageCursor#NEXT_CURSOR_HEADER} header,
+     * which is absent on the last page. Add stream=true to get all of them at once instead, for an export.</p>
+     *
+     * <p>Add view=summary to get a {@link BookingFlightSummary} of each BookingFlight instead, with only the ids, the
+     * date and the names to show. It is read in a single statement, without loading the BookingFlights and everything
+     * they refer to.</p>
      * 
+     * @param cursor The cursor of the page to return; or null for the first page
+     * @param limit The maximum number of BookingFlights to return; or null for the default page size
+     * @param stream If true, all the BookingFlights are streamed back in a single response and cursor and limit are ignored
+     * @param view summary for BookingFlightSummary objects instead of BookingFlights; or null for the full view
      * @return A Response containing a list of BookingFlights
      */
     @GET
-    public Response retrieveAllBookingFlights() {
-        List<BookingFlight> bookingFlights = service.findAllOrderedByName();
-        return Response.ok(bookingFlights).build();
+    public Response retrieveAllBookingFlights(@QueryParam("cursor") String cursor, @QueryParam("limit") Integer limit,
+            @QueryParam("stream") boolean stream, @QueryParam("view") String view) {
+        boolean summary = View.of(view) == View.SUMMARY;
+        if (stream) {
+            // Written row by row as RESTEasy sends the response, instead of being built in memory first
+            String query = summary ? BookingFlight.FIND_ALL_SUMMARIES : BookingFlight.FIND_ALL;
+            return Response.ok(exporter.stream(query)).build();
+        }
+        int pageSize = PageCursor.limit(limit);
+        if (summary) {
+            Page<BookingFlightSummary> summaries = service.findSummaryPage(PageCursor.decode(cursor, 1), pageSize);
+            return Response.ok(summaries.getItems())
+                .header(PageCursor.NEXT_CURSOR_HEADER, summaries.getNextCursor()).build();
+        }
+        Page<BookingFlight> bookingFlights = service.findPage(PageCursor.decode(cursor, 1), pageSize);
+        return Response.ok(bookingFlights.getItems()).header(PageCursor.NEXT_CURSOR_HEADER, bookingFlights.getNextCursor()).build();
     }
 
     /**
@@ -97,21 +142,15 @@ public class BookingFlightRESTService {
      *
      *
      * @param customer The string parameter value provided as a BookingFlight's customer
-     * @return A Response containing a single BookingFlight
+     * @return A Response containing a list of BookingFlights, empty if the customer has none
      */
     @GET
     @Path("/customerID/{id:[0-9]+}")
     public Response retrieveBookingFlightByCustomerID(@PathParam("id") long id) {
-       // List<Book> book = service.findAllByCustomerId(id);
-        BookingFlight bookingFlight = service.findAllByCustomerID(id);
+        List<BookingFlight> bookingFlights = service.findAllByCustomerID(id);
+        log.log(Level.FINE, "findByCustomerID {0}: found {1} BookingFlights", new Object[] {id, bookingFlights.size()});
 
-        if (bookingFlight == null) {
-            throw new WebApplicationException(Response.Status.NOT_FOUND);
-        }
-        log.info("findById " + id + ": found Contact = " + bookingFlight.getCustomerID() + " " + bookingFlight.getFlightID() + " " + bookingFlight.getBookingFlightDate() + " " 
-            + bookingFlight.getId());
-        
-        return Response.ok(bookingFlight).build();
+        return Response.ok(bookingFlights).build();
     }
     
     @GET
@@ -122,27 +161,43 @@ public class BookingFlightRESTService {
         if (bookingFlight == null) {
             throw new WebApplicationException(Response.Status.NOT_FOUND);
         }
-        log.info("findById " + id + ": found Contact = " + bookingFlight.getCustomerID() + " " + bookingFlight.getFlightID() + " " + bookingFlight.getBookingFlightDate() + " " 
-            + bookingFlight.getId());
+        log.log(Level.FINE, "findById {0}: found Contact = {1} {2} {3} {4}",
+            new Object[] {id, bookingFlight.getCustomerID(), bookingFlight.getFlightID(), bookingFlight.getBookingFlightDate(), bookingFlight.getId()});
         
         return Response.ok(bookingFlight).build();
     }
     /**
      * <p>Search for and return a BookingFlight identified by id.</p>
+     *
+     * <p>The response carries the versions of the BookingFlight and of what it refers to as its ETag, and the latest of their
+     * Last-Modified, as the representation embeds them. A client that sends them back in If-None-Match or
+     * If-Modified-Since gets a 304 (Not Modified) while its copy is current, found out from the versions alone without
+     * loading the BookingFlight.</p>
      * 
      * @param id The long parameter value provided as a BookingFlight's id
+     * @param request The request, to evaluate its preconditions
+     * @param headers The headers of the request
      * @return A Response containing a single BookingFlight
      */
     @GET
     @Path("/{id:[0-9]+}")
-    public Response retrieveBookingFlightById(@PathParam("id") long id) {
-        BookingFlight bookingFlight = service.findById(id);
+    public Response retrieveBookingFlightById(@PathParam("id") long id, @Context Request request, @Context HttpHeaders headers) {
+        if (ConditionalRequests.isConditional(headers)) {
+            Response notModified = ConditionalRequests.notModified(request, headers, service.findVersion(id));
+            if (notModified != null) {
+                return notModified;
+            }
+        }
+        BookingFlight bookingFlight = service.findWithReferences(id);
         if (bookingFlight == null) {
             throw new WebApplicationException(Response.Status.NOT_FOUND);
         }
-        log.info("findById " + id + ": found BookingFlight = " + bookingFlight.getFlightID() + " " + bookingFlight.getBookingFlightDate() + " " + bookingFlight.getCustomerID() + " " + bookingFlight.getId());
+        log.log(Level.FINE, "findById {0}: found BookingFlight = {1} {2} {3} {4}",
+            new Object[] {id, bookingFlight.getFlightID(), bookingFlight.getBookingFlightDate(), bookingFlight.getCustomerID(), bookingFlight.getId()});
         
-        return Response.ok(bookingFlight).build();
+        // The representation embeds what the BookingFlight refers to, so does its version
+        return ConditionalRequests.ok(bookingFlight,
+                EntityVersion.of(bookingFlight, bookingFlight.getCustomerID(), bookingFlight.getFlightID())).build();
     }
 
     /**
@@ -155,7 +210,8 @@ public class BookingFlightRESTService {
     @SuppressWarnings("unused")
     @POST
     public Response createBookingFlight(BookingFlight bookingFlight) {
-        log.info("createBookingFlight started. BookingFlight = " + bookingFlight.getBookingFlightDate() + " " + bookingFlight.getFlightID() + " " + bookingFlight.getCustomerID() + " "  + bookingFlight.getId());
+        log.log(Level.FINE, "createBookingFlight started. BookingFlight = {0} {1} {2} {3}",
+            new Object[] {bookingFlight.getBookingFlightDate(), bookingFlight.getFlightID(), bookingFlight.getCustomerID(), bookingFlight.getId()});
         if (bookingFlight == null) {
             throw new WebApplicationException(Response.Status.BAD_REQUEST);
         }
@@ -169,13 +225,14 @@ public class BookingFlightRESTService {
             // Create a "Resource Created" 201 Response and pass the bookingFlight back in case it is needed.
             builder = Response.status(Response.Status.CREATED).entity(bookingFlight);
             
-            log.info("createBookingFlight completed. BookingFlight = " + bookingFlight.getBookingFlightDate() + " " + bookingFlight.getFlightID() + " " + bookingFlight.getCustomerID() + " " + bookingFlight.getId());
+            log.log(Level.FINE, "createBookingFlight completed. BookingFlight = {0} {1} {2} {3}",
+                new Object[] {bookingFlight.getBookingFlightDate(), bookingFlight.getFlightID(), bookingFlight.getCustomerID(), bookingFlight.getId()});
         } catch (ConstraintViolationException ce) {
-            log.info("ConstraintViolationException - " + ce.toString());
+            log.log(Level.INFO, "ConstraintViolationException - {0}", ce);
             // Handle bean validation issues
             builder = createViolationResponse(ce.getConstraintViolations());
         } catch (ValidationException e) {
-            log.info("ValidationException - " + e.toString());
+            log.log(Level.INFO, "ValidationException - {0}", e);
             // Handle the unique constrain violation
             Map<String, String> responseObj = new HashMap<String, String>();
             //responseObj.put("bookingFlightDate", "That bookingFlightDate is already used, please use a unique bookingFlightDate");
@@ -191,7 +248,7 @@ public class BookingFlightRESTService {
                      responseObj.put("bookingFlight", "That flightID and/or date are existed, Please check you information carefully");
             builder = Response.status(Response.Status.CONFLICT).entity(responseObj);
         } catch (Exception e) {
-            log.info("Exception - " + e.toString());
+            log.log(Level.INFO, "Exception - {0}", e);
             // Handle generic exceptions
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("error", e.getMessage());
@@ -201,31 +258,90 @@ public class BookingFlightRESTService {
         return builder.build();
     }
 
+    /**
+     * <p>Creates several BookingFlights at once from a JSON array of BookingFlight objects.</p>
+     *
+     * <p>The whole batch is validated in one go, with the same checks and errors as {@link #createBookingFlight(BookingFlight)}, and the
+     * items that pass are inserted in JDBC batches. In <i>atomic</i> mode (the default) either all the BookingFlights are
+     * created, with a 201, or none is, with a 400 or 409. In <i>bestEffort</i> mode the valid ones are created anyway and
+     * the response is a 207. Either way the body gives the status, id or errors of every item, in order.</p>
+     *
+     * @param bookingFlights The BookingFlight objects, constructed automatically from JSON input
+     * @param mode atomic or bestEffort; or null for atomic
+     * @return A Response indicating the outcome of every create
+     */
+    @POST
+    @Path("/bulk")
+    public Response createBookingFlights(List<BookingFlight> bookingFlights, @QueryParam("mode") String mode) {
+        BulkMode bulkMode = BulkMode.of(mode);
+        return createAll(new BulkBatch<BookingFlight>(bookingFlights), bulkMode);
+    }
+
+    /**
+     * <p>Creates several BookingFlights at once from newline delimited JSON, one BookingFlight object per line. Otherwise the same as
+     * {@link #createBookingFlights(List, String)}; a line that cannot be read is rejected with a 400 of its own.</p>
+     *
+     * @param body The request body, in {@value BulkBatch#NDJSON}
+     * @param mode atomic or bestEffort; or null for atomic
+     * @return A Response indicating the outcome of every create
+     * @throws IOException If the request body cannot be read
+     */
+    @POST
+    @Path("/bulk")
+    @Consumes(BulkBatch.NDJSON)
+    public Response createBookingFlightsFromNdjson(InputStream body, @QueryParam("mode") String mode) throws IOException {
+        BulkMode bulkMode = BulkMode.of(mode);
+        return createAll(BulkBatch.fromNdjson(body, BookingFlight.class), bulkMode);
+    }
+
+    private Response createAll(BulkBatch<BookingFlight> batch, BulkMode mode) {
+        log.log(Level.FINE, "createBookingFlights started. {0} BookingFlights, {1}", new Object[] {batch.size(), mode});
+
+        service.createAll(batch, mode);
+        Response response = batch.toResponse(mode);
+
+        log.log(Level.FINE, "createBookingFlights completed. Status = {0}", response.getStatus());
+        return response;
+    }
+
     /**
      * <p>Updates a bookingFlight with the ID provided in the BookingFlight. Performs validation, and will return a JAX-RS response with either 200 ok,
      * or with a map of fields, and related errors.</p>
+     *
+     * <p>If the client sends the ETag it read in If-Match, or its Last-Modified in If-Unmodified-Since, the update is only
+     * applied if the BookingFlight has not changed since; otherwise the response is a 412 (Precondition Failed).</p>
      * 
      * @param bookingFlight The BookingFlight object, constructed automatically from JSON input, to be <i>updated</i> via {@link BookingFlightService#update(BookingFlight)}
      * @param id The long parameter value provided as the id of the BookingFlight to be updated
+     * @param request The request, to evaluate its If-Match or If-Unmodified-Since
+     * @param headers The headers of the request
      * @return A Response indicating the outcome of the create operation
      */
     @PUT
     @Path("/{id:[0-9][0-9]*}")
-    public Response updateBookingFlight(@PathParam("id") long id, BookingFlight bookingFlight) {
+    public Response updateBookingFlight(@PathParam("id") long id, BookingFlight bookingFlight, @Context Request request,
+            @Context HttpHeaders headers) {
         if (bookingFlight == null) {
             throw new WebApplicationException(Response.Status.BAD_REQUEST);
         }
-        log.info("updateBookingFlight started. BookingFlight = " + bookingFlight.getBookingFlightDate() + " " + bookingFlight.getFlightID() + " " + bookingFlight.getCustomerID() + " " + bookingFlight.getId());
+        log.log(Level.FINE, "updateBookingFlight started. BookingFlight = {0} {1} {2} {3}",
+            new Object[] {bookingFlight.getBookingFlightDate(), bookingFlight.getFlightID(), bookingFlight.getCustomerID(), bookingFlight.getId()});
 
         if (bookingFlight.getId() != id) {
             // The client attempted to update the read-only Id. This is not permitted.
             Response response = Response.status(Response.Status.CONFLICT).entity("The bookingFlight ID cannot be modified").build();
             throw new WebApplicationException(response);
         }
-        if (service.findById(bookingFlight.getId()) == null) {
+        BookingFlight current = service.findById(bookingFlight.getId());
+        if (current == null) {
             // Verify if the bookingFlight exists. Return 404, if not present.
             throw new WebApplicationException(Response.Status.NOT_FOUND);
         }
+        // Checked against the version of the representation the client read, references included
+        ConditionalRequests.checkUnchanged(request, headers, service.findVersion(id));
+        // The update replaces the version that was just checked, and the timestamp only moves if something changed
+        bookingFlight.setVersion(current.getVersion());
+        bookingFlight.setLastModified(current.getLastModified());
         
         Response.ResponseBuilder builder = null;
         
@@ -236,13 +352,14 @@ public class BookingFlightRESTService {
             // Create an OK Response and pass the bookingFlight back in case it is needed.
             builder = Response.ok(bookingFlight);
 
-            log.info("updateBookingFlight completed. BookingFlight = " + bookingFlight.getBookingFlightDate() + " " + bookingFlight.getFlightID() + " " + bookingFlight.getCustomerID() + " " + bookingFlight.getId());
+            log.log(Level.FINE, "updateBookingFlight completed. BookingFlight = {0} {1} {2} {3}",
+                new Object[] {bookingFlight.getBookingFlightDate(), bookingFlight.getFlightID(), bookingFlight.getCustomerID(), bookingFlight.getId()});
         } catch (ConstraintViolationException ce) {
-            log.info("ConstraintViolationException - " + ce.toString());
+            log.log(Level.INFO, "ConstraintViolationException - {0}", ce);
             // Handle bean validation issues
             builder = createViolationResponse(ce.getConstraintViolations());
         } catch (ValidationException e) {
-            log.info("ValidationException - " + e.toString());
+            log.log(Level.INFO, "ValidationException - {0}", e);
             // Handle the unique constrain violation
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("flightID", "That flight ID is already used, please use a unique flight ID");
@@ -250,7 +367,7 @@ public class BookingFlightRESTService {
             responseObj.put("anotherError", "You can find this error message in /src/main/java/org/jboss/quickstarts/wfk/rest/BookingFlightRESTService.java line 242.");
             builder = Response.status(Response.Status.CONFLICT).entity(responseObj);
         } catch (Exception e) {
-            log.info("Exception - " + e.toString());
+            log.log(Level.INFO, "Exception - {0}", e);
             // Handle generic exceptions
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("error", e.getMessage());
@@ -271,7 +388,7 @@ public class BookingFlightRESTService {
     @DELETE
     @Path("/{id:[0-9][0-9]*}")
     public Response deleteBookingFlight(@PathParam("id") Long id) {
-        log.info("deleteBookingFlight started. BookingFlight ID = " + id);
+        log.log(Level.FINE, "deleteBookingFlight started. BookingFlight ID = {0}", id);
         Response.ResponseBuilder builder = null;
 
         try {
@@ -284,9 +401,10 @@ public class BookingFlightRESTService {
             }
 
             builder = Response.noContent();
-            log.info("deleteBookingFlight completed. BookingFlight = " + bookingFlight.getBookingFlightDate() + " " + bookingFlight.getFlightID() + " " + bookingFlight.getCustomerID() + " " + bookingFlight.getId());
+            log.log(Level.FINE, "deleteBookingFlight completed. BookingFlight = {0} {1} {2} {3}",
+                new Object[] {bookingFlight.getBookingFlightDate(), bookingFlight.getFlightID(), bookingFlight.getCustomerID(), bookingFlight.getId()});
         } catch (Exception e) {
-            log.info("Exception - " + e.toString());
+            log.log(Level.INFO, "Exception - {0}", e);
             // Handle generic exceptions
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("error", e.getMessage());
@@ -304,7 +422,7 @@ public class BookingFlightRESTService {
      * @return A Bad Request (400) Response containing all violation messages
      */
     private Response.ResponseBuilder createViolationResponse(Set<ConstraintViolation<?>> violations) {
-        log.fine("Validation completed. violations found: " + violations.size());
+        log.log(Level.FINE, "Validation completed. violations found: {0}", violations.size());
 
         Map<String, String> responseObj = new HashMap<String, String>();
 
@@ -26,9 +26,19 @@ import javax.persistence.criteria.Root;
 import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.jboss.quickstarts.wfk.util.BulkBatch;
+import org.jboss.quickstarts.wfk.util.Claims;
+import org.jboss.quickstarts.wfk.util.EntityVersion;
+import org.jboss.quickstarts.wfk.util.Page;
+import org.jboss.quickstarts.wfk.util.PageCursor;
 
 /**
  * <p>This is a Repository class and connects the Service/Control layer (see {@link BookingFlightService} with the
@@ -58,6 +68,64 @@ public class BookingFlightRepository {
         TypedQuery<BookingFlight> query = em.createNamedQuery(BookingFlight.FIND_ALL, BookingFlight.class); 
         return query.getResultList();
     }
+
+    /**
+     * <p>Returns one page of persisted {@link BookingFlight} objects, in the order of {@link BookingFlight#FIND_ALL}, starting right
+     * after the given sort key.</p>
+     *
+     * @param after The sort key (id) of the last BookingFlight of the previous page; or null for the first page
+     * @param limit The maximum number of BookingFlight objects to return
+     * @return The Page of BookingFlight objects
+     */
+    Page<BookingFlight> findPage(String[] after, int limit) {
+        TypedQuery<BookingFlight> query;
+        if (after == null) {
+            query = em.createNamedQuery(BookingFlight.FIND_ALL, BookingFlight.class);
+        } else {
+            query = em.createNamedQuery(BookingFlight.FIND_ALL_AFTER, BookingFlight.class)
+                .setParameter("id", Long.valueOf(after[0]));
+        }
+        // One more than asked for, to know whether there is a next page
+        List<BookingFlight> rows = query.setMaxResults(limit + 1).getResultList();
+        return PageCursor.page(rows, limit, SORT_KEY);
+    }
+
+    private static final PageCursor.SortKey<BookingFlight> SORT_KEY = new PageCursor.SortKey<BookingFlight>() {
+        @Override
+        public Object[] of(BookingFlight bookingFlight) {
+            return new Object[] {bookingFlight.getId()};
+        }
+    };
+
+    /**
+     * <p>Returns one page of the {@link BookingFlightSummary} of persisted BookingFlight objects, in the order of
+     * {@link BookingFlight#FIND_ALL_SUMMARIES}, starting right after the given sort key. The page is read in a single
+     * statement, without loading any BookingFlight or what it refers to.</p>
+     *
+     * @param after The sort key (id) of the last BookingFlight of the previous page; or null for the first page
+     * @param limit The maximum number of BookingFlightSummary objects to return
+     * @return The Page of BookingFlightSummary objects
+     */
+    Page<BookingFlightSummary> findSummaryPage(String[] after, int limit) {
+        TypedQuery<BookingFlightSummary> query;
+        if (after == null) {
+            query = em.createNamedQuery(BookingFlight.FIND_ALL_SUMMARIES, BookingFlightSummary.class);
+        } else {
+            query = em.createNamedQuery(BookingFlight.FIND_ALL_SUMMARIES_AFTER, BookingFlightSummary.class)
+                .setParameter("id", Long.valueOf(after[0]));
+        }
+        List<BookingFlightSummary> rows = query.setMaxResults(limit + 1).getResultList();
+        return PageCursor.page(rows, limit, SUMMARY_SORT_KEY);
+    }
+
+    private static final PageCursor.SortKey<BookingFlightSummary> SUMMARY_SORT_KEY =
+        new PageCursor.SortKey<BookingFlightSummary>() {
+            @Override
+            public Object[] of(BookingFlightSummary summary) {
+                return new Object[] {summary.getId()};
+            }
+        };
+
     BookingFlight findByBookingFlightDate(Date bookingFlightDate) {
         TypedQuery<BookingFlight> query = em.createNamedQuery(BookingFlight.FIND_BY_BOOKINGDATE, BookingFlight.class).setParameter("bookingFlight_Date", bookingFlightDate); 
         return query.getSingleResult();
@@ -72,9 +140,36 @@ public class BookingFlightRepository {
         return em.find(BookingFlight.class, id);
     }
 
-    BookingFlight findByCustomerID(Long customerID) {
-        TypedQuery<BookingFlight> query = em.createNamedQuery(BookingFlight.FIND_BY_CUSTOMERID, BookingFlight.class).setParameter("customer_ID", customerID); 
-        return query.getSingleResult();
+    /**
+     * <p>Returns a single BookingFlight object, specified by a Long id, together with its customer and flight, all read
+     * in one statement. {@link #findById(Long)} leaves them to be loaded on first use, which is what a check needs;
+     * this is for a BookingFlight that is sent back to the client in full.</p>
+     *
+     * @param id The id field of the BookingFlight to be returned
+     * @return The BookingFlight with the specified id; or null if there is none
+     */
+    BookingFlight findWithReferences(Long id) {
+        List<BookingFlight> rows = em.createNamedQuery(BookingFlight.FIND_BY_ID, BookingFlight.class)
+            .setParameter("id", id).getResultList();
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    /**
+     * <p>Returns the version and last modification time of a BookingFlight, specified by a Long id, without loading it.</p>
+     *
+     * @param id The id field of the BookingFlight
+     * @return The version of the BookingFlight with the specified id; or null if there is none
+     */
+    EntityVersion findVersion(Long id) {
+        List<EntityVersion> versions = em.createNamedQuery(BookingFlight.FIND_VERSION, EntityVersion.class)
+            .setParameter("id", id).getResultList();
+        return versions.isEmpty() ? null : versions.get(0);
+    }
+
+    List<BookingFlight> findByCustomerID(Long customerID) {
+        TypedQuery<BookingFlight> query = em.createNamedQuery(BookingFlight.FIND_BY_CUSTOMERID, BookingFlight.class)
+            .setParameter("customer_ID", customerID);
+        return query.getResultList();
     }
     BookingFlight findByFlightID(Long flightID) {
         TypedQuery<BookingFlight> query = em.createNamedQuery(BookingFlight.FIND_BY_FLIGHTID, BookingFlight.class).setParameter("flight_ID", flightID); 
@@ -85,6 +180,26 @@ public class BookingFlightRepository {
 				BookingFlight.FIND_BY_FLIGHTID, BookingFlight.class).setParameter("flight_ID", flightID);
 		return query.getResultList();
 	}
+
+    /**
+     * <p>Checks whether the given flight already has a BookingFlight on the given date, without loading any BookingFlight.</p>
+     *
+     * @param flightID The id of the flight to check
+     * @param bookingFlightDate The date to check
+     * @param excludeId The id of a BookingFlight to ignore (the one being updated); or null
+     * @return true if another booking holds the flight on that date
+     */
+    boolean existsByFlightIDAndDate(Long flightID, Date bookingFlightDate, Long excludeId) {
+        TypedQuery<Long> query;
+        if (excludeId == null) {
+            query = em.createNamedQuery(BookingFlight.FIND_ID_BY_FLIGHT_AND_DATE, Long.class);
+        } else {
+            query = em.createNamedQuery(BookingFlight.FIND_OTHER_ID_BY_FLIGHT_AND_DATE, Long.class)
+                .setParameter("id", excludeId);
+        }
+        query.setParameter("flight_ID", flightID).setParameter("bookingFlight_Date", bookingFlightDate).setMaxResults(1);
+        return !query.getResultList().isEmpty();
+    }
     
     /**
      * <p>Returns a single Contact object, specified by a String bookingFlightDate.<p/>
@@ -122,6 +237,29 @@ public class BookingFlightRepository {
         return em.createQuery(criteria).getSingleResult();
     }*/
 
+    /**
+     * <p>Returns the days on which the given flights are booked between first and last, as
+     * {@link BulkBatch#dayKey(Long, Date)} keys, for the validation of a bulk create. One query per
+     * {@value BulkBatch#IN_LIST_SIZE} flights, instead of one per BookingFlight.</p>
+     *
+     * @param flightIDs The ids of the flights
+     * @param first The first day to look at
+     * @param last The last day to look at
+     * @return The keys of the days the flights are taken
+     */
+    Set<Object> findTakenDays(Collection<Long> flightIDs, Date first, Date last) {
+        Set<Object> taken = new HashSet<Object>();
+        for (List<Long> part : BulkBatch.partition(new ArrayList<Long>(flightIDs), BulkBatch.IN_LIST_SIZE)) {
+            List<?> rows = em.createNamedQuery(BookingFlight.FIND_DAYS_BY_FLIGHTS)
+                .setParameter("flight_IDs", part).setParameter("first", first).setParameter("last", last).getResultList();
+            for (Object row : rows) {
+                Object[] columns = (Object[]) row;
+                taken.add(BulkBatch.dayKey((Long) columns[0], (Date) columns[1]));
+            }
+        }
+        return taken;
+    }
+
     /**
      * <p>Persists the provided Contact object to the application database using the EntityManager.</p>
      *
@@ -135,10 +273,12 @@ public class BookingFlightRepository {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     BookingFlight create(BookingFlight bookingFlight) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("BookingFlightRepository.create() - Creating " + bookingFlight.getCustomerID() + " " + bookingFlight.getFlightID());
+        log.log(Level.FINE, "BookingFlightRepository.create() - Creating {0} {1}",
+            new Object[] {bookingFlight.getCustomerID(), bookingFlight.getFlightID()});
         
-        // Write the bookingFlight to the database.
+        // Write the bookingFlight to the database. Flushed now, so that losing its day to a concurrent booking shows here.
         em.persist(bookingFlight);
+        Claims.flush(em, "Unique bookingFlight Violation");
         
         return bookingFlight;
     }
@@ -157,10 +297,12 @@ public class BookingFlightRepository {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     BookingFlight update(BookingFlight bookingFlight) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("BookingFlightRepository.update() - Updating " + bookingFlight.getCustomerID() + " " + bookingFlight.getFlightID());
+        log.log(Level.FINE, "BookingFlightRepository.update() - Updating {0} {1}",
+            new Object[] {bookingFlight.getCustomerID(), bookingFlight.getFlightID()});
         
         // Either update the bookingFlight or add it if it can't be found.
         em.merge(bookingFlight);
+        Claims.flush(em, "Unique bookingFlight Violation");
         
         return bookingFlight;
     }
@@ -173,7 +315,8 @@ public class BookingFlightRepository {
      * @throws Exception
      */
     BookingFlight delete(BookingFlight bookingFlight) throws Exception {
-        log.info("BookingFlightRepository.delete() - Deleting " + bookingFlight.getCustomerID() + " " + bookingFlight.getFlightID());
+        log.log(Level.FINE, "BookingFlightRepository.delete() - Deleting {0} {1}",
+            new Object[] {bookingFlight.getCustomerID(), bookingFlight.getFlightID()});
         
         if (bookingFlight.getId() != null) {
             /*
@@ -36,7 +36,13 @@ import javax.validation.ValidationException;
 import java.net.URI;
 import java.util.Date;
 import java.util.List;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.jboss.quickstarts.wfk.util.BulkBatch;
+import org.jboss.quickstarts.wfk.util.BulkMode;
+import org.jboss.quickstarts.wfk.util.BulkWriter;
+import org.jboss.quickstarts.wfk.util.EntityVersion;
+import org.jboss.quickstarts.wfk.util.Page;
 
 /**
  * <p>This Service assumes the Control responsibility in the ECB pattern.</p>
@@ -62,6 +68,9 @@ public class BookingFlightService {
     @Inject
     private BookingFlightValidator bvalidator;
 
+    @Inject
+    private BulkWriter writer;
+
     @Inject
     private BookingFlightRepository bcrud;
 
@@ -76,7 +85,31 @@ public class BookingFlightService {
     List<BookingFlight> findAllOrderedByName() {
         return bcrud.findAllOrderedByName();
     }
-    BookingFlight findAllByCustomerID(Long customerID) {
+
+    /**
+     * <p>Returns one page of {@link BookingFlight} objects, see {@link BookingFlightRepository#findPage(String[], int)}.</p>
+     *
+     * @param after The sort key of the last BookingFlight of the previous page; or null for the first page
+     * @param limit The maximum number of BookingFlight objects to return
+     * @return The Page of BookingFlight objects
+     */
+    Page<BookingFlight> findPage(String[] after, int limit) {
+        return bcrud.findPage(after, limit);
+    }
+
+    /**
+     * <p>Returns one page of {@link BookingFlightSummary} objects, see
+     * {@link BookingFlightRepository#findSummaryPage(String[], int)}.</p>
+     *
+     * @param after The sort key of the last BookingFlight of the previous page; or null for the first page
+     * @param limit The maximum number of BookingFlightSummary objects to return
+     * @return The Page of BookingFlightSummary objects
+     */
+    Page<BookingFlightSummary> findSummaryPage(String[] after, int limit) {
+        return bcrud.findSummaryPage(after, limit);
+    }
+
+    List<BookingFlight> findAllByCustomerID(Long customerID) {
         return bcrud.findByCustomerID(customerID);
     }
     BookingFlight findAllByFlightID(Long flightID) {
@@ -95,8 +128,31 @@ public class BookingFlightService {
         return bcrud.findById(id);
     }
 
+    /**
+     * <p>Returns a single BookingFlight object with everything it refers to, see
+     * {@link BookingFlightRepository#findWithReferences(Long)}.</p>
+     *
+     * @param id The id field of the BookingFlight to be returned
+     * @return The BookingFlight with the specified id; or null if there is none
+     */
+    BookingFlight findWithReferences(Long id) {
+        return bcrud.findWithReferences(id);
+    }
+
+    /**
+     * <p>Returns the version and last modification time of a BookingFlight, specified by a Long id, to answer a conditional
+     * request without loading the BookingFlight.</p>
+     *
+     * @param id The id field of the BookingFlight
+     * @return The version of the BookingFlight with the specified id; or null if there is none
+     */
+    EntityVersion findVersion(Long id) {
+        return bcrud.findVersion(id);
+    }
+
     BookingFlight create(BookingFlight bookingFlight) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("BookingFlightService.create() - Creating " + bookingFlight.getId() + " " + bookingFlight.getCustomerID() + " " + bookingFlight.getFlightID());
+        log.log(Level.FINE, "BookingFlightService.create() - Creating {0} {1} {2}",
+            new Object[] {bookingFlight.getId(), bookingFlight.getCustomerID(), bookingFlight.getFlightID()});
         
         // Check to make sure the data fits with the parameters in the BookingFlight model and passes validation.
         bvalidator.validateBookingFlight(bookingFlight);
@@ -124,6 +180,25 @@ public class BookingFlightService {
         return bcrud.create(bookingFlight);
     }
 
+    /**
+     * <p>Writes the BookingFlight objects of a bulk create to the application database.</p>
+     *
+     * <p>The whole batch is validated at once by {@link BookingFlightValidator#validateBookingFlights(BulkBatch)}, then the items that passed
+     * are inserted by a {@link BulkWriter} in JDBC batches. The outcome of every item is recorded in the batch.</p>
+     *
+     * @param batch The BookingFlight objects to be written
+     * @param mode Whether the batch is written all or nothing, or item by item
+     */
+    void createAll(BulkBatch<BookingFlight> batch, BulkMode mode) {
+        log.log(Level.FINE, "BookingFlightService.createAll() - Creating {0} BookingFlights, {1}", new Object[] {batch.size(), mode});
+
+        // Check the whole batch against the BookingFlight model and the database, rejecting the items that fail.
+        bvalidator.validateBookingFlights(batch);
+
+        // Write the others to the database.
+        writer.write(batch, mode);
+    }
+
     /**
      * <p>Updates an existing BookingFlight object in the application database with the provided BookingFlight object.<p/>
      *
@@ -134,7 +209,8 @@ public class BookingFlightService {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     BookingFlight update(BookingFlight bookingFlight) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("BookingFlightService.update() - Updating " + bookingFlight.getId() + " " + bookingFlight.getCustomerID() + " " + bookingFlight.getFlightID());
+        log.log(Level.FINE, "BookingFlightService.update() - Updating {0} {1} {2}",
+            new Object[] {bookingFlight.getId(), bookingFlight.getCustomerID(), bookingFlight.getFlightID()});
         
         // Check to make sure the data fits with the parameters in the BookingFlight model and passes validation.
         bvalidator.validateBookingFlight(bookingFlight);
@@ -168,7 +244,8 @@ public class BookingFlightService {
      * @throws Exception
      */
     BookingFlight delete(BookingFlight bookingFlight) throws Exception {
-        log.info("BookingFlightService.delete() - Deleting " + bookingFlight.getCustomerID() + " " + bookingFlight.getFlightID());
+        log.log(Level.FINE, "BookingFlightService.delete() - Deleting {0} {1}",
+            new Object[] {bookingFlight.getCustomerID(), bookingFlight.getFlightID()});
         
         BookingFlight deletedBookingFlight = null;
         
@@ -0,0 +1,56 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.bookingflight;
+
+import java.util.Date;
+
+import org.jboss.quickstarts.wfk.util.Summary;
+
+/**
+ * <p>The summary view of a {@link BookingFlight}: its flight by id and name only.</p>
+ *
+ * @see BookingFlight#FIND_ALL_SUMMARIES
+ */
+public class BookingFlightSummary extends Summary {
+
+    /** The {@link #getType() type} of a BookingFlightSummary. */
+    public static final String TYPE = "bookingFlights";
+
+    private final Long flightId;
+
+    private final String flightNumber;
+
+    public BookingFlightSummary(Long id, Date bookingFlightDate, Long customerId, String firstName, String lastName,
+            Long flightId, String flightNumber) {
+        super(id, bookingFlightDate, customerId, firstName, lastName);
+        this.flightId = flightId;
+        this.flightNumber = flightNumber;
+    }
+
+    public Long getFlightId() {
+        return flightId;
+    }
+
+    public String getFlightNumber() {
+        return flightNumber;
+    }
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+}
@@ -30,9 +30,10 @@ import javax.validation.ValidationException;
 import javax.validation.Validator;
 
 import org.jboss.quickstarts.wfk.contact.Contact;
-import org.jboss.quickstarts.wfk.contact.ContactRepository;
 import org.jboss.quickstarts.wfk.flight.Flight;
-import org.jboss.quickstarts.wfk.flight.FlightRepository;
+import org.jboss.quickstarts.wfk.util.AvailabilityIndex;
+import org.jboss.quickstarts.wfk.util.BulkBatch;
+import org.jboss.quickstarts.wfk.util.ReferenceResolver;
 
 /**
  * <p>This class provides methods to check BookingFlight objects against arbitrary requirements.</p>
@@ -45,13 +46,11 @@ import org.jboss.quickstarts.wfk.flight.FlightRepository;
 public class BookingFlightValidator {
     @Inject
     private Validator validator;
-    // validator use repository for bookingFlight, contact and flight
+    // validator use repository for bookingFlight, and the resolver for contact and flight
     @Inject
     private BookingFlightRepository bcrud;
     @Inject
-    private ContactRepository cbcrud;
-    @Inject
-    private FlightRepository fbcrud;
+    private ReferenceResolver resolver;
 
     /**
      * <p>Validates the given BookingFlight object and throws validation exceptions based on the type of error. If the error is standard
@@ -73,47 +72,100 @@ public class BookingFlightValidator {
         if (!violations.isEmpty()) {
             throw new ConstraintViolationException(new HashSet<ConstraintViolation<?>>(violations));
         }
-        if(bookingFlight!=null)
-        {
-        if ((flightNotExists(bookingFlight.getFlightID().getId(), bookingFlight.getId())==false)||(customerExists(bookingFlight.getCustomerID().getId(), bookingFlight.getId())==false)||bookingFlightExists(bookingFlight.getFlightID().getId(), bookingFlight.getId(),bookingFlight.getBookingFlightDate())) 
-        {
-        	if (bookingFlightExists( bookingFlight.getFlightID().getId(),bookingFlight.getId(),bookingFlight.getBookingFlightDate()))
-        		throw new ValidationException("Unique bookingFlight Violation");
-        	 if ((flightNotExists(bookingFlight.getFlightID().getId(), bookingFlight.getId())==false)&&(customerExists(bookingFlight.getCustomerID().getId(), bookingFlight.getId())==false)) 
-        		throw new ValidationException("Unique btc Violation");
-        	else if ((customerExists(bookingFlight.getCustomerID().getId(), bookingFlight.getId())==false))
-        		throw new ValidationException("Unique customerID Violation");
-        	else if ((flightNotExists(bookingFlight.getFlightID().getId(), bookingFlight.getId())==false))
-        		throw new ValidationException("Unique flightID Violation");	
-        	} 
-        } 
+        if (bookingFlight != null) {
+            Long flightID = bookingFlight.getFlightID() == null ? null : bookingFlight.getFlightID().getId();
+            Long customerID = bookingFlight.getCustomerID() == null ? null : bookingFlight.getCustomerID().getId();
+
+            // Load the flight and the customer together, the checks below are then answered from memory
+            resolver.resolve(ReferenceResolver.ref(Flight.class, flightID), ReferenceResolver.ref(Contact.class, customerID));
+            boolean flightFound = flightNotExists(flightID, bookingFlight.getId());
+            boolean customerFound = customerExists(customerID, bookingFlight.getId());
+
+            if (bookingFlightExists(flightID, bookingFlight.getId(), bookingFlight.getBookingFlightDate()))
+                throw new ValidationException("Unique bookingFlight Violation");
+            if (!flightFound && !customerFound)
+                throw new ValidationException("Unique btc Violation");
+            else if (!customerFound)
+                throw new ValidationException("Unique customerID Violation");
+            else if (!flightFound)
+                throw new ValidationException("Unique flightID Violation");
+        }
         // Check the uniqueness of the customerID address
        /* if (bookingFlightDateAlreadyExists(bookingFlight.getBookingFlightDate(), bookingFlight.getId())) {
             throw new ValidationException("Unique CustomerID Violation");
         }*/
     }
-    
-    boolean customerExists(	Long customerID, Long id) {
-        Contact bookingFlight = null;
-        Contact bookingFlightWithID = null;
-        try {
-            bookingFlight = cbcrud.findById(customerID);
-        } catch (NoResultException e) {
-            // ignore
+
+    /**
+     * <p>Validates all the BookingFlights of a bulk create at once. The items the single create would reject are rejected in
+     * the batch instead, with the same errors: those with bean validation errors with a 400, and with a 409 those whose
+     * flight or customer does not exist, or whose flight is already booked that day, in the database or by an earlier
+     * item of the batch.</p>
+     *
+     * <p>The flights and the customers of the whole batch are loaded through {@link ReferenceResolver#resolveAll},
+     * and the days the flights are booked with one more query, rather than a few queries per item.</p>
+     *
+     * @param batch The BookingFlight objects to be validated
+     */
+    void validateBookingFlights(BulkBatch<BookingFlight> batch) {
+        batch.validateBeans(validator);
+
+        List<Integer> pending = batch.pending();
+        Set<Long> flightIDs = new HashSet<Long>();
+        Set<Long> customerIDs = new HashSet<Long>();
+        Date first = null;
+        Date last = null;
+        for (int index : pending) {
+            BookingFlight bookingFlight = batch.get(index);
+            flightIDs.add(bookingFlight.getFlightID() == null ? null : bookingFlight.getFlightID().getId());
+            customerIDs.add(bookingFlight.getCustomerID() == null ? null : bookingFlight.getCustomerID().getId());
+            Date date = bookingFlight.getBookingFlightDate();
+            if (date != null) {
+                first = first == null || date.before(first) ? date : first;
+                last = last == null || date.after(last) ? date : last;
+            }
         }
+        flightIDs.remove(null);
+        resolver.resolveAll(Flight.class, flightIDs);
+        resolver.resolveAll(Contact.class, customerIDs);
+        Set<Object> taken = flightIDs.isEmpty() || first == null
+            ? new HashSet<Object>() : bcrud.findTakenDays(flightIDs, first, last);
 
-        if (bookingFlight != null && id != null) {
-            try {
-                bookingFlightWithID = cbcrud.findById(id);
-                if (bookingFlightWithID != null && bookingFlightWithID.getId().equals(customerID)) {
-                    bookingFlight = null;
-                }
-                
-            } catch (NoResultException e) {
-                // ignore
+        for (int index : pending) {
+            BookingFlight bookingFlight = batch.get(index);
+            Long flightID = bookingFlight.getFlightID() == null ? null : bookingFlight.getFlightID().getId();
+            Long customerID = bookingFlight.getCustomerID() == null ? null : bookingFlight.getCustomerID().getId();
+            boolean flightFound = resolver.exists(Flight.class, flightID);
+            boolean customerFound = resolver.exists(Contact.class, customerID);
+            Object day = BulkBatch.dayKey(flightID, bookingFlight.getBookingFlightDate());
+
+            if (day != null && taken.contains(day)) {
+                batch.conflict(index, "bookingFlight", "That flightID and/or date are existed, Please check you information carefully");
+            } else if (!flightFound && !customerFound) {
+                batch.conflict(index, "btc", "That flightDate and/or customer are not  existed, Please check you information carefully");
+            } else if (!customerFound) {
+                batch.conflict(index, "customerID", "That customerID is not existed, Please check you information carefully");
+            } else if (!flightFound) {
+                batch.conflict(index, "flightID", "That flightID is not existed, Please check you information carefully");
+            } else if (day != null) {
+                // The flight is no longer free that day for the later items of the batch
+                taken.add(day);
             }
         }
-        return bookingFlight != null;
+    }
+    
+    /**
+     * <p>Checks that the customer making the booking exists.</p>
+     *
+     * <p>The customer is looked up through the request's {@link ReferenceResolver}, so asking again after
+     * validateBookingFlight() has resolved it does not go back to the database.</p>
+     *
+     * @param customerID The id of the customer to check
+     * @param id The id of the bookingFlight being validated
+     * @return boolean which represents whether the customer was found
+     */
+    boolean customerExists(Long customerID, Long id) {
+        return resolver.exists(Contact.class, customerID);
     }
     
     boolean flightExists(Long flightID, Long id) {
@@ -139,27 +191,15 @@ public class BookingFlightValidator {
         return bookingFlight != null;
     }
     
+    /**
+     * <p>Checks that the flight being booked exists (despite the name, true means it was found).</p>
+     *
+     * @param flightID The id of the flight to check
+     * @param id The id of the bookingFlight being validated
+     * @return boolean which represents whether the flight was found
+     */
     boolean flightNotExists(Long flightID, Long id) {
-        Flight bookingFlight = null;
-        Flight bookingFlightWithID = null;
-        try {
-            bookingFlight = fbcrud.findById(flightID);
-        } catch (NoResultException e) {
-            // ignore
-        }
-
-        if (bookingFlight != null && id != null) {
-            try {
-                bookingFlightWithID = fbcrud.findById(id);
-                if (bookingFlightWithID != null && bookingFlightWithID.getId().equals(flightID)) {
-                    bookingFlight = null;
-                }
-                
-            } catch (NoResultException e) {
-                // ignore
-            }
-        }
-        return bookingFlight != null;
+        return resolver.exists(Flight.class, flightID);
     }
 
     /**
@@ -196,28 +236,28 @@ public class BookingFlightValidator {
         }
         return bookingFlight != null;
     }
+    /**
+     * <p>Checks if the flight is already booked on the given date by a bookingFlight other than the one being
+     * validated.</p>
+     *
+     * <p>It is answered from the {@link AvailabilityIndex} once that is loaded, and by the database until then. A day
+     * the index has not heard of yet reads as free, the unique constraint still turns the booking down on insert. A day
+     * it has as taken is confirmed by the database, since it may have been freed on another node.</p>
+     *
+     * @param flightID The id of the flight to check
+     * @param bookingFlightId The id of the bookingFlight being updated; or null when creating
+     * @param date The date to check
+     * @return boolean which represents whether the flight is already taken on that date
+     */
     boolean bookingFlightExists(Long flightID, Long bookingFlightId, Date date) {
-        List<BookingFlight> bookingFlights = null;
-        BookingFlight bookingFlight = null;
-        try {
-            bookingFlights = bcrud.findListByFlightID(flightID);
-        } catch (NoResultException e) {
-            // ignore
+        if (flightID == null || date == null) {
+            return false;
         }
-
-        try {
-        	for (BookingFlight temp: bookingFlights)
-            {
-        		System.out.println(temp.getId());
-        		System.out.println(temp.getBookingFlightDate());
-            	if (temp.getBookingFlightDate().equals(date)&&temp.getId()!=bookingFlightId)
-            		bookingFlight=temp;
-            }
-		} catch (Exception e) {
-			// TODO: handle exception
-		}
-        
-        
-        return bookingFlight != null;
+        // Most days are free, and the index says so without a query. One it has as taken may have been freed on
+        // another node, so the database has the last word before the booking is turned down.
+        if (AvailabilityIndex.FLIGHTS.isReady() && !AvailabilityIndex.FLIGHTS.isTaken(flightID, date, bookingFlightId)) {
+            return false;
+        }
+        return bcrud.existsByFlightIDAndDate(flightID, date, bookingFlightId);
     }
 }
@@ -10,6 +10,12 @@ import javax.xml.bind.annotation.XmlRootElement;
 
 import org.jboss.quickstarts.wfk.contact.Contact;
 import org.jboss.quickstarts.wfk.contact.Hotel;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Index;
+import org.codehaus.jackson.annotate.JsonIgnore;
+import org.jboss.quickstarts.wfk.util.AvailabilityIndex;
+import org.jboss.quickstarts.wfk.util.PooledIdGenerator;
+import org.jboss.quickstarts.wfk.util.Versioned;
 
 /*
  * The @NamedQueries included here are for searching against the table that reflects this object.  This is the most efficient
@@ -17,28 +23,87 @@ import org.jboss.quickstarts.wfk.contact.Hotel;
  */
 @Entity
 @NamedQueries({
-    @NamedQuery(name = BookingHotel.FIND_ALL, query = "SELECT b FROM BookingHotel b ORDER BY b.id ASC"),
+    @NamedQuery(name = BookingHotel.FIND_ALL, query = "SELECT b FROM BookingHotel b" + BookingHotel.FETCH_REFERENCES + " ORDER BY b.id ASC"),
+    @NamedQuery(name = BookingHotel.FIND_ALL_AFTER, query = "SELECT b FROM BookingHotel b" + BookingHotel.FETCH_REFERENCES + " WHERE b.id > :id ORDER BY b.id ASC"),
+    @NamedQuery(name = BookingHotel.FIND_BY_ID, query = "SELECT b FROM BookingHotel b" + BookingHotel.FETCH_REFERENCES + " WHERE b.id = :id"),
+    @NamedQuery(name = BookingHotel.FIND_ALL_SUMMARIES,
+        query = "SELECT NEW org.jboss.quickstarts.wfk.bookinghotel.BookingHotelSummary("
+        + "b.id, b.bookingHotelDate, c.id, c.firstName, c.lastName, h.id, h.hotelName) "
+        + "FROM BookingHotel b LEFT JOIN b.contact c LEFT JOIN b.hotel h "
+        + "ORDER BY b.id ASC"),
+    @NamedQuery(name = BookingHotel.FIND_ALL_SUMMARIES_AFTER,
+        query = "SELECT NEW org.jboss.quickstarts.wfk.bookinghotel.BookingHotelSummary("
+        + "b.id, b.bookingHotelDate, c.id, c.firstName, c.lastName, h.id, h.hotelName) "
+        + "FROM BookingHotel b LEFT JOIN b.contact c LEFT JOIN b.hotel h "
+        + "WHERE b.id > :id ORDER BY b.id ASC"),
+    @NamedQuery(name = BookingHotel.FIND_SUMMARIES_BY_CUSTOMER,
+        query = "SELECT NEW org.jboss.quickstarts.wfk.bookinghotel.BookingHotelSummary("
+        + "b.id, b.bookingHotelDate, c.id, c.firstName, c.lastName, h.id, h.hotelName) "
+        + "FROM BookingHotel b LEFT JOIN b.contact c LEFT JOIN b.hotel h "
+        + "WHERE b.contact.id = :customerId ORDER BY b.bookingHotelDate ASC, b.id ASC"),
+    @NamedQuery(name = BookingHotel.FIND_SUMMARIES_BY_CUSTOMER_AFTER,
+        query = "SELECT NEW org.jboss.quickstarts.wfk.bookinghotel.BookingHotelSummary("
+        + "b.id, b.bookingHotelDate, c.id, c.firstName, c.lastName, h.id, h.hotelName) "
+        + "FROM BookingHotel b LEFT JOIN b.contact c LEFT JOIN b.hotel h "
+        + "WHERE b.contact.id = :customerId AND (b.bookingHotelDate > :date OR (b.bookingHotelDate = :date AND b.id > :id)) "
+        + "ORDER BY b.bookingHotelDate ASC, b.id ASC"),
     @NamedQuery(name = BookingHotel.FIND_BY_DATE, query = "SELECT b FROM BookingHotel b WHERE b.bookingHotelDate = :bookingHotelDate"),
-    @NamedQuery(name = BookingHotel.FIND_BY_HOTEL, query = "SELECT b FROM BookingHotel b WHERE b.hotel.id = :hotelId"),
-    @NamedQuery(name = BookingHotel.FIND_BY_CUSTOMER, query = "SELECT b FROM BookingHotel b WHERE b.contact.id = :customerId")
+    @NamedQuery(name = BookingHotel.FIND_BY_HOTEL, query = "SELECT b FROM BookingHotel b" + BookingHotel.FETCH_REFERENCES + " WHERE b.hotel.id = :hotelId"),
+    @NamedQuery(name = BookingHotel.FIND_BY_CUSTOMER, query = "SELECT b FROM BookingHotel b" + BookingHotel.FETCH_REFERENCES + " WHERE b.contact.id = :customerId"),
+    @NamedQuery(name = BookingHotel.FIND_ID_BY_HOTEL_AND_DATE, query = "SELECT b.id FROM BookingHotel b WHERE b.hotel.id = :hotelId AND b.bookingHotelDate = :bookingHotelDate"),
+    @NamedQuery(name = BookingHotel.FIND_OTHER_ID_BY_HOTEL_AND_DATE, query = "SELECT b.id FROM BookingHotel b WHERE b.hotel.id = :hotelId AND b.bookingHotelDate = :bookingHotelDate AND b.id <> :id"),
+    @NamedQuery(name = BookingHotel.FIND_DAYS_BY_HOTELS, query = "SELECT b.hotel.id, b.bookingHotelDate FROM BookingHotel b WHERE b.hotel.id IN :hotelIds AND b.bookingHotelDate BETWEEN :first AND :last"),
+    @NamedQuery(name = BookingHotel.FIND_VERSION,
+        query = "SELECT NEW org.jboss.quickstarts.wfk.util.EntityVersion(b.version, b.lastModified, "
+        + "c.version, c.lastModified, h.version, h.lastModified) "
+        + "FROM BookingHotel b LEFT JOIN b.contact c LEFT JOIN b.hotel h WHERE b.id = :id"),
+    @NamedQuery(name = BookingHotel.FIND_DAYS, query = "SELECT b.id, b.hotel.id, b.bookingHotelDate FROM BookingHotel b")
 })
 @XmlRootElement
-@Table(name = "BookingHotel", uniqueConstraints = @UniqueConstraint(columnNames = "id"))
+/*
+ * A hotel can be booked once per date. The unique constraint lets the database enforce that even when two bookings race
+ * past the validator, and its index is what the availability check and FIND_BY_HOTEL (a leading column prefix) use.
+ * The other lookups get an index of their own. The one on the customer goes on with the date, so that the itinerary of
+ * a customer (FIND_SUMMARIES_BY_CUSTOMER) is read in order from it.
+ */
+@Table(name = "BookingHotel", uniqueConstraints = @UniqueConstraint(columnNames = {"hotelId", "bookingHotel_date"}))
+@org.hibernate.annotations.Table(appliesTo = "BookingHotel", indexes = {
+    @Index(name = "IDX_BOOKINGHOTEL_CUSTOMER", columnNames = {"customerId", "bookingHotel_date"}),
+    @Index(name = "IDX_BOOKINGHOTEL_DATE", columnNames = "bookingHotel_date")
+})
 
-public class BookingHotel implements Serializable {
+public class BookingHotel implements Serializable, Versioned {
     /** Default value included to remove warning. Remove or modify at will. **/
     private static final long serialVersionUID = 1L;
     
     public static final String FIND_ALL = "BookingHotel.findAll";
+    public static final String FIND_ALL_AFTER = "BookingHotel.findAllAfter";
+    public static final String FIND_BY_ID = "BookingHotel.findById";
+    public static final String FIND_ALL_SUMMARIES = "BookingHotel.findAllSummaries";
+    public static final String FIND_ALL_SUMMARIES_AFTER = "BookingHotel.findAllSummariesAfter";
+    public static final String FIND_SUMMARIES_BY_CUSTOMER = "BookingHotel.findSummariesByCustomer";
+    public static final String FIND_SUMMARIES_BY_CUSTOMER_AFTER = "BookingHotel.findSummariesByCustomerAfter";
     public static final String FIND_BY_DATE = "BookingHotel.findByDate";
     public static final String FIND_BY_HOTEL = "BookingHotel.findByHotel";
     public static final String FIND_BY_CUSTOMER = "BookingHotel.findByCustomer";
+    public static final String FIND_ID_BY_HOTEL_AND_DATE = "BookingHotel.findIdByHotelAndDate";
+    public static final String FIND_OTHER_ID_BY_HOTEL_AND_DATE = "BookingHotel.findOtherIdByHotelAndDate";
+    public static final String FIND_DAYS_BY_HOTELS = "BookingHotel.findDaysByHotels";
+    public static final String FIND_VERSION = "BookingHotel.findVersion";
+    public static final String FIND_DAYS = "BookingHotel.findDays";
+
+    /*
+     * The customer and hotel of a BookingHotel are lazy, so that loading it for a check (em.find(), the validators)
+     * reads its own row only. The queries whose result goes back to the client in full fetch them along in the same
+     * statement instead.
+     */
+    static final String FETCH_REFERENCES = " LEFT JOIN FETCH b.hotel LEFT JOIN FETCH b.contact";
     
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "hotelId")
     private Hotel hotel;
     
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "customerId")
     private Contact contact;
     
@@ -54,8 +119,16 @@ public class BookingHotel implements Serializable {
 
     
     @Id
-    @GeneratedValue(strategy = GenerationType.TABLE)
+    @GeneratedValue(generator = PooledIdGenerator.NAME)
+    @GenericGenerator(name = PooledIdGenerator.NAME, strategy = PooledIdGenerator.STRATEGY)
     private Long id;
+
+    @Version
+    private long version;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "last_modified")
+    private Date lastModified;
     
     @NotNull
     @Future(message = "BookingHoteldates can not be in the past. Please choose one from the future")
@@ -91,5 +164,45 @@ public class BookingHotel implements Serializable {
         this.bookingHotelDate = bookingHotelDate;
     }
 
+    @JsonIgnore
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    @JsonIgnore
+    public void setVersion(long version) {
+        this.version = version;
+    }
 
-}
\ No newline at end of file
+    @JsonIgnore
+    @Override
+    public Date getLastModified() {
+        return lastModified;
+    }
+
+    @JsonIgnore
+    public void setLastModified(Date lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        lastModified = new Date();
+    }
+
+    /**
+     * <p>Keeps the {@link AvailabilityIndex} up to date, once the transaction commits.</p>
+     */
+    @PostPersist
+    @PostUpdate
+    void claimDay() {
+        AvailabilityIndex.HOTELS.claimAfterCommit(id, hotel == null ? null : hotel.getId(), bookingHotelDate);
+    }
+
+    @PostRemove
+    void releaseDay() {
+        AvailabilityIndex.HOTELS.releaseAfterCommit(id);
+    }
+}
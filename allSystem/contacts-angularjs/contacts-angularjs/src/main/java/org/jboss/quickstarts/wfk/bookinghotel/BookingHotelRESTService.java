@@ -1,15 +1,19 @@
 package org.jboss.quickstarts.wfk.bookinghotel;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.ejb.NoSuchEntityException;
 import javax.ejb.Stateless;
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.interceptor.Interceptors;
 import javax.persistence.NoResultException;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
@@ -21,11 +25,25 @@ import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.WebApplicationException;
 
+import org.jboss.quickstarts.wfk.util.BulkBatch;
+import org.jboss.quickstarts.wfk.util.BulkMode;
+import org.jboss.quickstarts.wfk.util.ConditionalRequests;
+import org.jboss.quickstarts.wfk.util.EntityVersion;
+import org.jboss.quickstarts.wfk.util.JsonExporter;
+import org.jboss.quickstarts.wfk.util.MetricsInterceptor;
+import org.jboss.quickstarts.wfk.util.Page;
+import org.jboss.quickstarts.wfk.util.PageCursor;
+import org.jboss.quickstarts.wfk.util.View;
+
 /*
  * The Path annotation defines this as a REST Web Service using JAX-RS.
  * 
@@ -40,41 +58,85 @@ import javax.ws.rs.WebApplicationException;
 @Consumes(MediaType.APPLICATION_JSON)
 @Produces(MediaType.APPLICATION_JSON)
 @Stateless
+@Interceptors(MetricsInterceptor.class)
 public class BookingHotelRESTService {
     @Inject
     private @Named("logger") Logger log;
     
     @Inject
     private BookingHotelService service;
+
+    @Inject
+    private JsonExporter exporter;
     
     /**
-     * <p>Search for and return all the BookingHotels.  They are sorted alphabetically by name.</p>
+     * <p>Search for and return the BookingHotels, one page at a time.  They are sorted by id.</p>
+     *
+     * <p>Each response carries the cursor of the following page in the {@value PageCursor#NEXT_CURSOR_HEADER} header,
+     * which is absent on the last page. Add stream=true to get all of them at once instead, for an export.</p>
+     *
+     * <p>Add view=summary to get a {@link BookingHotelSummary} of each BookingHotel instead, with only the ids, the
+     * date and the names to show. It is read in a single statement, without loading the BookingHotels and everything
+     * they refer to.</p>
      * 
+     * @param cursor The cursor of the page to return; or null for the first page
+     * @param limit The maximum number of BookingHotels to return; or null for the default page size
+     * @param stream If true, all the BookingHotels are streamed back in a single response and cursor and limit are ignored
+     * @param view summary for BookingHotelSummary objects instead of BookingHotels; or null for the full view
      * @return A Response containing a list of BookingHotels
      */
     @GET
-    public Response retrieveAllBookingHotels() {
-        List<BookingHotel> bookingHotels = service.findAllOrderedById();
-        return Response.ok(bookingHotels).build();
+    public Response retrieveAllBookingHotels(@QueryParam("cursor") String cursor, @QueryParam("limit") Integer limit,
+            @QueryParam("stream") boolean stream, @QueryParam("view") String view) {
+        boolean summary = View.of(view) == View.SUMMARY;
+        if (stream) {
+            // Written row by row as RESTEasy sends the response, instead of being built in memory first
+            String query = summary ? BookingHotel.FIND_ALL_SUMMARIES : BookingHotel.FIND_ALL;
+            return Response.ok(exporter.stream(query)).build();
+        }
+        int pageSize = PageCursor.limit(limit);
+        if (summary) {
+            Page<BookingHotelSummary> summaries = service.findSummaryPage(PageCursor.decode(cursor, 1), pageSize);
+            return Response.ok(summaries.getItems())
+                .header(PageCursor.NEXT_CURSOR_HEADER, summaries.getNextCursor()).build();
+        }
+        Page<BookingHotel> bookingHotels = service.findPage(PageCursor.decode(cursor, 1), pageSize);
+        return Response.ok(bookingHotels.getItems()).header(PageCursor.NEXT_CURSOR_HEADER, bookingHotels.getNextCursor()).build();
     }
 
     
     /**
      * <p>Search for and return a BookingHotel identified by id.</p>
+     *
+     * <p>The response carries the versions of the BookingHotel and of what it refers to as its ETag, and the latest of their
+     * Last-Modified, as the representation embeds them. A client that sends them back in If-None-Match or
+     * If-Modified-Since gets a 304 (Not Modified) while its copy is current, found out from the versions alone without
+     * loading the BookingHotel.</p>
      * 
      * @param id The long parameter value provided as a BookingHotel's id
+     * @param request The request, to evaluate its preconditions
+     * @param headers The headers of the request
      * @return A Response containing a single BookingHotel
      */
     @GET
     @Path("/{id:[0-9]+}")
-    public Response retrieveBookingHotelById(@PathParam("id") long id) {
-        BookingHotel bookingHotel = service.findById(id);
+    public Response retrieveBookingHotelById(@PathParam("id") long id, @Context Request request, @Context HttpHeaders headers) {
+        if (ConditionalRequests.isConditional(headers)) {
+            Response notModified = ConditionalRequests.notModified(request, headers, service.findVersion(id));
+            if (notModified != null) {
+                return notModified;
+            }
+        }
+        BookingHotel bookingHotel = service.findWithReferences(id);
         if (bookingHotel == null) {
             throw new WebApplicationException(Response.Status.NOT_FOUND);
         }
-        log.info("findById " + id + ": found BookingHotel = " + bookingHotel.getId() + " " + bookingHotel.getCustomer()+ " " + bookingHotel.getHotel() + " " + bookingHotel.getBookingHotelDate());
+        log.log(Level.FINE, "findById {0}: found BookingHotel = {1} {2} {3} {4}",
+            new Object[] {id, bookingHotel.getId(), bookingHotel.getCustomer(), bookingHotel.getHotel(), bookingHotel.getBookingHotelDate()});
         
-        return Response.ok(bookingHotel).build();
+        // The representation embeds what the BookingHotel refers to, so does its version
+        return ConditionalRequests.ok(bookingHotel,
+                EntityVersion.of(bookingHotel, bookingHotel.getCustomer(), bookingHotel.getHotel())).build();
     }
     
     @GET
@@ -111,7 +173,8 @@ public class BookingHotelRESTService {
     @SuppressWarnings("unused")
     @POST
     public Response createBookingHotel(BookingHotel bookingHotel) {
-        log.info("createBookingHotel started. BookingHotel = " + bookingHotel.getId() + " " + bookingHotel.getCustomer()+ " " + bookingHotel.getHotel() + " " + bookingHotel.getBookingHotelDate());
+        log.log(Level.FINE, "createBookingHotel started. BookingHotel = {0} {1} {2} {3}",
+            new Object[] {bookingHotel.getId(), bookingHotel.getCustomer(), bookingHotel.getHotel(), bookingHotel.getBookingHotelDate()});
         if (bookingHotel == null) {
             throw new WebApplicationException(Response.Status.BAD_REQUEST);
         }
@@ -125,13 +188,14 @@ public class BookingHotelRESTService {
             // Create a "Resource Created" 201 Response and pass the bookingHotel back in case it is needed.
             builder = Response.status(Response.Status.CREATED).entity(bookingHotel);
             
-            log.info("createBookingHotel completed. BookingHotel = " + bookingHotel.getId() + " " + bookingHotel.getCustomer()+ " " + bookingHotel.getHotel() + " " + bookingHotel.getBookingHotelDate());
+            log.log(Level.FINE, "createBookingHotel completed. BookingHotel = {0} {1} {2} {3}",
+                new Object[] {bookingHotel.getId(), bookingHotel.getCustomer(), bookingHotel.getHotel(), bookingHotel.getBookingHotelDate()});
         } catch (ConstraintViolationException ce) {
-            log.info("ConstraintViolationException - " + ce.toString());
+            log.log(Level.INFO, "ConstraintViolationException - {0}", ce);
             // Handle bean validation issues
             builder = createViolationResponse(ce.getConstraintViolations());
         } catch (ValidationException e) {
-            log.info("ValidationException - " + e.toString());
+            log.log(Level.INFO, "ValidationException - {0}", e);
             // Handle the unique constrain violation
             Map<String, String> responseObj = new HashMap<String, String>();
             //responseObj.put("bookingHotelDate", "That hotel is already booked that day, please use book another day");
@@ -149,7 +213,7 @@ public class BookingHotelRESTService {
                 responseObj.put("bookingHotel", "That hotel is already booked that day");
                 builder = Response.status(Response.Status.CONFLICT).entity(responseObj);
         } catch (Exception e) {
-            log.info("Exception - " + e.toString());
+            log.log(Level.INFO, "Exception - {0}", e);
             // Handle generic exceptions
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("error", e.getMessage());
@@ -159,31 +223,90 @@ public class BookingHotelRESTService {
         return builder.build();
     }
 
+    /**
+     * <p>Creates several BookingHotels at once from a JSON array of BookingHotel objects.</p>
+     *
+     * <p>The whole batch is validated in one go, with the same checks and errors as {@link #createBookingHotel(BookingHotel)}, and the
+     * items that pass are inserted in JDBC batches. In <i>atomic</i> mode (the default) either all the BookingHotels are
+     * created, with a 201, or none is, with a 400 or 409. In <i>bestEffort</i> mode the valid ones are created anyway and
+     * the response is a 207. Either way the body gives the status, id or errors of every item, in order.</p>
+     *
+     * @param bookingHotels The BookingHotel objects, constructed automatically from JSON input
+     * @param mode atomic or bestEffort; or null for atomic
+     * @return A Response indicating the outcome of every create
+     */
+    @POST
+    @Path("/bulk")
+    public Response createBookingHotels(List<BookingHotel> bookingHotels, @QueryParam("mode") String mode) {
+        BulkMode bulkMode = BulkMode.of(mode);
+        return createAll(new BulkBatch<BookingHotel>(bookingHotels), bulkMode);
+    }
+
+    /**
+     * <p>Creates several BookingHotels at once from newline delimited JSON, one BookingHotel object per line. Otherwise the same as
+     * {@link #createBookingHotels(List, String)}; a line that cannot be read is rejected with a 400 of its own.</p>
+     *
+     * @param body The request body, in {@value BulkBatch#NDJSON}
+     * @param mode atomic or bestEffort; or null for atomic
+     * @return A Response indicating the outcome of every create
+     * @throws IOException If the request body cannot be read
+     */
+    @POST
+    @Path("/bulk")
+    @Consumes(BulkBatch.NDJSON)
+    public Response createBookingHotelsFromNdjson(InputStream body, @QueryParam("mode") String mode) throws IOException {
+        BulkMode bulkMode = BulkMode.of(mode);
+        return createAll(BulkBatch.fromNdjson(body, BookingHotel.class), bulkMode);
+    }
+
+    private Response createAll(BulkBatch<BookingHotel> batch, BulkMode mode) {
+        log.log(Level.FINE, "createBookingHotels started. {0} BookingHotels, {1}", new Object[] {batch.size(), mode});
+
+        service.createAll(batch, mode);
+        Response response = batch.toResponse(mode);
+
+        log.log(Level.FINE, "createBookingHotels completed. Status = {0}", response.getStatus());
+        return response;
+    }
+
     /**
      * <p>Updates a bookingHotel with the ID provided in the BookingHotel. Performs validation, and will return a JAX-RS response with either 200 ok,
      * or with a map of fields, and related errors.</p>
+     *
+     * <p>If the client sends the ETag it read in If-Match, or its Last-Modified in If-Unmodified-Since, the update is only
+     * applied if the BookingHotel has not changed since; otherwise the response is a 412 (Precondition Failed).</p>
      * 
      * @param bookingHotel The BookingHotel object, constructed automatically from JSON input, to be <i>updated</i> via {@link BookingHotelService#update(BookingHotel)}
      * @param id The long parameter value provided as the id of the BookingHotel to be updated
+     * @param request The request, to evaluate its If-Match or If-Unmodified-Since
+     * @param headers The headers of the request
      * @return A Response indicating the outcome of the create operation
      */
     @PUT
     @Path("/{id:[0-9][0-9]*}")
-    public Response updateBookingHotel(@PathParam("id") long id, BookingHotel bookingHotel) {
+    public Response updateBookingHotel(@PathParam("id") long id, BookingHotel bookingHotel, @Context Request request,
+            @Context HttpHeaders headers) {
         if (bookingHotel == null) {
             throw new WebApplicationException(Response.Status.BAD_REQUEST);
         }
-        log.info("updateBookingHotel started. BookingHotel = " +  bookingHotel.getId() + " " + bookingHotel.getCustomer()+ " " + bookingHotel.getHotel() + " " + bookingHotel.getBookingHotelDate());
+        log.log(Level.FINE, "updateBookingHotel started. BookingHotel = {0} {1} {2} {3}",
+            new Object[] {bookingHotel.getId(), bookingHotel.getCustomer(), bookingHotel.getHotel(), bookingHotel.getBookingHotelDate()});
 
         if (bookingHotel.getId() != id) {
             // The client attempted to update the read-only Id. This is not permitted.
             Response response = Response.status(Response.Status.CONFLICT).entity("The bookingHotel ID cannot be modified").build();
             throw new WebApplicationException(response);
         }
-        if (service.findById(bookingHotel.getId()) == null) {
+        BookingHotel current = service.findById(bookingHotel.getId());
+        if (current == null) {
             // Verify if the contact exists. Return 404, if not present.
             throw new WebApplicationException(Response.Status.NOT_FOUND);
         }
+        // Checked against the version of the representation the client read, references included
+        ConditionalRequests.checkUnchanged(request, headers, service.findVersion(id));
+        // The update replaces the version that was just checked, and the timestamp only moves if something changed
+        bookingHotel.setVersion(current.getVersion());
+        bookingHotel.setLastModified(current.getLastModified());
         
         Response.ResponseBuilder builder = null;
         
@@ -195,20 +318,21 @@ public class BookingHotelRESTService {
             // Create an OK Response and pass the bookingHotel back in case it is needed.
             builder = Response.ok(bookingHotel);
 
-            log.info("updateBookingHotel completed. BookingHotel = " + bookingHotel.getId()+ " " + bookingHotel.getCustomer()+ " " + bookingHotel.getHotel() + " " + bookingHotel.getBookingHotelDate());
+            log.log(Level.FINE, "updateBookingHotel completed. BookingHotel = {0} {1} {2} {3}",
+                new Object[] {bookingHotel.getId(), bookingHotel.getCustomer(), bookingHotel.getHotel(), bookingHotel.getBookingHotelDate()});
         } catch (ConstraintViolationException ce) {
-            log.info("ConstraintViolationException - " + ce.toString());
+            log.log(Level.INFO, "ConstraintViolationException - {0}", ce);
             // Handle bean validation issues
             builder = createViolationResponse(ce.getConstraintViolations());
         } catch (ValidationException e) {
-            log.info("ValidationException - " + e.toString());
+            log.log(Level.INFO, "ValidationException - {0}", e);
             // Handle the unique constrain violation
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("error", "This is where errors are displayed that are not related to a specific field");
             responseObj.put("anotherError", "You can find this error message in /src/main/java/org/jboss/quickstarts/wfk/rest/ContactRESTService.java line 242.");
             builder = Response.status(Response.Status.CONFLICT).entity(responseObj);
         } catch (Exception e) {
-            log.info("Exception - " + e.toString());
+            log.log(Level.INFO, "Exception - {0}", e);
             // Handle generic exceptions
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("error", e.getMessage());
@@ -229,7 +353,7 @@ public class BookingHotelRESTService {
     @DELETE
     @Path("/{id:[0-9][0-9]*}")
     public Response deleteBookingHotel(@PathParam("id") Long id) {
-        log.info("deleteBookingHotel started. BookingHotel ID = " + id);
+        log.log(Level.FINE, "deleteBookingHotel started. BookingHotel ID = {0}", id);
         Response.ResponseBuilder builder = null;
 
         Map<String, String> responseObj = new HashMap<String, String>();
@@ -243,9 +367,10 @@ public class BookingHotelRESTService {
             }
 
             builder = Response.noContent();
-            log.info("deleteBookingHotel completed. BookingHotel = " + bookingHotel.getId() + " " + bookingHotel.getCustomer()+ " " + bookingHotel.getHotel() + " " + bookingHotel.getBookingHotelDate());
+            log.log(Level.FINE, "deleteBookingHotel completed. BookingHotel = {0} {1} {2} {3}",
+                new Object[] {bookingHotel.getId(), bookingHotel.getCustomer(), bookingHotel.getHotel(), bookingHotel.getBookingHotelDate()});
         } catch (Exception e) {
-            log.info("Exception - " + e.toString());
+            log.log(Level.INFO, "Exception - {0}", e);
             // Handle generic exceptions
             responseObj.put("error", e.getMessage());
             builder = Response.status(Response.Status.BAD_REQUEST).entity(responseObj);
@@ -262,7 +387,7 @@ public class BookingHotelRESTService {
      * @return A Bad Request (400) Response containing all violation messages
      */
     private Response.ResponseBuilder createViolationResponse(Set<ConstraintViolation<?>> violations) {
-        log.fine("Validation completed. violations found: " + violations.size());
+        log.log(Level.FINE, "Validation completed. violations found: {0}", violations.size());
 
         Map<String, String> responseObj = new HashMap<String, String>();
 
@@ -7,9 +7,19 @@ import javax.persistence.TypedQuery;
 import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.jboss.quickstarts.wfk.util.BulkBatch;
+import org.jboss.quickstarts.wfk.util.Claims;
+import org.jboss.quickstarts.wfk.util.EntityVersion;
+import org.jboss.quickstarts.wfk.util.Page;
+import org.jboss.quickstarts.wfk.util.PageCursor;
 
 public class BookingHotelRepository {
 
@@ -23,6 +33,63 @@ public class BookingHotelRepository {
         TypedQuery<BookingHotel> query = em.createNamedQuery(BookingHotel.FIND_ALL, BookingHotel.class); 
         return query.getResultList();
     }
+
+    /**
+     * <p>Returns one page of persisted {@link BookingHotel} objects, in the order of {@link BookingHotel#FIND_ALL}, starting right
+     * after the given sort key.</p>
+     *
+     * @param after The sort key (id) of the last BookingHotel of the previous page; or null for the first page
+     * @param limit The maximum number of BookingHotel objects to return
+     * @return The Page of BookingHotel objects
+     */
+    Page<BookingHotel> findPage(String[] after, int limit) {
+        TypedQuery<BookingHotel> query;
+        if (after == null) {
+            query = em.createNamedQuery(BookingHotel.FIND_ALL, BookingHotel.class);
+        } else {
+            query = em.createNamedQuery(BookingHotel.FIND_ALL_AFTER, BookingHotel.class)
+                .setParameter("id", Long.valueOf(after[0]));
+        }
+        // One more than asked for, to know whether there is a next page
+        List<BookingHotel> rows = query.setMaxResults(limit + 1).getResultList();
+        return PageCursor.page(rows, limit, SORT_KEY);
+    }
+
+    private static final PageCursor.SortKey<BookingHotel> SORT_KEY = new PageCursor.SortKey<BookingHotel>() {
+        @Override
+        public Object[] of(BookingHotel bookingHotel) {
+            return new Object[] {bookingHotel.getId()};
+        }
+    };
+
+    /**
+     * <p>Returns one page of the {@link BookingHotelSummary} of persisted BookingHotel objects, in the order of
+     * {@link BookingHotel#FIND_ALL_SUMMARIES}, starting right after the given sort key. The page is read in a single
+     * statement, without loading any BookingHotel or what it refers to.</p>
+     *
+     * @param after The sort key (id) of the last BookingHotel of the previous page; or null for the first page
+     * @param limit The maximum number of BookingHotelSummary objects to return
+     * @return The Page of BookingHotelSummary objects
+     */
+    Page<BookingHotelSummary> findSummaryPage(String[] after, int limit) {
+        TypedQuery<BookingHotelSummary> query;
+        if (after == null) {
+            query = em.createNamedQuery(BookingHotel.FIND_ALL_SUMMARIES, BookingHotelSummary.class);
+        } else {
+            query = em.createNamedQuery(BookingHotel.FIND_ALL_SUMMARIES_AFTER, BookingHotelSummary.class)
+                .setParameter("id", Long.valueOf(after[0]));
+        }
+        List<BookingHotelSummary> rows = query.setMaxResults(limit + 1).getResultList();
+        return PageCursor.page(rows, limit, SUMMARY_SORT_KEY);
+    }
+
+    private static final PageCursor.SortKey<BookingHotelSummary> SUMMARY_SORT_KEY =
+        new PageCursor.SortKey<BookingHotelSummary>() {
+            @Override
+            public Object[] of(BookingHotelSummary summary) {
+                return new Object[] {summary.getId()};
+            }
+        };
     
     List<BookingHotel> findByHotelId(Long hotelId) {
         TypedQuery<BookingHotel> query = em.createNamedQuery(BookingHotel.FIND_BY_HOTEL, BookingHotel.class).setParameter("hotelId", hotelId); 
@@ -34,6 +101,26 @@ public class BookingHotelRepository {
         return query.getResultList();
     }
 
+    /**
+     * <p>Checks whether the given hotel already has a BookingHotel on the given date, without loading any BookingHotel.</p>
+     *
+     * @param hotelId The id of the hotel to check
+     * @param bookingHotelDate The date to check
+     * @param excludeId The id of a BookingHotel to ignore (the one being updated); or null
+     * @return true if another booking holds the hotel on that date
+     */
+    boolean existsByHotelAndDate(Long hotelId, Date bookingHotelDate, Long excludeId) {
+        TypedQuery<Long> query;
+        if (excludeId == null) {
+            query = em.createNamedQuery(BookingHotel.FIND_ID_BY_HOTEL_AND_DATE, Long.class);
+        } else {
+            query = em.createNamedQuery(BookingHotel.FIND_OTHER_ID_BY_HOTEL_AND_DATE, Long.class)
+                .setParameter("id", excludeId);
+        }
+        query.setParameter("hotelId", hotelId).setParameter("bookingHotelDate", bookingHotelDate).setMaxResults(1);
+        return !query.getResultList().isEmpty();
+    }
+
     /**
      * <p>Returns a single BookingHotel object, specified by a Long id.<p/>
      *
@@ -43,6 +130,32 @@ public class BookingHotelRepository {
     BookingHotel findById(Long id) {
         return em.find(BookingHotel.class, id);
     }
+
+    /**
+     * <p>Returns a single BookingHotel object, specified by a Long id, together with its customer and hotel, all read
+     * in one statement. {@link #findById(Long)} leaves them to be loaded on first use, which is what a check needs;
+     * this is for a BookingHotel that is sent back to the client in full.</p>
+     *
+     * @param id The id field of the BookingHotel to be returned
+     * @return The BookingHotel with the specified id; or null if there is none
+     */
+    BookingHotel findWithReferences(Long id) {
+        List<BookingHotel> rows = em.createNamedQuery(BookingHotel.FIND_BY_ID, BookingHotel.class)
+            .setParameter("id", id).getResultList();
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    /**
+     * <p>Returns the version and last modification time of a BookingHotel, specified by a Long id, without loading it.</p>
+     *
+     * @param id The id field of the BookingHotel
+     * @return The version of the BookingHotel with the specified id; or null if there is none
+     */
+    EntityVersion findVersion(Long id) {
+        List<EntityVersion> versions = em.createNamedQuery(BookingHotel.FIND_VERSION, EntityVersion.class)
+            .setParameter("id", id).getResultList();
+        return versions.isEmpty() ? null : versions.get(0);
+    }
     
     BookingHotel findByDate(Date bookingHotelDate){
     	TypedQuery<BookingHotel> query = em.createNamedQuery(BookingHotel.FIND_BY_DATE, BookingHotel.class) .setParameter("bookingHotelDate", bookingHotelDate);
@@ -59,6 +172,29 @@ public class BookingHotelRepository {
     }
 
     
+    /**
+     * <p>Returns the days on which the given hotels are booked between first and last, as
+     * {@link BulkBatch#dayKey(Long, Date)} keys, for the validation of a bulk create. One query per
+     * {@value BulkBatch#IN_LIST_SIZE} hotels, instead of one per BookingHotel.</p>
+     *
+     * @param hotelIds The ids of the hotels
+     * @param first The first day to look at
+     * @param last The last day to look at
+     * @return The keys of the days the hotels are taken
+     */
+    Set<Object> findTakenDays(Collection<Long> hotelIds, Date first, Date last) {
+        Set<Object> taken = new HashSet<Object>();
+        for (List<Long> part : BulkBatch.partition(new ArrayList<Long>(hotelIds), BulkBatch.IN_LIST_SIZE)) {
+            List<?> rows = em.createNamedQuery(BookingHotel.FIND_DAYS_BY_HOTELS)
+                .setParameter("hotelIds", part).setParameter("first", first).setParameter("last", last).getResultList();
+            for (Object row : rows) {
+                Object[] columns = (Object[]) row;
+                taken.add(BulkBatch.dayKey((Long) columns[0], (Date) columns[1]));
+            }
+        }
+        return taken;
+    }
+
     /**
      * <p>Persists the provided BookingHotel object to the application database using the EntityManager.</p>
      *
@@ -72,10 +208,11 @@ public class BookingHotelRepository {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     BookingHotel create(BookingHotel bookingHotel) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("BookingHotelRepository.create() - Creating " + bookingHotel.getId());
+        log.log(Level.FINE, "BookingHotelRepository.create() - Creating {0}", bookingHotel.getId());
         
-        // Write the bookingHotel to the database.
+        // Write the bookingHotel to the database. Flushed now, so that losing its day to a concurrent booking shows here.
         em.persist(bookingHotel);
+        Claims.flush(em, "Unique bookingHotel Violation");
         
         return bookingHotel;
     }
@@ -94,10 +231,11 @@ public class BookingHotelRepository {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     BookingHotel update(BookingHotel bookingHotel) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("BookingHotelRepository.update() - Updating " + bookingHotel.getId());
+        log.log(Level.FINE, "BookingHotelRepository.update() - Updating {0}", bookingHotel.getId());
         
         // Either update the bookingHotel or add it if it can't be found.
         em.merge(bookingHotel);
+        Claims.flush(em, "Unique bookingHotel Violation");
         
         return bookingHotel;
     }
@@ -110,7 +248,7 @@ public class BookingHotelRepository {
      * @throws Exception
      */
     BookingHotel delete(BookingHotel bookingHotel) throws Exception {
-        log.info("BookingHotelRepository.delete() - Deleting " + bookingHotel.getId());
+        log.log(Level.FINE, "BookingHotelRepository.delete() - Deleting {0}", bookingHotel.getId());
         
         if (bookingHotel.getId() != null) {
             /*
@@ -10,7 +10,13 @@ import javax.validation.ValidationException;
 
 import java.util.Date;
 import java.util.List;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.jboss.quickstarts.wfk.util.BulkBatch;
+import org.jboss.quickstarts.wfk.util.BulkMode;
+import org.jboss.quickstarts.wfk.util.BulkWriter;
+import org.jboss.quickstarts.wfk.util.EntityVersion;
+import org.jboss.quickstarts.wfk.util.Page;
 
 
 //@Dependent annotation designates the default scope, listed here so that you know what scope is being used.
@@ -23,6 +29,9 @@ public class BookingHotelService {
     @Inject
     private BookingHotelValidator validator;
 
+    @Inject
+    private BulkWriter writer;
+
     @Inject
     private BookingHotelRepository crud;
 
@@ -38,6 +47,29 @@ public class BookingHotelService {
         return crud.findAllOrderedById();
     }
 
+    /**
+     * <p>Returns one page of {@link BookingHotel} objects, see {@link BookingHotelRepository#findPage(String[], int)}.</p>
+     *
+     * @param after The sort key of the last BookingHotel of the previous page; or null for the first page
+     * @param limit The maximum number of BookingHotel objects to return
+     * @return The Page of BookingHotel objects
+     */
+    Page<BookingHotel> findPage(String[] after, int limit) {
+        return crud.findPage(after, limit);
+    }
+
+    /**
+     * <p>Returns one page of {@link BookingHotelSummary} objects, see
+     * {@link BookingHotelRepository#findSummaryPage(String[], int)}.</p>
+     *
+     * @param after The sort key of the last BookingHotel of the previous page; or null for the first page
+     * @param limit The maximum number of BookingHotelSummary objects to return
+     * @return The Page of BookingHotelSummary objects
+     */
+    Page<BookingHotelSummary> findSummaryPage(String[] after, int limit) {
+        return crud.findSummaryPage(after, limit);
+    }
+
     /**
      * <p>Returns a single BookingHotel object, specified by a Long id.<p/>
      * 
@@ -47,6 +79,28 @@ public class BookingHotelService {
     BookingHotel findById(Long id) {
         return crud.findById(id);
     }
+
+    /**
+     * <p>Returns a single BookingHotel object with everything it refers to, see
+     * {@link BookingHotelRepository#findWithReferences(Long)}.</p>
+     *
+     * @param id The id field of the BookingHotel to be returned
+     * @return The BookingHotel with the specified id; or null if there is none
+     */
+    BookingHotel findWithReferences(Long id) {
+        return crud.findWithReferences(id);
+    }
+
+    /**
+     * <p>Returns the version and last modification time of a BookingHotel, specified by a Long id, to answer a conditional
+     * request without loading the BookingHotel.</p>
+     *
+     * @param id The id field of the BookingHotel
+     * @return The version of the BookingHotel with the specified id; or null if there is none
+     */
+    EntityVersion findVersion(Long id) {
+        return crud.findVersion(id);
+    }
     
     BookingHotel findByDate(Date bookingHotelDate) {
         return crud.findByDate(bookingHotelDate);
@@ -69,7 +123,8 @@ public class BookingHotelService {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     BookingHotel create(BookingHotel bookingHotel) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("BookingHotelService.create() - Creating " + bookingHotel.getId() + " " + bookingHotel.getCustomer() +" " + bookingHotel.getHotel());
+        log.log(Level.FINE, "BookingHotelService.create() - Creating {0} {1} {2}",
+            new Object[] {bookingHotel.getId(), bookingHotel.getCustomer(), bookingHotel.getHotel()});
         
         // Check to make sure the data fits with the parameters in the BookingHotel model and passes validation.
         validator.validateBookingHotel(bookingHotel);
@@ -78,6 +133,25 @@ public class BookingHotelService {
         return crud.create(bookingHotel);
     }
 
+    /**
+     * <p>Writes the BookingHotel objects of a bulk create to the application database.</p>
+     *
+     * <p>The whole batch is validated at once by {@link BookingHotelValidator#validateBookingHotels(BulkBatch)}, then the items that passed
+     * are inserted by a {@link BulkWriter} in JDBC batches. The outcome of every item is recorded in the batch.</p>
+     *
+     * @param batch The BookingHotel objects to be written
+     * @param mode Whether the batch is written all or nothing, or item by item
+     */
+    void createAll(BulkBatch<BookingHotel> batch, BulkMode mode) {
+        log.log(Level.FINE, "BookingHotelService.createAll() - Creating {0} BookingHotels, {1}", new Object[] {batch.size(), mode});
+
+        // Check the whole batch against the BookingHotel model and the database, rejecting the items that fail.
+        validator.validateBookingHotels(batch);
+
+        // Write the others to the database.
+        writer.write(batch, mode);
+    }
+
     /**
      * <p>Updates an existing BookingHotel object in the application database with the provided BookingHotel object.<p/>
      *
@@ -88,7 +162,8 @@ public class BookingHotelService {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     BookingHotel update(BookingHotel bookingHotel) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("BookingHotelService.update() - Updating " + bookingHotel.getId() + " " + bookingHotel.getCustomer() +" " + bookingHotel.getHotel());
+        log.log(Level.FINE, "BookingHotelService.update() - Updating {0} {1} {2}",
+            new Object[] {bookingHotel.getId(), bookingHotel.getCustomer(), bookingHotel.getHotel()});
         
         // Check to make sure the data fits with the parameters in the BookingHotel model and passes validation.
         validator.validateBookingHotel(bookingHotel);
@@ -104,7 +179,8 @@ public class BookingHotelService {
      * @throws Exception
      */
     BookingHotel delete(BookingHotel bookingHotel) throws Exception {
-        log.info("BookingHotelService.delete() - Deleting " + bookingHotel.getId() + " " + bookingHotel.getCustomer() +" " + bookingHotel.getHotel());
+        log.log(Level.FINE, "BookingHotelService.delete() - Deleting {0} {1} {2}",
+            new Object[] {bookingHotel.getId(), bookingHotel.getCustomer(), bookingHotel.getHotel()});
         
         BookingHotel deletedBookingHotel = null;
         
@@ -13,9 +13,10 @@ import javax.validation.ValidationException;
 import javax.validation.Validator;
 
 import org.jboss.quickstarts.wfk.contact.Contact;
-import org.jboss.quickstarts.wfk.contact.ContactRepository;
 import org.jboss.quickstarts.wfk.contact.Hotel;
-import org.jboss.quickstarts.wfk.contact.HotelRepository;
+import org.jboss.quickstarts.wfk.util.AvailabilityIndex;
+import org.jboss.quickstarts.wfk.util.BulkBatch;
+import org.jboss.quickstarts.wfk.util.ReferenceResolver;
 
 
 public class BookingHotelValidator {
@@ -25,9 +26,7 @@ public class BookingHotelValidator {
     @Inject
     private BookingHotelRepository crud;
     @Inject
-    private ContactRepository ccrud;
-    @Inject
-    private HotelRepository hcrud;
+    private ReferenceResolver resolver;
 
     /**
      * <p>Validates the given BookingHotel object and throws validation exceptions based on the type of error. If the error is standard
@@ -43,18 +42,24 @@ public class BookingHotelValidator {
         if (!violations.isEmpty()) {
             throw new ConstraintViolationException(new HashSet<ConstraintViolation<?>>(violations));
         }
-        if (bookingHotel != null){
-        	if((hotelAlreadyExist(bookingHotel.getHotel().getId(), bookingHotel.getId()) == false) || (customerAlreadyExist(bookingHotel.getCustomer().getId(), bookingHotel.getId()) == false))
-        	{
-        		if ((hotelAlreadyExist(bookingHotel.getHotel().getId(), bookingHotel.getId()) == false) && (customerAlreadyExist(bookingHotel.getCustomer().getId(), bookingHotel.getId()) == false))
-        			throw new ValidationException("Unique cnh Violation");
-        		else if ((hotelAlreadyExist(bookingHotel.getHotel().getId(), bookingHotel.getId()) == false))
-        			throw new ValidationException("Unique hotel Violation");
-        		else if ((customerAlreadyExist(bookingHotel.getCustomer().getId(), bookingHotel.getId()) == false))
-        			throw new ValidationException("Unique customer Violation");
-        	}
-        	if (bookingHotelExist(bookingHotel.getHotel().getId(), bookingHotel.getId(), bookingHotel.getBookingHotelDate()))
-    			throw new ValidationException("Unique bookingHotel Violation");
+        if (bookingHotel != null) {
+            Long hotelId = bookingHotel.getHotel() == null ? null : bookingHotel.getHotel().getId();
+            Long customerId = bookingHotel.getCustomer() == null ? null : bookingHotel.getCustomer().getId();
+
+            // Load the hotel and the customer together, the checks below are then answered from memory
+            resolver.resolve(ReferenceResolver.ref(Hotel.class, hotelId), ReferenceResolver.ref(Contact.class, customerId));
+            boolean hotelFound = hotelAlreadyExist(hotelId, bookingHotel.getId());
+            boolean customerFound = customerAlreadyExist(customerId, bookingHotel.getId());
+
+            if (!hotelFound && !customerFound)
+                throw new ValidationException("Unique cnh Violation");
+            else if (!hotelFound)
+                throw new ValidationException("Unique hotel Violation");
+            else if (!customerFound)
+                throw new ValidationException("Unique customer Violation");
+
+            if (bookingHotelExist(hotelId, bookingHotel.getId(), bookingHotel.getBookingHotelDate()))
+                throw new ValidationException("Unique bookingHotel Violation");
         }
         
       /* if(hotelAlreadyExists(bookingHotel.getHotel(), bookingHotel.getId(), bookingHotel.getBookingHotelDate())){
@@ -67,6 +72,62 @@ public class BookingHotelValidator {
         */
   
     } 
+
+    /**
+     * <p>Validates all the BookingHotels of a bulk create at once. The items the single create would reject are rejected in
+     * the batch instead, with the same errors: those with bean validation errors with a 400, and with a 409 those whose
+     * hotel or customer does not exist, or whose hotel is already booked that day, in the database or by an earlier
+     * item of the batch.</p>
+     *
+     * <p>The hotels and the customers of the whole batch are loaded through {@link ReferenceResolver#resolveAll},
+     * and the days the hotels are booked with one more query, rather than a few queries per item.</p>
+     *
+     * @param batch The BookingHotel objects to be validated
+     */
+    void validateBookingHotels(BulkBatch<BookingHotel> batch) {
+        batch.validateBeans(validator);
+
+        List<Integer> pending = batch.pending();
+        Set<Long> hotelIds = new HashSet<Long>();
+        Set<Long> customerIds = new HashSet<Long>();
+        Date first = null;
+        Date last = null;
+        for (int index : pending) {
+            BookingHotel bookingHotel = batch.get(index);
+            hotelIds.add(bookingHotel.getHotel() == null ? null : bookingHotel.getHotel().getId());
+            customerIds.add(bookingHotel.getCustomer() == null ? null : bookingHotel.getCustomer().getId());
+            Date date = bookingHotel.getBookingHotelDate();
+            if (date != null) {
+                first = first == null || date.before(first) ? date : first;
+                last = last == null || date.after(last) ? date : last;
+            }
+        }
+        hotelIds.remove(null);
+        resolver.resolveAll(Hotel.class, hotelIds);
+        resolver.resolveAll(Contact.class, customerIds);
+        Set<Object> taken = hotelIds.isEmpty() || first == null
+            ? new HashSet<Object>() : crud.findTakenDays(hotelIds, first, last);
+
+        for (int index : pending) {
+            BookingHotel bookingHotel = batch.get(index);
+            Long hotelId = bookingHotel.getHotel() == null ? null : bookingHotel.getHotel().getId();
+            Long customerId = bookingHotel.getCustomer() == null ? null : bookingHotel.getCustomer().getId();
+            boolean hotelFound = resolver.exists(Hotel.class, hotelId);
+            boolean customerFound = resolver.exists(Contact.class, customerId);
+            Object day = BulkBatch.dayKey(hotelId, bookingHotel.getBookingHotelDate());
+
+            if (!hotelFound && !customerFound) {
+                batch.conflict(index, "cnh", "That hotel and customer are not existed");
+            } else if (!hotelFound) {
+                batch.conflict(index, "hotel", "That hotel is not existed");
+            } else if (!customerFound) {
+                batch.conflict(index, "customer", "That customer is not existed");
+            } else if (day != null && !taken.add(day)) {
+                // Taken in the database, or by an earlier item of the batch
+                batch.conflict(index, "bookingHotel", "That hotel is already booked that day");
+            }
+        }
+    }
 /**
     boolean hotelAlreadyExists(Hotel hotel, Long id, Date bookingHotelDate) {
         BookingHotel bookingHotel = null;
@@ -112,72 +173,53 @@ public class BookingHotelValidator {
         return bookingHotel != null;
     }
   */  
+    /**
+     * <p>Checks that the customer making the booking exists.</p>
+     *
+     * <p>The customer is looked up through the request's {@link ReferenceResolver}, so asking again after
+     * validateBookingHotel() has resolved it does not go back to the database.</p>
+     *
+     * @param customerId The id of the customer to check
+     * @param id The id of the bookingHotel being validated
+     * @return boolean which represents whether the customer was found
+     */
     boolean customerAlreadyExist(Long customerId, Long id) {
-        Contact bookingHotel = null;
-        Contact bookingHotelWithID = null;
-        try {
-        	bookingHotel = ccrud.findById(customerId);
-        } catch (NoResultException e) {
-            // ignore
-        }
-
-        if (bookingHotel != null && id != null) {
-            try {
-            	bookingHotelWithID = ccrud.findById(id);
-                if (bookingHotelWithID != null && bookingHotelWithID.getId().equals(customerId)) {
-                	bookingHotel = null;
-                }
-            } catch (NoResultException e) {
-                // ignore
-            }
-        }
-        return bookingHotel != null;
+        return resolver.exists(Contact.class, customerId);
     }
     
+    /**
+     * <p>Checks that the hotel being booked exists.</p>
+     *
+     * @param hotelId The id of the hotel to check
+     * @param id The id of the bookingHotel being validated
+     * @return boolean which represents whether the hotel was found
+     */
     boolean hotelAlreadyExist(Long hotelId, Long id) {
-        Hotel bookingHotel = null;
-        Hotel bookingHotelWithID = null;
-        try {
-        	bookingHotel = hcrud.findById(hotelId);
-        } catch (NoResultException e) {
-            // ignore
-        }
-
-        if (bookingHotel != null && id != null) {
-            try {
-            	bookingHotelWithID = hcrud.findById(id);
-                if (bookingHotelWithID != null && bookingHotelWithID.getId().equals(hotelId)) {
-                	bookingHotel = null;
-                }
-            } catch (NoResultException e) {
-                // ignore
-            }
-        }
-        return bookingHotel != null;
+        return resolver.exists(Hotel.class, hotelId);
     }
     
+    /**
+     * <p>Checks if the hotel is already booked on the given date by a bookingHotel other than the one being validated.</p>
+     *
+     * <p>It is answered from the {@link AvailabilityIndex} once that is loaded, and by the database until then. A day
+     * the index has not heard of yet reads as free, the unique constraint still turns the booking down on insert. A day
+     * it has as taken is confirmed by the database, since it may have been freed on another node.</p>
+     *
+     * @param hotelId The id of the hotel to check
+     * @param bookingHotelId The id of the bookingHotel being updated; or null when creating
+     * @param date The date to check
+     * @return boolean which represents whether the hotel is already taken on that date
+     */
     boolean bookingHotelExist(Long hotelId, Long bookingHotelId, Date date) {
-    	List<BookingHotel> bookingHotels = null;
-        BookingHotel bookingHotel = null;
-        try {
-        	bookingHotels = crud.findByHotelId(hotelId);
-        } catch (NoResultException e) {
-            // ignore
+        if (hotelId == null || date == null) {
+            return false;
         }
-        
-        try{
-        	for(BookingHotel temp: bookingHotels){
-        		//System.out.println("XXXXXXXBookingHotel");
-        		System.out.println(temp.getId());
-        		System.out.println(temp.getBookingHotelDate());
-        		if(temp.getBookingHotelDate().equals(date) && temp.getId()!= bookingHotelId)
-        		   bookingHotel = temp;     		
-        	}
-        }catch (Exception e){
-        	
+        // Most days are free, and the index says so without a query. One it has as taken may have been freed on
+        // another node, so the database has the last word before the booking is turned down.
+        if (AvailabilityIndex.HOTELS.isReady() && !AvailabilityIndex.HOTELS.isTaken(hotelId, date, bookingHotelId)) {
+            return false;
         }
-
-        return bookingHotel != null;
+        return crud.existsByHotelAndDate(hotelId, date, bookingHotelId);
     }
  
   
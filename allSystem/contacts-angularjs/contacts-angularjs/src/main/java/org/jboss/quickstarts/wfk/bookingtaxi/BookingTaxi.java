@@ -26,15 +26,20 @@ import javax.validation.constraints.Pattern;
 import javax.validation.constraints.Size;
 import javax.xml.bind.annotation.XmlRootElement;
 
+import org.hibernate.annotations.Index;
 import org.hibernate.validator.constraints.Email;
 import org.hibernate.validator.constraints.NotEmpty;
 import org.jboss.quickstarts.wfk.contact.Contact;
 import org.jboss.quickstarts.wfk.taxi.Taxi;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.ManyToOne;
+import org.hibernate.annotations.GenericGenerator;
+import org.codehaus.jackson.annotate.JsonIgnore;
+import org.jboss.quickstarts.wfk.util.AvailabilityIndex;
+import org.jboss.quickstarts.wfk.util.PooledIdGenerator;
+import org.jboss.quickstarts.wfk.util.Versioned;
 /**
  * <p>This is a the Domain object. The Booking class represents how booking resources are represented in the application
  * database.</p>
@@ -50,21 +55,81 @@ import javax.persistence.ManyToOne;
  */
 @Entity
 @NamedQueries({
-    @NamedQuery(name = BookingTaxi.FIND_ALL, query = "SELECT c FROM BookingTaxi c ORDER BY c.id ASC"),
-    @NamedQuery(name = BookingTaxi.FIND_BY_TAXIID, query = "SELECT c FROM BookingTaxi c WHERE c.taxiid.id = :taxi_id"),
-   @NamedQuery(name = BookingTaxi.FIND_BY_CUSTOMER, query = "SELECT c FROM BookingTaxi c WHERE c.customer.id = :customer_id"),
-    @NamedQuery(name = BookingTaxi.FIND_BY_DATE, query = "SELECT c FROM BookingTaxi c WHERE c.taxidate = :taxidate ")
+    @NamedQuery(name = BookingTaxi.FIND_ALL, query = "SELECT c FROM BookingTaxi c" + BookingTaxi.FETCH_REFERENCES + " ORDER BY c.id ASC"),
+    @NamedQuery(name = BookingTaxi.FIND_ALL_AFTER, query = "SELECT c FROM BookingTaxi c" + BookingTaxi.FETCH_REFERENCES + " WHERE c.id > :id ORDER BY c.id ASC"),
+    @NamedQuery(name = BookingTaxi.FIND_BY_ID, query = "SELECT c FROM BookingTaxi c" + BookingTaxi.FETCH_REFERENCES + " WHERE c.id = :id"),
+    @NamedQuery(name = BookingTaxi.FIND_ALL_SUMMARIES,
+        query = "SELECT NEW org.jboss.quickstarts.wfk.bookingtaxi.BookingTaxiSummary("
+        + "b.id, b.taxidate, c.id, c.firstName, c.lastName, t.id, t.registration) "
+        + "FROM BookingTaxi b LEFT JOIN b.customer c LEFT JOIN b.taxiid t "
+        + "ORDER BY b.id ASC"),
+    @NamedQuery(name = BookingTaxi.FIND_ALL_SUMMARIES_AFTER,
+        query = "SELECT NEW org.jboss.quickstarts.wfk.bookingtaxi.BookingTaxiSummary("
+        + "b.id, b.taxidate, c.id, c.firstName, c.lastName, t.id, t.registration) "
+        + "FROM BookingTaxi b LEFT JOIN b.customer c LEFT JOIN b.taxiid t "
+        + "WHERE b.id > :id ORDER BY b.id ASC"),
+    @NamedQuery(name = BookingTaxi.FIND_SUMMARIES_BY_CUSTOMER,
+        query = "SELECT NEW org.jboss.quickstarts.wfk.bookingtaxi.BookingTaxiSummary("
+        + "b.id, b.taxidate, c.id, c.firstName, c.lastName, t.id, t.registration) "
+        + "FROM BookingTaxi b LEFT JOIN b.customer c LEFT JOIN b.taxiid t "
+        + "WHERE b.customer.id = :customerId ORDER BY b.taxidate ASC, b.id ASC"),
+    @NamedQuery(name = BookingTaxi.FIND_SUMMARIES_BY_CUSTOMER_AFTER,
+        query = "SELECT NEW org.jboss.quickstarts.wfk.bookingtaxi.BookingTaxiSummary("
+        + "b.id, b.taxidate, c.id, c.firstName, c.lastName, t.id, t.registration) "
+        + "FROM BookingTaxi b LEFT JOIN b.customer c LEFT JOIN b.taxiid t "
+        + "WHERE b.customer.id = :customerId AND (b.taxidate > :date OR (b.taxidate = :date AND b.id > :id)) "
+        + "ORDER BY b.taxidate ASC, b.id ASC"),
+    @NamedQuery(name = BookingTaxi.FIND_BY_TAXIID, query = "SELECT c FROM BookingTaxi c" + BookingTaxi.FETCH_REFERENCES + " WHERE c.taxiid.id = :taxi_id"),
+   @NamedQuery(name = BookingTaxi.FIND_BY_CUSTOMER, query = "SELECT c FROM BookingTaxi c" + BookingTaxi.FETCH_REFERENCES + " WHERE c.customer.id = :customer_id"),
+    @NamedQuery(name = BookingTaxi.FIND_BY_DATE, query = "SELECT c FROM BookingTaxi c WHERE c.taxidate = :taxidate "),
+    @NamedQuery(name = BookingTaxi.FIND_ID_BY_TAXI_AND_DATE, query = "SELECT c.id FROM BookingTaxi c WHERE c.taxiid.id = :taxi_id AND c.taxidate = :taxidate"),
+    @NamedQuery(name = BookingTaxi.FIND_OTHER_ID_BY_TAXI_AND_DATE, query = "SELECT c.id FROM BookingTaxi c WHERE c.taxiid.id = :taxi_id AND c.taxidate = :taxidate AND c.id <> :id"),
+    @NamedQuery(name = BookingTaxi.FIND_DAYS_BY_TAXIS, query = "SELECT c.taxiid.id, c.taxidate FROM BookingTaxi c WHERE c.taxiid.id IN :taxi_ids AND c.taxidate BETWEEN :first AND :last"),
+    @NamedQuery(name = BookingTaxi.FIND_VERSION,
+        query = "SELECT NEW org.jboss.quickstarts.wfk.util.EntityVersion(c.version, c.lastModified, "
+        + "cu.version, cu.lastModified, t.version, t.lastModified) "
+        + "FROM BookingTaxi c LEFT JOIN c.customer cu LEFT JOIN c.taxiid t WHERE c.id = :id"),
+    @NamedQuery(name = BookingTaxi.FIND_DAYS, query = "SELECT c.id, c.taxiid.id, c.taxidate FROM BookingTaxi c")
 })
 @XmlRootElement
-@Table(name = "BookingTaxi", uniqueConstraints = @UniqueConstraint(columnNames = "id"))
-public class BookingTaxi implements Serializable {
+/*
+ * A taxi can be booked once per date. The unique constraint lets the database enforce that even when two bookings race
+ * past the validator, and its index is what the availability check and FIND_BY_TAXIID (a leading column prefix) use.
+ * The other lookups get an index of their own. The one on the customer goes on with the date, so that the itinerary of
+ * a customer (FIND_SUMMARIES_BY_CUSTOMER) is read in order from it.
+ */
+@Table(name = "BookingTaxi", uniqueConstraints = @UniqueConstraint(columnNames = {"taxi_id", "taxidate"}))
+@org.hibernate.annotations.Table(appliesTo = "BookingTaxi", indexes = {
+    @Index(name = "IDX_BOOKINGTAXI_CUSTOMER", columnNames = {"customer_id", "taxidate"}),
+    @Index(name = "IDX_BOOKINGTAXI_DATE", columnNames = "taxidate")
+})
+public class BookingTaxi implements Serializable, Versioned {
     /** Default value included to remove warning. Remove or modify at will. **/
     private static final long serialVersionUID = 1L;
     
     public static final String FIND_ALL = "BookingTaxi.findAll";
+    public static final String FIND_ALL_AFTER = "BookingTaxi.findAllAfter";
+    public static final String FIND_BY_ID = "BookingTaxi.findById";
+    public static final String FIND_ALL_SUMMARIES = "BookingTaxi.findAllSummaries";
+    public static final String FIND_ALL_SUMMARIES_AFTER = "BookingTaxi.findAllSummariesAfter";
+    public static final String FIND_SUMMARIES_BY_CUSTOMER = "BookingTaxi.findSummariesByCustomer";
+    public static final String FIND_SUMMARIES_BY_CUSTOMER_AFTER = "BookingTaxi.findSummariesByCustomerAfter";
     public static final String FIND_BY_TAXIID = "BookingTaxi.findByTaxiid";
    public static final String FIND_BY_CUSTOMER = "BookingTaxi.findByCustomer";
    public static final String FIND_BY_DATE = "BookingTaxi.findByTaxidate";
+    public static final String FIND_ID_BY_TAXI_AND_DATE = "BookingTaxi.findIdByTaxiAndDate";
+    public static final String FIND_OTHER_ID_BY_TAXI_AND_DATE = "BookingTaxi.findOtherIdByTaxiAndDate";
+    public static final String FIND_DAYS_BY_TAXIS = "BookingTaxi.findDaysByTaxis";
+    public static final String FIND_VERSION = "BookingTaxi.findVersion";
+    public static final String FIND_DAYS = "BookingTaxi.findDays";
+
+    /*
+     * The customer and taxi of a BookingTaxi are lazy, so that loading it for a check (em.find(), the validators) reads
+     * its own row only. The queries whose result goes back to the client in full fetch them along in the same statement
+     * instead.
+     */
+    static final String FETCH_REFERENCES = " LEFT JOIN FETCH c.customer LEFT JOIN FETCH c.taxiid";
+
     /*
      * The  error messages match the ones in the UI so that the user isn't confused by two similar error messages for
      * the same error after hitting submit. This is if the form submits while having validation errors. The only
@@ -75,19 +140,27 @@ public class BookingTaxi implements Serializable {
      * variable occurs it can be sent to the correct input field on the form.  
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.TABLE)
+    @GeneratedValue(generator = PooledIdGenerator.NAME)
+    @GenericGenerator(name = PooledIdGenerator.NAME, strategy = PooledIdGenerator.STRATEGY)
     private Long id;
 
+    @Version
+    private long version;
 
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "last_modified")
+    private Date lastModified;
 
-    @ManyToOne
+
+
+    @ManyToOne(fetch = FetchType.LAZY)
  //   @Size(min =7,max = 7)
   //  @Pattern(regexp = "^[0-9]+$", message = "Please use a customer without numbers or letters")
     @JoinColumn(name = "customer_id")
     private Contact customer;
 
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
  //   @Pattern(regexp = "^[0-9]+$",message = "Please use a number less than 22, more than 2 ")
     @JoinColumn(name = "taxi_id")
     private Taxi taxiid;
@@ -131,7 +204,46 @@ public class BookingTaxi implements Serializable {
     public void setTaxidate(Date taxidate) {
         this.taxidate = taxidate;
     }
-    
 
-    
+    @JsonIgnore
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    @JsonIgnore
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    @JsonIgnore
+    @Override
+    public Date getLastModified() {
+        return lastModified;
+    }
+
+    @JsonIgnore
+    public void setLastModified(Date lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        lastModified = new Date();
+    }
+
+    /**
+     * <p>Keeps the {@link AvailabilityIndex} up to date, once the transaction commits.</p>
+     */
+    @PostPersist
+    @PostUpdate
+    void claimDay() {
+        AvailabilityIndex.TAXIS.claimAfterCommit(id, taxiid == null ? null : taxiid.getId(), taxidate);
+    }
+
+    @PostRemove
+    void releaseDay() {
+        AvailabilityIndex.TAXIS.releaseAfterCommit(id);
+    }
 }
@@ -16,16 +16,20 @@
  */
 package org.jboss.quickstarts.wfk.bookingtaxi;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.ejb.NoSuchEntityException;
 import javax.ejb.Stateless;
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.interceptor.Interceptors;
 import javax.persistence.NoResultException;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
@@ -37,13 +41,26 @@ import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.WebApplicationException;
 
 import org.jboss.quickstarts.wfk.contact.Contact;
 import org.jboss.quickstarts.wfk.taxi.Taxi;
+import org.jboss.quickstarts.wfk.util.BulkBatch;
+import org.jboss.quickstarts.wfk.util.BulkMode;
+import org.jboss.quickstarts.wfk.util.ConditionalRequests;
+import org.jboss.quickstarts.wfk.util.EntityVersion;
+import org.jboss.quickstarts.wfk.util.JsonExporter;
+import org.jboss.quickstarts.wfk.util.MetricsInterceptor;
+import org.jboss.quickstarts.wfk.util.Page;
+import org.jboss.quickstarts.wfk.util.PageCursor;
+import org.jboss.quickstarts.wfk.util.View;
 
 
 /**
@@ -72,22 +89,50 @@ import org.jboss.quickstarts.wfk.taxi.Taxi;
 @Consumes(MediaType.APPLICATION_JSON)
 @Produces(MediaType.APPLICATION_JSON)
 @Stateless
+@Interceptors(MetricsInterceptor.class)
 public class BookingTaxiRESTService {
     @Inject
     private @Named("logger") Logger log;
     
     @Inject
     private BookingTaxiService service;
+
+    @Inject
+    private JsonExporter exporter;
     
     /**
-     * <p>Search for and return all the BookingTaxis.  They are sorted alphabetically by name.</p>
+     * <p>Search for and return the BookingTaxis, one page at a time.  They are sorted by id.</p>
+     *
+     * <p>Each response carries the cursor of the following page in the {@value PageCursor#NEXT_CURSOR_HEADER} header,
+     * which is absent on the last page. Add stream=true to get all of them at once instead, for an export.</p>
+     *
+     * <p>Add view=summary to get a {@link BookingTaxiSummary} of each BookingTaxi instead, with only the ids, the date
+     * and the names to show. It is read in a single statement, without loading the BookingTaxis and everything they
+     * refer to.</p>
      * 
+     * @param cursor The cursor of the page to return; or null for the first page
+     * @param limit The maximum number of BookingTaxis to return; or null for the default page size
+     * @param stream If true, all the BookingTaxis are streamed back in a single response and cursor and limit are ignored
+     * @param view summary for BookingTaxiSummary objects instead of BookingTaxis; or null for the full view
      * @return A Response containing a list of BookingTaxis
      */
     @GET
-    public Response retrieveAllBookingTaxis() {
-        List<BookingTaxi> bookingTaxis = service.findAllOrderedByName();
-        return Response.ok(bookingTaxis).build();
+    public Response retrieveAllBookingTaxis(@QueryParam("cursor") String cursor, @QueryParam("limit") Integer limit,
+            @QueryParam("stream") boolean stream, @QueryParam("view") String view) {
+        boolean summary = View.of(view) == View.SUMMARY;
+        if (stream) {
+            // Written row by row as RESTEasy sends the response, instead of being built in memory first
+            String query = summary ? BookingTaxi.FIND_ALL_SUMMARIES : BookingTaxi.FIND_ALL;
+            return Response.ok(exporter.stream(query)).build();
+        }
+        int pageSize = PageCursor.limit(limit);
+        if (summary) {
+            Page<BookingTaxiSummary> summaries = service.findSummaryPage(PageCursor.decode(cursor, 1), pageSize);
+            return Response.ok(summaries.getItems())
+                .header(PageCursor.NEXT_CURSOR_HEADER, summaries.getNextCursor()).build();
+        }
+        Page<BookingTaxi> bookingTaxis = service.findPage(PageCursor.decode(cursor, 1), pageSize);
+        return Response.ok(bookingTaxis.getItems()).header(PageCursor.NEXT_CURSOR_HEADER, bookingTaxis.getNextCursor()).build();
     }
 
     /**
@@ -98,21 +143,15 @@ public class BookingTaxiRESTService {
      *
      *
      * @param customer The string parameter value provided as a BookingTaxi's customer
-     * @return A Response containing a single BookingTaxi
+     * @return A Response containing a list of BookingTaxis, empty if the customer has none
      */
     @GET
     @Path("/customer/{id:[0-9]+}")
     public Response retrieveBookingTaxiByCustomerId(@PathParam("id") long id) {
-       // List<Book> book = service.findAllByCustomerId(id);
-        BookingTaxi bookingTaxi = service.findAllByCustomer(id);
+        List<BookingTaxi> bookingTaxis = service.findAllByCustomer(id);
+        log.log(Level.FINE, "findByCustomer {0}: found {1} BookingTaxis", new Object[] {id, bookingTaxis.size()});
 
-        if (bookingTaxi == null) {
-            throw new WebApplicationException(Response.Status.NOT_FOUND);
-        }
-      //  log.info("findById " + id + ": found Contact = " + book.getCustomer() + " " + book.getFlight() + " " + book.getBookingDate() + " " 
-        //    + book.getId());
-        
-        return Response.ok(bookingTaxi).build();
+        return Response.ok(bookingTaxis).build();
     }
     
     @GET
@@ -131,21 +170,36 @@ public class BookingTaxiRESTService {
     
     /**
      * <p>Search for and return a BookingTaxi identified by id.</p>
+     *
+     * <p>The response carries the versions of the BookingTaxi and of what it refers to as its ETag, and the latest of their
+     * Last-Modified, as the representation embeds them. A client that sends them back in If-None-Match or
+     * If-Modified-Since gets a 304 (Not Modified) while its copy is current, found out from the versions alone without
+     * loading the BookingTaxi.</p>
      * 
      * @param id The long parameter value provided as a BookingTaxi's id
+     * @param request The request, to evaluate its preconditions
+     * @param headers The headers of the request
      * @return A Response containing a single BookingTaxi
      */
     @GET
     @Path("/{id:[0-9]+}")
-    public Response retrieveBookingTaxiById(@PathParam("id") long id) {
-        BookingTaxi bookingTaxi = service.findById(id);
+    public Response retrieveBookingTaxiById(@PathParam("id") long id, @Context Request request, @Context HttpHeaders headers) {
+        if (ConditionalRequests.isConditional(headers)) {
+            Response notModified = ConditionalRequests.notModified(request, headers, service.findVersion(id));
+            if (notModified != null) {
+                return notModified;
+            }
+        }
+        BookingTaxi bookingTaxi = service.findWithReferences(id);
         if (bookingTaxi == null) {
             throw new WebApplicationException(Response.Status.NOT_FOUND);
         }
-        log.info("findById " + id + ": found BookingTaxi = " + bookingTaxi.getTaxiid()+ " " + bookingTaxi.getTaxidate() + " " + bookingTaxi.getCustomer()  
-               + " " + bookingTaxi.getId());
+        log.log(Level.FINE, "findById {0}: found BookingTaxi = {1} {2} {3} {4}",
+            new Object[] {id, bookingTaxi.getTaxiid(), bookingTaxi.getTaxidate(), bookingTaxi.getCustomer(), bookingTaxi.getId()});
         
-        return Response.ok(bookingTaxi).build();
+        // The representation embeds what the BookingTaxi refers to, so does its version
+        return ConditionalRequests.ok(bookingTaxi,
+                EntityVersion.of(bookingTaxi, bookingTaxi.getCustomer(), bookingTaxi.getTaxiid())).build();
     }
 
     /**
@@ -158,7 +212,8 @@ public class BookingTaxiRESTService {
     @SuppressWarnings("unused")
     @POST
     public Response createBookingTaxi(BookingTaxi bookingTaxi) {
-        log.info("createBookingTaxi started. BookingTaxi = " + bookingTaxi.getTaxiid()  + " " + bookingTaxi.getTaxidate()+ " " + bookingTaxi.getCustomer()+ " " + bookingTaxi.getId());
+        log.log(Level.FINE, "createBookingTaxi started. BookingTaxi = {0} {1} {2} {3}",
+            new Object[] {bookingTaxi.getTaxiid(), bookingTaxi.getTaxidate(), bookingTaxi.getCustomer(), bookingTaxi.getId()});
         if (bookingTaxi == null) {
             throw new WebApplicationException(Response.Status.BAD_REQUEST);
         }
@@ -172,14 +227,14 @@ public class BookingTaxiRESTService {
             // Create a "Resource Created" 201 Response and pass the bookingTaxi back in case it is needed.
             builder = Response.status(Response.Status.CREATED).entity(bookingTaxi);
             
-            log.info("createBookingTaxi completed. BookingTaxi = " + bookingTaxi.getTaxiid() + " " + bookingTaxi.getTaxidate()+ " " + bookingTaxi.getCustomer()  
-                + " " + bookingTaxi.getId());
+            log.log(Level.FINE, "createBookingTaxi completed. BookingTaxi = {0} {1} {2} {3}",
+                new Object[] {bookingTaxi.getTaxiid(), bookingTaxi.getTaxidate(), bookingTaxi.getCustomer(), bookingTaxi.getId()});
         } catch (ConstraintViolationException ce) {
-            log.info("ConstraintViolationException - " + ce.toString());
+            log.log(Level.INFO, "ConstraintViolationException - {0}", ce);
             // Handle bean validation issues
             builder = createViolationResponse(ce.getConstraintViolations());
         } catch (ValidationException e) {
-            log.info("ValidationException - " + e.toString());
+            log.log(Level.INFO, "ValidationException - {0}", e);
             // Handle the unique constrain violation
             Map<String, String> responseObj = new HashMap<String, String>();
            //if(e.toString().contains("date"))
@@ -200,7 +255,7 @@ public class BookingTaxiRESTService {
            
            builder = Response.status(Response.Status.CONFLICT).entity(responseObj);
         } catch (Exception e) {
-            log.info("Exception - " + e.toString());
+            log.log(Level.INFO, "Exception - {0}", e);
             // Handle generic exceptions
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("error", e.getMessage());
@@ -210,32 +265,90 @@ public class BookingTaxiRESTService {
         return builder.build();
     }
 
+    /**
+     * <p>Creates several BookingTaxis at once from a JSON array of BookingTaxi objects.</p>
+     *
+     * <p>The whole batch is validated in one go, with the same checks and errors as {@link #createBookingTaxi(BookingTaxi)}, and the
+     * items that pass are inserted in JDBC batches. In <i>atomic</i> mode (the default) either all the BookingTaxis are
+     * created, with a 201, or none is, with a 400 or 409. In <i>bestEffort</i> mode the valid ones are created anyway and
+     * the response is a 207. Either way the body gives the status, id or errors of every item, in order.</p>
+     *
+     * @param bookingTaxis The BookingTaxi objects, constructed automatically from JSON input
+     * @param mode atomic or bestEffort; or null for atomic
+     * @return A Response indicating the outcome of every create
+     */
+    @POST
+    @Path("/bulk")
+    public Response createBookingTaxis(List<BookingTaxi> bookingTaxis, @QueryParam("mode") String mode) {
+        BulkMode bulkMode = BulkMode.of(mode);
+        return createAll(new BulkBatch<BookingTaxi>(bookingTaxis), bulkMode);
+    }
+
+    /**
+     * <p>Creates several BookingTaxis at once from newline delimited JSON, one BookingTaxi object per line. Otherwise the same as
+     * {@link #createBookingTaxis(List, String)}; a line that cannot be read is rejected with a 400 of its own.</p>
+     *
+     * @param body The request body, in {@value BulkBatch#NDJSON}
+     * @param mode atomic or bestEffort; or null for atomic
+     * @return A Response indicating the outcome of every create
+     * @throws IOException If the request body cannot be read
+     */
+    @POST
+    @Path("/bulk")
+    @Consumes(BulkBatch.NDJSON)
+    public Response createBookingTaxisFromNdjson(InputStream body, @QueryParam("mode") String mode) throws IOException {
+        BulkMode bulkMode = BulkMode.of(mode);
+        return createAll(BulkBatch.fromNdjson(body, BookingTaxi.class), bulkMode);
+    }
+
+    private Response createAll(BulkBatch<BookingTaxi> batch, BulkMode mode) {
+        log.log(Level.FINE, "createBookingTaxis started. {0} BookingTaxis, {1}", new Object[] {batch.size(), mode});
+
+        service.createAll(batch, mode);
+        Response response = batch.toResponse(mode);
+
+        log.log(Level.FINE, "createBookingTaxis completed. Status = {0}", response.getStatus());
+        return response;
+    }
+
     /**
      * <p>Updates a bookingTaxi with the ID provided in the BookingTaxi. Performs validation, and will return a JAX-RS response with either 200 ok,
      * or with a map of fields, and related errors.</p>
+     *
+     * <p>If the client sends the ETag it read in If-Match, or its Last-Modified in If-Unmodified-Since, the update is only
+     * applied if the BookingTaxi has not changed since; otherwise the response is a 412 (Precondition Failed).</p>
      * 
      * @param bookingTaxi The BookingTaxi object, constructed automatically from JSON input, to be <i>updated</i> via {@link BookingTaxiService#update(BookingTaxi)}
      * @param id The long parameter value provided as the id of the BookingTaxi to be updated
+     * @param request The request, to evaluate its If-Match or If-Unmodified-Since
+     * @param headers The headers of the request
      * @return A Response indicating the outcome of the create operation
      */
     @PUT
     @Path("/{id:[0-9][0-9]*}")
-    public Response updateBookingTaxi(@PathParam("id") long id, BookingTaxi bookingTaxi) {
+    public Response updateBookingTaxi(@PathParam("id") long id, BookingTaxi bookingTaxi, @Context Request request,
+            @Context HttpHeaders headers) {
         if (bookingTaxi == null) {
             throw new WebApplicationException(Response.Status.BAD_REQUEST);
         }
-        log.info("updateBookingTaxi started. BookingTaxi = " + bookingTaxi.getTaxiid()  + " " + bookingTaxi.getTaxidate()+ " " + bookingTaxi.getCustomer()
-                 + " " + bookingTaxi.getId());
+        log.log(Level.FINE, "updateBookingTaxi started. BookingTaxi = {0} {1} {2} {3}",
+            new Object[] {bookingTaxi.getTaxiid(), bookingTaxi.getTaxidate(), bookingTaxi.getCustomer(), bookingTaxi.getId()});
 
         if (bookingTaxi.getId() != id) {
             // The client attempted to update the read-only Id. This is not permitted.
             Response response = Response.status(Response.Status.CONFLICT).entity("The bookingTaxi ID cannot be modified").build();
             throw new WebApplicationException(response);
         }
-        if (service.findById(bookingTaxi.getId()) == null) {
+        BookingTaxi current = service.findById(bookingTaxi.getId());
+        if (current == null) {
             // Verify if the bookingTaxi exists. Return 404, if not present.
             throw new WebApplicationException(Response.Status.NOT_FOUND);
         }
+        // Checked against the version of the representation the client read, references included
+        ConditionalRequests.checkUnchanged(request, headers, service.findVersion(id));
+        // The update replaces the version that was just checked, and the timestamp only moves if something changed
+        bookingTaxi.setVersion(current.getVersion());
+        bookingTaxi.setLastModified(current.getLastModified());
         
         Response.ResponseBuilder builder = null;
         
@@ -246,13 +359,14 @@ public class BookingTaxiRESTService {
             // Create an OK Response and pass the bookingTaxi back in case it is needed.
             builder = Response.ok(bookingTaxi);
 
-            log.info("updateBookingTaxi completed. BookingTaxi = " + bookingTaxi.getTaxiid()  + " " + bookingTaxi.getTaxidate()+ " " + bookingTaxi.getCustomer()+ " " + bookingTaxi.getId());
+            log.log(Level.FINE, "updateBookingTaxi completed. BookingTaxi = {0} {1} {2} {3}",
+                new Object[] {bookingTaxi.getTaxiid(), bookingTaxi.getTaxidate(), bookingTaxi.getCustomer(), bookingTaxi.getId()});
         } catch (ConstraintViolationException ce) {
-            log.info("ConstraintViolationException - " + ce.toString());
+            log.log(Level.INFO, "ConstraintViolationException - {0}", ce);
             // Handle bean validation issues
             builder = createViolationResponse(ce.getConstraintViolations());
         } catch (ValidationException e) {
-            log.info("ValidationException - " + e.toString());
+            log.log(Level.INFO, "ValidationException - {0}", e);
             // Handle the unique constrain violation
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("taxiid", "That taxi id is already used, please use a unique taxi id");
@@ -260,7 +374,7 @@ public class BookingTaxiRESTService {
             responseObj.put("anotherError", "You can find this error message in /src/main/java/org/jboss/quickstarts/wfk/rest/BookingTaxiRESTService.java line 242.");
             builder = Response.status(Response.Status.CONFLICT).entity(responseObj);
         } catch (Exception e) {
-            log.info("Exception - " + e.toString());
+            log.log(Level.INFO, "Exception - {0}", e);
             // Handle generic exceptions
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("error", e.getMessage());
@@ -281,7 +395,7 @@ public class BookingTaxiRESTService {
     @DELETE
     @Path("/{id:[0-9][0-9]*}")
     public Response deleteBookingTaxi(@PathParam("id") Long id) {
-        log.info("deleteBookingTaxi started. BookingTaxi ID = " + id);
+        log.log(Level.FINE, "deleteBookingTaxi started. BookingTaxi ID = {0}", id);
         Response.ResponseBuilder builder = null;
 
         try {
@@ -294,9 +408,10 @@ public class BookingTaxiRESTService {
             }
 
             builder = Response.noContent();
-            log.info("deleteBookingTaxi completed. BookingTaxi = " + bookingTaxi.getTaxiid()  + " " + bookingTaxi.getTaxidate() + " " + bookingTaxi.getCustomer()+ " " + bookingTaxi.getId());
+            log.log(Level.FINE, "deleteBookingTaxi completed. BookingTaxi = {0} {1} {2} {3}",
+                new Object[] {bookingTaxi.getTaxiid(), bookingTaxi.getTaxidate(), bookingTaxi.getCustomer(), bookingTaxi.getId()});
         } catch (Exception e) {
-            log.info("Exception - " + e.toString());
+            log.log(Level.INFO, "Exception - {0}", e);
             // Handle generic exceptions
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("error", e.getMessage());
@@ -314,7 +429,7 @@ public class BookingTaxiRESTService {
      * @return A Bad Request (400) Response containing all violation messages
      */
     private Response.ResponseBuilder createViolationResponse(Set<ConstraintViolation<?>> violations) {
-        log.fine("Validation completed. violations found: " + violations.size());
+        log.log(Level.FINE, "Validation completed. violations found: {0}", violations.size());
 
         Map<String, String> responseObj = new HashMap<String, String>();
 
@@ -29,9 +29,19 @@ import javax.validation.ValidationException;
 import org.jboss.quickstarts.wfk.contact.Contact;
 import org.jboss.quickstarts.wfk.taxi.Taxi;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.jboss.quickstarts.wfk.util.BulkBatch;
+import org.jboss.quickstarts.wfk.util.Claims;
+import org.jboss.quickstarts.wfk.util.EntityVersion;
+import org.jboss.quickstarts.wfk.util.Page;
+import org.jboss.quickstarts.wfk.util.PageCursor;
 
 /**
  * <p>This is a Repository class and connects the Service/Control layer (see {@link BookingService} with the
@@ -61,6 +71,64 @@ public class BookingTaxiRepository {
         TypedQuery<BookingTaxi> query = em.createNamedQuery(BookingTaxi.FIND_ALL, BookingTaxi.class); 
         return query.getResultList();
     }
+
+    /**
+     * <p>Returns one page of persisted {@link BookingTaxi} objects, in the order of {@link BookingTaxi#FIND_ALL}, starting right
+     * after the given sort key.</p>
+     *
+     * @param after The sort key (id) of the last BookingTaxi of the previous page; or null for the first page
+     * @param limit The maximum number of BookingTaxi objects to return
+     * @return The Page of BookingTaxi objects
+     */
+    Page<BookingTaxi> findPage(String[] after, int limit) {
+        TypedQuery<BookingTaxi> query;
+        if (after == null) {
+            query = em.createNamedQuery(BookingTaxi.FIND_ALL, BookingTaxi.class);
+        } else {
+            query = em.createNamedQuery(BookingTaxi.FIND_ALL_AFTER, BookingTaxi.class)
+                .setParameter("id", Long.valueOf(after[0]));
+        }
+        // One more than asked for, to know whether there is a next page
+        List<BookingTaxi> rows = query.setMaxResults(limit + 1).getResultList();
+        return PageCursor.page(rows, limit, SORT_KEY);
+    }
+
+    private static final PageCursor.SortKey<BookingTaxi> SORT_KEY = new PageCursor.SortKey<BookingTaxi>() {
+        @Override
+        public Object[] of(BookingTaxi bookingTaxi) {
+            return new Object[] {bookingTaxi.getId()};
+        }
+    };
+
+    /**
+     * <p>Returns one page of the {@link BookingTaxiSummary} of persisted BookingTaxi objects, in the order of
+     * {@link BookingTaxi#FIND_ALL_SUMMARIES}, starting right after the given sort key. The page is read in a single
+     * statement, without loading any BookingTaxi or what it refers to.</p>
+     *
+     * @param after The sort key (id) of the last BookingTaxi of the previous page; or null for the first page
+     * @param limit The maximum number of BookingTaxiSummary objects to return
+     * @return The Page of BookingTaxiSummary objects
+     */
+    Page<BookingTaxiSummary> findSummaryPage(String[] after, int limit) {
+        TypedQuery<BookingTaxiSummary> query;
+        if (after == null) {
+            query = em.createNamedQuery(BookingTaxi.FIND_ALL_SUMMARIES, BookingTaxiSummary.class);
+        } else {
+            query = em.createNamedQuery(BookingTaxi.FIND_ALL_SUMMARIES_AFTER, BookingTaxiSummary.class)
+                .setParameter("id", Long.valueOf(after[0]));
+        }
+        List<BookingTaxiSummary> rows = query.setMaxResults(limit + 1).getResultList();
+        return PageCursor.page(rows, limit, SUMMARY_SORT_KEY);
+    }
+
+    private static final PageCursor.SortKey<BookingTaxiSummary> SUMMARY_SORT_KEY =
+        new PageCursor.SortKey<BookingTaxiSummary>() {
+            @Override
+            public Object[] of(BookingTaxiSummary summary) {
+                return new Object[] {summary.getId()};
+            }
+        };
+
     BookingTaxi findByTaxidate(Date taxidate) {
     	 TypedQuery<BookingTaxi> query = em.createNamedQuery(BookingTaxi.FIND_BY_DATE, BookingTaxi.class).setParameter("taxidate", taxidate); 
          return query.getSingleResult();
@@ -74,10 +142,37 @@ public class BookingTaxiRepository {
     BookingTaxi findById(Long id) {
         return em.find(BookingTaxi.class, id);
     }
+
+    /**
+     * <p>Returns a single BookingTaxi object, specified by a Long id, together with its customer and taxi, all read in
+     * one statement. {@link #findById(Long)} leaves them to be loaded on first use, which is what a check needs; this
+     * is for a BookingTaxi that is sent back to the client in full.</p>
+     *
+     * @param id The id field of the BookingTaxi to be returned
+     * @return The BookingTaxi with the specified id; or null if there is none
+     */
+    BookingTaxi findWithReferences(Long id) {
+        List<BookingTaxi> rows = em.createNamedQuery(BookingTaxi.FIND_BY_ID, BookingTaxi.class)
+            .setParameter("id", id).getResultList();
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    /**
+     * <p>Returns the version and last modification time of a BookingTaxi, specified by a Long id, without loading it.</p>
+     *
+     * @param id The id field of the BookingTaxi
+     * @return The version of the BookingTaxi with the specified id; or null if there is none
+     */
+    EntityVersion findVersion(Long id) {
+        List<EntityVersion> versions = em.createNamedQuery(BookingTaxi.FIND_VERSION, EntityVersion.class)
+            .setParameter("id", id).getResultList();
+        return versions.isEmpty() ? null : versions.get(0);
+    }
     
-    BookingTaxi findByCustomer(Long customerId) {
-        TypedQuery<BookingTaxi> query = em.createNamedQuery(BookingTaxi.FIND_BY_CUSTOMER, BookingTaxi.class).setParameter("customer_id", customerId); 
-        return query.getSingleResult();
+    List<BookingTaxi> findByCustomer(Long customerId) {
+        TypedQuery<BookingTaxi> query = em.createNamedQuery(BookingTaxi.FIND_BY_CUSTOMER, BookingTaxi.class)
+            .setParameter("customer_id", customerId);
+        return query.getResultList();
     }
     BookingTaxi findByTaxiid(Long taxiid) {
         TypedQuery<BookingTaxi> query = em.createNamedQuery(BookingTaxi.FIND_BY_TAXIID, BookingTaxi.class).setParameter("taxi_id", taxiid); 
@@ -89,6 +184,29 @@ public class BookingTaxiRepository {
 		return query.getResultList();
 	}
 
+    /**
+     * <p>Checks whether the given taxi already has a booking on the given date, without loading any BookingTaxi.</p>
+     *
+     * <p>Only the id of at most one matching row is fetched, so the cost does not depend on how many bookings the taxi
+     * has accumulated.</p>
+     *
+     * @param taxiid The id of the Taxi to check
+     * @param taxidate The date to check
+     * @param excludeId The id of a BookingTaxi to ignore (the one being updated); or null
+     * @return true if another booking holds the taxi on that date
+     */
+    boolean existsByTaxiidAndDate(Long taxiid, Date taxidate, Long excludeId) {
+        TypedQuery<Long> query;
+        if (excludeId == null) {
+            query = em.createNamedQuery(BookingTaxi.FIND_ID_BY_TAXI_AND_DATE, Long.class);
+        } else {
+            query = em.createNamedQuery(BookingTaxi.FIND_OTHER_ID_BY_TAXI_AND_DATE, Long.class)
+                .setParameter("id", excludeId);
+        }
+        query.setParameter("taxi_id", taxiid).setParameter("taxidate", taxidate).setMaxResults(1);
+        return !query.getResultList().isEmpty();
+    }
+
     /**
      * <p>Returns a single BookingTaxi object, specified by a String email.</p>
      *
@@ -98,6 +216,29 @@ public class BookingTaxiRepository {
      * @return The first BookingTaxi with the specified email
      */
   
+    /**
+     * <p>Returns the days on which the given taxis are booked between first and last, as
+     * {@link BulkBatch#dayKey(Long, Date)} keys, for the validation of a bulk create. One query per
+     * {@value BulkBatch#IN_LIST_SIZE} taxis, instead of one per BookingTaxi.</p>
+     *
+     * @param taxiids The ids of the taxis
+     * @param first The first day to look at
+     * @param last The last day to look at
+     * @return The keys of the days the taxis are taken
+     */
+    Set<Object> findTakenDays(Collection<Long> taxiids, Date first, Date last) {
+        Set<Object> taken = new HashSet<Object>();
+        for (List<Long> part : BulkBatch.partition(new ArrayList<Long>(taxiids), BulkBatch.IN_LIST_SIZE)) {
+            List<?> rows = em.createNamedQuery(BookingTaxi.FIND_DAYS_BY_TAXIS)
+                .setParameter("taxi_ids", part).setParameter("first", first).setParameter("last", last).getResultList();
+            for (Object row : rows) {
+                Object[] columns = (Object[]) row;
+                taken.add(BulkBatch.dayKey((Long) columns[0], (Date) columns[1]));
+            }
+        }
+        return taken;
+    }
+
     /**
      * <p>Persists the provided BookingTaxi object to the application database using the EntityManager.</p>
      *
@@ -111,10 +252,12 @@ public class BookingTaxiRepository {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     BookingTaxi create(BookingTaxi bookingTaxi) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("BookingTaxiRepository.create() - Creating " + bookingTaxi.getCustomer() + bookingTaxi.getTaxiid() );
+        log.log(Level.FINE, "BookingTaxiRepository.create() - Creating {0} {1}",
+            new Object[] {bookingTaxi.getCustomer(), bookingTaxi.getTaxiid()});
         
-        // Write the bookingTaxi to the database.
+        // Write the bookingTaxi to the database. Flushed now, so that losing its day to a concurrent booking shows here.
         em.persist(bookingTaxi);
+        Claims.flush(em, "Unique bookingTaxi Violation");
         
         return bookingTaxi;
     }
@@ -135,10 +278,12 @@ public class BookingTaxiRepository {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     BookingTaxi update(BookingTaxi bookingTaxi) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("BookingTaxiRepository.update() - Updating " + bookingTaxi.getCustomer() + bookingTaxi.getTaxiid());
+        log.log(Level.FINE, "BookingTaxiRepository.update() - Updating {0} {1}",
+            new Object[] {bookingTaxi.getCustomer(), bookingTaxi.getTaxiid()});
         
         // Either update the bookingTaxi or add it if it can't be found.
         em.merge(bookingTaxi);
+        Claims.flush(em, "Unique bookingTaxi Violation");
         
         return bookingTaxi;
     }
@@ -152,7 +297,8 @@ public class BookingTaxiRepository {
      * @throws Exception
      */
     BookingTaxi delete(BookingTaxi bookingTaxi) throws Exception {
-        log.info("BookingTaxiRepository.delete() - Deleting " + bookingTaxi.getCustomer() + bookingTaxi.getTaxiid());
+        log.log(Level.FINE, "BookingTaxiRepository.delete() - Deleting {0} {1}",
+            new Object[] {bookingTaxi.getCustomer(), bookingTaxi.getTaxiid()});
         
         if (bookingTaxi.getId() != null) {
             /*
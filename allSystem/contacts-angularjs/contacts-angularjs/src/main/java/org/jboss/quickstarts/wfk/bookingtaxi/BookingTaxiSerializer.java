@@ -0,0 +1,51 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.bookingtaxi;
+
+import java.io.IOException;
+
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.io.SerializedString;
+import org.codehaus.jackson.map.SerializerProvider;
+import org.jboss.quickstarts.wfk.contact.ContactSerializer;
+import org.jboss.quickstarts.wfk.taxi.TaxiSerializer;
+import org.jboss.quickstarts.wfk.util.EntitySerializer;
+
+/**
+ * <p>Writes a {@link BookingTaxi} as JSON without reflection, with the same properties Jackson's bean serializer would
+ * write.</p>
+ *
+ * @see org.jboss.quickstarts.wfk.util.EntityJsonModule
+ */
+public class BookingTaxiSerializer extends EntitySerializer<BookingTaxi> {
+
+    public static final BookingTaxiSerializer INSTANCE = new BookingTaxiSerializer();
+
+    private static final SerializedString ID = new SerializedString("id");
+    private static final SerializedString CUSTOMER = new SerializedString("customer");
+    private static final SerializedString TAXIID = new SerializedString("taxiid");
+    private static final SerializedString TAXIDATE = new SerializedString("taxidate");
+
+    @Override
+    protected void serializeFields(BookingTaxi value, JsonGenerator jgen, SerializerProvider provider)
+        throws IOException {
+        writeNumber(jgen, ID, value.getId());
+        writeEntity(jgen, CUSTOMER, value.getCustomer(), ContactSerializer.INSTANCE, provider);
+        writeEntity(jgen, TAXIID, value.getTaxiid(), TaxiSerializer.INSTANCE, provider);
+        writeDate(jgen, TAXIDATE, value.getTaxidate(), provider);
+    }
+}
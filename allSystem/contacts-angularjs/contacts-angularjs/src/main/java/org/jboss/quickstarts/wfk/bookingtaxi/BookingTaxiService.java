@@ -38,7 +38,13 @@ import javax.validation.ValidationException;
 import java.net.URI;
 import java.util.Date;
 import java.util.List;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.jboss.quickstarts.wfk.util.BulkBatch;
+import org.jboss.quickstarts.wfk.util.BulkMode;
+import org.jboss.quickstarts.wfk.util.BulkWriter;
+import org.jboss.quickstarts.wfk.util.EntityVersion;
+import org.jboss.quickstarts.wfk.util.Page;
 
 /**
  * <p>This Service assumes the Control responsibility in the ECB pattern.</p>
@@ -64,6 +70,9 @@ public class BookingTaxiService {
     @Inject
     private BookingTaxiValidator validator;
 
+    @Inject
+    private BulkWriter writer;
+
     @Inject
     private BookingTaxiRepository crud;
 
@@ -78,7 +87,31 @@ public class BookingTaxiService {
     List<BookingTaxi> findAllOrderedByName() {
         return crud.findAllOrderedByName();
     }
-    BookingTaxi findAllByCustomer(Long customer) {
+
+    /**
+     * <p>Returns one page of {@link BookingTaxi} objects, see {@link BookingTaxiRepository#findPage(String[], int)}.</p>
+     *
+     * @param after The sort key of the last BookingTaxi of the previous page; or null for the first page
+     * @param limit The maximum number of BookingTaxi objects to return
+     * @return The Page of BookingTaxi objects
+     */
+    Page<BookingTaxi> findPage(String[] after, int limit) {
+        return crud.findPage(after, limit);
+    }
+
+    /**
+     * <p>Returns one page of {@link BookingTaxiSummary} objects, see
+     * {@link BookingTaxiRepository#findSummaryPage(String[], int)}.</p>
+     *
+     * @param after The sort key of the last BookingTaxi of the previous page; or null for the first page
+     * @param limit The maximum number of BookingTaxiSummary objects to return
+     * @return The Page of BookingTaxiSummary objects
+     */
+    Page<BookingTaxiSummary> findSummaryPage(String[] after, int limit) {
+        return crud.findSummaryPage(after, limit);
+    }
+
+    List<BookingTaxi> findAllByCustomer(Long customer) {
         return crud.findByCustomer(customer);
     }
     BookingTaxi findAllByTaxiid(Long taxiid) {
@@ -98,6 +131,28 @@ public class BookingTaxiService {
         return crud.findById(id);
     }
 
+    /**
+     * <p>Returns a single BookingTaxi object with everything it refers to, see
+     * {@link BookingTaxiRepository#findWithReferences(Long)}.</p>
+     *
+     * @param id The id field of the BookingTaxi to be returned
+     * @return The BookingTaxi with the specified id; or null if there is none
+     */
+    BookingTaxi findWithReferences(Long id) {
+        return crud.findWithReferences(id);
+    }
+
+    /**
+     * <p>Returns the version and last modification time of a BookingTaxi, specified by a Long id, to answer a conditional
+     * request without loading the BookingTaxi.</p>
+     *
+     * @param id The id field of the BookingTaxi
+     * @return The version of the BookingTaxi with the specified id; or null if there is none
+     */
+    EntityVersion findVersion(Long id) {
+        return crud.findVersion(id);
+    }
+
     /**
      * <p>Returns a single BookingTaxi object, specified by a String customer.</p>
      *
@@ -138,7 +193,8 @@ public class BookingTaxiService {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     BookingTaxi create(BookingTaxi bookingTaxi) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("BookingTaxiService.create() - Creating " + bookingTaxi.getCustomer()+" "+ bookingTaxi.getTaxiid());
+        log.log(Level.FINE, "BookingTaxiService.create() - Creating {0} {1}",
+            new Object[] {bookingTaxi.getCustomer(), bookingTaxi.getTaxiid()});
         
         // Check to make sure the data fits with the parameters in the BookingTaxi model and passes validation.
         validator.validateBookingTaxi(bookingTaxi);
@@ -165,6 +221,25 @@ public class BookingTaxiService {
         return crud.create(bookingTaxi);
     }
 
+    /**
+     * <p>Writes the BookingTaxi objects of a bulk create to the application database.</p>
+     *
+     * <p>The whole batch is validated at once by {@link BookingTaxiValidator#validateBookingTaxis(BulkBatch)}, then the items that passed
+     * are inserted by a {@link BulkWriter} in JDBC batches. The outcome of every item is recorded in the batch.</p>
+     *
+     * @param batch The BookingTaxi objects to be written
+     * @param mode Whether the batch is written all or nothing, or item by item
+     */
+    void createAll(BulkBatch<BookingTaxi> batch, BulkMode mode) {
+        log.log(Level.FINE, "BookingTaxiService.createAll() - Creating {0} BookingTaxis, {1}", new Object[] {batch.size(), mode});
+
+        // Check the whole batch against the BookingTaxi model and the database, rejecting the items that fail.
+        validator.validateBookingTaxis(batch);
+
+        // Write the others to the database.
+        writer.write(batch, mode);
+    }
+
     /**
      * <p>Updates an existing BookingTaxi object in the application database with the provided BookingTaxi object.<p/>
      *
@@ -175,7 +250,8 @@ public class BookingTaxiService {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     BookingTaxi update(BookingTaxi bookingTaxi) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("BookingTaxiService.update() - Updating " + bookingTaxi.getCustomer()+" "+ bookingTaxi.getTaxiid() );
+        log.log(Level.FINE, "BookingTaxiService.update() - Updating {0} {1}",
+            new Object[] {bookingTaxi.getCustomer(), bookingTaxi.getTaxiid()});
         
         // Check to make sure the data fits with the parameters in the BookingTaxi model and passes validation.
         validator.validateBookingTaxi(bookingTaxi);
@@ -209,7 +285,8 @@ public class BookingTaxiService {
      * @throws Exception
      */
     BookingTaxi delete(BookingTaxi bookingTaxi) throws Exception {
-        log.info("BookingTaxiService.delete() - Deleting " + bookingTaxi.getCustomer()+" "+ bookingTaxi.getTaxiid() );
+        log.log(Level.FINE, "BookingTaxiService.delete() - Deleting {0} {1}",
+            new Object[] {bookingTaxi.getCustomer(), bookingTaxi.getTaxiid()});
         
         BookingTaxi deletedBookingTaxi = null;
         
@@ -0,0 +1,56 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.bookingtaxi;
+
+import java.util.Date;
+
+import org.jboss.quickstarts.wfk.util.Summary;
+
+/**
+ * <p>The summary view of a {@link BookingTaxi}: its taxi by id and name only.</p>
+ *
+ * @see BookingTaxi#FIND_ALL_SUMMARIES
+ */
+public class BookingTaxiSummary extends Summary {
+
+    /** The {@link #getType() type} of a BookingTaxiSummary. */
+    public static final String TYPE = "bookingtaxis";
+
+    private final Long taxiId;
+
+    private final String taxiRegistration;
+
+    public BookingTaxiSummary(Long id, Date taxidate, Long customerId, String firstName, String lastName, Long taxiId,
+            String taxiRegistration) {
+        super(id, taxidate, customerId, firstName, lastName);
+        this.taxiId = taxiId;
+        this.taxiRegistration = taxiRegistration;
+    }
+
+    public Long getTaxiId() {
+        return taxiId;
+    }
+
+    public String getTaxiRegistration() {
+        return taxiRegistration;
+    }
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+}
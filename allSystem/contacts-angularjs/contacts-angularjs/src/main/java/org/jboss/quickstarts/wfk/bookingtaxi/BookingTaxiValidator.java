@@ -31,9 +31,10 @@ import javax.validation.ValidationException;
 import javax.validation.Validator;
 
 import org.jboss.quickstarts.wfk.contact.Contact;
-import org.jboss.quickstarts.wfk.contact.ContactRepository;
 import org.jboss.quickstarts.wfk.taxi.Taxi;
-import org.jboss.quickstarts.wfk.taxi.TaxiRepository;
+import org.jboss.quickstarts.wfk.util.AvailabilityIndex;
+import org.jboss.quickstarts.wfk.util.BulkBatch;
+import org.jboss.quickstarts.wfk.util.ReferenceResolver;
 
 /**
  * <p>This class provides methods to check BookingTaxi objects against arbitrary requirements.</p>
@@ -50,9 +51,7 @@ public class BookingTaxiValidator {
     @Inject
     private BookingTaxiRepository crud;
     @Inject
-    private ContactRepository ccrud;
-    @Inject
-    private TaxiRepository tcrud;
+    private ReferenceResolver resolver;
 
     /**
      * <p>Validates the given BookingTaxi object and throws validation exceptions based on the type of error. If the error is standard
@@ -74,56 +73,96 @@ public class BookingTaxiValidator {
         if (!violations.isEmpty()) {
             throw new ConstraintViolationException(new HashSet<ConstraintViolation<?>>(violations));
         }  
-        if(bookingTaxi!=null)
-        {
-        if ((taxiNotExists(bookingTaxi.getTaxiid().getId(), bookingTaxi.getId())==false)||(customerExists(bookingTaxi.getCustomer().getId(), bookingTaxi.getId())==false)||bookingTaxiExists(bookingTaxi.getTaxiid().getId(), bookingTaxi.getId(),bookingTaxi.getTaxidate())) 
-        {
-        	if (bookingTaxiExists( bookingTaxi.getTaxiid().getId(),bookingTaxi.getId(),bookingTaxi.getTaxidate()))
-        		throw new ValidationException("Unique bookingTaxi Violation");
-        	 if ((taxiNotExists(bookingTaxi.getTaxiid().getId(), bookingTaxi.getId())==false)&&(customerExists(bookingTaxi.getCustomer().getId(), bookingTaxi.getId())==false)) 
-        		throw new ValidationException("Unique btc Violation");
-        	else if ((customerExists(bookingTaxi.getCustomer().getId(), bookingTaxi.getId())==false))
-        		throw new ValidationException("Unique customer Violation");
-        	else if ((taxiNotExists(bookingTaxi.getTaxiid().getId(), bookingTaxi.getId())==false))
-        		throw new ValidationException("Unique taxiid Violation");	
-        	} 
-        } 
+        if (bookingTaxi != null) {
+            Long taxiid = bookingTaxi.getTaxiid() == null ? null : bookingTaxi.getTaxiid().getId();
+            Long customer = bookingTaxi.getCustomer() == null ? null : bookingTaxi.getCustomer().getId();
+
+            // Load the taxi and the customer together, the checks below are then answered from memory
+            resolver.resolve(ReferenceResolver.ref(Taxi.class, taxiid), ReferenceResolver.ref(Contact.class, customer));
+            boolean taxiFound = taxiNotExists(taxiid, bookingTaxi.getId());
+            boolean customerFound = customerExists(customer, bookingTaxi.getId());
+
+            if (bookingTaxiExists(taxiid, bookingTaxi.getId(), bookingTaxi.getTaxidate()))
+                throw new ValidationException("Unique bookingTaxi Violation");
+            if (!taxiFound && !customerFound)
+                throw new ValidationException("Unique btc Violation");
+            else if (!customerFound)
+                throw new ValidationException("Unique customer Violation");
+            else if (!taxiFound)
+                throw new ValidationException("Unique taxiid Violation");
         }
-   
+    }
 
     /**
-     * <p>Checks if a bookingTaxi with the same customer address is already registered. This is the only way to easily capture the
-     * "@UniqueConstraint(columnNames = "customer")" constraint from the BookingTaxi class.</p>
-     * 
-     * <p>Since Update will being using an customer that is already in the database we need to make sure that it is the customer
-     * from the record being updated.</p>
-     * 
-     * @param customer The customer to check is unique
-     * @param id The user id to check the customer against if it was found
-     * @return boolean which represents whether the customer was found, and if so if it belongs to the user with id
+     * <p>Validates all the BookingTaxis of a bulk create at once. The items the single create would reject are rejected in
+     * the batch instead, with the same errors: those with bean validation errors with a 400, and with a 409 those whose
+     * taxi or customer does not exist, or whose taxi is already booked that day, in the database or by an earlier
+     * item of the batch.</p>
+     *
+     * <p>The taxis and the customers of the whole batch are loaded through {@link ReferenceResolver#resolveAll},
+     * and the days the taxis are booked with one more query, rather than a few queries per item.</p>
+     *
+     * @param batch The BookingTaxi objects to be validated
      */
-    
-    boolean customerExists(	Long customer, Long id) {
-        Contact bookingTaxi = null;
-        Contact bookingTaxiWithID = null;
-        try {
-            bookingTaxi = ccrud.findById(customer);
-        } catch (NoResultException e) {
-            // ignore
+    void validateBookingTaxis(BulkBatch<BookingTaxi> batch) {
+        batch.validateBeans(validator);
+
+        List<Integer> pending = batch.pending();
+        Set<Long> taxiids = new HashSet<Long>();
+        Set<Long> customers = new HashSet<Long>();
+        Date first = null;
+        Date last = null;
+        for (int index : pending) {
+            BookingTaxi bookingTaxi = batch.get(index);
+            taxiids.add(bookingTaxi.getTaxiid() == null ? null : bookingTaxi.getTaxiid().getId());
+            customers.add(bookingTaxi.getCustomer() == null ? null : bookingTaxi.getCustomer().getId());
+            Date date = bookingTaxi.getTaxidate();
+            if (date != null) {
+                first = first == null || date.before(first) ? date : first;
+                last = last == null || date.after(last) ? date : last;
+            }
         }
+        taxiids.remove(null);
+        resolver.resolveAll(Taxi.class, taxiids);
+        resolver.resolveAll(Contact.class, customers);
+        Set<Object> taken = taxiids.isEmpty() || first == null
+            ? new HashSet<Object>() : crud.findTakenDays(taxiids, first, last);
 
-        if (bookingTaxi != null && id != null) {
-            try {
-                bookingTaxiWithID = ccrud.findById(id);
-                if (bookingTaxiWithID != null && bookingTaxiWithID.getId().equals(customer)) {
-                    bookingTaxi = null;
-                }
-                
-            } catch (NoResultException e) {
-                // ignore
+        for (int index : pending) {
+            BookingTaxi bookingTaxi = batch.get(index);
+            Long taxiid = bookingTaxi.getTaxiid() == null ? null : bookingTaxi.getTaxiid().getId();
+            Long customer = bookingTaxi.getCustomer() == null ? null : bookingTaxi.getCustomer().getId();
+            boolean taxiFound = resolver.exists(Taxi.class, taxiid);
+            boolean customerFound = resolver.exists(Contact.class, customer);
+            Object day = BulkBatch.dayKey(taxiid, bookingTaxi.getTaxidate());
+
+            if (day != null && taken.contains(day)) {
+                batch.conflict(index, "bookingTaxi", "That taxiid and date are existed");
+            } else if (!taxiFound && !customerFound) {
+                batch.conflict(index, "btc", "That taxidate and customer are not  existed");
+            } else if (!customerFound) {
+                batch.conflict(index, "customer", "That customer is not existed");
+            } else if (!taxiFound) {
+                batch.conflict(index, "taxiid", "That taxiid is not existed");
+            } else if (day != null) {
+                // The taxi is no longer free that day for the later items of the batch
+                taken.add(day);
             }
         }
-        return bookingTaxi != null;
+    }
+
+    /**
+     * <p>Checks that the customer making the booking exists.</p>
+     *
+     * <p>The customer is looked up through the request's {@link ReferenceResolver}, so asking again after
+     * validateBookingTaxi() has resolved it does not go back to the database.</p>
+     * 
+     * @param customer The id of the customer to check
+     * @param id The id of the booking being validated
+     * @return boolean which represents whether the customer was found
+     */
+    boolean customerExists(Long customer, Long id) {
+        return resolver.exists(Contact.class, customer);
     }
       
     
@@ -150,32 +189,18 @@ public class BookingTaxiValidator {
         return bookingTaxi != null;
     }
     
-    boolean taxiNotExists(	Long taxiid, Long id) {
-        Taxi bookingTaxi = null;
-        Taxi bookingTaxiWithID = null;
-        try {
-            bookingTaxi = tcrud.findById(taxiid);
-        } catch (NoResultException e) {
-            // ignore
-        }
-
-        if (bookingTaxi != null && id != null) {
-            try {
-                bookingTaxiWithID = tcrud.findById(id);
-                if (bookingTaxiWithID != null && bookingTaxiWithID.getId().equals(taxiid)) {
-                    bookingTaxi = null;
-                }
-                
-            } catch (NoResultException e) {
-                // ignore
-            }
-        }
-        return bookingTaxi != null;
+    /**
+     * <p>Checks that the taxi being booked exists (despite the name, true means it was found).</p>
+     *
+     * @param taxiid The id of the taxi to check
+     * @param id The id of the booking being validated
+     * @return boolean which represents whether the taxi was found
+     */
+    boolean taxiNotExists(Long taxiid, Long id) {
+        return resolver.exists(Taxi.class, taxiid);
     }
     
     
-    
-    
     boolean dateExists(Date taxidate, Long id) {
     	
         BookingTaxi bookingTaxi = null;
@@ -202,30 +227,29 @@ public class BookingTaxiValidator {
         return bookingTaxi != null;
     }
     
+    /**
+     * <p>Checks if the taxi is already booked on the given date by a booking other than the one being validated.</p>
+     *
+     * <p>This is answered from the {@link AvailabilityIndex}, a bit test on the taxi's booked days, once that is
+     * loaded; until then by an indexed lookup on (taxi_id, taxidate). A day the index has not heard of yet reads as
+     * free, the unique constraint still turns the booking down on insert. A day it has as taken is confirmed by the
+     * database, since it may have been freed on another node.</p>
+     *
+     * @param taxiid The id of the taxi to check
+     * @param bookingTaxiId The id of the booking being updated; or null when creating
+     * @param date The date to check
+     * @return boolean which represents whether the taxi is already taken on that date
+     */
     boolean bookingTaxiExists(Long taxiid, Long bookingTaxiId, Date date) {
-        List<BookingTaxi> bookingTaxis = null;
-        BookingTaxi bookingTaxi = null;
-        try {
-            bookingTaxis = crud.findListByTaxiid(taxiid);
-        } catch (NoResultException e) {
-            // ignore
+        if (taxiid == null || date == null) {
+            return false;
         }
-
-        try {
-        	for (BookingTaxi temp: bookingTaxis)
-            {
-        		System.out.println("XXXXXXXXBookingTaxi");
-        		System.out.println(temp.getId());
-        		System.out.println(temp.getTaxidate());
-            	if (temp.getTaxidate().equals(date)&&temp.getId()!=bookingTaxiId)
-            		bookingTaxi=temp;
-            }
-		} catch (Exception e) {
-			// TODO: handle exception
-		}
-        
-        
-        return bookingTaxi != null;
+        // Most days are free, and the index says so without a query. One it has as taken may have been freed on
+        // another node, so the database has the last word before the booking is turned down.
+        if (AvailabilityIndex.TAXIS.isReady() && !AvailabilityIndex.TAXIS.isTaken(taxiid, date, bookingTaxiId)) {
+            return false;
+        }
+        return crud.existsByTaxiidAndDate(taxiid, date, bookingTaxiId);
     }
 }
 
@@ -17,6 +17,7 @@
 package org.jboss.quickstarts.wfk.contact;
 
 import java.io.Serializable;
+import java.util.Date;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
@@ -26,6 +27,10 @@ import javax.xml.bind.annotation.XmlRootElement;
 
 import org.hibernate.validator.constraints.Email;
 import org.hibernate.validator.constraints.NotEmpty;
+import org.hibernate.annotations.GenericGenerator;
+import org.codehaus.jackson.annotate.JsonIgnore;
+import org.jboss.quickstarts.wfk.util.PooledIdGenerator;
+import org.jboss.quickstarts.wfk.util.Versioned;
 
 /**
  * <p>This is a the Domain object. The Contact class represents how contact resources are represented in the application
@@ -40,18 +45,34 @@ import org.hibernate.validator.constraints.NotEmpty;
  * form of query in JPA though is it more error prone due to the syntax being in a String.  This makes it harder to debug.
  */
 @Entity
+@Cacheable
 @NamedQueries({
-    @NamedQuery(name = Contact.FIND_ALL, query = "SELECT c FROM Contact c ORDER BY c.lastName ASC, c.firstName ASC"),
-    @NamedQuery(name = Contact.FIND_BY_EMAIL, query = "SELECT c FROM Contact c WHERE c.email = :email")
+    @NamedQuery(name = Contact.FIND_ALL, query = "SELECT c FROM Contact c ORDER BY c.lastName ASC, c.firstName ASC, c.id ASC",
+        hints = {@QueryHint(name = "org.hibernate.cacheable", value = "true"),
+                 @QueryHint(name = "org.hibernate.cacheRegion", value = Contact.QUERY_CACHE_REGION)}),
+    @NamedQuery(name = Contact.FIND_ALL_AFTER, query = "SELECT c FROM Contact c WHERE c.lastName > :lastName OR (c.lastName = :lastName AND (c.firstName > :firstName OR (c.firstName = :firstName AND c.id > :id))) ORDER BY c.lastName ASC, c.firstName ASC, c.id ASC",
+        hints = {@QueryHint(name = "org.hibernate.cacheable", value = "true"),
+                 @QueryHint(name = "org.hibernate.cacheRegion", value = Contact.QUERY_CACHE_REGION)}),
+    @NamedQuery(name = Contact.FIND_BY_EMAIL, query = "SELECT c FROM Contact c WHERE c.email = :email",
+        hints = {@QueryHint(name = "org.hibernate.cacheable", value = "true"),
+                 @QueryHint(name = "org.hibernate.cacheRegion", value = Contact.QUERY_CACHE_REGION)}),
+    @NamedQuery(name = Contact.FIND_EMAILS_IN, query = "SELECT c.email FROM Contact c WHERE c.email IN :emails"),
+    @NamedQuery(name = Contact.FIND_VERSION, query = "SELECT NEW org.jboss.quickstarts.wfk.util.EntityVersion(c.version, c.lastModified) FROM Contact c WHERE c.id = :id")
 })
 @XmlRootElement
 @Table(name = "Contact", uniqueConstraints = @UniqueConstraint(columnNames = "email"))
-public class Contact implements Serializable {
+public class Contact implements Serializable, Versioned {
     /** Default value included to remove warning. Remove or modify at will. **/
     private static final long serialVersionUID = 1L;
     
+    /** The query cache region of the named queries below; their entities go to the region of the entity. */
+    public static final String QUERY_CACHE_REGION = "Contact.queries";
+
     public static final String FIND_ALL = "Contact.findAll";
+    public static final String FIND_ALL_AFTER = "Contact.findAllAfter";
     public static final String FIND_BY_EMAIL = "Contact.findByEmail";
+    public static final String FIND_EMAILS_IN = "Contact.findEmailsIn";
+    public static final String FIND_VERSION = "Contact.findVersion";
 
     /*
      * The  error messages match the ones in the UI so that the user isn't confused by two similar error messages for
@@ -64,9 +85,17 @@ public class Contact implements Serializable {
      */
     
     @Id
-    @GeneratedValue(strategy = GenerationType.TABLE)
+    @GeneratedValue(generator = PooledIdGenerator.NAME)
+    @GenericGenerator(name = PooledIdGenerator.NAME, strategy = PooledIdGenerator.STRATEGY)
     private Long id;
 
+    @Version
+    private long version;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "last_modified")
+    private Date lastModified;
+
     @NotNull
     @Size(min = 1, max = 25)
     @Pattern(regexp = "[A-Za-z-']+", message = "Please use a name without numbers or specials")
@@ -129,4 +158,31 @@ public class Contact implements Serializable {
         this.phoneNumber = phoneNumber;
     }
 
+    @JsonIgnore
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    @JsonIgnore
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    @JsonIgnore
+    @Override
+    public Date getLastModified() {
+        return lastModified;
+    }
+
+    @JsonIgnore
+    public void setLastModified(Date lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        lastModified = new Date();
+    }
 }
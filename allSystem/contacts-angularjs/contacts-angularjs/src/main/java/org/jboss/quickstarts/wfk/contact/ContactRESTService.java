@@ -16,16 +16,20 @@
  */
 package org.jboss.quickstarts.wfk.contact;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.ejb.NoSuchEntityException;
 import javax.ejb.Stateless;
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.interceptor.Interceptors;
 import javax.persistence.NoResultException;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
@@ -37,11 +41,24 @@ import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.WebApplicationException;
 
+import org.jboss.quickstarts.wfk.util.BulkBatch;
+import org.jboss.quickstarts.wfk.util.BulkMode;
+import org.jboss.quickstarts.wfk.util.ConditionalRequests;
+import org.jboss.quickstarts.wfk.util.JsonExporter;
+import org.jboss.quickstarts.wfk.util.MetricsInterceptor;
+import org.jboss.quickstarts.wfk.util.Page;
+import org.jboss.quickstarts.wfk.util.PageCursor;
+import org.jboss.quickstarts.wfk.util.Summary;
+
 /**
  * <p>This class exposes the functionality of {@link ContactService} over HTTP endpoints as a RESTful resource via
  * JAX-RS.</p>
@@ -67,22 +84,47 @@ import javax.ws.rs.WebApplicationException;
 @Consumes(MediaType.APPLICATION_JSON)
 @Produces(MediaType.APPLICATION_JSON)
 @Stateless
+@Interceptors(MetricsInterceptor.class)
 public class ContactRESTService {
     @Inject
     private @Named("logger") Logger log;
     
     @Inject
     private ContactService service;
+
+    @Inject
+    private JsonExporter exporter;
     
     /**
-     * <p>Search for and return all the Contacts.  They are sorted alphabetically by name.</p>
+     * <p>Search for and return the Contacts, one page at a time.  They are sorted alphabetically by name.</p>
+     *
+     * <p>Each response carries the cursor of the following page in the {@value PageCursor#NEXT_CURSOR_HEADER} header,
+     * which is absent on the last page. Add stream=true to get all of them at once instead, for an export.</p>
      * 
+     * @param cursor The cursor of the page to return; or null for the first page
+     * @param limit The maximum number of Contacts to return; or null for the default page size
+     * @param stream If true, all the Contacts are streamed back in a single response and cursor and limit are ignored
      * @return A Response containing a list of Contacts
      */
     @GET
+    public Response retrieveAllContacts(@QueryParam("cursor") String cursor, @QueryParam("limit") Integer limit,
+            @QueryParam("stream") boolean stream) {
+        if (stream) {
+            // Written row by row as RESTEasy sends the response, instead of being built in memory first
+            return Response.ok(exporter.stream(Contact.FIND_ALL)).build();
+        }
+        int pageSize = PageCursor.limit(limit);
+        Page<Contact> contacts = service.findPage(PageCursor.decode(cursor, 3), pageSize);
+        return Response.ok(contacts.getItems()).header(PageCursor.NEXT_CURSOR_HEADER, contacts.getNextCursor()).build();
+    }
+
+    /**
+     * <p>Returns the first page of Contacts, with the default page size.</p>
+     * 
+     * @return A Response containing a list of Contacts
+     */
     public Response retrieveAllContacts() {
-        List<Contact> contacts = service.findAllOrderedByName();
-        return Response.ok(contacts).build();
+        return retrieveAllContacts(null, null, false);
     }
 
     /**
@@ -109,21 +151,65 @@ public class ContactRESTService {
     
     /**
      * <p>Search for and return a Contact identified by id.</p>
+     *
+     * <p>The response carries the version of the Contact as its ETag, and its Last-Modified. A client that sends them back
+     * in If-None-Match or If-Modified-Since gets a 304 (Not Modified) while its copy is current, found out from the
+     * version alone without loading the Contact.</p>
      * 
      * @param id The long parameter value provided as a Contact's id
+     * @param request The request, to evaluate its preconditions
+     * @param headers The headers of the request
      * @return A Response containing a single Contact
      */
     @GET
     @Path("/{id:[0-9]+}")
-    public Response retrieveContactById(@PathParam("id") long id) {
+    public Response retrieveContactById(@PathParam("id") long id, @Context Request request, @Context HttpHeaders headers) {
+        if (ConditionalRequests.isConditional(headers)) {
+            Response notModified = ConditionalRequests.notModified(request, headers, service.findVersion(id));
+            if (notModified != null) {
+                return notModified;
+            }
+        }
         Contact contact = service.findById(id);
         if (contact == null) {
             throw new WebApplicationException(Response.Status.NOT_FOUND);
         }
-        log.info("findById " + id + ": found Contact = " + contact.getFirstName() + " " + contact.getLastName() + " " + contact.getEmail() + " " + contact.getPhoneNumber() + " "
-                + contact.getId());
+        log.log(Level.FINE, "findById {0}: found Contact = {1} {2} {3} {4} {5}",
+            new Object[] {id, contact.getFirstName(), contact.getLastName(), contact.getEmail(), contact.getPhoneNumber(), contact.getId()});
         
-        return Response.ok(contact).build();
+        return ConditionalRequests.ok(contact).build();
+    }
+
+    /**
+     * <p>Search for and return the itinerary of a Contact: its bookings, flights, hotels and taxis together, as
+     * summaries sorted by date, one page at a time.</p>
+     *
+     * <p>Each entry is the summary view of a booking (see <i>view=summary</i> on the booking lists), whose <i>type</i>
+     * is the resource the booking belongs to, e.g. bookingtaxis. The page is read in a single transaction, and carries
+     * the cursor of the following page in the {@value PageCursor#NEXT_CURSOR_HEADER} header like the other lists.</p>
+     *
+     * @param id The long parameter value provided as a Contact's id
+     * @param cursor The cursor of the page to return; or null for the first page. A malformed one gives a 400 (Bad
+     * Request).
+     * @param limit The maximum number of entries to return; or null for the default page size
+     * @return A Response containing a list of booking summaries
+     */
+    @GET
+    @Path("/{id:[0-9]+}/itinerary")
+    public Response retrieveItinerary(@PathParam("id") long id, @QueryParam("cursor") String cursor,
+            @QueryParam("limit") Integer limit) {
+        int pageSize = PageCursor.limit(limit);
+        String[] after = PageCursor.decode(cursor, 3);
+        // The sort key is the day in milliseconds, the type of the booking and its id; any type sorts somewhere
+        if (after != null && !(PageCursor.isLong(after[0]) && PageCursor.isLong(after[2]))) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+        if (service.findById(id) == null) {
+            throw new WebApplicationException(Response.Status.NOT_FOUND);
+        }
+        Page<Summary> itinerary = service.findItinerary(id, after, pageSize);
+        return Response.ok(itinerary.getItems())
+            .header(PageCursor.NEXT_CURSOR_HEADER, itinerary.getNextCursor()).build();
     }
 
     /**
@@ -136,8 +222,8 @@ public class ContactRESTService {
     @SuppressWarnings("unused")
     @POST
     public Response createContact(Contact contact) {
-        log.info("createContact started. Contact = " + contact.getFirstName() + " " + contact.getLastName() + " " + contact.getEmail() + " " + contact.getPhoneNumber() + " "
-            +  contact.getId());
+        log.log(Level.FINE, "createContact started. Contact = {0} {1} {2} {3} {4}",
+            new Object[] {contact.getFirstName(), contact.getLastName(), contact.getEmail(), contact.getPhoneNumber(), contact.getId()});
         if (contact == null) {
             throw new WebApplicationException(Response.Status.BAD_REQUEST);
         }
@@ -151,20 +237,20 @@ public class ContactRESTService {
             // Create a "Resource Created" 201 Response and pass the contact back in case it is needed.
             builder = Response.status(Response.Status.CREATED).entity(contact);
             
-            log.info("createContact completed. Contact = " + contact.getFirstName() + " " + contact.getLastName() + " " + contact.getEmail() + " " + contact.getPhoneNumber() + " "
-                + contact.getId());
+            log.log(Level.FINE, "createContact completed. Contact = {0} {1} {2} {3} {4}",
+                new Object[] {contact.getFirstName(), contact.getLastName(), contact.getEmail(), contact.getPhoneNumber(), contact.getId()});
         } catch (ConstraintViolationException ce) {
-            log.info("ConstraintViolationException - " + ce.toString());
+            log.log(Level.INFO, "ConstraintViolationException - {0}", ce);
             // Handle bean validation issues
             builder = createViolationResponse(ce.getConstraintViolations());
         } catch (ValidationException e) {
-            log.info("ValidationException - " + e.toString());
+            log.log(Level.INFO, "ValidationException - {0}", e);
             // Handle the unique constrain violation
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("email", "That email is already used, please use a unique email");
             builder = Response.status(Response.Status.CONFLICT).entity(responseObj);
         } catch (Exception e) {
-            log.info("Exception - " + e.toString());
+            log.log(Level.INFO, "Exception - {0}", e);
             // Handle generic exceptions
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("error", e.getMessage());
@@ -174,32 +260,89 @@ public class ContactRESTService {
         return builder.build();
     }
 
+    /**
+     * <p>Creates several Contacts at once from a JSON array of Contact objects.</p>
+     *
+     * <p>The whole batch is validated in one go, with the same checks and errors as {@link #createContact(Contact)}, and the
+     * items that pass are inserted in JDBC batches. In <i>atomic</i> mode (the default) either all the Contacts are
+     * created, with a 201, or none is, with a 400 or 409. In <i>bestEffort</i> mode the valid ones are created anyway and
+     * the response is a 207. Either way the body gives the status, id or errors of every item, in order.</p>
+     *
+     * @param contacts The Contact objects, constructed automatically from JSON input
+     * @param mode atomic or bestEffort; or null for atomic
+     * @return A Response indicating the outcome of every create
+     */
+    @POST
+    @Path("/bulk")
+    public Response createContacts(List<Contact> contacts, @QueryParam("mode") String mode) {
+        BulkMode bulkMode = BulkMode.of(mode);
+        return createAll(new BulkBatch<Contact>(contacts), bulkMode);
+    }
+
+    /**
+     * <p>Creates several Contacts at once from newline delimited JSON, one Contact object per line. Otherwise the same as
+     * {@link #createContacts(List, String)}; a line that cannot be read is rejected with a 400 of its own.</p>
+     *
+     * @param body The request body, in {@value BulkBatch#NDJSON}
+     * @param mode atomic or bestEffort; or null for atomic
+     * @return A Response indicating the outcome of every create
+     * @throws IOException If the request body cannot be read
+     */
+    @POST
+    @Path("/bulk")
+    @Consumes(BulkBatch.NDJSON)
+    public Response createContactsFromNdjson(InputStream body, @QueryParam("mode") String mode) throws IOException {
+        BulkMode bulkMode = BulkMode.of(mode);
+        return createAll(BulkBatch.fromNdjson(body, Contact.class), bulkMode);
+    }
+
+    private Response createAll(BulkBatch<Contact> batch, BulkMode mode) {
+        log.log(Level.FINE, "createContacts started. {0} Contacts, {1}", new Object[] {batch.size(), mode});
+
+        service.createAll(batch, mode);
+        Response response = batch.toResponse(mode);
+
+        log.log(Level.FINE, "createContacts completed. Status = {0}", response.getStatus());
+        return response;
+    }
+
     /**
      * <p>Updates a contact with the ID provided in the Contact. Performs validation, and will return a JAX-RS response with either 200 ok,
      * or with a map of fields, and related errors.</p>
+     *
+     * <p>If the client sends the ETag it read in If-Match, or its Last-Modified in If-Unmodified-Since, the update is only
+     * applied if the Contact has not changed since; otherwise the response is a 412 (Precondition Failed).</p>
      * 
      * @param contact The Contact object, constructed automatically from JSON input, to be <i>updated</i> via {@link ContactService#update(Contact)}
      * @param id The long parameter value provided as the id of the Contact to be updated
+     * @param request The request, to evaluate its If-Match or If-Unmodified-Since
+     * @param headers The headers of the request
      * @return A Response indicating the outcome of the create operation
      */
     @PUT
     @Path("/{id:[0-9][0-9]*}")
-    public Response updateContact(@PathParam("id") long id, Contact contact) {
+    public Response updateContact(@PathParam("id") long id, Contact contact, @Context Request request,
+            @Context HttpHeaders headers) {
         if (contact == null) {
             throw new WebApplicationException(Response.Status.BAD_REQUEST);
         }
-        log.info("updateContact started. Contact = " + contact.getFirstName() + " " + contact.getLastName() + " " + contact.getEmail() + " " + contact.getPhoneNumber() + " "
-                + contact.getId());
+        log.log(Level.FINE, "updateContact started. Contact = {0} {1} {2} {3} {4}",
+            new Object[] {contact.getFirstName(), contact.getLastName(), contact.getEmail(), contact.getPhoneNumber(), contact.getId()});
 
         if (contact.getId() != id) {
             // The client attempted to update the read-only Id. This is not permitted.
             Response response = Response.status(Response.Status.CONFLICT).entity("The contact ID cannot be modified").build();
             throw new WebApplicationException(response);
         }
-        if (service.findById(contact.getId()) == null) {
+        Contact current = service.findById(contact.getId());
+        if (current == null) {
             // Verify if the contact exists. Return 404, if not present.
             throw new WebApplicationException(Response.Status.NOT_FOUND);
         }
+        ConditionalRequests.checkUnchanged(request, headers, current);
+        // The update replaces the version that was just checked, and the timestamp only moves if something changed
+        contact.setVersion(current.getVersion());
+        contact.setLastModified(current.getLastModified());
         
         Response.ResponseBuilder builder = null;
         
@@ -210,14 +353,14 @@ public class ContactRESTService {
             // Create an OK Response and pass the contact back in case it is needed.
             builder = Response.ok(contact);
 
-            log.info("updateContact completed. Contact = " + contact.getFirstName() + " " + contact.getLastName() + " " + contact.getEmail() + " " + contact.getPhoneNumber() + " "
-                + contact.getId());
+            log.log(Level.FINE, "updateContact completed. Contact = {0} {1} {2} {3} {4}",
+                new Object[] {contact.getFirstName(), contact.getLastName(), contact.getEmail(), contact.getPhoneNumber(), contact.getId()});
         } catch (ConstraintViolationException ce) {
-            log.info("ConstraintViolationException - " + ce.toString());
+            log.log(Level.INFO, "ConstraintViolationException - {0}", ce);
             // Handle bean validation issues
             builder = createViolationResponse(ce.getConstraintViolations());
         } catch (ValidationException e) {
-            log.info("ValidationException - " + e.toString());
+            log.log(Level.INFO, "ValidationException - {0}", e);
             // Handle the unique constrain violation
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("email", "That email is already used, please use a unique email");
@@ -225,7 +368,7 @@ public class ContactRESTService {
             responseObj.put("anotherError", "You can find this error message in /src/main/java/org/jboss/quickstarts/wfk/rest/ContactRESTService.java line 242.");
             builder = Response.status(Response.Status.CONFLICT).entity(responseObj);
         } catch (Exception e) {
-            log.info("Exception - " + e.toString());
+            log.log(Level.INFO, "Exception - {0}", e);
             // Handle generic exceptions
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("error", e.getMessage());
@@ -247,7 +390,7 @@ public class ContactRESTService {
     @DELETE
     @Path("/{id:[0-9][0-9]*}")
     public Response deleteContact(@PathParam("id") Long id) {
-        log.info("deleteContact started. Contact ID = " + id);
+        log.log(Level.FINE, "deleteContact started. Contact ID = {0}", id);
         Response.ResponseBuilder builder = null;
 
         try {
@@ -265,7 +408,7 @@ public class ContactRESTService {
            // log.info("deleteContact completed. Contact = " + contact.getFirstName() + " " + contact.getLastName() + " " + contact.getEmail() + " " + contact.getPhoneNumber() + " "
             //    + contact.getId());
         } catch (Exception e) {
-            log.info("Exception - " + e.toString());
+            log.log(Level.INFO, "Exception - {0}", e);
             // Handle generic exceptions
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("error", e.getMessage());
@@ -284,7 +427,7 @@ public class ContactRESTService {
      * @return A Bad Request (400) Response containing all violation messages
      */
     private Response.ResponseBuilder createViolationResponse(Set<ConstraintViolation<?>> violations) {
-        log.fine("Validation completed. violations found: " + violations.size());
+        log.log(Level.FINE, "Validation completed. violations found: {0}", violations.size());
 
         Map<String, String> responseObj = new HashMap<String, String>();
 
@@ -26,8 +26,17 @@ import javax.persistence.criteria.Root;
 import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.jboss.quickstarts.wfk.util.BulkBatch;
+import org.jboss.quickstarts.wfk.util.EntityVersion;
+import org.jboss.quickstarts.wfk.util.Page;
+import org.jboss.quickstarts.wfk.util.PageCursor;
 
 /**
  * <p>This is a Repository class and connects the Service/Control layer (see {@link ContactService} with the
@@ -56,6 +65,36 @@ public class ContactRepository {
         return query.getResultList();
     }
 
+    /**
+     * <p>Returns one page of persisted {@link Contact} objects, in the order of {@link Contact#FIND_ALL}, starting right
+     * after the given sort key.</p>
+     *
+     * @param after The sort key (last name, first name and id) of the last Contact of the previous page; or null for the first page
+     * @param limit The maximum number of Contact objects to return
+     * @return The Page of Contact objects
+     */
+    Page<Contact> findPage(String[] after, int limit) {
+        TypedQuery<Contact> query;
+        if (after == null) {
+            query = em.createNamedQuery(Contact.FIND_ALL, Contact.class);
+        } else {
+            query = em.createNamedQuery(Contact.FIND_ALL_AFTER, Contact.class)
+                .setParameter("lastName", after[0])
+                .setParameter("firstName", after[1])
+                .setParameter("id", Long.valueOf(after[2]));
+        }
+        // One more than asked for, to know whether there is a next page
+        List<Contact> rows = query.setMaxResults(limit + 1).getResultList();
+        return PageCursor.page(rows, limit, SORT_KEY);
+    }
+
+    private static final PageCursor.SortKey<Contact> SORT_KEY = new PageCursor.SortKey<Contact>() {
+        @Override
+        public Object[] of(Contact contact) {
+            return new Object[] {contact.getLastName(), contact.getFirstName(), contact.getId()};
+        }
+    };
+
     /**
      * <p>Returns a single Contact object, specified by a Long id.<p/>
      *
@@ -66,6 +105,18 @@ public class ContactRepository {
         return em.find(Contact.class, id);
     }
 
+    /**
+     * <p>Returns the version and last modification time of a Contact, specified by a Long id, without loading it.</p>
+     *
+     * @param id The id field of the Contact
+     * @return The version of the Contact with the specified id; or null if there is none
+     */
+    EntityVersion findVersion(Long id) {
+        List<EntityVersion> versions = em.createNamedQuery(Contact.FIND_VERSION, EntityVersion.class)
+            .setParameter("id", id).getResultList();
+        return versions.isEmpty() ? null : versions.get(0);
+    }
+
     /**
      * <p>Returns a single Contact object, specified by a String email.</p>
      *
@@ -115,6 +166,21 @@ public class ContactRepository {
         return em.createQuery(criteria).getSingleResult();
     }
 
+    /**
+     * <p>Returns those of the given emails that a persisted {@link Contact} already has, for the validation of a
+     * bulk create. One query per {@value BulkBatch#IN_LIST_SIZE} values, instead of one per Contact.</p>
+     *
+     * @param emails The emails to look for
+     * @return The emails that are taken
+     */
+    Set<String> findExistingEmails(Collection<String> emails) {
+        Set<String> taken = new HashSet<String>();
+        for (List<String> part : BulkBatch.partition(new ArrayList<String>(emails), BulkBatch.IN_LIST_SIZE)) {
+            taken.addAll(em.createNamedQuery(Contact.FIND_EMAILS_IN, String.class).setParameter("emails", part).getResultList());
+        }
+        return taken;
+    }
+
     /**
      * <p>Persists the provided Contact object to the application database using the EntityManager.</p>
      *
@@ -128,7 +194,8 @@ public class ContactRepository {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     Contact create(Contact contact) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("ContactRepository.create() - Creating " + contact.getFirstName() + " " + contact.getLastName());
+        log.log(Level.FINE, "ContactRepository.create() - Creating {0} {1}",
+            new Object[] {contact.getFirstName(), contact.getLastName()});
         
         // Write the contact to the database.
         em.persist(contact);
@@ -150,10 +217,13 @@ public class ContactRepository {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     Contact update(Contact contact) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("ContactRepository.update() - Updating " + contact.getFirstName() + " " + contact.getLastName());
+        log.log(Level.FINE, "ContactRepository.update() - Updating {0} {1}",
+            new Object[] {contact.getFirstName(), contact.getLastName()});
         
         // Either update the contact or add it if it can't be found.
         em.merge(contact);
+
+        // Hibernate invalidates the second-level cache copy, and the cached queries on the table, at commit.
         
         return contact;
     }
@@ -167,7 +237,8 @@ public class ContactRepository {
      */
     
     Contact delete(Contact contact) throws Exception {
-    	log.info("ContactRepository.delete() - Deleting " + contact.getFirstName() + " " + contact.getLastName());
+    	log.log(Level.FINE, "ContactRepository.delete() - Deleting {0} {1}",
+    	    new Object[] {contact.getFirstName(), contact.getLastName()});
        // System.out.println("customers can not be deleted!");
         return contact;
     }
@@ -0,0 +1,50 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.contact;
+
+import java.io.IOException;
+
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.io.SerializedString;
+import org.codehaus.jackson.map.SerializerProvider;
+import org.jboss.quickstarts.wfk.util.EntitySerializer;
+
+/**
+ * <p>Writes a {@link Contact} as JSON without reflection, with the same properties Jackson's bean serializer would
+ * write.</p>
+ *
+ * @see org.jboss.quickstarts.wfk.util.EntityJsonModule
+ */
+public class ContactSerializer extends EntitySerializer<Contact> {
+
+    public static final ContactSerializer INSTANCE = new ContactSerializer();
+
+    private static final SerializedString ID = new SerializedString("id");
+    private static final SerializedString FIRST_NAME = new SerializedString("firstName");
+    private static final SerializedString LAST_NAME = new SerializedString("lastName");
+    private static final SerializedString EMAIL = new SerializedString("email");
+    private static final SerializedString PHONE_NUMBER = new SerializedString("phoneNumber");
+
+    @Override
+    protected void serializeFields(Contact value, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+        writeNumber(jgen, ID, value.getId());
+        writeString(jgen, FIRST_NAME, value.getFirstName());
+        writeString(jgen, LAST_NAME, value.getLastName());
+        writeString(jgen, EMAIL, value.getEmail());
+        writeString(jgen, PHONE_NUMBER, value.getPhoneNumber());
+    }
+}
@@ -26,7 +26,14 @@ import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
 
 import java.util.List;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.jboss.quickstarts.wfk.util.BulkBatch;
+import org.jboss.quickstarts.wfk.util.BulkMode;
+import org.jboss.quickstarts.wfk.util.BulkWriter;
+import org.jboss.quickstarts.wfk.util.EntityVersion;
+import org.jboss.quickstarts.wfk.util.Page;
+import org.jboss.quickstarts.wfk.util.Summary;
 
 /**
  * <p>This Service assumes the Control responsibility in the ECB pattern.</p>
@@ -51,9 +58,15 @@ public class ContactService {
     @Inject
     private ContactValidator validator;
 
+    @Inject
+    private BulkWriter writer;
+
     @Inject
     private ContactRepository crud;
 
+    @Inject
+    private ItineraryRepository itinerary;
+
     @Inject
     private @Named("httpClient") CloseableHttpClient httpClient;
     
@@ -66,6 +79,17 @@ public class ContactService {
         return crud.findAllOrderedByName();
     }
 
+    /**
+     * <p>Returns one page of {@link Contact} objects, see {@link ContactRepository#findPage(String[], int)}.</p>
+     *
+     * @param after The sort key of the last Contact of the previous page; or null for the first page
+     * @param limit The maximum number of Contact objects to return
+     * @return The Page of Contact objects
+     */
+    Page<Contact> findPage(String[] after, int limit) {
+        return crud.findPage(after, limit);
+    }
+
     /**
      * <p>Returns a single Contact object, specified by a Long id.<p/>
      * 
@@ -76,6 +100,30 @@ public class ContactService {
         return crud.findById(id);
     }
 
+    /**
+     * <p>Returns the version and last modification time of a Contact, specified by a Long id, to answer a conditional
+     * request without loading the Contact.</p>
+     *
+     * @param id The id field of the Contact
+     * @return The version of the Contact with the specified id; or null if there is none
+     */
+    EntityVersion findVersion(Long id) {
+        return crud.findVersion(id);
+    }
+
+    /**
+     * <p>Returns one page of the itinerary of a Contact, its bookings of every kind sorted by date, see
+     * {@link ItineraryRepository#findPage(Long, String[], int)}.</p>
+     *
+     * @param id The id field of the Contact
+     * @param after The sort key of the last entry of the previous page; or null for the first page
+     * @param limit The maximum number of entries to return
+     * @return The Page of Summary objects
+     */
+    Page<Summary> findItinerary(Long id, String[] after, int limit) {
+        return itinerary.findPage(id, after, limit);
+    }
+
     /**
      * <p>Returns a single Contact object, specified by a String email.</p>
      *
@@ -122,7 +170,8 @@ public class ContactService {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     Contact create(Contact contact) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("ContactService.create() - Creating " + contact.getFirstName() + " " + contact.getLastName());
+        log.log(Level.FINE, "ContactService.create() - Creating {0} {1}",
+            new Object[] {contact.getFirstName(), contact.getLastName()});
         
         // Check to make sure the data fits with the parameters in the Contact model and passes validation.
         validator.validateContact(contact);
@@ -131,6 +180,25 @@ public class ContactService {
         return crud.create(contact);
     }
 
+    /**
+     * <p>Writes the Contact objects of a bulk create to the application database.</p>
+     *
+     * <p>The whole batch is validated at once by {@link ContactValidator#validateContacts(BulkBatch)}, then the items that passed
+     * are inserted by a {@link BulkWriter} in JDBC batches. The outcome of every item is recorded in the batch.</p>
+     *
+     * @param batch The Contact objects to be written
+     * @param mode Whether the batch is written all or nothing, or item by item
+     */
+    void createAll(BulkBatch<Contact> batch, BulkMode mode) {
+        log.log(Level.FINE, "ContactService.createAll() - Creating {0} Contacts, {1}", new Object[] {batch.size(), mode});
+
+        // Check the whole batch against the Contact model and the database, rejecting the items that fail.
+        validator.validateContacts(batch);
+
+        // Write the others to the database.
+        writer.write(batch, mode);
+    }
+
     /**
      * <p>Updates an existing Contact object in the application database with the provided Contact object.<p/>
      *
@@ -141,7 +209,8 @@ public class ContactService {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     Contact update(Contact contact) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("ContactService.update() - Updating " + contact.getFirstName() + " " + contact.getLastName());
+        log.log(Level.FINE, "ContactService.update() - Updating {0} {1}",
+            new Object[] {contact.getFirstName(), contact.getLastName()});
         
         // Check to make sure the data fits with the parameters in the Contact model and passes validation.
         validator.validateContact(contact);
@@ -159,7 +228,8 @@ public class ContactService {
      */
     Contact delete(Contact contact){
     	
-        log.info("ContactService.delete() - Deleting " + contact.getFirstName() + " " + contact.getLastName());     
+        log.log(Level.FINE, "ContactService.delete() - Deleting {0} {1}",
+            new Object[] {contact.getFirstName(), contact.getLastName()});     
         Contact deletedContact = null;
         //System.out.println("Customers can not be deleted!");
         return deletedContact;
@@ -1,12 +1,17 @@
 package org.jboss.quickstarts.wfk.contact;
 
 import java.io.Serializable;
+import java.util.Date;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Pattern;
 import javax.validation.constraints.Size;
 import javax.xml.bind.annotation.XmlRootElement;
+import org.hibernate.annotations.GenericGenerator;
+import org.codehaus.jackson.annotate.JsonIgnore;
+import org.jboss.quickstarts.wfk.util.PooledIdGenerator;
+import org.jboss.quickstarts.wfk.util.Versioned;
 
 
 /*
@@ -14,18 +19,34 @@ import javax.xml.bind.annotation.XmlRootElement;
  * form of query in JPA though is it more error prone due to the syntax being in a String.  This makes it harder to debug.
  */
 @Entity
+@Cacheable
 @NamedQueries({
-    @NamedQuery(name = Hotel.FIND_ALL, query = "SELECT h FROM Hotel h ORDER BY h.hotelName ASC"),
-    @NamedQuery(name = Hotel.FIND_BY_PHONE, query = "SELECT h FROM Hotel h WHERE h.phoneNumber = :phoneNumber")
+    @NamedQuery(name = Hotel.FIND_ALL, query = "SELECT h FROM Hotel h ORDER BY h.hotelName ASC, h.id ASC",
+        hints = {@QueryHint(name = "org.hibernate.cacheable", value = "true"),
+                 @QueryHint(name = "org.hibernate.cacheRegion", value = Hotel.QUERY_CACHE_REGION)}),
+    @NamedQuery(name = Hotel.FIND_ALL_AFTER, query = "SELECT h FROM Hotel h WHERE h.hotelName > :hotelName OR (h.hotelName = :hotelName AND h.id > :id) ORDER BY h.hotelName ASC, h.id ASC",
+        hints = {@QueryHint(name = "org.hibernate.cacheable", value = "true"),
+                 @QueryHint(name = "org.hibernate.cacheRegion", value = Hotel.QUERY_CACHE_REGION)}),
+    @NamedQuery(name = Hotel.FIND_BY_PHONE, query = "SELECT h FROM Hotel h WHERE h.phoneNumber = :phoneNumber",
+        hints = {@QueryHint(name = "org.hibernate.cacheable", value = "true"),
+                 @QueryHint(name = "org.hibernate.cacheRegion", value = Hotel.QUERY_CACHE_REGION)}),
+    @NamedQuery(name = Hotel.FIND_PHONES_IN, query = "SELECT h.phoneNumber FROM Hotel h WHERE h.phoneNumber IN :phoneNumbers"),
+    @NamedQuery(name = Hotel.FIND_VERSION, query = "SELECT NEW org.jboss.quickstarts.wfk.util.EntityVersion(h.version, h.lastModified) FROM Hotel h WHERE h.id = :id")
 })
 @XmlRootElement
 //@Table(name = "Hotel", uniqueConstraints = @UniqueConstraint(columnNames = "phone_number"))
-public class Hotel implements Serializable {
+public class Hotel implements Serializable, Versioned {
     /** Default value included to remove warning. Remove or modify at will. **/
     private static final long serialVersionUID = 1L;
     
+    /** The query cache region of the named queries below; their entities go to the region of the entity. */
+    public static final String QUERY_CACHE_REGION = "Hotel.queries";
+
     public static final String FIND_ALL = "Hotel.findAll";
+    public static final String FIND_ALL_AFTER = "Hotel.findAllAfter";
     public static final String FIND_BY_PHONE = "Hotel.findByPhone";
+    public static final String FIND_PHONES_IN = "Hotel.findPhonesIn";
+    public static final String FIND_VERSION = "Hotel.findVersion";
 
     /*
      * The  error messages match the ones in the UI so that the user isn't confused by two similar error messages for
@@ -37,8 +58,16 @@ public class Hotel implements Serializable {
      * variable occurs it can be sent to the correct input field on the form.  
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.TABLE)
+    @GeneratedValue(generator = PooledIdGenerator.NAME)
+    @GenericGenerator(name = PooledIdGenerator.NAME, strategy = PooledIdGenerator.STRATEGY)
     private Long id;
+
+    @Version
+    private long version;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "last_modified")
+    private Date lastModified;
     
     @NotNull
     @Size(min = 1, max = 25)
@@ -88,4 +117,32 @@ public class Hotel implements Serializable {
     public void setPhoneNumber(String phoneNumber) {
         this.phoneNumber = phoneNumber;
     }
+
+    @JsonIgnore
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    @JsonIgnore
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    @JsonIgnore
+    @Override
+    public Date getLastModified() {
+        return lastModified;
+    }
+
+    @JsonIgnore
+    public void setLastModified(Date lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        lastModified = new Date();
+    }
 }
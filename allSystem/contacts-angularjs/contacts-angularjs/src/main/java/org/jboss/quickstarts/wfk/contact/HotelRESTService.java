@@ -1,14 +1,18 @@
 package org.jboss.quickstarts.wfk.contact;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.ejb.Stateless;
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.interceptor.Interceptors;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
@@ -19,11 +23,24 @@ import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.WebApplicationException;
 
+import org.jboss.quickstarts.wfk.util.BulkBatch;
+import org.jboss.quickstarts.wfk.util.BulkMode;
+import org.jboss.quickstarts.wfk.util.ConditionalRequests;
+import org.jboss.quickstarts.wfk.util.DayRange;
+import org.jboss.quickstarts.wfk.util.JsonExporter;
+import org.jboss.quickstarts.wfk.util.MetricsInterceptor;
+import org.jboss.quickstarts.wfk.util.Page;
+import org.jboss.quickstarts.wfk.util.PageCursor;
+
 /*
  * The Path annotation defines this as a REST Web Service using JAX-RS.
  * 
@@ -38,40 +55,94 @@ import javax.ws.rs.WebApplicationException;
 @Consumes(MediaType.APPLICATION_JSON)
 @Produces(MediaType.APPLICATION_JSON)
 @Stateless
+@Interceptors(MetricsInterceptor.class)
 public class HotelRESTService {
     @Inject
     private @Named("logger") Logger log;
     
     @Inject
     private HotelService service;
+
+    @Inject
+    private JsonExporter exporter;
     
     /**
-     * <p>Search for and return all the Hotels.  They are sorted alphabetically by name.</p>
+     * <p>Search for and return the Hotels, one page at a time.  They are sorted alphabetically by name.</p>
+     *
+     * <p>Each response carries the cursor of the following page in the {@value PageCursor#NEXT_CURSOR_HEADER} header,
+     * which is absent on the last page. Add stream=true to get all of them at once instead, for an export.</p>
      * 
+     * @param cursor The cursor of the page to return; or null for the first page
+     * @param limit The maximum number of Hotels to return; or null for the default page size
+     * @param stream If true, all the Hotels are streamed back in a single response and cursor and limit are ignored
      * @return A Response containing a list of Hotels
      */
     @GET
-    public Response retrieveAllHotels() {
-        List<Hotel> hotels = service.findAllOrderedByName();
-        return Response.ok(hotels).build();
+    public Response retrieveAllHotels(@QueryParam("cursor") String cursor, @QueryParam("limit") Integer limit,
+            @QueryParam("stream") boolean stream) {
+        if (stream) {
+            // Written row by row as RESTEasy sends the response, instead of being built in memory first
+            return Response.ok(exporter.stream(Hotel.FIND_ALL)).build();
+        }
+        int pageSize = PageCursor.limit(limit);
+        Page<Hotel> hotels = service.findPage(PageCursor.decode(cursor, 2), pageSize);
+        return Response.ok(hotels.getItems()).header(PageCursor.NEXT_CURSOR_HEADER, hotels.getNextCursor()).build();
+    }
+
+    /**
+     * <p>Search for and return the Hotels that are not booked on any day of a range, one page at a time. They are
+     * sorted by name, like {@link #retrieveAllHotels}.</p>
+     *
+     * <p>Full path is rest/hotels/available?from=yyyy-MM-dd&amp;to=yyyy-MM-dd . The range is inclusive, from defaults
+     * to today and to to from. As with the full list, the cursor of the following page is in the {@value
+     * PageCursor#NEXT_CURSOR_HEADER} header.</p>
+     *
+     * @param from The first day of the range as yyyy-MM-dd; or null for today
+     * @param to The last day of the range as yyyy-MM-dd; or null for the same day as from
+     * @param cursor The cursor of the page to return; or null for the first page
+     * @param limit The maximum number of Hotels to return; or null for the default page size
+     * @return A Response containing a list of Hotels
+     */
+    @GET
+    @Path("/available")
+    public Response retrieveAvailableHotels(@QueryParam("from") String from, @QueryParam("to") String to,
+            @QueryParam("cursor") String cursor, @QueryParam("limit") Integer limit) {
+        DayRange range = DayRange.parse(from, to, 1);
+        int pageSize = PageCursor.limit(limit);
+        Page<Hotel> hotels = service.findAvailablePage(range.getFirstDate(), range.getLastDate(),
+            PageCursor.decode(cursor, 2), pageSize);
+        return Response.ok(hotels.getItems()).header(PageCursor.NEXT_CURSOR_HEADER, hotels.getNextCursor()).build();
     }
     
     /**
      * <p>Search for and return a Hotel identified by id.</p>
+     *
+     * <p>The response carries the version of the Hotel as its ETag, and its Last-Modified. A client that sends them back
+     * in If-None-Match or If-Modified-Since gets a 304 (Not Modified) while its copy is current, found out from the
+     * version alone without loading the Hotel.</p>
      * 
      * @param id The long parameter value provided as a Hotel's id
+     * @param request The request, to evaluate its preconditions
+     * @param headers The headers of the request
      * @return A Response containing a single Hotel
      */
     @GET
     @Path("/{id:[0-9]+}")
-    public Response retrieveHotelById(@PathParam("id") long id) {
-    	Hotel hotel = service.findById(id);
+    public Response retrieveHotelById(@PathParam("id") long id, @Context Request request, @Context HttpHeaders headers) {
+        if (ConditionalRequests.isConditional(headers)) {
+            Response notModified = ConditionalRequests.notModified(request, headers, service.findVersion(id));
+            if (notModified != null) {
+                return notModified;
+            }
+        }
+        Hotel hotel = service.findById(id);
         if (hotel == null) {
             throw new WebApplicationException(Response.Status.NOT_FOUND);
         }
-        log.info("findById " + id + ": found Hotel = " + hotel.getHotelName() + " " + hotel.getPhoneNumber() + " " + hotel.getPostcode() + " " + hotel.getId());
+        log.log(Level.FINE, "findById {0}: found Hotel = {1} {2} {3} {4}",
+            new Object[] {id, hotel.getHotelName(), hotel.getPhoneNumber(), hotel.getPostcode(), hotel.getId()});
         
-        return Response.ok(hotel).build();
+        return ConditionalRequests.ok(hotel).build();
     }
 
     /**
@@ -84,7 +155,8 @@ public class HotelRESTService {
     @SuppressWarnings("unused")
     @POST
     public Response createHotel(Hotel hotel) {
-        log.info("createHotel started. Hotel = " + hotel.getHotelName() + " " + hotel.getPhoneNumber() + " " + hotel.getPostcode() + " " + hotel.getId());
+        log.log(Level.FINE, "createHotel started. Hotel = {0} {1} {2} {3}",
+            new Object[] {hotel.getHotelName(), hotel.getPhoneNumber(), hotel.getPostcode(), hotel.getId()});
         if (hotel == null) {
             throw new WebApplicationException(Response.Status.BAD_REQUEST);
         }
@@ -98,19 +170,20 @@ public class HotelRESTService {
             // Create a "Resource Created" 201 Response and pass the hotel back in case it is needed.
             builder = Response.status(Response.Status.CREATED).entity(hotel);
             
-            log.info("createHotel completed. Hotel = " + hotel.getHotelName() + " " + hotel.getPhoneNumber() + " " + hotel.getPostcode() + " " + hotel.getId());
+            log.log(Level.FINE, "createHotel completed. Hotel = {0} {1} {2} {3}",
+                new Object[] {hotel.getHotelName(), hotel.getPhoneNumber(), hotel.getPostcode(), hotel.getId()});
         } catch (ConstraintViolationException ce) {
-            log.info("ConstraintViolationException - " + ce.toString());
+            log.log(Level.INFO, "ConstraintViolationException - {0}", ce);
             // Handle bean validation issues
             builder = createViolationResponse(ce.getConstraintViolations());
         } catch (ValidationException e) {
-            log.info("ValidationException - " + e.toString());
+            log.log(Level.INFO, "ValidationException - {0}", e);
             // Handle the unique constrain violation
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("phoneNumber", "That phoneNumber is already used, please use a unique phoneNumber");
             builder = Response.status(Response.Status.CONFLICT).entity(responseObj);
         } catch (Exception e) {
-            log.info("Exception - " + e.toString());
+            log.log(Level.INFO, "Exception - {0}", e);
             // Handle generic exceptions
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("error", e.getMessage());
@@ -120,31 +193,89 @@ public class HotelRESTService {
         return builder.build();
     }
 
+    /**
+     * <p>Creates several Hotels at once from a JSON array of Hotel objects.</p>
+     *
+     * <p>The whole batch is validated in one go, with the same checks and errors as {@link #createHotel(Hotel)}, and the
+     * items that pass are inserted in JDBC batches. In <i>atomic</i> mode (the default) either all the Hotels are
+     * created, with a 201, or none is, with a 400 or 409. In <i>bestEffort</i> mode the valid ones are created anyway and
+     * the response is a 207. Either way the body gives the status, id or errors of every item, in order.</p>
+     *
+     * @param hotels The Hotel objects, constructed automatically from JSON input
+     * @param mode atomic or bestEffort; or null for atomic
+     * @return A Response indicating the outcome of every create
+     */
+    @POST
+    @Path("/bulk")
+    public Response createHotels(List<Hotel> hotels, @QueryParam("mode") String mode) {
+        BulkMode bulkMode = BulkMode.of(mode);
+        return createAll(new BulkBatch<Hotel>(hotels), bulkMode);
+    }
+
+    /**
+     * <p>Creates several Hotels at once from newline delimited JSON, one Hotel object per line. Otherwise the same as
+     * {@link #createHotels(List, String)}; a line that cannot be read is rejected with a 400 of its own.</p>
+     *
+     * @param body The request body, in {@value BulkBatch#NDJSON}
+     * @param mode atomic or bestEffort; or null for atomic
+     * @return A Response indicating the outcome of every create
+     * @throws IOException If the request body cannot be read
+     */
+    @POST
+    @Path("/bulk")
+    @Consumes(BulkBatch.NDJSON)
+    public Response createHotelsFromNdjson(InputStream body, @QueryParam("mode") String mode) throws IOException {
+        BulkMode bulkMode = BulkMode.of(mode);
+        return createAll(BulkBatch.fromNdjson(body, Hotel.class), bulkMode);
+    }
+
+    private Response createAll(BulkBatch<Hotel> batch, BulkMode mode) {
+        log.log(Level.FINE, "createHotels started. {0} Hotels, {1}", new Object[] {batch.size(), mode});
+
+        service.createAll(batch, mode);
+        Response response = batch.toResponse(mode);
+
+        log.log(Level.FINE, "createHotels completed. Status = {0}", response.getStatus());
+        return response;
+    }
+
     /**
      * <p>Updates a hotel with the ID provided in the Hotel. Performs validation, and will return a JAX-RS response with either 200 ok,
      * or with a map of fields, and related errors.</p>
+     *
+     * <p>If the client sends the ETag it read in If-Match, or its Last-Modified in If-Unmodified-Since, the update is only
+     * applied if the Hotel has not changed since; otherwise the response is a 412 (Precondition Failed).</p>
      * 
      * @param hotel The Hotel object, constructed automatically from JSON input, to be <i>updated</i> via {@link HotelService#update(Hotel)}
      * @param id The long parameter value provided as the id of the Hotel to be updated
+     * @param request The request, to evaluate its If-Match or If-Unmodified-Since
+     * @param headers The headers of the request
      * @return A Response indicating the outcome of the create operation
      */
     @PUT
     @Path("/{id:[0-9][0-9]*}")
-    public Response updateHotel(@PathParam("id") long id, Hotel hotel) {
+    public Response updateHotel(@PathParam("id") long id, Hotel hotel, @Context Request request,
+            @Context HttpHeaders headers) {
         if (hotel == null) {
             throw new WebApplicationException(Response.Status.BAD_REQUEST);
         }
-        log.info("updateHotel started. Hotel = " + hotel.getHotelName() + " " + hotel.getPhoneNumber() + " " + hotel.getPostcode() + " " + hotel.getId());
+        log.log(Level.FINE, "updateHotel started. Hotel = {0} {1} {2} {3}",
+            new Object[] {hotel.getHotelName(), hotel.getPhoneNumber(), hotel.getPostcode(), hotel.getId()});
 
         if (hotel.getId() != id) {
             // The client attempted to update the read-only Id. This is not permitted.
             Response response = Response.status(Response.Status.CONFLICT).entity("The hotel ID cannot be modified").build();
             throw new WebApplicationException(response);
         }
-        if (service.findById(hotel.getId()) == null) {
+        Hotel current = service.findById(hotel.getId());
+        if (current == null) {
             // Verify if the hotel exists. Return 404, if not present.
             throw new WebApplicationException(Response.Status.NOT_FOUND);
         }
+        ConditionalRequests.checkUnchanged(request, headers, current);
+        // The update replaces the version that was just checked, and the timestamp only moves if something changed
+        hotel.setVersion(current.getVersion());
+        hotel.setLastModified(current.getLastModified());
         
         Response.ResponseBuilder builder = null;
         
@@ -155,20 +286,21 @@ public class HotelRESTService {
             // Create an OK Response and pass the hotel back in case it is needed.
             builder = Response.ok(hotel);
 
-            log.info("updateHotel completed. Hotel = " + hotel.getHotelName() + " " + hotel.getPhoneNumber() + " " + hotel.getPostcode() + " " + hotel.getId());
+            log.log(Level.FINE, "updateHotel completed. Hotel = {0} {1} {2} {3}",
+                new Object[] {hotel.getHotelName(), hotel.getPhoneNumber(), hotel.getPostcode(), hotel.getId()});
         } catch (ConstraintViolationException ce) {
-            log.info("ConstraintViolationException - " + ce.toString());
+            log.log(Level.INFO, "ConstraintViolationException - {0}", ce);
             // Handle bean validation issues
             builder = createViolationResponse(ce.getConstraintViolations());
         } catch (ValidationException e) {
-            log.info("ValidationException - " + e.toString());
+            log.log(Level.INFO, "ValidationException - {0}", e);
             // Handle the unique constrain violation
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("error", "This is where errors are displayed that are not related to a specific field");
             responseObj.put("anotherError", "You can find this error message in /src/main/java/org/jboss/quickstarts/wfk/rest/HotelRESTService.java line 186.");
             builder = Response.status(Response.Status.CONFLICT).entity(responseObj);
         } catch (Exception e) {
-            log.info("Exception - " + e.toString());
+            log.log(Level.INFO, "Exception - {0}", e);
             // Handle generic exceptions
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("error", e.getMessage());
@@ -181,7 +313,7 @@ public class HotelRESTService {
     @DELETE
     @Path("/{id:[0-9][0-9]*}")
     public Response deleteHotel(@PathParam("id") Long id) {
-        log.info("deleteHotel started. Hotel ID = " + id);
+        log.log(Level.FINE, "deleteHotel started. Hotel ID = {0}", id);
         Response.ResponseBuilder builder = null;
 
         try {
@@ -195,7 +327,7 @@ public class HotelRESTService {
                 throw new WebApplicationException(Response.Status.NOT_FOUND);
             }
         } catch (Exception e) {
-            log.info("Exception - " + e.toString());
+            log.log(Level.INFO, "Exception - {0}", e);
             // Handle generic exceptions
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("error", e.getMessage());
@@ -213,7 +345,7 @@ public class HotelRESTService {
      * @return A Bad Request (400) Response containing all violation messages
      */
     private Response.ResponseBuilder createViolationResponse(Set<ConstraintViolation<?>> violations) {
-        log.fine("Validation completed. violations found: " + violations.size());
+        log.log(Level.FINE, "Validation completed. violations found: {0}", violations.size());
 
         Map<String, String> responseObj = new HashMap<String, String>();
 
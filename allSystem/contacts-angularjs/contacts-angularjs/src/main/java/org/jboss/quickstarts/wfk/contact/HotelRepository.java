@@ -4,6 +4,7 @@ package org.jboss.quickstarts.wfk.contact;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.persistence.EntityManager;
+import javax.persistence.TemporalType;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
@@ -11,8 +12,18 @@ import javax.persistence.criteria.Root;
 import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.jboss.quickstarts.wfk.util.BulkBatch;
+import org.jboss.quickstarts.wfk.util.EntityVersion;
+import org.jboss.quickstarts.wfk.util.Page;
+import org.jboss.quickstarts.wfk.util.PageCursor;
 
 public class HotelRepository {
 
@@ -32,6 +43,71 @@ public class HotelRepository {
         return query.getResultList();
     }
 
+    /**
+     * <p>Returns one page of persisted {@link Hotel} objects, in the order of {@link Hotel#FIND_ALL}, starting right
+     * after the given sort key.</p>
+     *
+     * @param after The sort key (name and id) of the last Hotel of the previous page; or null for the first page
+     * @param limit The maximum number of Hotel objects to return
+     * @return The Page of Hotel objects
+     */
+    Page<Hotel> findPage(String[] after, int limit) {
+        TypedQuery<Hotel> query;
+        if (after == null) {
+            query = em.createNamedQuery(Hotel.FIND_ALL, Hotel.class);
+        } else {
+            query = em.createNamedQuery(Hotel.FIND_ALL_AFTER, Hotel.class)
+                .setParameter("hotelName", after[0])
+                .setParameter("id", Long.valueOf(after[1]));
+        }
+        // One more than asked for, to know whether there is a next page
+        List<Hotel> rows = query.setMaxResults(limit + 1).getResultList();
+        return PageCursor.page(rows, limit, SORT_KEY);
+    }
+
+    private static final PageCursor.SortKey<Hotel> SORT_KEY = new PageCursor.SortKey<Hotel>() {
+        @Override
+        public Object[] of(Hotel hotel) {
+            return new Object[] {hotel.getHotelName(), hotel.getId()};
+        }
+    };
+
+    /**
+     * <p>Returns one page of the persisted {@link Hotel} objects that are not booked on any day of a range, in the
+     * order of {@link Hotel#FIND_ALL}, starting right after the given sort key.</p>
+     *
+     * <p>Hotels are booked by both BookingHotel and Booking, so there is an anti-join (NOT EXISTS, answered by the
+     * unique index on the hotel and date) on each, in the one query that also cuts the page by the (name, id)
+     * keyset.</p>
+     *
+     * @param first The first day of the range
+     * @param last The last day of the range (inclusive)
+     * @param after The sort key (name and id) of the last Hotel of the previous page; or null for the first page
+     * @param limit The maximum number of Hotel objects to return
+     * @return The Page of Hotel objects
+     */
+    Page<Hotel> findAvailablePage(Date first, Date last, String[] after, int limit) {
+        StringBuilder jpql = new StringBuilder("SELECT h FROM Hotel h WHERE"
+            + " NOT EXISTS (SELECT b.id FROM BookingHotel b WHERE b.hotel = h"
+            + " AND b.bookingHotelDate BETWEEN :first AND :last)"
+            + " AND NOT EXISTS (SELECT b.id FROM Booking b WHERE b.hotel = h"
+            + " AND b.bookingDate BETWEEN :first AND :last)");
+        if (after != null) {
+            jpql.append(" AND (h.hotelName > :hotelName OR (h.hotelName = :hotelName AND h.id > :id))");
+        }
+        jpql.append(" ORDER BY h.hotelName ASC, h.id ASC");
+
+        TypedQuery<Hotel> query = em.createQuery(jpql.toString(), Hotel.class)
+            .setParameter("first", first, TemporalType.DATE)
+            .setParameter("last", last, TemporalType.DATE);
+        if (after != null) {
+            query.setParameter("hotelName", after[0]).setParameter("id", Long.valueOf(after[1]));
+        }
+        // One more than asked for, to know whether there is a next page
+        List<Hotel> rows = query.setMaxResults(limit + 1).getResultList();
+        return PageCursor.page(rows, limit, SORT_KEY);
+    }
+
     /**
      * <p>Returns a single Hotel object, specified by a Long id.<p/>
      *
@@ -41,6 +117,18 @@ public class HotelRepository {
     public Hotel findById(Long id) {
         return em.find(Hotel.class, id);
     }
+
+    /**
+     * <p>Returns the version and last modification time of a Hotel, specified by a Long id, without loading it.</p>
+     *
+     * @param id The id field of the Hotel
+     * @return The version of the Hotel with the specified id; or null if there is none
+     */
+    EntityVersion findVersion(Long id) {
+        List<EntityVersion> versions = em.createNamedQuery(Hotel.FIND_VERSION, EntityVersion.class)
+            .setParameter("id", id).getResultList();
+        return versions.isEmpty() ? null : versions.get(0);
+    }
     
     Hotel findByPhone(String phoneNumber) {
         TypedQuery<Hotel> query = em.createNamedQuery(Hotel.FIND_BY_PHONE, Hotel.class) .setParameter("phoneNumber", phoneNumber);
@@ -65,6 +153,21 @@ public class HotelRepository {
         return em.createQuery(criteria).getSingleResult();
     }
 
+    /**
+     * <p>Returns those of the given phoneNumbers that a persisted {@link Hotel} already has, for the validation of a
+     * bulk create. One query per {@value BulkBatch#IN_LIST_SIZE} values, instead of one per Hotel.</p>
+     *
+     * @param phoneNumbers The phoneNumbers to look for
+     * @return The phoneNumbers that are taken
+     */
+    Set<String> findExistingPhoneNumbers(Collection<String> phoneNumbers) {
+        Set<String> taken = new HashSet<String>();
+        for (List<String> part : BulkBatch.partition(new ArrayList<String>(phoneNumbers), BulkBatch.IN_LIST_SIZE)) {
+            taken.addAll(em.createNamedQuery(Hotel.FIND_PHONES_IN, String.class).setParameter("phoneNumbers", part).getResultList());
+        }
+        return taken;
+    }
+
     /**
      * <p>Persists the provided Hotel object to the application database using the EntityManager.</p>
      *
@@ -78,7 +181,7 @@ public class HotelRepository {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     Hotel create(Hotel hotel) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("HotelRepository.create() - Creating " + hotel.getHotelName());
+        log.log(Level.FINE, "HotelRepository.create() - Creating {0}", hotel.getHotelName());
         
         // Write the hotel to the database.
         em.persist(hotel);
@@ -100,15 +203,17 @@ public class HotelRepository {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     Hotel update(Hotel hotel) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("HotelRepository.update() - Updating " + hotel.getHotelName());
+        log.log(Level.FINE, "HotelRepository.update() - Updating {0}", hotel.getHotelName());
         
         // Either update the hotel or add it if it can't be found.
         em.merge(hotel);
+
+        // Hibernate invalidates the second-level cache copy, and the cached queries on the table, at commit.
         
         return hotel;
     }
     Hotel delete(Hotel hotel) throws Exception {
-        System.out.println("Hotels can not be deleted!");
+        log.info("Hotels can not be deleted!");
         return hotel;
     }
 
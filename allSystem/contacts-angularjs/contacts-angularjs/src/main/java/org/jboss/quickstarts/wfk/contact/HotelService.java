@@ -8,8 +8,15 @@ import javax.inject.Named;
 import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
 
+import java.util.Date;
 import java.util.List;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.jboss.quickstarts.wfk.util.BulkBatch;
+import org.jboss.quickstarts.wfk.util.BulkMode;
+import org.jboss.quickstarts.wfk.util.BulkWriter;
+import org.jboss.quickstarts.wfk.util.EntityVersion;
+import org.jboss.quickstarts.wfk.util.Page;
 
 //@Dependent annotation designates the default scope, listed here so that you know what scope is being used.
 @Dependent
@@ -21,6 +28,9 @@ public class HotelService {
     @Inject
     private HotelValidator validator;
 
+    @Inject
+    private BulkWriter writer;
+
     @Inject
     private HotelRepository crud;
 
@@ -36,6 +46,31 @@ public class HotelService {
         return crud.findAllOrderedByName();
     }
 
+    /**
+     * <p>Returns one page of {@link Hotel} objects, see {@link HotelRepository#findPage(String[], int)}.</p>
+     *
+     * @param after The sort key of the last Hotel of the previous page; or null for the first page
+     * @param limit The maximum number of Hotel objects to return
+     * @return The Page of Hotel objects
+     */
+    Page<Hotel> findPage(String[] after, int limit) {
+        return crud.findPage(after, limit);
+    }
+
+    /**
+     * <p>Returns one page of the {@link Hotel} objects that are free on every day of a range, see
+     * {@link HotelRepository#findAvailablePage(Date, Date, String[], int)}.</p>
+     *
+     * @param first The first day of the range
+     * @param last The last day of the range (inclusive)
+     * @param after The sort key of the last Hotel of the previous page; or null for the first page
+     * @param limit The maximum number of Hotel objects to return
+     * @return The Page of Hotel objects
+     */
+    Page<Hotel> findAvailablePage(Date first, Date last, String[] after, int limit) {
+        return crud.findAvailablePage(first, last, after, limit);
+    }
+
     /**
      * <p>Returns a single Hotel object, specified by a Long id.<p/>
      * 
@@ -46,6 +81,17 @@ public class HotelService {
         return crud.findById(id);
     }
 
+    /**
+     * <p>Returns the version and last modification time of a Hotel, specified by a Long id, to answer a conditional
+     * request without loading the Hotel.</p>
+     *
+     * @param id The id field of the Hotel
+     * @return The version of the Hotel with the specified id; or null if there is none
+     */
+    EntityVersion findVersion(Long id) {
+        return crud.findVersion(id);
+    }
+
     /**
      * <p>Returns a single Hotel object, specified by a String HotelName.<p/>
      *
@@ -72,7 +118,7 @@ public class HotelService {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     Hotel create(Hotel hotel) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("HotelService.create() - Creating " + hotel.getHotelName());
+        log.log(Level.FINE, "HotelService.create() - Creating {0}", hotel.getHotelName());
         
         // Check to make sure the data fits with the parameters in the Hotel model and passes validation.
         validator.validateHotel(hotel);
@@ -81,6 +127,25 @@ public class HotelService {
         return crud.create(hotel);
     }
 
+    /**
+     * <p>Writes the Hotel objects of a bulk create to the application database.</p>
+     *
+     * <p>The whole batch is validated at once by {@link HotelValidator#validateHotels(BulkBatch)}, then the items that passed
+     * are inserted by a {@link BulkWriter} in JDBC batches. The outcome of every item is recorded in the batch.</p>
+     *
+     * @param batch The Hotel objects to be written
+     * @param mode Whether the batch is written all or nothing, or item by item
+     */
+    void createAll(BulkBatch<Hotel> batch, BulkMode mode) {
+        log.log(Level.FINE, "HotelService.createAll() - Creating {0} Hotels, {1}", new Object[] {batch.size(), mode});
+
+        // Check the whole batch against the Hotel model and the database, rejecting the items that fail.
+        validator.validateHotels(batch);
+
+        // Write the others to the database.
+        writer.write(batch, mode);
+    }
+
     /**
      * <p>Updates an existing Hotel object in the application database with the provided Hotel object.<p/>
      *
@@ -91,7 +156,7 @@ public class HotelService {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     Hotel update(Hotel hotel) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("HotelService.update() - Updating " + hotel.getHotelName());
+        log.log(Level.FINE, "HotelService.update() - Updating {0}", hotel.getHotelName());
         
         // Check to make sure the data fits with the parameters in the Hotel model and passes validation.
         validator.validateHotel(hotel);
@@ -101,7 +166,7 @@ public class HotelService {
     }
     
     Hotel delete(Hotel hotel){
-        System.out.println("Hotel records can not be deleted!");
+        log.info("Hotel records can not be deleted!");
         return hotel;
     }
 
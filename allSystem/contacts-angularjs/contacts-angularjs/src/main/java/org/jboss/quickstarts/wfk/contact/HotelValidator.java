@@ -10,6 +10,8 @@ import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
 import javax.validation.Validator;
 
+import org.jboss.quickstarts.wfk.util.BulkBatch;
+
 public class HotelValidator {
     @Inject
     private Validator validator;
@@ -43,6 +45,30 @@ public class HotelValidator {
         }
 
     }
+
+    /**
+     * <p>Validates all the Hotels of a bulk create at once. The items the single create would reject are rejected in
+     * the batch instead: those with bean validation errors with a 400, and with a 409 those whose phoneNumber is already
+     * registered or used by an earlier Hotel of the batch.</p>
+     *
+     * <p>The phoneNumbers are looked up with one query for the whole batch rather than one per Hotel.</p>
+     *
+     * @param batch The Hotel objects to be validated
+     */
+    void validateHotels(BulkBatch<Hotel> batch) {
+        batch.validateBeans(validator);
+
+        Set<String> taken = crud.findExistingPhoneNumbers(batch.<String>keys(PHONE_NUMBER));
+        batch.rejectTaken(PHONE_NUMBER, taken, "phoneNumber", "That phoneNumber is already used, please use a unique phoneNumber");
+        batch.rejectDuplicates(PHONE_NUMBER, "phoneNumber", "That phoneNumber is already used, please use a unique phoneNumber");
+    }
+
+    private static final BulkBatch.Key<Hotel> PHONE_NUMBER = new BulkBatch.Key<Hotel>() {
+        @Override
+        public Object of(Hotel hotel) {
+            return hotel.getPhoneNumber();
+        }
+    };
     
     boolean phoneAlreadyExists(String phoneNumber, Long id) {
         Hotel hotel = null;
@@ -0,0 +1,153 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.contact;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.TemporalType;
+import javax.persistence.TypedQuery;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import org.jboss.quickstarts.wfk.booking.Booking;
+import org.jboss.quickstarts.wfk.booking.BookingSummary;
+import org.jboss.quickstarts.wfk.bookingflight.BookingFlight;
+import org.jboss.quickstarts.wfk.bookingflight.BookingFlightSummary;
+import org.jboss.quickstarts.wfk.bookinghotel.BookingHotel;
+import org.jboss.quickstarts.wfk.bookinghotel.BookingHotelSummary;
+import org.jboss.quickstarts.wfk.bookingtaxi.BookingTaxi;
+import org.jboss.quickstarts.wfk.bookingtaxi.BookingTaxiSummary;
+import org.jboss.quickstarts.wfk.util.Page;
+import org.jboss.quickstarts.wfk.util.PageCursor;
+import org.jboss.quickstarts.wfk.util.Summary;
+
+/**
+ * <p>Reads the itinerary of a {@link Contact}: the {@link Summary summaries} of its bookings of every kind, as a single
+ * timeline sorted by date, then by type and id.</p>
+ *
+ * <p>JPQL has no UNION, so each kind of booking is read with its own FIND_SUMMARIES_BY_CUSTOMER query, all of them in
+ * the transaction of the caller. Each query starts right after the cursor and stops at one row more than the page, so
+ * a page costs four short index range scans (the customer indexes cover the date) whatever the number of bookings, and
+ * merging them in memory never holds more than four pages.</p>
+ *
+ * <p>There are no access modifiers on the methods making them 'package' scope.  They should only be accessed by a
+ * Service/Control object.<p/>
+ *
+ * @see ContactService#findItinerary(Long, String[], int)
+ */
+public class ItineraryRepository {
+
+    /** The kinds of booking, in the order of their type, which is how the bookings of a same day are sorted. */
+    private static final Source[] SOURCES = {
+        new Source(BookingFlightSummary.TYPE, BookingFlight.FIND_SUMMARIES_BY_CUSTOMER,
+            BookingFlight.FIND_SUMMARIES_BY_CUSTOMER_AFTER),
+        new Source(BookingHotelSummary.TYPE, BookingHotel.FIND_SUMMARIES_BY_CUSTOMER,
+            BookingHotel.FIND_SUMMARIES_BY_CUSTOMER_AFTER),
+        new Source(BookingSummary.TYPE, Booking.FIND_SUMMARIES_BY_CUSTOMER, Booking.FIND_SUMMARIES_BY_CUSTOMER_AFTER),
+        new Source(BookingTaxiSummary.TYPE, BookingTaxi.FIND_SUMMARIES_BY_CUSTOMER,
+            BookingTaxi.FIND_SUMMARIES_BY_CUSTOMER_AFTER)
+    };
+
+    @Inject
+    private EntityManager em;
+
+    /**
+     * <p>Returns one page of the itinerary of a customer, starting right after the given sort key.</p>
+     *
+     * @param customerId The id of the customer
+     * @param after The sort key (day in milliseconds, type and id) of the last entry of the previous page; or null for
+     * the first page
+     * @param limit The maximum number of entries to return
+     * @return The Page of Summary objects, of all kinds
+     */
+    Page<Summary> findPage(Long customerId, String[] after, int limit) {
+        List<Summary> rows = new ArrayList<Summary>();
+        for (Source source : SOURCES) {
+            TypedQuery<Summary> query;
+            if (after == null) {
+                query = em.createNamedQuery(source.first, Summary.class);
+            } else {
+                query = em.createNamedQuery(source.after, Summary.class)
+                    .setParameter("date", new Date(Long.parseLong(after[0])), TemporalType.DATE)
+                    .setParameter("id", source.idAfter(after[1], Long.valueOf(after[2])));
+            }
+            // One more than asked for, to know whether there is a next page
+            rows.addAll(query.setParameter("customerId", customerId).setMaxResults(limit + 1).getResultList());
+        }
+        Collections.sort(rows, TIMELINE);
+        return PageCursor.page(rows.size() > limit + 1 ? rows.subList(0, limit + 1) : rows, limit, SORT_KEY);
+    }
+
+    private static final Comparator<Summary> TIMELINE = new Comparator<Summary>() {
+        @Override
+        public int compare(Summary one, Summary other) {
+            long day = one.getDate().getTime();
+            long otherDay = other.getDate().getTime();
+            if (day != otherDay) {
+                return day < otherDay ? -1 : 1;
+            }
+            int type = one.getType().compareTo(other.getType());
+            if (type != 0) {
+                return type;
+            }
+            return one.getId().compareTo(other.getId());
+        }
+    };
+
+    private static final PageCursor.SortKey<Summary> SORT_KEY = new PageCursor.SortKey<Summary>() {
+        @Override
+        public Object[] of(Summary summary) {
+            return new Object[] {summary.getDate().getTime(), summary.getType(), summary.getId()};
+        }
+    };
+
+    /**
+     * <p>The queries of one kind of booking.</p>
+     */
+    private static final class Source {
+
+        private final String type;
+        private final String first;
+        private final String after;
+
+        Source(String type, String first, String after) {
+            this.type = type;
+            this.first = first;
+            this.after = after;
+        }
+
+        /**
+         * <p>The bookings of this kind on the day of the cursor come after it if their type does, all of them; if it is
+         * the type of the cursor, those with a greater id; and if it comes before, none. The query takes the day and
+         * an id, so the id to start after is chosen accordingly.</p>
+         *
+         * @param cursorType The type of the last entry of the previous page
+         * @param cursorId The id of the last entry of the previous page
+         * @return The id after which the bookings of this kind on the day of the cursor are in the page
+         */
+        Long idAfter(String cursorType, Long cursorId) {
+            int order = type.compareTo(cursorType);
+            if (order == 0) {
+                return cursorId;
+            }
+            return order > 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+    }
+}
@@ -17,6 +17,7 @@
 package org.jboss.quickstarts.wfk.flight;
 
 import java.io.Serializable;
+import java.util.Date;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
@@ -27,6 +28,10 @@ import javax.xml.bind.annotation.XmlRootElement;
 
 import org.hibernate.validator.constraints.Email;
 import org.hibernate.validator.constraints.NotEmpty;
+import org.hibernate.annotations.GenericGenerator;
+import org.codehaus.jackson.annotate.JsonIgnore;
+import org.jboss.quickstarts.wfk.util.PooledIdGenerator;
+import org.jboss.quickstarts.wfk.util.Versioned;
 
 /**
  * <p>This is a the Domain object. The fight class represents how fight resources are represented in the application
@@ -42,19 +47,34 @@ import org.hibernate.validator.constraints.NotEmpty;
  * form of query in JPA though is it more error prone due to the syntax being in a String.  This makes it harder to debug.
  */
 @Entity
+@Cacheable
 @NamedQueries({
-    @NamedQuery(name = Flight.FIND_ALL, query = "SELECT c FROM Flight c ORDER BY c.flightNumber ASC, c.flightDeparture ASC, c.flightDestination ASC"),
-    @NamedQuery(name = Flight.FIND_BY_FLIGHTNUMBER, query = "SELECT c FROM Flight c WHERE c.flightNumber = :flightNumber"),
-   
+    @NamedQuery(name = Flight.FIND_ALL, query = "SELECT c FROM Flight c ORDER BY c.flightNumber ASC, c.flightDeparture ASC, c.flightDestination ASC, c.id ASC",
+        hints = {@QueryHint(name = "org.hibernate.cacheable", value = "true"),
+                 @QueryHint(name = "org.hibernate.cacheRegion", value = Flight.QUERY_CACHE_REGION)}),
+    @NamedQuery(name = Flight.FIND_ALL_AFTER, query = "SELECT c FROM Flight c WHERE c.flightNumber > :flightNumber OR (c.flightNumber = :flightNumber AND c.id > :id) ORDER BY c.flightNumber ASC, c.flightDeparture ASC, c.flightDestination ASC, c.id ASC",
+        hints = {@QueryHint(name = "org.hibernate.cacheable", value = "true"),
+                 @QueryHint(name = "org.hibernate.cacheRegion", value = Flight.QUERY_CACHE_REGION)}),
+    @NamedQuery(name = Flight.FIND_BY_FLIGHTNUMBER, query = "SELECT c FROM Flight c WHERE c.flightNumber = :flightNumber",
+        hints = {@QueryHint(name = "org.hibernate.cacheable", value = "true"),
+                 @QueryHint(name = "org.hibernate.cacheRegion", value = Flight.QUERY_CACHE_REGION)}),
+    @NamedQuery(name = Flight.FIND_FLIGHTNUMBERS_IN, query = "SELECT c.flightNumber FROM Flight c WHERE c.flightNumber IN :flightNumbers"),
+    @NamedQuery(name = Flight.FIND_VERSION, query = "SELECT NEW org.jboss.quickstarts.wfk.util.EntityVersion(c.version, c.lastModified) FROM Flight c WHERE c.id = :id")
 })
 @XmlRootElement
 @Table(name = "Flight", uniqueConstraints = @UniqueConstraint(columnNames = "flight_number"))
-public class Flight implements Serializable {
+public class Flight implements Serializable, Versioned {
     /** Default value included to remove warning. Remove or modify at will. **/
     private static final long serialVersionUID = 1L;
     
+    /** The query cache region of the named queries below; their entities go to the region of the entity. */
+    public static final String QUERY_CACHE_REGION = "Flight.queries";
+
     public static final String FIND_ALL = "Flight.findAll";
+    public static final String FIND_ALL_AFTER = "Flight.findAllAfter";
     public static final String FIND_BY_FLIGHTNUMBER = "Flight.findByFlightnumber";
+    public static final String FIND_FLIGHTNUMBERS_IN = "Flight.findFlightnumbersIn";
+    public static final String FIND_VERSION = "Flight.findVersion";
 
     /*
      * The  error messages match the ones in the UI so that the user isn't confused by two similar error messages for
@@ -66,9 +86,17 @@ public class Flight implements Serializable {
      * variable occurs it can be sent to the correct input field on the form.  
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.TABLE)
+    @GeneratedValue(generator = PooledIdGenerator.NAME)
+    @GenericGenerator(name = PooledIdGenerator.NAME, strategy = PooledIdGenerator.STRATEGY)
     private Long id;
 
+    @Version
+    private long version;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "last_modified")
+    private Date lastModified;
+
     @NotNull
     @NotEmpty
     @Pattern(regexp = "^[A-Z]{2}[0-9]{3}$", message = "Please input a flight number")
@@ -117,5 +145,32 @@ public class Flight implements Serializable {
     public void setFlightDestination(String flightDestination) {
     	this.flightDestination = flightDestination;
     }
-   
-}
\ No newline at end of file
+
+    @JsonIgnore
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    @JsonIgnore
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    @JsonIgnore
+    @Override
+    public Date getLastModified() {
+        return lastModified;
+    }
+
+    @JsonIgnore
+    public void setLastModified(Date lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        lastModified = new Date();
+    }
+}
@@ -16,16 +16,20 @@
  */
 package org.jboss.quickstarts.wfk.flight;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.ejb.NoSuchEntityException;
 import javax.ejb.Stateless;
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.interceptor.Interceptors;
 import javax.persistence.NoResultException;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
@@ -37,11 +41,24 @@ import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.WebApplicationException;
 
+import org.jboss.quickstarts.wfk.util.BulkBatch;
+import org.jboss.quickstarts.wfk.util.BulkMode;
+import org.jboss.quickstarts.wfk.util.ConditionalRequests;
+import org.jboss.quickstarts.wfk.util.DayRange;
+import org.jboss.quickstarts.wfk.util.JsonExporter;
+import org.jboss.quickstarts.wfk.util.MetricsInterceptor;
+import org.jboss.quickstarts.wfk.util.Page;
+import org.jboss.quickstarts.wfk.util.PageCursor;
+
 /**
  * <p>This class exposes the functionality of {@link FlightService} over HTTP endpoints as a RESTful resource via
  * JAX-RS.</p>
@@ -68,22 +85,66 @@ import javax.ws.rs.WebApplicationException;
 @Consumes(MediaType.APPLICATION_JSON)
 @Produces(MediaType.APPLICATION_JSON)
 @Stateless
+@Interceptors(MetricsInterceptor.class)
 public class FlightRESTService {
     @Inject
     private @Named("logger") Logger log;
     
     @Inject
     private FlightService service;
+
+    @Inject
+    private JsonExporter exporter;
     
     /**
-     * <p>Search for and return all the Flights.  They are sorted alphabetically by name.</p>
+     * <p>Search for and return the Flights, one page at a time.  They are sorted by flight number.</p>
+     *
+     * <p>Each response carries the cursor of the following page in the {@value PageCursor#NEXT_CURSOR_HEADER} header,
+     * which is absent on the last page. Add stream=true to get all of them at once instead, for an export.</p>
      * 
+     * @param cursor The cursor of the page to return; or null for the first page
+     * @param limit The maximum number of Flights to return; or null for the default page size
+     * @param stream If true, all the Flights are streamed back in a single response and cursor and limit are ignored
+     * @return A Response containing a list of Flights
+     */
+    @GET
+    public Response retrieveAllFlights(@QueryParam("cursor") String cursor, @QueryParam("limit") Integer limit,
+            @QueryParam("stream") boolean stream) {
+        if (stream) {
+            // Written row by row as RESTEasy sends the response, instead of being built in memory first
+            return Response.ok(exporter.stream(Flight.FIND_ALL)).build();
+        }
+        int pageSize = PageCursor.limit(limit);
+        Page<Flight> flights = service.findPage(PageCursor.decode(cursor, 2), pageSize);
+        return Response.ok(flights.getItems()).header(PageCursor.NEXT_CURSOR_HEADER, flights.getNextCursor()).build();
+    }
+
+    /**
+     * <p>Search for and return the Flights that are not booked on any day of a range, one page at a time. They are
+     * sorted by flight number, like {@link #retrieveAllFlights}.</p>
+     *
+     * <p>Full path is rest/flights/available?from=yyyy-MM-dd&amp;to=yyyy-MM-dd&amp;departure=NCL&amp;destination=LHR .
+     * The range is inclusive, from defaults to today and to to from. As with the full list, the cursor of the following
+     * page is in the {@value PageCursor#NEXT_CURSOR_HEADER} header.</p>
+     *
+     * @param from The first day of the range as yyyy-MM-dd; or null for today
+     * @param to The last day of the range as yyyy-MM-dd; or null for the same day as from
+     * @param departure The airport the Flights must leave from, e.g. NCL; or null for any
+     * @param destination The airport the Flights must go to; or null for any
+     * @param cursor The cursor of the page to return; or null for the first page
+     * @param limit The maximum number of Flights to return; or null for the default page size
      * @return A Response containing a list of Flights
      */
     @GET
-    public Response retrieveAllFlights() {
-        List<Flight> flights = service.findAllOrderedByName();
-        return Response.ok(flights).build();
+    @Path("/available")
+    public Response retrieveAvailableFlights(@QueryParam("from") String from, @QueryParam("to") String to,
+            @QueryParam("departure") String departure, @QueryParam("destination") String destination,
+            @QueryParam("cursor") String cursor, @QueryParam("limit") Integer limit) {
+        DayRange range = DayRange.parse(from, to, 1);
+        int pageSize = PageCursor.limit(limit);
+        Page<Flight> flights = service.findAvailablePage(range.getFirstDate(), range.getLastDate(), departure,
+            destination, PageCursor.decode(cursor, 2), pageSize);
+        return Response.ok(flights.getItems()).header(PageCursor.NEXT_CURSOR_HEADER, flights.getNextCursor()).build();
     }
 
     /**
@@ -111,21 +172,33 @@ public class FlightRESTService {
     
     /**
      * <p>Search for and return a Flight identified by id.</p>
+     *
+     * <p>The response carries the version of the Flight as its ETag, and its Last-Modified. A client that sends them back
+     * in If-None-Match or If-Modified-Since gets a 304 (Not Modified) while its copy is current, found out from the
+     * version alone without loading the Flight.</p>
      * 
      * @param id The long parameter value provided as a Flight's id
+     * @param request The request, to evaluate its preconditions
+     * @param headers The headers of the request
      * @return A Response containing a single Flight
      */
     @GET
     @Path("/{id:[0-9]+}")
-    public Response retrieveFlightById(@PathParam("id") long id) {
+    public Response retrieveFlightById(@PathParam("id") long id, @Context Request request, @Context HttpHeaders headers) {
+        if (ConditionalRequests.isConditional(headers)) {
+            Response notModified = ConditionalRequests.notModified(request, headers, service.findVersion(id));
+            if (notModified != null) {
+                return notModified;
+            }
+        }
         Flight flight = service.findById(id);
         if ( flight == null) {
             throw new WebApplicationException(Response.Status.NOT_FOUND);
         }
-        log.info("findById " + id + ": found Flight = " + flight.getFlightNumber() + " " + flight.getFlightDeparture() + " " + flight.getFlightDestination() + " " 
-                 + flight.getId());
+        log.log(Level.FINE, "findById {0}: found Flight = {1} {2} {3} {4}",
+            new Object[] {id, flight.getFlightNumber(), flight.getFlightDeparture(), flight.getFlightDestination(), flight.getId()});
         
-        return Response.ok(flight).build();
+        return ConditionalRequests.ok(flight).build();
     }
 
     /**
@@ -138,8 +211,8 @@ public class FlightRESTService {
     @SuppressWarnings("unused")
     @POST
     public Response createFlight(Flight flight) {
-        log.info("createFlight started. Flight = " + flight.getFlightNumber() + " " + flight.getFlightDeparture() + " " + flight.getFlightDestination() + " " 
-             + flight.getId());
+        log.log(Level.FINE, "createFlight started. Flight = {0} {1} {2} {3}",
+            new Object[] {flight.getFlightNumber(), flight.getFlightDeparture(), flight.getFlightDestination(), flight.getId()});
         if (flight == null) {
             throw new WebApplicationException(Response.Status.BAD_REQUEST);
         }
@@ -153,14 +226,14 @@ public class FlightRESTService {
             // Create a "Resource Created" 201 Response and pass the Flight back in case it is needed.
             builder = Response.status(Response.Status.CREATED).entity(flight);
             
-            log.info("createFlight completed. Flight = " + flight.getFlightNumber() + " " + flight.getFlightDeparture() + " " + flight.getFlightDestination() + " " 
-                + flight.getId());
+            log.log(Level.FINE, "createFlight completed. Flight = {0} {1} {2} {3}",
+                new Object[] {flight.getFlightNumber(), flight.getFlightDeparture(), flight.getFlightDestination(), flight.getId()});
         } catch (ConstraintViolationException ce) {
-            log.info("ConstraintViolationException - " + ce.toString());
+            log.log(Level.INFO, "ConstraintViolationException - {0}", ce);
             // Handle bean validation issues
             builder = createViolationResponse(ce.getConstraintViolations());
         } catch (ValidationException e) {
-            log.info("ValidationException - " + e.toString());
+            log.log(Level.INFO, "ValidationException - {0}", e);
             // Handle the unique constrain violation
             Map<String, String> responseObj = new HashMap<String, String>();
             if(e.toString().contains("flightNumber")){
@@ -171,7 +244,7 @@ public class FlightRESTService {
         	}
             	builder = Response.status(Response.Status.CONFLICT).entity(responseObj);
         } catch (Exception e) {
-            log.info("Exception - " + e.toString());
+            log.log(Level.INFO, "Exception - {0}", e);
             // Handle generic exceptions
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("error", e.getMessage());
@@ -181,32 +254,89 @@ public class FlightRESTService {
         return builder.build();
     }
 
+    /**
+     * <p>Creates several Flights at once from a JSON array of Flight objects.</p>
+     *
+     * <p>The whole batch is validated in one go, with the same checks and errors as {@link #createFlight(Flight)}, and the
+     * items that pass are inserted in JDBC batches. In <i>atomic</i> mode (the default) either all the Flights are
+     * created, with a 201, or none is, with a 400 or 409. In <i>bestEffort</i> mode the valid ones are created anyway and
+     * the response is a 207. Either way the body gives the status, id or errors of every item, in order.</p>
+     *
+     * @param flights The Flight objects, constructed automatically from JSON input
+     * @param mode atomic or bestEffort; or null for atomic
+     * @return A Response indicating the outcome of every create
+     */
+    @POST
+    @Path("/bulk")
+    public Response createFlights(List<Flight> flights, @QueryParam("mode") String mode) {
+        BulkMode bulkMode = BulkMode.of(mode);
+        return createAll(new BulkBatch<Flight>(flights), bulkMode);
+    }
+
+    /**
+     * <p>Creates several Flights at once from newline delimited JSON, one Flight object per line. Otherwise the same as
+     * {@link #createFlights(List, String)}; a line that cannot be read is rejected with a 400 of its own.</p>
+     *
+     * @param body The request body, in {@value BulkBatch#NDJSON}
+     * @param mode atomic or bestEffort; or null for atomic
+     * @return A Response indicating the outcome of every create
+     * @throws IOException If the request body cannot be read
+     */
+    @POST
+    @Path("/bulk")
+    @Consumes(BulkBatch.NDJSON)
+    public Response createFlightsFromNdjson(InputStream body, @QueryParam("mode") String mode) throws IOException {
+        BulkMode bulkMode = BulkMode.of(mode);
+        return createAll(BulkBatch.fromNdjson(body, Flight.class), bulkMode);
+    }
+
+    private Response createAll(BulkBatch<Flight> batch, BulkMode mode) {
+        log.log(Level.FINE, "createFlights started. {0} Flights, {1}", new Object[] {batch.size(), mode});
+
+        service.createAll(batch, mode);
+        Response response = batch.toResponse(mode);
+
+        log.log(Level.FINE, "createFlights completed. Status = {0}", response.getStatus());
+        return response;
+    }
+
     /**
      * <p>Updates a Flight with the ID provided in the Flight. Performs validation, and will return a JAX-RS response with either 200 ok,
      * or with a map of fields, and related errors.</p>
+     *
+     * <p>If the client sends the ETag it read in If-Match, or its Last-Modified in If-Unmodified-Since, the update is only
+     * applied if the Flight has not changed since; otherwise the response is a 412 (Precondition Failed).</p>
      * 
      * @param Flight The Flight object, constructed automatically from JSON input, to be <i>updated</i> via {@link FlightService#update(Flight)}
      * @param id The long parameter value provided as the id of the Flight to be updated
+     * @param request The request, to evaluate its If-Match or If-Unmodified-Since
+     * @param headers The headers of the request
      * @return A Response indicating the outcome of the create operation
      */
     @PUT
     @Path("/{id:[0-9][0-9]*}")
-    public Response updateFlight(@PathParam("id") long id, Flight flight) {
+    public Response updateFlight(@PathParam("id") long id, Flight flight, @Context Request request,
+            @Context HttpHeaders headers) {
         if (flight == null) {
             throw new WebApplicationException(Response.Status.BAD_REQUEST);
         }
-        log.info("findById " + id + "updateFlight started. Flight = " + flight.getFlightNumber() + " " + flight.getFlightDeparture() + " " + flight.getFlightDestination() + " " 
-                + flight.getId());
+        log.log(Level.FINE, "updateFlight started. Flight {0} = {1} {2} {3} {4}",
+            new Object[] {id, flight.getFlightNumber(), flight.getFlightDeparture(), flight.getFlightDestination(), flight.getId()});
 
         if (flight.getId() != id) {
             // The client attempted to update the read-only Id. This is not permitted.
             Response response = Response.status(Response.Status.CONFLICT).entity("The flight ID cannot be modified").build();
             throw new WebApplicationException(response);
         }
-        if (service.findById(flight.getId()) == null) {
+        Flight current = service.findById(flight.getId());
+        if (current == null) {
             // Verify if the Flight exists. Return 404, if not present.
             throw new WebApplicationException(Response.Status.NOT_FOUND);
         }
+        ConditionalRequests.checkUnchanged(request, headers, current);
+        // The update replaces the version that was just checked, and the timestamp only moves if something changed
+        flight.setVersion(current.getVersion());
+        flight.setLastModified(current.getLastModified());
         
         Response.ResponseBuilder builder = null;
         
@@ -217,14 +347,14 @@ public class FlightRESTService {
             // Create an OK Response and pass the Flight back in case it is needed.
             builder = Response.ok(flight);
 
-            log.info("findById " + id + "updateFlight completed. Flight = " + flight.getFlightNumber() + " " + flight.getFlightDeparture() + " " + flight.getFlightDestination() + " " 
-                + flight.getId());
+            log.log(Level.FINE, "updateFlight completed. Flight {0} = {1} {2} {3} {4}",
+                new Object[] {id, flight.getFlightNumber(), flight.getFlightDeparture(), flight.getFlightDestination(), flight.getId()});
         } catch (ConstraintViolationException ce) {
-            log.info("ConstraintViolationException - " + ce.toString());
+            log.log(Level.INFO, "ConstraintViolationException - {0}", ce);
             // Handle bean validation issues
             builder = createViolationResponse(ce.getConstraintViolations());
         } catch (ValidationException e) {
-            log.info("ValidationException - " + e.toString());
+            log.log(Level.INFO, "ValidationException - {0}", e);
             // Handle the unique constrain violation
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("flight_number", "That flight number is already used, please use a unique flight number");
@@ -232,7 +362,7 @@ public class FlightRESTService {
             responseObj.put("anotherError", "You can find this error message in /src/main/java/org/jboss/quickstarts/wfk/rest/FlightRESTService.java line 242.");
             builder = Response.status(Response.Status.CONFLICT).entity(responseObj);
         } catch (Exception e) {
-            log.info("Exception - " + e.toString());
+            log.log(Level.INFO, "Exception - {0}", e);
             // Handle generic exceptions
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("error", e.getMessage());
@@ -253,7 +383,7 @@ public class FlightRESTService {
     @DELETE
     @Path("/{id:[0-9][0-9]*}")
     public Response deleteFlight(@PathParam("id") Long id) {
-        log.info("deleteFlight started. Flight ID = " + id);
+        log.log(Level.FINE, "deleteFlight started. Flight ID = {0}", id);
         Response.ResponseBuilder builder = null;
 
         /*try {
@@ -266,10 +396,10 @@ public class FlightRESTService {
             }
 
             builder = Response.noContent();
-            log.info("deleteFlight completed. Flight = " + flight.getFlightNumber() + " " + flight.getFlightDeparture() + " " + flight.getFlightDestination() + " " 
-                + flight.getId());
+            log.log(Level.FINE, "deleteFlight completed. Flight = {0} {1} {2} {3}",
+                new Object[] {flight.getFlightNumber(), flight.getFlightDeparture(), flight.getFlightDestination(), flight.getId()});
         } catch (Exception e) {
-            log.info("Exception - " + e.toString());
+            log.log(Level.INFO, "Exception - {0}", e);
             // Handle generic exceptions
 */            Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("error",/* e.getMessage()*/"cannot delete");
@@ -287,7 +417,7 @@ public class FlightRESTService {
      * @return A Bad Request (400) Response containing all violation messages
      */
     private Response.ResponseBuilder createViolationResponse(Set<ConstraintViolation<?>> violations) {
-        log.fine("Validation completed. violations found: " + violations.size());
+        log.log(Level.FINE, "Validation completed. violations found: {0}", violations.size());
 
         Map<String, String> responseObj = new HashMap<String, String>();
 
@@ -3,6 +3,7 @@ package org.jboss.quickstarts.wfk.flight;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.persistence.EntityManager;
+import javax.persistence.TemporalType;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
@@ -10,8 +11,18 @@ import javax.persistence.criteria.Root;
 import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.jboss.quickstarts.wfk.util.BulkBatch;
+import org.jboss.quickstarts.wfk.util.EntityVersion;
+import org.jboss.quickstarts.wfk.util.Page;
+import org.jboss.quickstarts.wfk.util.PageCursor;
 
 /**
  * <p>This is a Repository class and connects the Service/Control layer (see {@link FlightService} with the
@@ -42,6 +53,85 @@ public class FlightRepository {
         return query.getResultList();
     }
 
+    /**
+     * <p>Returns one page of persisted {@link Flight} objects, in the order of {@link Flight#FIND_ALL}, starting right
+     * after the given sort key.</p>
+     *
+     * @param after The sort key (flight number and id) of the last Flight of the previous page; or null for the first page
+     * @param limit The maximum number of Flight objects to return
+     * @return The Page of Flight objects
+     */
+    Page<Flight> findPage(String[] after, int limit) {
+        TypedQuery<Flight> query;
+        if (after == null) {
+            query = em.createNamedQuery(Flight.FIND_ALL, Flight.class);
+        } else {
+            query = em.createNamedQuery(Flight.FIND_ALL_AFTER, Flight.class)
+                .setParameter("flightNumber", after[0])
+                .setParameter("id", Long.valueOf(after[1]));
+        }
+        // One more than asked for, to know whether there is a next page
+        List<Flight> rows = query.setMaxResults(limit + 1).getResultList();
+        return PageCursor.page(rows, limit, SORT_KEY);
+    }
+
+    private static final PageCursor.SortKey<Flight> SORT_KEY = new PageCursor.SortKey<Flight>() {
+        @Override
+        public Object[] of(Flight flight) {
+            return new Object[] {flight.getFlightNumber(), flight.getId()};
+        }
+    };
+
+    /**
+     * <p>Returns one page of the persisted {@link Flight} objects that are not booked on any day of a range, sorted by
+     * flight number and id, starting right after the given sort key.</p>
+     *
+     * <p>It is a single query: the booked flights are left out with NOT EXISTS, an anti-join that the unique index on
+     * (flight_ID, bookingFlight_Date) answers, and the page is cut by the (flight number, id) keyset, so only one page
+     * of rows is read.</p>
+     *
+     * @param first The first day of the range
+     * @param last The last day of the range (inclusive)
+     * @param departure The airport the flight must leave from; or null for any
+     * @param destination The airport the flight must go to; or null for any
+     * @param after The sort key (flight number and id) of the last Flight of the previous page; or null for the first
+     * page
+     * @param limit The maximum number of Flight objects to return
+     * @return The Page of Flight objects
+     */
+    Page<Flight> findAvailablePage(Date first, Date last, String departure, String destination, String[] after,
+            int limit) {
+        StringBuilder jpql = new StringBuilder("SELECT c FROM Flight c WHERE NOT EXISTS"
+            + " (SELECT b.id FROM BookingFlight b WHERE b.flightID = c"
+            + " AND b.bookingFlightDate BETWEEN :first AND :last)");
+        if (departure != null) {
+            jpql.append(" AND c.flightDeparture = :departure");
+        }
+        if (destination != null) {
+            jpql.append(" AND c.flightDestination = :destination");
+        }
+        if (after != null) {
+            jpql.append(" AND (c.flightNumber > :flightNumber OR (c.flightNumber = :flightNumber AND c.id > :id))");
+        }
+        jpql.append(" ORDER BY c.flightNumber ASC, c.id ASC");
+
+        TypedQuery<Flight> query = em.createQuery(jpql.toString(), Flight.class)
+            .setParameter("first", first, TemporalType.DATE)
+            .setParameter("last", last, TemporalType.DATE);
+        if (departure != null) {
+            query.setParameter("departure", departure);
+        }
+        if (destination != null) {
+            query.setParameter("destination", destination);
+        }
+        if (after != null) {
+            query.setParameter("flightNumber", after[0]).setParameter("id", Long.valueOf(after[1]));
+        }
+        // One more than asked for, to know whether there is a next page
+        List<Flight> rows = query.setMaxResults(limit + 1).getResultList();
+        return PageCursor.page(rows, limit, SORT_KEY);
+    }
+
     /**
      * <p>Returns a single fight object, specified by a Long id.<p/>
      *
@@ -52,6 +142,18 @@ public class FlightRepository {
         return em.find(Flight.class, id);
     }
 
+    /**
+     * <p>Returns the version and last modification time of a Flight, specified by a Long id, without loading it.</p>
+     *
+     * @param id The id field of the Flight
+     * @return The version of the Flight with the specified id; or null if there is none
+     */
+    EntityVersion findVersion(Long id) {
+        List<EntityVersion> versions = em.createNamedQuery(Flight.FIND_VERSION, EntityVersion.class)
+            .setParameter("id", id).getResultList();
+        return versions.isEmpty() ? null : versions.get(0);
+    }
+
     /**
      * <p>Returns a single fight object, specified by a String email.</p>
      *
@@ -101,6 +203,21 @@ public class FlightRepository {
         return em.createQuery(criteria).getSingleResult();
     }
 
+    /**
+     * <p>Returns those of the given flightNumbers that a persisted {@link Flight} already has, for the validation of a
+     * bulk create. One query per {@value BulkBatch#IN_LIST_SIZE} values, instead of one per Flight.</p>
+     *
+     * @param flightNumbers The flightNumbers to look for
+     * @return The flightNumbers that are taken
+     */
+    Set<String> findExistingFlightNumbers(Collection<String> flightNumbers) {
+        Set<String> taken = new HashSet<String>();
+        for (List<String> part : BulkBatch.partition(new ArrayList<String>(flightNumbers), BulkBatch.IN_LIST_SIZE)) {
+            taken.addAll(em.createNamedQuery(Flight.FIND_FLIGHTNUMBERS_IN, String.class).setParameter("flightNumbers", part).getResultList());
+        }
+        return taken;
+    }
+
     /**
      * <p>Persists the provided fight object to the application database using the EntityManager.</p>
      *
@@ -114,7 +231,8 @@ public class FlightRepository {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     Flight create(Flight flight) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("FlightRepository.create() - Creating" + flight.getFlightNumber() + " " + flight.getFlightDeparture() + " " + flight.getFlightDestination());
+        log.log(Level.FINE, "FlightRepository.create() - Creating {0} {1} {2}",
+            new Object[] {flight.getFlightNumber(), flight.getFlightDeparture(), flight.getFlightDestination()});
         
         // Write the fight to the database.
         em.persist(flight);
@@ -136,10 +254,13 @@ public class FlightRepository {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     Flight update(Flight flight) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("FlightRepository.update() - Updating " + flight.getFlightNumber() + " " + flight.getFlightDeparture() + " " + flight.getFlightDestination());
+        log.log(Level.FINE, "FlightRepository.update() - Updating {0} {1} {2}",
+            new Object[] {flight.getFlightNumber(), flight.getFlightDeparture(), flight.getFlightDestination()});
         
         // Either update the fight or add it if it can't be found.
         em.merge(flight);
+
+        // Hibernate invalidates the second-level cache copy, and the cached queries on the table, at commit.
         
         return flight;
     }
@@ -152,7 +273,8 @@ public class FlightRepository {
      * @throws Exception
      */
     Flight delete(Flight flight) throws Exception {
-        log.info("FlightRepository.delete() - Deleting " + flight.getFlightNumber() + " " + flight.getFlightDeparture() + " " + flight.getFlightDestination());
+        log.log(Level.FINE, "FlightRepository.delete() - Deleting {0} {1} {2}",
+            new Object[] {flight.getFlightNumber(), flight.getFlightDeparture(), flight.getFlightDestination()});
         
         if (flight.getId() != null) {
             
@@ -0,0 +1,48 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.flight;
+
+import java.io.IOException;
+
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.io.SerializedString;
+import org.codehaus.jackson.map.SerializerProvider;
+import org.jboss.quickstarts.wfk.util.EntitySerializer;
+
+/**
+ * <p>Writes a {@link Flight} as JSON without reflection, with the same properties Jackson's bean serializer would
+ * write.</p>
+ *
+ * @see org.jboss.quickstarts.wfk.util.EntityJsonModule
+ */
+public class FlightSerializer extends EntitySerializer<Flight> {
+
+    public static final FlightSerializer INSTANCE = new FlightSerializer();
+
+    private static final SerializedString ID = new SerializedString("id");
+    private static final SerializedString FLIGHT_NUMBER = new SerializedString("flightNumber");
+    private static final SerializedString FLIGHT_DEPARTURE = new SerializedString("flightDeparture");
+    private static final SerializedString FLIGHT_DESTINATION = new SerializedString("flightDestination");
+
+    @Override
+    protected void serializeFields(Flight value, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+        writeNumber(jgen, ID, value.getId());
+        writeString(jgen, FLIGHT_NUMBER, value.getFlightNumber());
+        writeString(jgen, FLIGHT_DEPARTURE, value.getFlightDeparture());
+        writeString(jgen, FLIGHT_DESTINATION, value.getFlightDestination());
+    }
+}
@@ -17,9 +17,16 @@ import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
 
 import java.net.URI;
+import java.util.Date;
 import java.util.List;
 
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.jboss.quickstarts.wfk.util.BulkBatch;
+import org.jboss.quickstarts.wfk.util.BulkMode;
+import org.jboss.quickstarts.wfk.util.BulkWriter;
+import org.jboss.quickstarts.wfk.util.EntityVersion;
+import org.jboss.quickstarts.wfk.util.Page;
 
 /**
  * <p>This Service assumes the Control responsibility in the ECB pattern.</p>
@@ -45,6 +52,9 @@ public class FlightService {
     @Inject
     private FlightValidator validator;
 
+    @Inject
+    private BulkWriter writer;
+
     @Inject
     private FlightRepository crud;
 
@@ -60,6 +70,34 @@ public class FlightService {
         return crud.findAllOrderedByName();
     }
 
+    /**
+     * <p>Returns one page of {@link Flight} objects, see {@link FlightRepository#findPage(String[], int)}.</p>
+     *
+     * @param after The sort key of the last Flight of the previous page; or null for the first page
+     * @param limit The maximum number of Flight objects to return
+     * @return The Page of Flight objects
+     */
+    Page<Flight> findPage(String[] after, int limit) {
+        return crud.findPage(after, limit);
+    }
+
+    /**
+     * <p>Returns one page of the {@link Flight} objects that are free on every day of a range, see
+     * {@link FlightRepository#findAvailablePage(Date, Date, String, String, String[], int)}.</p>
+     *
+     * @param first The first day of the range
+     * @param last The last day of the range (inclusive)
+     * @param departure The airport the flight must leave from; or null for any
+     * @param destination The airport the flight must go to; or null for any
+     * @param after The sort key of the last Flight of the previous page; or null for the first page
+     * @param limit The maximum number of Flight objects to return
+     * @return The Page of Flight objects
+     */
+    Page<Flight> findAvailablePage(Date first, Date last, String departure, String destination, String[] after,
+            int limit) {
+        return crud.findAvailablePage(first, last, departure, destination, after, limit);
+    }
+
     /**
      * <p>Returns a single Flight object, specified by a Long id.<p/>
      * 
@@ -70,6 +108,17 @@ public class FlightService {
         return crud.findById(id);
     }
 
+    /**
+     * <p>Returns the version and last modification time of a Flight, specified by a Long id, to answer a conditional
+     * request without loading the Flight.</p>
+     *
+     * @param id The id field of the Flight
+     * @return The version of the Flight with the specified id; or null if there is none
+     */
+    EntityVersion findVersion(Long id) {
+        return crud.findVersion(id);
+    }
+
     /**
      * <p>Returns a single Flight object, specified by a String email.</p>
      *
@@ -116,7 +165,8 @@ public class FlightService {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     Flight create(Flight flight) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("FlightService.create() - Creating " + flight.getFlightDeparture() + " " + flight.getFlightDestination());
+        log.log(Level.FINE, "FlightService.create() - Creating {0} {1}",
+            new Object[] {flight.getFlightDeparture(), flight.getFlightDestination()});
         
         // Check to make sure the data fits with the parameters in the Flight model and passes validation.
         validator.validateFlight(flight);
@@ -143,6 +193,25 @@ public class FlightService {
         return crud.create(flight);
     }
 
+    /**
+     * <p>Writes the Flight objects of a bulk create to the application database.</p>
+     *
+     * <p>The whole batch is validated at once by {@link FlightValidator#validateFlights(BulkBatch)}, then the items that passed
+     * are inserted by a {@link BulkWriter} in JDBC batches. The outcome of every item is recorded in the batch.</p>
+     *
+     * @param batch The Flight objects to be written
+     * @param mode Whether the batch is written all or nothing, or item by item
+     */
+    void createAll(BulkBatch<Flight> batch, BulkMode mode) {
+        log.log(Level.FINE, "FlightService.createAll() - Creating {0} Flights, {1}", new Object[] {batch.size(), mode});
+
+        // Check the whole batch against the Flight model and the database, rejecting the items that fail.
+        validator.validateFlights(batch);
+
+        // Write the others to the database.
+        writer.write(batch, mode);
+    }
+
     /**
      * <p>Updates an existing Flight object in the application database with the provided Flight object.<p/>
      *
@@ -153,7 +222,8 @@ public class FlightService {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     Flight update(Flight flight) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("FlightService.update() - Updating " + flight.getFlightDeparture() + " " + flight.getFlightDestination());
+        log.log(Level.FINE, "FlightService.update() - Updating {0} {1}",
+            new Object[] {flight.getFlightDeparture(), flight.getFlightDestination()});
         
         // Check to make sure the data fits with the parameters in the Flight model and passes validation.
         validator.validateFlight(flight);
@@ -187,7 +257,8 @@ public class FlightService {
      * @throws Exception
      */
    Flight delete(Flight flight) throws Exception {
-        log.info("FlightService.delete() - Deleting " + flight.getFlightDeparture() + " " + flight.getFlightDestination());
+        log.log(Level.FINE, "FlightService.delete() - Deleting {0} {1}",
+            new Object[] {flight.getFlightDeparture(), flight.getFlightDestination()});
         
         Flight deletedFlight = null;
         
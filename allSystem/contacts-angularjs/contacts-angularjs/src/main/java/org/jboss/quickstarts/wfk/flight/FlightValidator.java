@@ -10,6 +10,8 @@ import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
 import javax.validation.Validator;
 
+import org.jboss.quickstarts.wfk.util.BulkBatch;
+
 /**
  * <p>This class provides methods to check Flight objects against arbitrary requirements.</p>
  * 
@@ -55,6 +57,36 @@ public class FlightValidator {
             throw new ValidationException("Destination Violation. Destination");
         }
     }
+
+    /**
+     * <p>Validates all the Flights of a bulk create at once. The items the single create would reject are rejected in
+     * the batch instead: those with bean validation errors with a 400, and with a 409 those whose flight number is already
+     * registered or used by an earlier Flight of the batch, and those whose departure is their destination.</p>
+     *
+     * <p>The flight numbers are looked up with one query for the whole batch rather than one per Flight.</p>
+     *
+     * @param batch The Flight objects to be validated
+     */
+    void validateFlights(BulkBatch<Flight> batch) {
+        batch.validateBeans(validator);
+
+        Set<String> taken = crud.findExistingFlightNumbers(batch.<String>keys(FLIGHT_NUMBER));
+        batch.rejectTaken(FLIGHT_NUMBER, taken, "flight_number", "That flight number is already used, please use a unique flight number");
+        for (int index : batch.pending()) {
+            if (flightDestination(batch.get(index))) {
+                batch.conflict(index, "flightDestination", "please use a unique flight flightDestination");
+            }
+        }
+        // After the destination check, so that a flight only clashes with the earlier flights that are created
+        batch.rejectDuplicates(FLIGHT_NUMBER, "flight_number", "That flight number is already used, please use a unique flight number");
+    }
+
+    private static final BulkBatch.Key<Flight> FLIGHT_NUMBER = new BulkBatch.Key<Flight>() {
+        @Override
+        public Object of(Flight flight) {
+            return flight.getFlightNumber();
+        }
+    };
     
 
     /**
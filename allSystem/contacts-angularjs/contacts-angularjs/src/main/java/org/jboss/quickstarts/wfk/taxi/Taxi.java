@@ -28,6 +28,10 @@ import javax.xml.bind.annotation.XmlRootElement;
 
 import org.hibernate.validator.constraints.Email;
 import org.hibernate.validator.constraints.NotEmpty;
+import org.hibernate.annotations.GenericGenerator;
+import org.codehaus.jackson.annotate.JsonIgnore;
+import org.jboss.quickstarts.wfk.util.PooledIdGenerator;
+import org.jboss.quickstarts.wfk.util.Versioned;
 
 /**
  * <p>This is a the Domain object. The Taxi class represents how taxi resources are represented in the application
@@ -43,18 +47,34 @@ import org.hibernate.validator.constraints.NotEmpty;
  * form of query in JPA though is it more error prone due to the syntax being in a String.  This makes it harder to debug.
  */
 @Entity
+@Cacheable
 @NamedQueries({
-    @NamedQuery(name = Taxi.FIND_ALL, query = "SELECT c FROM Taxi c ORDER BY c.seat ASC"),
-    @NamedQuery(name = Taxi.FIND_BY_REGISTRATION, query = "SELECT c FROM Taxi c WHERE c.registration = :registration")
+    @NamedQuery(name = Taxi.FIND_ALL, query = "SELECT c FROM Taxi c ORDER BY c.seat ASC, c.id ASC",
+        hints = {@QueryHint(name = "org.hibernate.cacheable", value = "true"),
+                 @QueryHint(name = "org.hibernate.cacheRegion", value = Taxi.QUERY_CACHE_REGION)}),
+    @NamedQuery(name = Taxi.FIND_ALL_AFTER, query = "SELECT c FROM Taxi c WHERE c.seat > :seat OR (c.seat = :seat AND c.id > :id) ORDER BY c.seat ASC, c.id ASC",
+        hints = {@QueryHint(name = "org.hibernate.cacheable", value = "true"),
+                 @QueryHint(name = "org.hibernate.cacheRegion", value = Taxi.QUERY_CACHE_REGION)}),
+    @NamedQuery(name = Taxi.FIND_BY_REGISTRATION, query = "SELECT c FROM Taxi c WHERE c.registration = :registration",
+        hints = {@QueryHint(name = "org.hibernate.cacheable", value = "true"),
+                 @QueryHint(name = "org.hibernate.cacheRegion", value = Taxi.QUERY_CACHE_REGION)}),
+    @NamedQuery(name = Taxi.FIND_REGISTRATIONS_IN, query = "SELECT c.registration FROM Taxi c WHERE c.registration IN :registrations"),
+    @NamedQuery(name = Taxi.FIND_VERSION, query = "SELECT NEW org.jboss.quickstarts.wfk.util.EntityVersion(c.version, c.lastModified) FROM Taxi c WHERE c.id = :id")
 })
 @XmlRootElement
 @Table(name = "Taxi", uniqueConstraints = @UniqueConstraint(columnNames = "registration"))
-public class Taxi implements Serializable {
+public class Taxi implements Serializable, Versioned {
     /** Default value included to remove warning. Remove or modify at will. **/
     private static final long serialVersionUID = 1L;
     
+    /** The query cache region of the named queries below; their entities go to the region of the entity. */
+    public static final String QUERY_CACHE_REGION = "Taxi.queries";
+
     public static final String FIND_ALL = "Taxi.findAll";
+    public static final String FIND_ALL_AFTER = "Taxi.findAllAfter";
     public static final String FIND_BY_REGISTRATION = "Taxi.findByRegistration";
+    public static final String FIND_REGISTRATIONS_IN = "Taxi.findRegistrationsIn";
+    public static final String FIND_VERSION = "Taxi.findVersion";
 
     /*
      * The  error messages match the ones in the UI so that the user isn't confused by two similar error messages for
@@ -66,9 +86,17 @@ public class Taxi implements Serializable {
      * variable occurs it can be sent to the correct input field on the form.  
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.TABLE)
+    @GeneratedValue(generator = PooledIdGenerator.NAME)
+    @GenericGenerator(name = PooledIdGenerator.NAME, strategy = PooledIdGenerator.STRATEGY)
     private Long id;
 
+    @Version
+    private long version;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "last_modified")
+    private Date lastModified;
+
 
 
     @NotNull
@@ -106,7 +134,33 @@ public class Taxi implements Serializable {
 
     public void setSeat(String seat) {
         this.seat = seat;
-    }   
+    }
 
-    
+    @JsonIgnore
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    @JsonIgnore
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    @JsonIgnore
+    @Override
+    public Date getLastModified() {
+        return lastModified;
+    }
+
+    @JsonIgnore
+    public void setLastModified(Date lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        lastModified = new Date();
+    }
 }
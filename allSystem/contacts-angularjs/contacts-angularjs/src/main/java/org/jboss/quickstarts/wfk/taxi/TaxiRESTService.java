@@ -16,16 +16,20 @@
  */
 package org.jboss.quickstarts.wfk.taxi;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.ejb.NoSuchEntityException;
 import javax.ejb.Stateless;
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.interceptor.Interceptors;
 import javax.persistence.NoResultException;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
@@ -37,11 +41,24 @@ import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.WebApplicationException;
 
+import org.jboss.quickstarts.wfk.util.BulkBatch;
+import org.jboss.quickstarts.wfk.util.BulkMode;
+import org.jboss.quickstarts.wfk.util.ConditionalRequests;
+import org.jboss.quickstarts.wfk.util.DayRange;
+import org.jboss.quickstarts.wfk.util.JsonExporter;
+import org.jboss.quickstarts.wfk.util.MetricsInterceptor;
+import org.jboss.quickstarts.wfk.util.Page;
+import org.jboss.quickstarts.wfk.util.PageCursor;
+
 /**
  * <p>This class exposes the functionality of {@link TaxiService} over HTTP endpoints as a RESTful resource via
  * JAX-RS.</p>
@@ -68,22 +85,65 @@ import javax.ws.rs.WebApplicationException;
 @Consumes(MediaType.APPLICATION_JSON)
 @Produces(MediaType.APPLICATION_JSON)
 @Stateless
+@Interceptors(MetricsInterceptor.class)
 public class TaxiRESTService {
     @Inject
     private @Named("logger") Logger log;
     
     @Inject
     private TaxiService service;
+
+    @Inject
+    private JsonExporter exporter;
     
     /**
-     * <p>Search for and return all the Taxis.  They are sorted alphabetically by name.</p>
+     * <p>Search for and return the Taxis, one page at a time.  They are sorted by seats.</p>
+     *
+     * <p>Each response carries the cursor of the following page in the {@value PageCursor#NEXT_CURSOR_HEADER} header,
+     * which is absent on the last page. Add stream=true to get all of them at once instead, for an export.</p>
      * 
+     * @param cursor The cursor of the page to return; or null for the first page
+     * @param limit The maximum number of Taxis to return; or null for the default page size
+     * @param stream If true, all the Taxis are streamed back in a single response and cursor and limit are ignored
+     * @return A Response containing a list of Taxis
+     */
+    @GET
+    public Response retrieveAllTaxis(@QueryParam("cursor") String cursor, @QueryParam("limit") Integer limit,
+            @QueryParam("stream") boolean stream) {
+        if (stream) {
+            // Written row by row as RESTEasy sends the response, instead of being built in memory first
+            return Response.ok(exporter.stream(Taxi.FIND_ALL)).build();
+        }
+        int pageSize = PageCursor.limit(limit);
+        Page<Taxi> taxis = service.findPage(PageCursor.decode(cursor, 2), pageSize);
+        return Response.ok(taxis.getItems()).header(PageCursor.NEXT_CURSOR_HEADER, taxis.getNextCursor()).build();
+    }
+
+    /**
+     * <p>Search for and return the Taxis that are not booked on any day of a range, one page at a time. They are
+     * sorted by seats, like {@link #retrieveAllTaxis}.</p>
+     *
+     * <p>Full path is rest/taxis/available?from=yyyy-MM-dd&amp;to=yyyy-MM-dd&amp;minSeats=4 . The range is inclusive,
+     * from defaults to today and to to from. As with the full list, the cursor of the following page is in the {@value
+     * PageCursor#NEXT_CURSOR_HEADER} header.</p>
+     *
+     * @param from The first day of the range as yyyy-MM-dd; or null for today
+     * @param to The last day of the range as yyyy-MM-dd; or null for the same day as from
+     * @param minSeats The fewest seats the Taxis must have; or null for any
+     * @param cursor The cursor of the page to return; or null for the first page
+     * @param limit The maximum number of Taxis to return; or null for the default page size
      * @return A Response containing a list of Taxis
      */
     @GET
-    public Response retrieveAllTaxis() {
-        List<Taxi> taxis = service.findAllOrderedByName();
-        return Response.ok(taxis).build();
+    @Path("/available")
+    public Response retrieveAvailableTaxis(@QueryParam("from") String from, @QueryParam("to") String to,
+            @QueryParam("minSeats") Integer minSeats, @QueryParam("cursor") String cursor,
+            @QueryParam("limit") Integer limit) {
+        DayRange range = DayRange.parse(from, to, 1);
+        int pageSize = PageCursor.limit(limit);
+        Page<Taxi> taxis = service.findAvailablePage(range.getFirstDate(), range.getLastDate(), minSeats,
+            PageCursor.decode(cursor, 2), pageSize);
+        return Response.ok(taxis.getItems()).header(PageCursor.NEXT_CURSOR_HEADER, taxis.getNextCursor()).build();
     }
 
     /**
@@ -110,21 +170,33 @@ public class TaxiRESTService {
     
     /**
      * <p>Search for and return a Taxi identified by id.</p>
+     *
+     * <p>The response carries the version of the Taxi as its ETag, and its Last-Modified. A client that sends them back
+     * in If-None-Match or If-Modified-Since gets a 304 (Not Modified) while its copy is current, found out from the
+     * version alone without loading the Taxi.</p>
      * 
      * @param id The long parameter value provided as a Taxi's id
+     * @param request The request, to evaluate its preconditions
+     * @param headers The headers of the request
      * @return A Response containing a single Taxi
      */
     @GET
     @Path("/{id:[0-9]+}")
-    public Response retrieveTaxiById(@PathParam("id") long id) {
+    public Response retrieveTaxiById(@PathParam("id") long id, @Context Request request, @Context HttpHeaders headers) {
+        if (ConditionalRequests.isConditional(headers)) {
+            Response notModified = ConditionalRequests.notModified(request, headers, service.findVersion(id));
+            if (notModified != null) {
+                return notModified;
+            }
+        }
         Taxi taxi = service.findById(id);
         if (taxi == null) {
             throw new WebApplicationException(Response.Status.NOT_FOUND);
         }
-        log.info("findById " + id + ": found Taxi = " + taxi.getSeat() + " " + taxi.getRegistration()  
-               + " " + taxi.getId());
+        log.log(Level.FINE, "findById {0}: found Taxi = {1} {2} {3}",
+            new Object[] {id, taxi.getSeat(), taxi.getRegistration(), taxi.getId()});
         
-        return Response.ok(taxi).build();
+        return ConditionalRequests.ok(taxi).build();
     }
 
     /**
@@ -137,7 +209,8 @@ public class TaxiRESTService {
     @SuppressWarnings("unused")
     @POST
     public Response createTaxi(Taxi taxi) {
-        log.info("createTaxi started. Taxi = " + taxi.getSeat() + " " + taxi.getRegistration()+ " " + taxi.getId());
+        log.log(Level.FINE, "createTaxi started. Taxi = {0} {1} {2}",
+            new Object[] {taxi.getSeat(), taxi.getRegistration(), taxi.getId()});
         if (taxi == null) {
             throw new WebApplicationException(Response.Status.BAD_REQUEST);
         }
@@ -151,20 +224,20 @@ public class TaxiRESTService {
             // Create a "Resource Created" 201 Response and pass the taxi back in case it is needed.
             builder = Response.status(Response.Status.CREATED).entity(taxi);
             
-            log.info("createTaxi completed. Taxi = " + taxi.getSeat() + " " + taxi.getRegistration()  
-                + " " + taxi.getId());
+            log.log(Level.FINE, "createTaxi completed. Taxi = {0} {1} {2}",
+                new Object[] {taxi.getSeat(), taxi.getRegistration(), taxi.getId()});
         } catch (ConstraintViolationException ce) {
-            log.info("ConstraintViolationException - " + ce.toString());
+            log.log(Level.INFO, "ConstraintViolationException - {0}", ce);
             // Handle bean validation issues
             builder = createViolationResponse(ce.getConstraintViolations());
         } catch (ValidationException e) {
-            log.info("ValidationException - " + e.toString());
+            log.log(Level.INFO, "ValidationException - {0}", e);
             // Handle the unique constrain violation
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("registration", "That registration is already used, please use a unique registration");
             builder = Response.status(Response.Status.CONFLICT).entity(responseObj);
         } catch (Exception e) {
-            log.info("Exception - " + e.toString());
+            log.log(Level.INFO, "Exception - {0}", e);
             // Handle generic exceptions
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("error", e.getMessage());
@@ -174,32 +247,89 @@ public class TaxiRESTService {
         return builder.build();
     }
 
+    /**
+     * <p>Creates several Taxis at once from a JSON array of Taxi objects.</p>
+     *
+     * <p>The whole batch is validated in one go, with the same checks and errors as {@link #createTaxi(Taxi)}, and the
+     * items that pass are inserted in JDBC batches. In <i>atomic</i> mode (the default) either all the Taxis are
+     * created, with a 201, or none is, with a 400 or 409. In <i>bestEffort</i> mode the valid ones are created anyway and
+     * the response is a 207. Either way the body gives the status, id or errors of every item, in order.</p>
+     *
+     * @param taxis The Taxi objects, constructed automatically from JSON input
+     * @param mode atomic or bestEffort; or null for atomic
+     * @return A Response indicating the outcome of every create
+     */
+    @POST
+    @Path("/bulk")
+    public Response createTaxis(List<Taxi> taxis, @QueryParam("mode") String mode) {
+        BulkMode bulkMode = BulkMode.of(mode);
+        return createAll(new BulkBatch<Taxi>(taxis), bulkMode);
+    }
+
+    /**
+     * <p>Creates several Taxis at once from newline delimited JSON, one Taxi object per line. Otherwise the same as
+     * {@link #createTaxis(List, String)}; a line that cannot be read is rejected with a 400 of its own.</p>
+     *
+     * @param body The request body, in {@value BulkBatch#NDJSON}
+     * @param mode atomic or bestEffort; or null for atomic
+     * @return A Response indicating the outcome of every create
+     * @throws IOException If the request body cannot be read
+     */
+    @POST
+    @Path("/bulk")
+    @Consumes(BulkBatch.NDJSON)
+    public Response createTaxisFromNdjson(InputStream body, @QueryParam("mode") String mode) throws IOException {
+        BulkMode bulkMode = BulkMode.of(mode);
+        return createAll(BulkBatch.fromNdjson(body, Taxi.class), bulkMode);
+    }
+
+    private Response createAll(BulkBatch<Taxi> batch, BulkMode mode) {
+        log.log(Level.FINE, "createTaxis started. {0} Taxis, {1}", new Object[] {batch.size(), mode});
+
+        service.createAll(batch, mode);
+        Response response = batch.toResponse(mode);
+
+        log.log(Level.FINE, "createTaxis completed. Status = {0}", response.getStatus());
+        return response;
+    }
+
     /**
      * <p>Updates a taxi with the ID provided in the Taxi. Performs validation, and will return a JAX-RS response with either 200 ok,
      * or with a map of fields, and related errors.</p>
+     *
+     * <p>If the client sends the ETag it read in If-Match, or its Last-Modified in If-Unmodified-Since, the update is only
+     * applied if the Taxi has not changed since; otherwise the response is a 412 (Precondition Failed).</p>
      * 
      * @param taxi The Taxi object, constructed automatically from JSON input, to be <i>updated</i> via {@link TaxiService#update(Taxi)}
      * @param id The long parameter value provided as the id of the Taxi to be updated
+     * @param request The request, to evaluate its If-Match or If-Unmodified-Since
+     * @param headers The headers of the request
      * @return A Response indicating the outcome of the create operation
      */
     @PUT
     @Path("/{id:[0-9][0-9]*}")
-    public Response updateTaxi(@PathParam("id") long id, Taxi taxi) {
+    public Response updateTaxi(@PathParam("id") long id, Taxi taxi, @Context Request request,
+            @Context HttpHeaders headers) {
         if (taxi == null) {
             throw new WebApplicationException(Response.Status.BAD_REQUEST);
         }
-        log.info("updateTaxi started. Taxi = " + taxi.getSeat() + " " + taxi.getRegistration()
-                 + " " + taxi.getId());
+        log.log(Level.FINE, "updateTaxi started. Taxi = {0} {1} {2}",
+            new Object[] {taxi.getSeat(), taxi.getRegistration(), taxi.getId()});
 
         if (taxi.getId() != id) {
             // The client attempted to update the read-only Id. This is not permitted.
             Response response = Response.status(Response.Status.CONFLICT).entity("The taxi ID cannot be modified").build();
             throw new WebApplicationException(response);
         }
-        if (service.findById(taxi.getId()) == null) {
+        Taxi current = service.findById(taxi.getId());
+        if (current == null) {
             // Verify if the taxi exists. Return 404, if not present.
             throw new WebApplicationException(Response.Status.NOT_FOUND);
         }
+        ConditionalRequests.checkUnchanged(request, headers, current);
+        // The update replaces the version that was just checked, and the timestamp only moves if something changed
+        taxi.setVersion(current.getVersion());
+        taxi.setLastModified(current.getLastModified());
         
         Response.ResponseBuilder builder = null;
         
@@ -210,13 +340,14 @@ public class TaxiRESTService {
             // Create an OK Response and pass the taxi back in case it is needed.
             builder = Response.ok(taxi);
 
-            log.info("updateTaxi completed. Taxi = " + taxi.getSeat() + " " + taxi.getRegistration()+ " " + taxi.getId());
+            log.log(Level.FINE, "updateTaxi completed. Taxi = {0} {1} {2}",
+                new Object[] {taxi.getSeat(), taxi.getRegistration(), taxi.getId()});
         } catch (ConstraintViolationException ce) {
-            log.info("ConstraintViolationException - " + ce.toString());
+            log.log(Level.INFO, "ConstraintViolationException - {0}", ce);
             // Handle bean validation issues
             builder = createViolationResponse(ce.getConstraintViolations());
         } catch (ValidationException e) {
-            log.info("ValidationException - " + e.toString());
+            log.log(Level.INFO, "ValidationException - {0}", e);
             // Handle the unique constrain violation
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("registration", "That registration is already used, please use a unique registration");
@@ -224,7 +355,7 @@ public class TaxiRESTService {
             responseObj.put("anotherError", "You can find this error message in /src/main/java/org/jboss/quickstarts/wfk/rest/TaxiRESTService.java line 242.");
             builder = Response.status(Response.Status.CONFLICT).entity(responseObj);
         } catch (Exception e) {
-            log.info("Exception - " + e.toString());
+            log.log(Level.INFO, "Exception - {0}", e);
             // Handle generic exceptions
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("error", e.getMessage());
@@ -245,7 +376,7 @@ public class TaxiRESTService {
     @DELETE
     @Path("/{id:[0-9][0-9]*}")
     public Response deleteTaxi(@PathParam("id") Long id) {
-        log.info("deleteTaxi started. Taxi ID = " + id);
+        log.log(Level.FINE, "deleteTaxi started. Taxi ID = {0}", id);
         Response.ResponseBuilder builder = null;
 
         try {
@@ -258,9 +389,10 @@ public class TaxiRESTService {
             }
 
             builder = Response.noContent();
-            log.info("deleteTaxi completed. Taxi = " + taxi.getSeat()  + " " + taxi.getRegistration()+ " " + taxi.getId());
+            log.log(Level.FINE, "deleteTaxi completed. Taxi = {0} {1} {2}",
+                new Object[] {taxi.getSeat(), taxi.getRegistration(), taxi.getId()});
         } catch (Exception e) {
-            log.info("Exception - " + e.toString());
+            log.log(Level.INFO, "Exception - {0}", e);
             // Handle generic exceptions
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("error", e.getMessage());
@@ -278,7 +410,7 @@ public class TaxiRESTService {
      * @return A Bad Request (400) Response containing all violation messages
      */
     private Response.ResponseBuilder createViolationResponse(Set<ConstraintViolation<?>> violations) {
-        log.fine("Validation completed. violations found: " + violations.size());
+        log.log(Level.FINE, "Validation completed. violations found: {0}", violations.size());
 
         Map<String, String> responseObj = new HashMap<String, String>();
 
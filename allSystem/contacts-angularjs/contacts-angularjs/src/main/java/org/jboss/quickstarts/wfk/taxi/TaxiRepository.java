@@ -19,6 +19,7 @@ package org.jboss.quickstarts.wfk.taxi;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.persistence.EntityManager;
+import javax.persistence.TemporalType;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
@@ -26,8 +27,18 @@ import javax.persistence.criteria.Root;
 import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.jboss.quickstarts.wfk.util.BulkBatch;
+import org.jboss.quickstarts.wfk.util.EntityVersion;
+import org.jboss.quickstarts.wfk.util.Page;
+import org.jboss.quickstarts.wfk.util.PageCursor;
 
 /**
  * <p>This is a Repository class and connects the Service/Control layer (see {@link TaxiService} with the
@@ -58,6 +69,97 @@ public class TaxiRepository {
         return query.getResultList();
     }
 
+    /**
+     * <p>Returns one page of persisted {@link Taxi} objects, in the order of {@link Taxi#FIND_ALL}, starting right
+     * after the given sort key.</p>
+     *
+     * @param after The sort key (seat and id) of the last Taxi of the previous page; or null for the first page
+     * @param limit The maximum number of Taxi objects to return
+     * @return The Page of Taxi objects
+     */
+    Page<Taxi> findPage(String[] after, int limit) {
+        TypedQuery<Taxi> query;
+        if (after == null) {
+            query = em.createNamedQuery(Taxi.FIND_ALL, Taxi.class);
+        } else {
+            query = em.createNamedQuery(Taxi.FIND_ALL_AFTER, Taxi.class)
+                .setParameter("seat", after[0])
+                .setParameter("id", Long.valueOf(after[1]));
+        }
+        // One more than asked for, to know whether there is a next page
+        List<Taxi> rows = query.setMaxResults(limit + 1).getResultList();
+        return PageCursor.page(rows, limit, SORT_KEY);
+    }
+
+    private static final PageCursor.SortKey<Taxi> SORT_KEY = new PageCursor.SortKey<Taxi>() {
+        @Override
+        public Object[] of(Taxi taxi) {
+            return new Object[] {taxi.getSeat(), taxi.getId()};
+        }
+    };
+
+    /** The most seats a taxi can have, see the @Pattern of {@link Taxi#getSeat()}. */
+    private static final int MAX_SEATS = 22;
+
+    /**
+     * <p>Returns one page of the persisted {@link Taxi} objects that are not booked on any day of a range, in the
+     * order of {@link Taxi#FIND_ALL}, starting right after the given sort key.</p>
+     *
+     * <p>It is a single query: the booked taxis are left out with NOT EXISTS, an anti-join that the unique index on
+     * (taxi_id, taxidate) answers, and the page is cut by the (seat, id) keyset, so only one page of rows is read.</p>
+     *
+     * @param first The first day of the range
+     * @param last The last day of the range (inclusive)
+     * @param minSeats The fewest seats the taxi must have; or null for any
+     * @param after The sort key (seat and id) of the last Taxi of the previous page; or null for the first page
+     * @param limit The maximum number of Taxi objects to return
+     * @return The Page of Taxi objects
+     */
+    Page<Taxi> findAvailablePage(Date first, Date last, Integer minSeats, String[] after, int limit) {
+        StringBuilder jpql = new StringBuilder("SELECT c FROM Taxi c WHERE NOT EXISTS (SELECT b.id FROM BookingTaxi b"
+            + " WHERE b.taxiid = c AND b.taxidate BETWEEN :first AND :last)");
+        List<String> seats = null;
+        if (minSeats != null) {
+            seats = seatsFrom(minSeats);
+            if (seats.isEmpty()) {
+                return new Page<Taxi>(new ArrayList<Taxi>(), null);
+            }
+            jpql.append(" AND c.seat IN :seats");
+        }
+        if (after != null) {
+            jpql.append(" AND (c.seat > :seat OR (c.seat = :seat AND c.id > :id))");
+        }
+        jpql.append(" ORDER BY c.seat ASC, c.id ASC");
+
+        TypedQuery<Taxi> query = em.createQuery(jpql.toString(), Taxi.class)
+            .setParameter("first", first, TemporalType.DATE)
+            .setParameter("last", last, TemporalType.DATE);
+        if (seats != null) {
+            query.setParameter("seats", seats);
+        }
+        if (after != null) {
+            query.setParameter("seat", after[0]).setParameter("id", Long.valueOf(after[1]));
+        }
+        // One more than asked for, to know whether there is a next page
+        List<Taxi> rows = query.setMaxResults(limit + 1).getResultList();
+        return PageCursor.page(rows, limit, SORT_KEY);
+    }
+
+    /*
+     * The seats are a string column, so "at least n" cannot be a comparison. There are only a few valid values though,
+     * so it is the list of them, with and without the leading zero the @Pattern allows below 10.
+     */
+    private static List<String> seatsFrom(int minSeats) {
+        List<String> seats = new ArrayList<String>();
+        for (int n = Math.max(minSeats, 0); n <= MAX_SEATS; n++) {
+            seats.add(String.valueOf(n));
+            if (n < 10) {
+                seats.add("0" + n);
+            }
+        }
+        return seats;
+    }
+
     /**
      * <p>Returns a single Taxi object, specified by a Long id.<p/>
      *
@@ -68,6 +170,18 @@ public class TaxiRepository {
         return em.find(Taxi.class, id);
     }
 
+    /**
+     * <p>Returns the version and last modification time of a Taxi, specified by a Long id, without loading it.</p>
+     *
+     * @param id The id field of the Taxi
+     * @return The version of the Taxi with the specified id; or null if there is none
+     */
+    EntityVersion findVersion(Long id) {
+        List<EntityVersion> versions = em.createNamedQuery(Taxi.FIND_VERSION, EntityVersion.class)
+            .setParameter("id", id).getResultList();
+        return versions.isEmpty() ? null : versions.get(0);
+    }
+
     /**
      * <p>Returns a single Taxi object, specified by a String email.</p>
      *
@@ -101,6 +215,21 @@ public class TaxiRepository {
 
     
 
+    /**
+     * <p>Returns those of the given registrations that a persisted {@link Taxi} already has, for the validation of a
+     * bulk create. One query per {@value BulkBatch#IN_LIST_SIZE} values, instead of one per Taxi.</p>
+     *
+     * @param registrations The registrations to look for
+     * @return The registrations that are taken
+     */
+    Set<String> findExistingRegistrations(Collection<String> registrations) {
+        Set<String> taken = new HashSet<String>();
+        for (List<String> part : BulkBatch.partition(new ArrayList<String>(registrations), BulkBatch.IN_LIST_SIZE)) {
+            taken.addAll(em.createNamedQuery(Taxi.FIND_REGISTRATIONS_IN, String.class).setParameter("registrations", part).getResultList());
+        }
+        return taken;
+    }
+
     /**
      * <p>Persists the provided Taxi object to the application database using the EntityManager.</p>
      *
@@ -114,7 +243,7 @@ public class TaxiRepository {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     Taxi create(Taxi taxi) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("TaxiRepository.create() - Creating " + taxi.getSeat() );
+        log.log(Level.FINE, "TaxiRepository.create() - Creating {0}", taxi.getSeat());
         
         // Write the taxi to the database.
         em.persist(taxi);
@@ -136,10 +265,12 @@ public class TaxiRepository {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     Taxi update(Taxi taxi) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("TaxiRepository.update() - Updating " + taxi.getSeat() );
+        log.log(Level.FINE, "TaxiRepository.update() - Updating {0}", taxi.getSeat());
         
         // Either update the taxi or add it if it can't be found.
         em.merge(taxi);
+
+        // Hibernate invalidates the second-level cache copy, and the cached queries on the table, at commit.
         
         return taxi;
     }
@@ -152,7 +283,7 @@ public class TaxiRepository {
      * @throws Exception
      */
     Taxi delete(Taxi taxi) throws Exception {
-        log.info("TaxiRepository.delete() - Deleting " + taxi.getSeat() );
+        log.log(Level.FINE, "TaxiRepository.delete() - Deleting {0}", taxi.getSeat());
         
         if (taxi.getId() != null) {
             /*
@@ -169,7 +300,6 @@ public class TaxiRepository {
              * Therefore we merge first and then we can remove it.
              */
             em.remove(em.merge(taxi));
-            
         } else {
             log.info("TaxiRepository.delete() - No ID was found so can't Delete.");
         }
@@ -34,9 +34,16 @@ import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
 
 import java.net.URI;
+import java.util.Date;
 import java.util.List;
 
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.jboss.quickstarts.wfk.util.BulkBatch;
+import org.jboss.quickstarts.wfk.util.BulkMode;
+import org.jboss.quickstarts.wfk.util.BulkWriter;
+import org.jboss.quickstarts.wfk.util.EntityVersion;
+import org.jboss.quickstarts.wfk.util.Page;
 
 /**
  * <p>This Service assumes the Control responsibility in the ECB pattern.</p>
@@ -62,6 +69,9 @@ public class TaxiService {
     @Inject
     private TaxiValidator validator;
 
+    @Inject
+    private BulkWriter writer;
+
     @Inject
     private TaxiRepository crud;
 
@@ -77,6 +87,32 @@ public class TaxiService {
         return crud.findAllOrderedByName();
     }
 
+    /**
+     * <p>Returns one page of {@link Taxi} objects, see {@link TaxiRepository#findPage(String[], int)}.</p>
+     *
+     * @param after The sort key of the last Taxi of the previous page; or null for the first page
+     * @param limit The maximum number of Taxi objects to return
+     * @return The Page of Taxi objects
+     */
+    Page<Taxi> findPage(String[] after, int limit) {
+        return crud.findPage(after, limit);
+    }
+
+    /**
+     * <p>Returns one page of the {@link Taxi} objects that are free on every day of a range, see
+     * {@link TaxiRepository#findAvailablePage(Date, Date, Integer, String[], int)}.</p>
+     *
+     * @param first The first day of the range
+     * @param last The last day of the range (inclusive)
+     * @param minSeats The fewest seats the taxi must have; or null for any
+     * @param after The sort key of the last Taxi of the previous page; or null for the first page
+     * @param limit The maximum number of Taxi objects to return
+     * @return The Page of Taxi objects
+     */
+    Page<Taxi> findAvailablePage(Date first, Date last, Integer minSeats, String[] after, int limit) {
+        return crud.findAvailablePage(first, last, minSeats, after, limit);
+    }
+
     /**
      * <p>Returns a single Taxi object, specified by a Long id.<p/>
      * 
@@ -87,6 +123,17 @@ public class TaxiService {
         return crud.findById(id);
     }
 
+    /**
+     * <p>Returns the version and last modification time of a Taxi, specified by a Long id, to answer a conditional
+     * request without loading the Taxi.</p>
+     *
+     * @param id The id field of the Taxi
+     * @return The version of the Taxi with the specified id; or null if there is none
+     */
+    EntityVersion findVersion(Long id) {
+        return crud.findVersion(id);
+    }
+
     /**
      * <p>Returns a single Taxi object, specified by a String registration.</p>
      *
@@ -123,7 +170,7 @@ public class TaxiService {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     Taxi create(Taxi taxi) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("TaxiService.create() - Creating " + taxi.getSeat());
+        log.log(Level.FINE, "TaxiService.create() - Creating {0}", taxi.getSeat());
         
         // Check to make sure the data fits with the parameters in the Taxi model and passes validation.
         validator.validateTaxi(taxi);
@@ -150,6 +197,25 @@ public class TaxiService {
         return crud.create(taxi);
     }
 
+    /**
+     * <p>Writes the Taxi objects of a bulk create to the application database.</p>
+     *
+     * <p>The whole batch is validated at once by {@link TaxiValidator#validateTaxis(BulkBatch)}, then the items that passed
+     * are inserted by a {@link BulkWriter} in JDBC batches. The outcome of every item is recorded in the batch.</p>
+     *
+     * @param batch The Taxi objects to be written
+     * @param mode Whether the batch is written all or nothing, or item by item
+     */
+    void createAll(BulkBatch<Taxi> batch, BulkMode mode) {
+        log.log(Level.FINE, "TaxiService.createAll() - Creating {0} Taxis, {1}", new Object[] {batch.size(), mode});
+
+        // Check the whole batch against the Taxi model and the database, rejecting the items that fail.
+        validator.validateTaxis(batch);
+
+        // Write the others to the database.
+        writer.write(batch, mode);
+    }
+
     /**
      * <p>Updates an existing Taxi object in the application database with the provided Taxi object.<p/>
      *
@@ -160,7 +226,7 @@ public class TaxiService {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     Taxi update(Taxi taxi) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("TaxiService.update() - Updating " + taxi.getSeat() );
+        log.log(Level.FINE, "TaxiService.update() - Updating {0}", taxi.getSeat());
         
         // Check to make sure the data fits with the parameters in the Taxi model and passes validation.
         validator.validateTaxi(taxi);
@@ -194,7 +260,7 @@ public class TaxiService {
      * @throws Exception
      */
     Taxi delete(Taxi taxi) throws Exception {
-        log.info("TaxiService.delete() - Deleting " + taxi.getSeat() );
+        log.log(Level.FINE, "TaxiService.delete() - Deleting {0}", taxi.getSeat());
         
         Taxi deletedTaxi = null;
         
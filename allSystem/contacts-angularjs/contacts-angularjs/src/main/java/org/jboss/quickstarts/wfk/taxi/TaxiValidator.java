@@ -26,6 +26,8 @@ import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
 import javax.validation.Validator;
 
+import org.jboss.quickstarts.wfk.util.BulkBatch;
+
 /**
  * <p>This class provides methods to check Taxi objects against arbitrary requirements.</p>
  * 
@@ -68,6 +70,30 @@ public class TaxiValidator {
         }
     }
 
+    /**
+     * <p>Validates all the Taxis of a bulk create at once. The items the single create would reject are rejected in
+     * the batch instead: those with bean validation errors with a 400, and with a 409 those whose registration is already
+     * registered or used by an earlier Taxi of the batch.</p>
+     *
+     * <p>The registrations are looked up with one query for the whole batch rather than one per Taxi.</p>
+     *
+     * @param batch The Taxi objects to be validated
+     */
+    void validateTaxis(BulkBatch<Taxi> batch) {
+        batch.validateBeans(validator);
+
+        Set<String> taken = crud.findExistingRegistrations(batch.<String>keys(REGISTRATION));
+        batch.rejectTaken(REGISTRATION, taken, "registration", "That registration is already used, please use a unique registration");
+        batch.rejectDuplicates(REGISTRATION, "registration", "That registration is already used, please use a unique registration");
+    }
+
+    private static final BulkBatch.Key<Taxi> REGISTRATION = new BulkBatch.Key<Taxi>() {
+        @Override
+        public Object of(Taxi taxi) {
+            return taxi.getRegistration();
+        }
+    };
+
     /**
      * <p>Checks if a taxi with the same registration address is already registered. This is the only way to easily capture the
      * "@UniqueConstraint(columnNames = "registration")" constraint from the Taxi class.</p>
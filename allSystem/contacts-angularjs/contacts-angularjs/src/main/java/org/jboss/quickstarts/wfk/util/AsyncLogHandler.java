@@ -0,0 +1,189 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.text.MessageFormat;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * <p>A java.util.logging Handler that hands the records of the application loggers to a background thread, so a
+ * request never waits for the console or the log file.</p>
+ *
+ * <p>Records go into a bounded buffer. When it is full the record is dropped rather than waiting for room, and the
+ * writer reports how many were lost once it catches up. The writer publishes each record to the handlers of the
+ * logger's ancestors, i.e. wherever it would have gone without this handler.</p>
+ *
+ * <p>The message parameters are filled in by the thread that logs, before the record is queued: it is only done for
+ * records that pass the level check, and it means the writer never touches an entity that belongs to a request.
+ * Parameters are inserted with String.valueOf, so an id is written as 12345 rather than MessageFormat's 12,345. The
+ * source class and method are pinned at the same time, as they are looked up from the stack of the thread that asks
+ * for them first.</p>
+ *
+ * @see LoggingConfig
+ */
+public class AsyncLogHandler extends Handler {
+
+    private final Logger target;
+    private final BlockingQueue<LogRecord> buffer;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+    private volatile boolean closed;
+
+    /**
+     * @param target The logger whose ancestors' handlers receive the records
+     * @param capacity The number of records the buffer holds before it starts dropping them
+     */
+    public AsyncLogHandler(Logger target, int capacity) {
+        this.target = target;
+        this.buffer = new ArrayBlockingQueue<LogRecord>(capacity);
+        this.writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, "wfk-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) {
+            return;
+        }
+        fillInParameters(record);
+        // The caller is looked up from the stack the first time it is asked for, on the writer that would find the
+        // writer itself: asking now pins the class and method while this is still the thread that logged
+        record.getSourceClassName();
+        if (!buffer.offer(record)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * <p>Returns how many records have been dropped because the buffer was full.</p>
+     *
+     * @return the number of dropped records since the handler was created
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    @Override
+    public void flush() {
+        // The writer flushes the target handlers whenever the buffer runs empty
+    }
+
+    /**
+     * <p>Stops accepting records and waits (briefly) for the writer to publish the ones already buffered.</p>
+     */
+    @Override
+    public void close() {
+        closed = true;
+        writer.interrupt();
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void fillInParameters(LogRecord record) {
+        Object[] parameters = record.getParameters();
+        String message = record.getMessage();
+        if (parameters == null || parameters.length == 0 || message == null || message.indexOf('{') < 0) {
+            return;
+        }
+        Object[] values = new Object[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            values[i] = String.valueOf(parameters[i]);
+        }
+        try {
+            record.setMessage(MessageFormat.format(message, values));
+            record.setParameters(null);
+        } catch (IllegalArgumentException e) {
+            // Not a valid pattern, leave it to the formatter of the target handler
+        }
+    }
+
+    private void drain() {
+        long reported = 0;
+        while (!closed || !buffer.isEmpty()) {
+            LogRecord record;
+            try {
+                record = buffer.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                // close() wants whatever is left written out right away
+                record = buffer.poll();
+                if (record == null) {
+                    break;
+                }
+            }
+
+            long lost = dropped.get();
+            if (lost != reported) {
+                LogRecord warning = new LogRecord(Level.WARNING, (lost - reported) + " log records were dropped, the log "
+                    + "buffer was full");
+                warning.setLoggerName(target.getName());
+                write(warning);
+                reported = lost;
+            }
+
+            if (record != null) {
+                write(record);
+            }
+            if (buffer.isEmpty()) {
+                flushTargets();
+            }
+        }
+        flushTargets();
+    }
+
+    private void write(LogRecord record) {
+        for (Logger logger = target.getParent(); logger != null; logger = logger.getParent()) {
+            for (Handler handler : logger.getHandlers()) {
+                try {
+                    handler.publish(record);
+                } catch (RuntimeException e) {
+                    reportError(null, e, ErrorManager.WRITE_FAILURE);
+                }
+            }
+            if (!logger.getUseParentHandlers()) {
+                break;
+            }
+        }
+    }
+
+    private void flushTargets() {
+        for (Logger logger = target.getParent(); logger != null; logger = logger.getParent()) {
+            for (Handler handler : logger.getHandlers()) {
+                handler.flush();
+            }
+            if (!logger.getUseParentHandlers()) {
+                break;
+            }
+        }
+    }
+}
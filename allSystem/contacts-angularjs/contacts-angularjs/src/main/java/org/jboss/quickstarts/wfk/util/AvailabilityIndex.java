@@ -0,0 +1,417 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+/**
+ * <p>The days a resource (a taxi, a flight, a hotel) is booked on, held in memory so that "is it free on that day" and
+ * "which days are free between these two" are answered without going to the database.</p>
+ *
+ * <p>There is one calendar per booking table, in a static registry like {@link EndpointMetrics}. Per resource the
+ * booked days are a bit set over day numbers (days since 1970-01-01 in the server's time zone), starting at the first
+ * booked day: a year of bookings is 46 bytes. A lookup is a map get and a bit test, and the bit sets are never changed
+ * once published, a change swaps in a copy, so readers take no lock.</p>
+ *
+ * <p>{@link AvailabilityLoader} fills the calendars from the booking tables when the application starts. After that the
+ * booking entities keep them up to date from their JPA callbacks, which covers the bulk paths too. A change is only
+ * applied once its transaction has committed, so a booking that is rolled back never shows up as taken.</p>
+ *
+ * <p>The calendars are a fast path, not the authority. A day that was booked by another node, or whose change could not
+ * be registered with its transaction, reads as free here, and the unique constraint on the resource and date still
+ * turns the booking down (see {@link Claims}). A day that was freed by another node still reads as taken here, so the
+ * validators confirm a taken day with the database before turning a booking down. On this node a booking deleted while
+ * the calendar was loading is remembered until the load is done, so that its row, read before the delete, does not take
+ * its day back.</p>
+ *
+ * @see AvailabilityLoader
+ * @see AvailabilityRESTService
+ */
+public final class AvailabilityIndex {
+
+    /** The taxis, booked by BookingTaxi. */
+    public static final AvailabilityIndex TAXIS = new AvailabilityIndex();
+
+    /** The flights, booked by BookingFlight. */
+    public static final AvailabilityIndex FLIGHTS = new AvailabilityIndex();
+
+    /** The hotels, booked by BookingHotel. */
+    public static final AvailabilityIndex HOTELS = new AvailabilityIndex();
+
+    /** The hotels, booked by Booking. It has its own unique constraint, so it is a calendar of its own. */
+    public static final AvailabilityIndex BOOKINGS = new AvailabilityIndex();
+
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    /** Our own copy, nobody else can change its offsets under us. */
+    private static final TimeZone ZONE = (TimeZone) TimeZone.getDefault().clone();
+
+    private static final String REGISTRY_NAME = "java:comp/TransactionSynchronizationRegistry";
+
+    /** Looked up on first use; a test sets its own. */
+    static volatile TransactionSynchronizationRegistry registry;
+
+    /** The booked days by resource id. */
+    private final ConcurrentMap<Long, Days> taken = new ConcurrentHashMap<Long, Days>();
+
+    /** The resource and day by booking id, to know which day to free when a booking is changed or deleted. */
+    private final ConcurrentMap<Long, Claim> claims = new ConcurrentHashMap<Long, Claim>();
+
+    /** The bookings released before the calendar was loaded, whose rows {@link #load(List)} may still see. */
+    private final Set<Long> releasedBeforeLoad = new HashSet<Long>();
+
+    private volatile boolean ready;
+
+    /** There is one per booking table, see the constants; or one per test. */
+    AvailabilityIndex() {
+    }
+
+    /**
+     * @return the number of the day the date falls on, in days since 1970-01-01 in the server's time zone
+     */
+    public static long day(Date date) {
+        long millis = date.getTime();
+        return BookingDateModule.floorDiv(millis + ZONE.getOffset(millis), DAY_MILLIS);
+    }
+
+    /**
+     * @return the date the day starts at, as the booking dates are read from JSON
+     */
+    public static Date date(long day) {
+        return new Date(BookingDateModule.startOfDay(day, ZONE));
+    }
+
+    /**
+     * @return true once the calendar was loaded from its booking table; until then it cannot tell a free day
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * <p>Checks if the resource is booked on the day of the date.</p>
+     *
+     * @param resource The id of the resource
+     * @param date The date to check
+     * @param bookingId The id of a booking whose own day is not to count, i.e. the one being updated; or null
+     * @return true if a booking other than the given one has the resource on that day
+     */
+    public boolean isTaken(Long resource, Date date, Long bookingId) {
+        Days days = taken.get(resource);
+        long day = day(date);
+        if (days == null || !days.contains(day)) {
+            return false;
+        }
+        if (bookingId == null) {
+            return true;
+        }
+        // A resource is booked once per day, so if it is this booking's day no other booking has it
+        Claim own = claims.get(bookingId);
+        return own == null || !own.is(resource, day);
+    }
+
+    /**
+     * <p>Returns the days the resource is booked on in a range.</p>
+     *
+     * @param resource The id of the resource
+     * @param first The first day of the range
+     * @param last The last day of the range (inclusive)
+     * @return a bit set in which bit i stands for day first + i
+     */
+    public BitSet takenBetween(Long resource, long first, long last) {
+        Days days = taken.get(resource);
+        if (days == null) {
+            return new BitSet();
+        }
+        long from = Math.max(first, days.origin);
+        long to = Math.min(last + 1, days.origin + days.bits.length());
+        if (from >= to) {
+            return new BitSet();
+        }
+        BitSet slice = days.bits.get((int) (from - days.origin), (int) (to - days.origin));
+        if (from == first) {
+            return slice;
+        }
+        BitSet shifted = new BitSet();
+        int offset = (int) (from - first);
+        for (int i = slice.nextSetBit(0); i >= 0; i = slice.nextSetBit(i + 1)) {
+            shifted.set(offset + i);
+        }
+        return shifted;
+    }
+
+    /**
+     * <p>Lists the days in a range on which the resource is free in all of the given calendars.</p>
+     *
+     * @param resource The id of the resource
+     * @param first The first day of the range
+     * @param last The last day of the range (inclusive)
+     * @param calendars The calendars the resource is booked in
+     * @return the free days, in order, as the dates they start at
+     */
+    public static List<Date> freeDays(Long resource, long first, long last, AvailabilityIndex... calendars) {
+        BitSet booked = new BitSet();
+        for (AvailabilityIndex calendar : calendars) {
+            booked.or(calendar.takenBetween(resource, first, last));
+        }
+        int days = (int) (last - first + 1);
+        List<Date> free = new ArrayList<Date>(Math.max(0, days - booked.cardinality()));
+        for (int i = booked.nextClearBit(0); i < days; i = booked.nextClearBit(i + 1)) {
+            free.add(date(first + i));
+        }
+        return free;
+    }
+
+    /**
+     * <p>Fills the calendar from its booking table. Bookings that were already claimed through the callbacks in the
+     * meantime keep the day they have here, and those released in the meantime are left out: the rows may have been
+     * read before the change.</p>
+     *
+     * @param rows The id of the booking, the id of the resource and the date of every booking
+     * @return the number of days loaded
+     */
+    public synchronized int load(List<Object[]> rows) {
+        Map<Long, List<Long>> byResource = new HashMap<Long, List<Long>>();
+        int loaded = 0;
+        for (Object[] row : rows) {
+            Long bookingId = (Long) row[0];
+            Long resource = (Long) row[1];
+            long day = day((Date) row[2]);
+            if (releasedBeforeLoad.contains(bookingId)) {
+                continue;
+            }
+            if (claims.putIfAbsent(bookingId, new Claim(resource, day)) == null) {
+                List<Long> days = byResource.get(resource);
+                if (days == null) {
+                    days = new ArrayList<Long>();
+                    byResource.put(resource, days);
+                }
+                days.add(day);
+                loaded++;
+            }
+        }
+        for (Map.Entry<Long, List<Long>> entry : byResource.entrySet()) {
+            taken.put(entry.getKey(), Days.of(taken.get(entry.getKey()), entry.getValue()));
+        }
+        releasedBeforeLoad.clear();
+        ready = true;
+        return loaded;
+    }
+
+    /**
+     * <p>Books the resource on the day of the date for the booking, once the current transaction commits. A booking
+     * that already had a day here gives it up. Called from the @PostPersist and @PostUpdate callbacks.</p>
+     *
+     * @param bookingId The id of the booking
+     * @param resource The id of the resource; or null if the booking has none
+     * @param date The date of the booking; or null if it has none
+     */
+    public void claimAfterCommit(final Long bookingId, final Long resource, final Date date) {
+        if (resource == null || date == null) {
+            releaseAfterCommit(bookingId);
+            return;
+        }
+        afterCommit(new Runnable() {
+            @Override
+            public void run() {
+                claim(bookingId, resource, day(date));
+            }
+        }, false);
+    }
+
+    /**
+     * <p>Frees the day of the booking, once the current transaction commits. Called from the @PostRemove callback.</p>
+     *
+     * @param bookingId The id of the booking
+     */
+    public void releaseAfterCommit(final Long bookingId) {
+        afterCommit(new Runnable() {
+            @Override
+            public void run() {
+                release(bookingId);
+            }
+        }, true);
+    }
+
+    synchronized void claim(Long bookingId, Long resource, long day) {
+        releasedBeforeLoad.remove(bookingId);
+        Claim claim = new Claim(resource, day);
+        Claim old = claims.put(bookingId, claim);
+        if (old != null && !old.is(resource, day)) {
+            free(old);
+        }
+        Days days = taken.get(resource);
+        taken.put(resource, days == null ? Days.of(null, Collections.singletonList(day)) : days.with(day));
+    }
+
+    synchronized void release(Long bookingId) {
+        if (!ready) {
+            releasedBeforeLoad.add(bookingId);
+        }
+        Claim old = claims.remove(bookingId);
+        if (old != null) {
+            free(old);
+        }
+    }
+
+    private void free(Claim claim) {
+        Days days = taken.get(claim.resource);
+        if (days != null) {
+            taken.put(claim.resource, days.without(claim.day));
+        }
+    }
+
+    /**
+     * <p>Runs the change once the transaction on the current thread has committed, or straight away outside of one.</p>
+     *
+     * @param change The change to the calendar
+     * @param early Whether the change may be applied before the commit if it cannot wait for it
+     */
+    private static void afterCommit(final Runnable change, boolean early) {
+        TransactionSynchronizationRegistry transactions = registry();
+        if (transactions == null || transactions.getTransactionKey() == null) {
+            change.run();
+            return;
+        }
+        try {
+            transactions.registerInterposedSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == Status.STATUS_COMMITTED) {
+                        change.run();
+                    }
+                }
+            });
+        } catch (IllegalStateException e) {
+            // The transaction is already completing (a flush on commit), too late to wait for it. Freeing a day early
+            // is harmless, the unique constraint is still there; taking one early is not, so that day reads as free.
+            if (early) {
+                change.run();
+            }
+        }
+    }
+
+    private static TransactionSynchronizationRegistry registry() {
+        if (registry == null) {
+            try {
+                registry = (TransactionSynchronizationRegistry) new InitialContext().lookup(REGISTRY_NAME);
+            } catch (NamingException e) {
+                return null;
+            }
+        }
+        return registry;
+    }
+
+    /**
+     * <p>The day a booking has its resource on.</p>
+     */
+    private static final class Claim {
+        final Long resource;
+        final long day;
+
+        Claim(Long resource, long day) {
+            this.resource = resource;
+            this.day = day;
+        }
+
+        boolean is(Long resource, long day) {
+            return this.day == day && this.resource.equals(resource);
+        }
+    }
+
+    /**
+     * <p>The booked days of a resource: bit i of the set stands for day origin + i. It is not changed once published,
+     * {@link #with(long)} and {@link #without(long)} return a changed copy.</p>
+     */
+    private static final class Days {
+        final long origin;
+        final BitSet bits;
+
+        private Days(long origin, BitSet bits) {
+            this.origin = origin;
+            this.bits = bits;
+        }
+
+        /**
+         * @param days The days already booked; or null
+         * @param more The days to book as well
+         */
+        static Days of(Days days, List<Long> more) {
+            long origin = days == null ? Long.MAX_VALUE : days.origin;
+            for (Long day : more) {
+                origin = Math.min(origin, day);
+            }
+            // Start on a word boundary, so that booking a few days earlier later on does not move the whole set
+            origin &= ~63L;
+            BitSet bits = new BitSet();
+            if (days != null) {
+                int shift = (int) (days.origin - origin);
+                for (int i = days.bits.nextSetBit(0); i >= 0; i = days.bits.nextSetBit(i + 1)) {
+                    bits.set(shift + i);
+                }
+            }
+            for (Long day : more) {
+                bits.set((int) (day - origin));
+            }
+            return new Days(origin, bits);
+        }
+
+        boolean contains(long day) {
+            long i = day - origin;
+            return i >= 0 && i < Integer.MAX_VALUE && bits.get((int) i);
+        }
+
+        Days with(long day) {
+            if (day < origin) {
+                return of(this, Collections.singletonList(day));
+            }
+            BitSet copy = (BitSet) bits.clone();
+            copy.set((int) (day - origin));
+            return new Days(origin, copy);
+        }
+
+        Days without(long day) {
+            if (!contains(day)) {
+                return this;
+            }
+            BitSet copy = (BitSet) bits.clone();
+            copy.clear((int) (day - origin));
+            return new Days(origin, copy);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.persistence.EntityManager;
+
+import org.jboss.quickstarts.wfk.booking.Booking;
+import org.jboss.quickstarts.wfk.bookingflight.BookingFlight;
+import org.jboss.quickstarts.wfk.bookinghotel.BookingHotel;
+import org.jboss.quickstarts.wfk.bookingtaxi.BookingTaxi;
+
+/**
+ * <p>Fills the {@link AvailabilityIndex} calendars from the booking tables, once when the application starts.</p>
+ *
+ * <p>Each table is read with a single query for just the booking id, the resource id and the date, which the index on
+ * the unique constraint covers. The application only takes requests once this has run.</p>
+ *
+ * @see AvailabilityIndex
+ */
+@Singleton
+@Startup
+public class AvailabilityLoader {
+
+    @Inject
+    private @Named("logger") Logger log;
+
+    @Inject
+    private EntityManager em;
+
+    @PostConstruct
+    void load() {
+        load("taxis", AvailabilityIndex.TAXIS, BookingTaxi.FIND_DAYS);
+        load("flights", AvailabilityIndex.FLIGHTS, BookingFlight.FIND_DAYS);
+        load("hotels", AvailabilityIndex.HOTELS, BookingHotel.FIND_DAYS);
+        load("bookings", AvailabilityIndex.BOOKINGS, Booking.FIND_DAYS);
+    }
+
+    private void load(String name, AvailabilityIndex calendar, String query) {
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = em.createNamedQuery(query).getResultList();
+        int days = calendar.load(rows);
+        log.log(Level.INFO, "Availability of the {0}: {1} booked days", new Object[] {name, days});
+    }
+}
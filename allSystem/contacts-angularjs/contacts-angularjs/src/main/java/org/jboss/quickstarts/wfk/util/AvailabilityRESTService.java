@@ -0,0 +1,96 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import javax.ejb.Stateless;
+import javax.inject.Inject;
+import javax.interceptor.Interceptors;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.jboss.quickstarts.wfk.contact.Hotel;
+import org.jboss.quickstarts.wfk.flight.Flight;
+import org.jboss.quickstarts.wfk.taxi.Taxi;
+
+/**
+ * <p>Serves the free days of a taxi, a flight or a hotel from the {@link AvailabilityIndex}, without a query on the
+ * bookings.</p>
+ *
+ * <p>Full path for accessing the free days is rest/availability/{taxis|flights|hotels}/{id}?from=yyyy-MM-dd&amp;to=yyyy-MM-dd
+ * . The range is inclusive, from defaults to today and to to 30 days after from, and it may be at most
+ * {@link DayRange#MAX_DAYS} days long. The response is the list of free days, in order, as <i>yyyy-MM-dd</i>.</p>
+ *
+ * <p>Hotels are booked both by BookingHotel and by Booking, so a hotel day is only free if neither has it.</p>
+ *
+ * @see AvailabilityIndex
+ */
+@Path("/availability")
+@Produces(MediaType.APPLICATION_JSON)
+@Stateless
+@Interceptors(MetricsInterceptor.class)
+public class AvailabilityRESTService {
+
+    private static final int DEFAULT_DAYS = 31;
+
+    @Inject
+    private ReferenceResolver resolver;
+
+    /**
+     * <p>Lists the days in a range on which a taxi, a flight or a hotel is free.</p>
+     *
+     * @param calendar taxis, flights or hotels
+     * @param id The id of the taxi, flight or hotel
+     * @param from The first day of the range as yyyy-MM-dd; or null for today
+     * @param to The last day of the range as yyyy-MM-dd; or null for 30 days after the first
+     * @return A Response containing the list of free days; 404 if there is no such resource, 400 for a bad range and
+     * 503 while the bookings are not loaded yet
+     */
+    @GET
+    @Path("/{calendar:taxis|flights|hotels}/{id:[0-9]+}")
+    public Response retrieveFreeDays(@PathParam("calendar") String calendar, @PathParam("id") long id,
+            @QueryParam("from") String from, @QueryParam("to") String to) {
+        Class<?> type;
+        AvailabilityIndex[] calendars;
+        if ("taxis".equals(calendar)) {
+            type = Taxi.class;
+            calendars = new AvailabilityIndex[] {AvailabilityIndex.TAXIS};
+        } else if ("flights".equals(calendar)) {
+            type = Flight.class;
+            calendars = new AvailabilityIndex[] {AvailabilityIndex.FLIGHTS};
+        } else {
+            type = Hotel.class;
+            calendars = new AvailabilityIndex[] {AvailabilityIndex.HOTELS, AvailabilityIndex.BOOKINGS};
+        }
+
+        DayRange range = DayRange.parse(from, to, DEFAULT_DAYS);
+        if (!resolver.exists(type, id)) {
+            throw new WebApplicationException(Response.Status.NOT_FOUND);
+        }
+        for (AvailabilityIndex index : calendars) {
+            if (!index.isReady()) {
+                throw new WebApplicationException(Response.Status.SERVICE_UNAVAILABLE);
+            }
+        }
+        return Response.ok(AvailabilityIndex.freeDays(id, range.getFirst(), range.getLast(), calendars)).build();
+    }
+}
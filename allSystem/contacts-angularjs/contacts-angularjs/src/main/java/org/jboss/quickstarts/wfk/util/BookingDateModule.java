@@ -0,0 +1,292 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.TimeZone;
+
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.Version;
+import org.codehaus.jackson.map.DeserializationContext;
+import org.codehaus.jackson.map.JsonDeserializer;
+import org.codehaus.jackson.map.JsonSerializer;
+import org.codehaus.jackson.map.SerializerProvider;
+import org.codehaus.jackson.map.module.SimpleModule;
+
+/**
+ * <p>Jackson module that reads and writes every Date as a <i>yyyy-MM-dd</i> day, which is what the booking dates
+ * (bookingDate, taxidate, bookingFlightDate, bookingHotelDate) are.</p>
+ *
+ * <p>It replaces the SimpleDateFormat the ObjectMapper used to carry. SimpleDateFormat is not thread-safe, so Jackson
+ * cloned it (with its Calendar and number formats) for every request. The serializer and deserializer here are
+ * immutable: the day is worked out from the epoch milliseconds with plain integer arithmetic in the server's time zone,
+ * written from a char[10], and read straight out of the parser's buffer.</p>
+ *
+ * <p>Reading is as tolerant as before: anything after the day is ignored, so the ISO timestamps a browser sends for a
+ * date input (<i>2014-05-01T00:00:00.000Z</i>) are accepted, as are epoch milliseconds and empty strings (null).</p>
+ *
+ * @see JacksonConfig
+ */
+public class BookingDateModule extends SimpleModule {
+
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    /** The largest offset of a time zone from UTC, either way. */
+    private static final long ZONE_SPAN_MILLIS = 14L * 60 * 60 * 1000;
+
+    public BookingDateModule() {
+        this(TimeZone.getDefault());
+    }
+
+    /**
+     * @param zone The time zone the days are in
+     */
+    public BookingDateModule(TimeZone zone) {
+        super("BookingDateModule", new Version(1, 0, 0, null));
+        // Our own copy, nobody else can change its offsets under us
+        TimeZone days = (TimeZone) zone.clone();
+        addSerializer(Date.class, new Serializer(days));
+        addSerializer(java.sql.Date.class, new Serializer(days));
+        addDeserializer(Date.class, new Deserializer(days));
+    }
+
+    /**
+     * <p>Writes a Date as the <i>yyyy-MM-dd</i> day it falls on in the given time zone.</p>
+     */
+    static final class Serializer extends JsonSerializer<Date> {
+        private final TimeZone zone;
+
+        Serializer(TimeZone zone) {
+            this.zone = zone;
+        }
+
+        @Override
+        public void serialize(Date value, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+            long millis = value.getTime();
+            long epochDay = floorDiv(millis + zone.getOffset(millis), DAY_MILLIS);
+            long year = yearOf(epochDay);
+            if (year < 0 || year > 9999) {
+                // Outside of what fits in four digits, not worth a fast path
+                jgen.writeString(year + "-" + twoDigits(monthOf(epochDay)) + "-" + twoDigits(dayOfMonthOf(epochDay)));
+                return;
+            }
+            char[] text = new char[10];
+            format(epochDay, text);
+            jgen.writeString(text, 0, 10);
+        }
+    }
+
+    /**
+     * <p>Reads a <i>yyyy-MM-dd</i> day (and ignores whatever follows it) as midnight of that day in the given time
+     * zone.</p>
+     */
+    static final class Deserializer extends JsonDeserializer<Date> {
+        private final TimeZone zone;
+
+        Deserializer(TimeZone zone) {
+            this.zone = zone;
+        }
+
+        @Override
+        public Date deserialize(JsonParser jp, DeserializationContext ctxt) throws IOException {
+            JsonToken token = jp.getCurrentToken();
+            if (token == JsonToken.VALUE_NUMBER_INT) {
+                return new Date(jp.getLongValue());
+            }
+            if (token != JsonToken.VALUE_STRING) {
+                throw ctxt.mappingException(Date.class);
+            }
+
+            char[] text = jp.getTextCharacters();
+            int start = jp.getTextOffset();
+            int end = start + jp.getTextLength();
+            while (start < end && Character.isWhitespace(text[start])) {
+                start++;
+            }
+            if (start == end) {
+                return null;
+            }
+            long epochDay = parse(text, start, end);
+            if (epochDay == Long.MIN_VALUE) {
+                throw ctxt.weirdStringException(Date.class, "expected a date in the format yyyy-MM-dd");
+            }
+            return new Date(startOfDay(epochDay, zone));
+        }
+    }
+
+    /**
+     * <p>Writes the day as <i>yyyy-MM-dd</i> into the first ten chars of the array. The year has to be 0 to 9999.</p>
+     *
+     * @param epochDay The number of days since 1970-01-01
+     * @param text The array to write to
+     */
+    static void format(long epochDay, char[] text) {
+        int year = (int) yearOf(epochDay);
+        int month = monthOf(epochDay);
+        int day = dayOfMonthOf(epochDay);
+        text[0] = (char) ('0' + year / 1000);
+        text[1] = (char) ('0' + year / 100 % 10);
+        text[2] = (char) ('0' + year / 10 % 10);
+        text[3] = (char) ('0' + year % 10);
+        text[4] = '-';
+        text[5] = (char) ('0' + month / 10);
+        text[6] = (char) ('0' + month % 10);
+        text[7] = '-';
+        text[8] = (char) ('0' + day / 10);
+        text[9] = (char) ('0' + day % 10);
+    }
+
+    /**
+     * <p>Reads a day written as <i>y-M-d</i> (one or more digits each) at the start of the range.</p>
+     *
+     * @return the number of days since 1970-01-01; or Long.MIN_VALUE if the range does not start with a valid day
+     */
+    static long parse(char[] text, int start, int end) {
+        int[] fields = new int[3];
+        int pos = start;
+        for (int field = 0; field < 3; field++) {
+            if (field > 0) {
+                if (pos >= end || text[pos] != '-') {
+                    return Long.MIN_VALUE;
+                }
+                pos++;
+            }
+            int digits = 0;
+            int value = 0;
+            while (pos < end && text[pos] >= '0' && text[pos] <= '9' && digits < 9) {
+                value = value * 10 + (text[pos] - '0');
+                pos++;
+                digits++;
+            }
+            if (digits == 0) {
+                return Long.MIN_VALUE;
+            }
+            fields[field] = value;
+        }
+        int year = fields[0];
+        int month = fields[1];
+        int day = fields[2];
+        if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+            return Long.MIN_VALUE;
+        }
+        return epochDay(year, month, day);
+    }
+
+    /**
+     * <p>Returns the instant the day starts in the time zone: its midnight; the first one where the clocks go back over
+     * midnight; or the instant the clocks jump where they skip it.</p>
+     */
+    static long startOfDay(long epochDay, TimeZone zone) {
+        long utcMidnight = epochDay * DAY_MILLIS;
+        // Local midnight is within 14 hours of midnight UTC, and the offsets on either side are the only candidates
+        int earlyOffset = zone.getOffset(utcMidnight - ZONE_SPAN_MILLIS);
+        int lateOffset = zone.getOffset(utcMidnight + ZONE_SPAN_MILLIS);
+        long early = utcMidnight - earlyOffset;
+        long late = utcMidnight - lateOffset;
+        boolean earlyValid = zone.getOffset(early) == earlyOffset;
+        boolean lateValid = zone.getOffset(late) == lateOffset;
+        if (earlyValid && lateValid) {
+            return Math.min(early, late);
+        }
+        if (earlyValid || lateValid) {
+            return earlyValid ? early : late;
+        }
+        // The clocks skip midnight, so the day starts at the instant they jump, which lies between the two candidates.
+        // TimeZone has no API for its transitions (before Java 8), so the instant is looked for; only the days that
+        // start with a jump get here.
+        long before = Math.min(early, late);
+        long after = Math.max(early, late);
+        int offsetBefore = zone.getOffset(before);
+        while (after - before > 1) {
+            long middle = before + (after - before) / 2;
+            if (zone.getOffset(middle) == offsetBefore) {
+                before = middle;
+            } else {
+                after = middle;
+            }
+        }
+        return after;
+    }
+
+    // The conversions between days and year/month/day are the proleptic Gregorian algorithms of Howard Hinnant
+    // (http://howardhinnant.github.io/date_algorithms.html), with the year starting in March so that February is last.
+
+    static long epochDay(long year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static long yearOf(long epochDay) {
+        long z = epochDay + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long marchMonth = (5 * dayOfYear + 2) / 153;
+        return yearOfEra + era * 400 + (marchMonth >= 10 ? 1 : 0);
+    }
+
+    private static int monthOf(long epochDay) {
+        long marchMonth = (5 * dayOfMarchYear(epochDay) + 2) / 153;
+        return (int) (marchMonth < 10 ? marchMonth + 3 : marchMonth - 9);
+    }
+
+    private static int dayOfMonthOf(long epochDay) {
+        long dayOfYear = dayOfMarchYear(epochDay);
+        long marchMonth = (5 * dayOfYear + 2) / 153;
+        return (int) (dayOfYear - (153 * marchMonth + 2) / 5 + 1);
+    }
+
+    private static long dayOfMarchYear(long epochDay) {
+        long z = epochDay + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        return dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leap = year % 4 == 0 && (year % 100 != 0 || year % 400 == 0);
+                return leap ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    static long floorDiv(long x, long y) {
+        long q = x / y;
+        return (x % y != 0 && (x < 0) != (y < 0)) ? q - 1 : q;
+    }
+
+    private static String twoDigits(int value) {
+        return value < 10 ? "0" + value : String.valueOf(value);
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+
+import org.codehaus.jackson.JsonProcessingException;
+import org.codehaus.jackson.map.ObjectReader;
+
+/**
+ * <p>The items of a bulk create, and what has become of each of them.</p>
+ *
+ * <p>A batch goes through the Validator of its entity, which checks all of it at once (bean validation item by item,
+ * then one query per kind of check for the whole batch rather than per item) and rejects the items that would fail
+ * the single create; then through {@link BulkWriter}, which inserts the others. {@link #toResponse(BulkMode)} then
+ * reports the outcome of every item.</p>
+ *
+ * <p>The request is either a JSON array or NDJSON (one JSON object per line, {@value #NDJSON}). At most
+ * {@link #MAX_ITEMS} items are accepted, set with the wfk.bulk.maxItems system property (default 10000).</p>
+ *
+ * @see BulkResult
+ */
+public class BulkBatch<T> {
+
+    /** The media type of newline delimited JSON. */
+    public static final String NDJSON = "application/x-ndjson";
+
+    static final int MAX_ITEMS = Integer.getInteger("wfk.bulk.maxItems", 10000);
+
+    /** The most values bound to one IN (...) list; larger sets are queried in several parts. */
+    public static final int IN_LIST_SIZE = 500;
+
+    private final List<T> items;
+    private final BulkResult[] results;
+
+    /**
+     * @param items the items of the batch, as received; null items are rejected straight away
+     * @throws WebApplicationException with a 400 (Bad Request) response if there are no items, or 413 (Request Entity
+     * Too Large) if there are more than {@link #MAX_ITEMS}
+     */
+    public BulkBatch(List<T> items) {
+        if (items == null || items.isEmpty()) {
+            // Nothing to create is not a 201 (Created)
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+        if (items.size() > MAX_ITEMS) {
+            throw new WebApplicationException(Response.status(413)
+                .entity("A batch can have at most " + MAX_ITEMS + " items").build());
+        }
+        this.items = items;
+        this.results = new BulkResult[items.size()];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = new BulkResult(i);
+            if (items.get(i) == null) {
+                invalid(i, "error", "The item is empty");
+            }
+        }
+    }
+
+    /**
+     * <p>Reads a batch sent as NDJSON. Blank lines are skipped; a line that is not a valid item is rejected with a 400
+     * of its own instead of failing the whole batch.</p>
+     *
+     * @param body the request body
+     * @param type the entity class of the items
+     * @return the batch
+     * @throws IOException if the body cannot be read
+     */
+    public static <T> BulkBatch<T> fromNdjson(InputStream body, Class<T> type) throws IOException {
+        ObjectReader reader = JacksonConfig.objectMapper().reader(type);
+        List<T> items = new ArrayList<T>();
+        Map<Integer, String> unreadable = new HashMap<Integer, String>();
+        BufferedReader lines = new BufferedReader(new InputStreamReader(body, "UTF-8"));
+        String line;
+        while ((line = lines.readLine()) != null) {
+            if (line.trim().length() == 0) {
+                continue;
+            }
+            if (items.size() == MAX_ITEMS) {
+                // Let the constructor turn it down
+                items.add(null);
+                break;
+            }
+            try {
+                items.add(reader.<T>readValue(line));
+            } catch (JsonProcessingException e) {
+                unreadable.put(items.size(), e.getMessage());
+                items.add(null);
+            }
+        }
+        BulkBatch<T> batch = new BulkBatch<T>(items);
+        for (Map.Entry<Integer, String> entry : unreadable.entrySet()) {
+            batch.results[entry.getKey()].getErrors().put("error", entry.getValue());
+        }
+        return batch;
+    }
+
+    /**
+     * @return the number of items
+     */
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * @param index the position of the item
+     * @return the item
+     */
+    public T get(int index) {
+        return items.get(index);
+    }
+
+    /**
+     * @return the positions of the items that have neither been rejected nor created yet, in order
+     */
+    public List<Integer> pending() {
+        List<Integer> pending = new ArrayList<Integer>();
+        for (BulkResult result : results) {
+            if (result.getStatus() == 0) {
+                pending.add(result.getIndex());
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * @return true if any item has been rejected
+     */
+    public boolean hasRejections() {
+        for (BulkResult result : results) {
+            if (result.isRejected()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * <p>Rejects an item with a 400 (Bad Request), as the single create does for bean validation errors.</p>
+     */
+    public void invalid(int index, String field, String message) {
+        results[index].reject(BulkResult.BAD_REQUEST, field, message);
+    }
+
+    /**
+     * <p>Rejects an item with a 409 (Conflict), as the single create does for a ValidationException.</p>
+     */
+    public void conflict(int index, String field, String message) {
+        results[index].reject(BulkResult.CONFLICT, field, message);
+    }
+
+    /**
+     * <p>Bean validates every pending item, and rejects those with violations.</p>
+     *
+     * @param validator the Bean Validation Validator
+     */
+    public void validateBeans(Validator validator) {
+        for (int index : pending()) {
+            Set<ConstraintViolation<T>> violations = validator.validate(items.get(index));
+            for (ConstraintViolation<T> violation : violations) {
+                invalid(index, violation.getPropertyPath().toString(), violation.getMessage());
+            }
+        }
+    }
+
+    /**
+     * <p>Rejects, with a 409, every pending item whose key is among the taken ones, typically those the database
+     * already has.</p>
+     *
+     * @param key what has to be unique
+     * @param taken the keys that are taken
+     * @param field the field the error is reported on
+     * @param message the error
+     */
+    public void rejectTaken(Key<T> key, Collection<?> taken, String field, String message) {
+        for (int index : pending()) {
+            Object value = key.of(items.get(index));
+            if (value != null && taken.contains(value)) {
+                conflict(index, field, message);
+            }
+        }
+    }
+
+    /**
+     * <p>Returns the keys of the pending items, for instance to look them all up with a single query.</p>
+     *
+     * @param key the key of an item
+     * @return the distinct keys, nulls left out
+     */
+    @SuppressWarnings("unchecked")
+    public <K> Set<K> keys(Key<T> key) {
+        Set<K> keys = new LinkedHashSet<K>();
+        for (int index : pending()) {
+            Object value = key.of(items.get(index));
+            if (value != null) {
+                keys.add((K) value);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * <p>Rejects, with a 409, every pending item whose key an earlier item of the batch already has. Items whose key
+     * is null are not compared.</p>
+     *
+     * @param key what has to be unique
+     * @param field the field the error is reported on
+     * @param message the error
+     */
+    public void rejectDuplicates(Key<T> key, String field, String message) {
+        Set<Object> seen = new HashSet<Object>();
+        for (int index : pending()) {
+            Object value = key.of(items.get(index));
+            if (value != null && !seen.add(value)) {
+                conflict(index, field, message);
+            }
+        }
+    }
+
+    /**
+     * <p>Records that an item has been created.</p>
+     */
+    void created(int index, Long id) {
+        results[index].created(id);
+    }
+
+    /**
+     * <p>Rejects every pending item with the given status, e.g. when an atomic batch cannot be written.</p>
+     */
+    void rejectPending(int status, String message) {
+        for (int index : pending()) {
+            results[index].reject(status, "error", message);
+        }
+    }
+
+    /**
+     * <p>Builds the response of the bulk create: 201 (Created) if every item was created; otherwise, in atomic mode
+     * where nothing was created, 400 if any item was invalid and 409 if not; and in best effort mode 207
+     * (Multi-Status). The body gives the outcome of every item.</p>
+     *
+     * @param mode the mode the batch was written in
+     * @return the Response
+     */
+    public Response toResponse(BulkMode mode) {
+        int created = 0;
+        boolean invalid = false;
+        for (BulkResult result : results) {
+            if (result.getStatus() == BulkResult.CREATED) {
+                created++;
+            } else if (result.getStatus() == BulkResult.BAD_REQUEST) {
+                invalid = true;
+            }
+        }
+        int status;
+        if (created == results.length) {
+            status = BulkResult.CREATED;
+        } else if (mode == BulkMode.ATOMIC) {
+            status = invalid ? BulkResult.BAD_REQUEST : BulkResult.CONFLICT;
+        } else {
+            status = 207;
+        }
+
+        Map<String, Object> responseObj = new LinkedHashMap<String, Object>();
+        responseObj.put("mode", mode.toString());
+        responseObj.put("created", created);
+        responseObj.put("failed", results.length - created);
+        responseObj.put("items", Arrays.asList(results));
+        return Response.status(status).entity(responseObj).build();
+    }
+
+    /**
+     * <p>Splits a list into consecutive parts of at most the given size.</p>
+     *
+     * @param list the list
+     * @param size the largest part
+     * @return the parts, views of the list
+     */
+    public static <E> List<List<E>> partition(List<E> list, int size) {
+        List<List<E>> parts = new ArrayList<List<E>>();
+        for (int from = 0; from < list.size(); from += size) {
+            parts.add(list.subList(from, Math.min(from + size, list.size())));
+        }
+        return parts;
+    }
+
+    /**
+     * <p>The key of a booking of the given resource (taxi, flight, hotel) on the given day, to compare the bookings of
+     * a batch with each other and with those already in the database.</p>
+     *
+     * @param id The id of the resource
+     * @param date The day, as the booking holds it
+     * @return the key; or null if either is null
+     */
+    public static Object dayKey(Long id, Date date) {
+        return id == null || date == null ? null : Arrays.asList(id, date.getTime());
+    }
+
+    /**
+     * <p>Extracts what has to be unique from an item, for {@link BulkBatch#rejectDuplicates(Key, String, String)}.</p>
+     */
+    public interface Key<T> {
+        /**
+         * @return the value, with equals() and hashCode(); or null if the item has none
+         */
+        Object of(T item);
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+
+/**
+ * <p>How a bulk create treats the items of a batch that cannot be created.</p>
+ *
+ * @see BulkBatch
+ * @see BulkWriter
+ */
+public enum BulkMode {
+    /** Nothing is created unless every item can be; the default. */
+    ATOMIC("atomic"),
+    /** Every item that can be created is, the others are reported. */
+    BEST_EFFORT("bestEffort");
+
+    private final String value;
+
+    private BulkMode(String value) {
+        this.value = value;
+    }
+
+    /**
+     * <p>Parses the mode query parameter of a bulk endpoint.</p>
+     *
+     * @param value <i>atomic</i>, <i>bestEffort</i>, or null for the default
+     * @return the BulkMode
+     * @throws WebApplicationException with a 400 (Bad Request) response if the value is not a mode
+     */
+    public static BulkMode of(String value) {
+        if (value == null) {
+            return ATOMIC;
+        }
+        for (BulkMode mode : values()) {
+            if (mode.value.equalsIgnoreCase(value)) {
+                return mode;
+            }
+        }
+        throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST)
+            .entity("mode must be atomic or bestEffort").build());
+    }
+
+    @Override
+    public String toString() {
+        return value;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.codehaus.jackson.map.annotate.JsonSerialize;
+
+/**
+ * <p>The outcome of one item of a bulk create, as returned to the client.</p>
+ *
+ * <p>The status is the one the item would have got from the single create endpoint: 201 with the id of the created
+ * entity, 400 with the fields that failed bean validation, 409 when it conflicts with existing data. In
+ * {@link BulkMode#ATOMIC atomic} mode the items that were fine but not created because others failed have 424 (Failed
+ * Dependency).</p>
+ */
+@JsonSerialize(include = JsonSerialize.Inclusion.NON_NULL)
+public class BulkResult {
+
+    static final int CREATED = 201;
+    static final int BAD_REQUEST = 400;
+    static final int CONFLICT = 409;
+    static final int FAILED_DEPENDENCY = 424;
+
+    private final int index;
+    private int status;
+    private Long id;
+    private Map<String, String> errors;
+
+    BulkResult(int index) {
+        this.index = index;
+    }
+
+    /**
+     * @return the position of the item in the request, starting at 0
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return the HTTP status of the item; or 0 while it has neither been rejected nor created
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the id of the created entity; or null if it was not created
+     */
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * @return the errors by field, as the single create endpoint returns them; or null if it was created
+     */
+    public Map<String, String> getErrors() {
+        return errors;
+    }
+
+    void created(Long id) {
+        this.status = CREATED;
+        this.id = id;
+    }
+
+    /**
+     * <p>Adds an error. The status of the first error is kept, later ones only add to the fields.</p>
+     */
+    void reject(int status, String field, String message) {
+        if (this.status == 0) {
+            this.status = status;
+        }
+        if (errors == null) {
+            errors = new LinkedHashMap<String, String>();
+        }
+        errors.put(field, message);
+    }
+
+    boolean isRejected() {
+        return errors != null;
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Resource;
+import javax.ejb.EJBException;
+import javax.ejb.SessionContext;
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceUnitUtil;
+
+/**
+ * <p>Inserts the items of a validated {@link BulkBatch} that have not been rejected.</p>
+ *
+ * <p>The entities are persisted {@link #CHUNK_SIZE} at a time and flushed after each chunk. With
+ * hibernate.jdbc.batch_size set to the same size (see persistence.xml) every flush sends a single JDBC batch per
+ * table instead of one round trip per row; the persistence context is cleared after each chunk of an atomic batch so
+ * that it does not grow with the batch.</p>
+ *
+ * <ul>
+ * <li>{@link BulkMode#ATOMIC}: all the items go in the transaction of the REST call. If any item was rejected, or the
+ * insert fails, nothing is written.</li>
+ * <li>{@link BulkMode#BEST_EFFORT}: each chunk is committed in its own transaction. When a chunk fails (e.g. a
+ * conflicting row inserted concurrently, after validation) its items are retried one by one, so that only the
+ * offending ones are rejected.</li>
+ * </ul>
+ *
+ * <p>The chunk size is set with the wfk.bulk.chunkSize system property (default 50).</p>
+ *
+ * @see BulkBatch
+ */
+@Stateless
+public class BulkWriter {
+
+    static final int CHUNK_SIZE = Integer.getInteger("wfk.bulk.chunkSize", 50);
+
+    @Inject
+    private @Named("logger") Logger log;
+
+    @Inject
+    private EntityManager em;
+
+    @Resource
+    private SessionContext context;
+
+    /**
+     * <p>Writes the pending items of the batch and records the outcome of each in it.</p>
+     *
+     * @param batch The validated batch
+     * @param mode Whether the batch is written all or nothing, or item by item
+     */
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public void write(BulkBatch<?> batch, BulkMode mode) {
+        // Go through the container so that the transaction attributes below apply
+        BulkWriter writer = context.getBusinessObject(BulkWriter.class);
+        List<Integer> pending = batch.pending();
+        List<Object> entities = new ArrayList<Object>(pending.size());
+        for (int index : pending) {
+            entities.add(batch.get(index));
+        }
+
+        if (mode == BulkMode.ATOMIC) {
+            if (batch.hasRejections()) {
+                batch.rejectPending(BulkResult.FAILED_DEPENDENCY, "Not created, other items of the batch were rejected");
+                return;
+            }
+            try {
+                writer.insertAll(entities);
+            } catch (EJBException e) {
+                log.log(Level.INFO, "BulkWriter.write() - Atomic batch of {0} failed: {1}", new Object[] {entities.size(), e});
+                batch.rejectPending(BulkResult.CONFLICT, rootMessage(e));
+                return;
+            }
+            for (int i = 0; i < pending.size(); i++) {
+                batch.created(pending.get(i), identifier(entities.get(i)));
+            }
+            return;
+        }
+
+        List<List<Integer>> chunks = BulkBatch.partition(pending, CHUNK_SIZE);
+        int from = 0;
+        for (List<Integer> chunk : chunks) {
+            List<Object> chunkEntities = entities.subList(from, from + chunk.size());
+            from += chunk.size();
+            try {
+                writer.insertChunk(chunkEntities);
+                for (int i = 0; i < chunk.size(); i++) {
+                    batch.created(chunk.get(i), identifier(chunkEntities.get(i)));
+                }
+            } catch (EJBException e) {
+                log.log(Level.FINE, "BulkWriter.write() - Chunk of {0} failed, retrying its items one by one: {1}",
+                    new Object[] {chunk.size(), e});
+                for (int i = 0; i < chunk.size(); i++) {
+                    Object entity = chunkEntities.get(i);
+                    // The ids handed out in the rolled back transaction are not in the database
+                    resetIdentifier(entity);
+                    try {
+                        writer.insertChunk(Collections.singletonList(entity));
+                        batch.created(chunk.get(i), identifier(entity));
+                    } catch (EJBException itemException) {
+                        resetIdentifier(entity);
+                        batch.conflict(chunk.get(i), "error", rootMessage(itemException));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * <p>Persists all the entities in the current transaction, flushing and clearing every {@link #CHUNK_SIZE}.</p>
+     */
+    @TransactionAttribute(TransactionAttributeType.MANDATORY)
+    public void insertAll(List<Object> entities) {
+        for (List<Object> chunk : BulkBatch.partition(entities, CHUNK_SIZE)) {
+            for (Object entity : chunk) {
+                em.persist(entity);
+            }
+            em.flush();
+            em.clear();
+        }
+        log.log(Level.FINE, "BulkWriter.insertAll() - Inserted {0} entities", entities.size());
+    }
+
+    /**
+     * <p>Persists the entities and commits them in a transaction of their own.</p>
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void insertChunk(List<Object> entities) {
+        for (Object entity : entities) {
+            em.persist(entity);
+        }
+        em.flush();
+    }
+
+    private Long identifier(Object entity) {
+        PersistenceUnitUtil util = em.getEntityManagerFactory().getPersistenceUnitUtil();
+        return (Long) util.getIdentifier(entity);
+    }
+
+    private void resetIdentifier(Object entity) {
+        Field id = (Field) em.getMetamodel().entity(entity.getClass()).getId(Long.class).getJavaMember();
+        try {
+            id.setAccessible(true);
+            id.set(entity, null);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable root = e;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
+        }
+        return root.getMessage() == null ? root.toString() : root.getMessage();
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.ejb.Stateless;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.hibernate.Session;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+
+/**
+ * <p>Reports how well the second-level cache and the query cache are doing, so the eviction settings in
+ * persistence.xml can be tuned against real traffic.</p>
+ *
+ * <p>Full path for accessing the statistics is rest/cache-statistics . The numbers are collected since the
+ * application was deployed; hibernate.generate_statistics has to be on for them to be counted at all.</p>
+ *
+ * @see org.hibernate.stat.Statistics
+ */
+@Path("/cache-statistics")
+@Produces(MediaType.APPLICATION_JSON)
+@Stateless
+public class CacheStatisticsRESTService {
+
+    @Inject
+    private EntityManager em;
+
+    /**
+     * <p>Returns the overall hits, misses, puts and hit ratio of the second-level and query caches, followed by the
+     * same numbers and the entry count for every cache region.</p>
+     *
+     * @return A Response containing the statistics
+     */
+    @GET
+    public Response retrieveCacheStatistics() {
+        Statistics statistics = em.unwrap(Session.class).getSessionFactory().getStatistics();
+
+        Map<String, Object> secondLevel = counters(statistics.getSecondLevelCacheHitCount(),
+            statistics.getSecondLevelCacheMissCount(), statistics.getSecondLevelCachePutCount());
+        Map<String, Object> query = counters(statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount(),
+            statistics.getQueryCachePutCount());
+
+        Map<String, Object> regions = new LinkedHashMap<String, Object>();
+        for (String name : statistics.getSecondLevelCacheRegionNames()) {
+            SecondLevelCacheStatistics region = statistics.getSecondLevelCacheStatistics(name);
+            if (region != null) {
+                Map<String, Object> counters = counters(region.getHitCount(), region.getMissCount(),
+                    region.getPutCount());
+                counters.put("elementsInMemory", region.getElementCountInMemory());
+                regions.put(name, counters);
+            }
+        }
+
+        Map<String, Object> result = new LinkedHashMap<String, Object>();
+        result.put("secondLevelCache", secondLevel);
+        result.put("queryCache", query);
+        result.put("regions", regions);
+        return Response.ok(result).build();
+    }
+
+    private static Map<String, Object> counters(long hits, long misses, long puts) {
+        Map<String, Object> counters = new LinkedHashMap<String, Object>();
+        counters.put("hits", hits);
+        counters.put("misses", misses);
+        counters.put("puts", puts);
+        counters.put("hitRatio", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        return counters;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import javax.persistence.EntityManager;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PersistenceException;
+import javax.persistence.PessimisticLockException;
+import javax.validation.ValidationException;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.exception.LockAcquisitionException;
+
+/**
+ * <p>Claims of a resource on a day, such as a taxi or a flight on a date, backed by the unique constraint every booking
+ * table has on its resource and date.</p>
+ *
+ * <p>The validators check that the day is free, but two requests can both find it free and both go on to insert.
+ * Instead of serialising the bookings, or locking rows that readers need, the insert itself is the claim: the database
+ * lets a single booking per resource and day through, and the others fail. The same goes for two updates of one
+ * booking, through its @Version column.</p>
+ *
+ * <p>{@link #flush(EntityManager, String)} writes the booking straight away, so that the losers find out within their
+ * request rather than at commit, and turns their failure into the ValidationException the validator throws for a day
+ * that is taken. The RESTServices already answer that with a 409 (Conflict).</p>
+ */
+public final class Claims {
+
+    private Claims() {
+    }
+
+    /**
+     * <p>Flushes the persistence context, in which a booking was just persisted or merged.</p>
+     *
+     * <p>On failure the transaction is marked for rollback, as for any PersistenceException.</p>
+     *
+     * @param em The EntityManager of the booking
+     * @param violation The message of the ValidationException thrown if the claim is lost
+     * @throws ValidationException If another booking took the same resource and day, or changed the same booking, first
+     */
+    public static void flush(EntityManager em, String violation) throws ValidationException {
+        try {
+            em.flush();
+        } catch (PersistenceException e) {
+            if (isLost(e)) {
+                throw new ValidationException(violation, e);
+            }
+            throw e;
+        }
+    }
+
+    // Depending on the database, a concurrent insert of the same key fails on the constraint or on its lock
+    private static boolean isLost(PersistenceException e) {
+        if (e instanceof OptimisticLockException || e instanceof PessimisticLockException) {
+            return true;
+        }
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException || cause instanceof LockAcquisitionException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
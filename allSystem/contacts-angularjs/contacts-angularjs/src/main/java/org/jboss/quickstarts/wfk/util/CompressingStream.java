@@ -0,0 +1,210 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.ServletOutputStream;
+
+/**
+ * <p>The body of a response on its way out, compressed with <i>gzip</i> or <i>deflate</i> once it is big enough for
+ * that to pay off.</p>
+ *
+ * <p>The first <i>threshold</i> bytes are held back. A body that ends within them goes out as it is, as compressing a
+ * few hundred bytes costs more CPU than it saves on the wire. As soon as the body outgrows them, {@link #compress()} is
+ * asked whether to compress it and from then on everything streams through the compressor (or straight out), so memory
+ * use does not depend on the size of the body.</p>
+ *
+ * @see CompressionFilter
+ */
+class CompressingStream extends ServletOutputStream {
+
+    static final String GZIP = "gzip";
+
+    static final String DEFLATE = "deflate";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final OutputStream out;
+    private final String encoding;
+    private final int level;
+    private final byte[] head;
+
+    private int count;
+
+    /** Where the body goes once the head is full: the compressor or out. Null while the head is being filled. */
+    private OutputStream target;
+
+    private GzipStream gzip;
+    private Deflater deflater;
+
+    private boolean finished;
+
+    /**
+     * @param out Where the body goes
+     * @param encoding {@link #GZIP} or {@link #DEFLATE}
+     * @param level The compression level, 1 (fastest) to 9 (smallest)
+     * @param threshold The size up to which a body is sent as it is
+     */
+    CompressingStream(OutputStream out, String encoding, int level, int threshold) {
+        this.out = out;
+        this.encoding = encoding;
+        this.level = level;
+        this.head = new byte[Math.max(threshold, 0)];
+    }
+
+    /**
+     * <p>Called once the body has outgrown the threshold, before anything is written.</p>
+     *
+     * @return true to compress the body; false to send it as it is
+     */
+    protected boolean compress() {
+        return true;
+    }
+
+    /**
+     * <p>Called before the body is sent as it is, because it stayed within the threshold or was not to be
+     * compressed.</p>
+     *
+     * @param length The length of the body; or -1 if it is not known yet
+     */
+    protected void uncompressed(int length) {
+    }
+
+    /**
+     * @return true once the body has outgrown the threshold, or was finished, and it is settled how it goes out
+     */
+    boolean isStarted() {
+        return target != null;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (target == null) {
+            if (count < head.length) {
+                head[count++] = (byte) b;
+                return;
+            }
+            start();
+        }
+        target.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (target == null) {
+            if (count + len <= head.length) {
+                System.arraycopy(b, off, head, count, len);
+                count += len;
+                return;
+            }
+            start();
+        }
+        target.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        // While the head is filled there is nothing to flush yet, it is not known how the body is going out
+        if (target != null) {
+            target.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // The body is complete, but out is not ours to close
+        finish();
+    }
+
+    /**
+     * <p>Writes what is left of the body: the head if it was not full, or the end of the compressed data.</p>
+     */
+    void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (target == null) {
+            uncompressed(count);
+            out.write(head, 0, count);
+            target = out;
+        } else if (gzip != null) {
+            gzip.finish();
+        } else if (deflater != null) {
+            ((DeflaterOutputStream) target).finish();
+        }
+    }
+
+    /**
+     * <p>Drops the body written so far, for a response that is reset before anything was sent.</p>
+     */
+    void reset() {
+        end();
+        count = 0;
+        target = null;
+        finished = false;
+    }
+
+    /**
+     * <p>Releases the native memory of the compressor. Call it once the response is done, whether or not it failed.</p>
+     */
+    void end() {
+        if (gzip != null) {
+            gzip.end();
+            gzip = null;
+        }
+        if (deflater != null) {
+            deflater.end();
+            deflater = null;
+        }
+    }
+
+    private void start() throws IOException {
+        if (!compress()) {
+            uncompressed(-1);
+            target = out;
+        } else if (GZIP.equals(encoding)) {
+            gzip = new GzipStream(out, level);
+            target = gzip;
+        } else {
+            deflater = new Deflater(level);
+            target = new DeflaterOutputStream(out, deflater, BUFFER_SIZE);
+        }
+        target.write(head, 0, count);
+    }
+
+    /**
+     * <p>GZIPOutputStream at a level of our choice, whose Deflater can be released without closing the stream it
+     * writes to.</p>
+     */
+    private static final class GzipStream extends GZIPOutputStream {
+
+        GzipStream(OutputStream out, int level) throws IOException {
+            super(out, BUFFER_SIZE);
+            def.setLevel(level);
+        }
+
+        void end() {
+            def.end();
+        }
+    }
+}
@@ -0,0 +1,331 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Locale;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * <p>This filter compresses the REST responses with <i>gzip</i> or <i>deflate</i>, whichever the client accepts (gzip
+ * if it takes both). The lists of bookings repeat the whole customer, hotel, taxi and flight on every row, so they
+ * shrink to a fraction of their size.</p>
+ *
+ * <p>Only bodies larger than <i>wfk.compression.threshold</i> bytes (default 1024) are compressed, and only text: JSON,
+ * JavaScript (JSONP), NDJSON, XML and text/*. The compression level is <i>wfk.compression.level</i>, from 1 (fastest)
+ * to 9 (smallest), default 6; 0 turns compression off.</p>
+ *
+ * <p>The body streams through the compressor, see {@link CompressingStream}. For JSONP the padding has to go into the
+ * compressed body. The order of the filters on <i>/rest/*</i> is not defined, so {@link JSONPRequestFilter} calls
+ * {@link #compress(HttpServletRequest, HttpServletResponse)} itself when it runs first; whichever of the two gets to it
+ * first compresses the response, and the other one leaves it alone.</p>
+ *
+ * @see CompressingStream
+ */
+@WebFilter("/rest/*")
+public class CompressionFilter implements Filter {
+
+    static final int THRESHOLD = Integer.getInteger("wfk.compression.threshold", 1024);
+
+    static final int LEVEL = Math.min(Integer.getInteger("wfk.compression.level", 6), 9);
+
+    /** Set on the request once the encoding of its response was negotiated, by this filter or by the JSONP one. */
+    private static final String NEGOTIATED = CompressionFilter.class.getName() + ".negotiated";
+
+    @Override
+    public void init(FilterConfig config) throws ServletException {
+        // Nothing needed
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException,
+        ServletException {
+
+        if (!(request instanceof HttpServletRequest)) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        CompressedResponse compressed = compress((HttpServletRequest) request, (HttpServletResponse) response);
+        if (compressed == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        try {
+            chain.doFilter(request, compressed);
+            compressed.finish();
+        } finally {
+            compressed.end();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        // Nothing to do
+    }
+
+    /**
+     * <p>Negotiates the encoding of the response, once per request.</p>
+     *
+     * @param request The request, with its Accept-Encoding header
+     * @param response The response
+     * @return the response to write the body to, which has to be finished and ended; or null if it is not to be
+     * compressed here, because the client does not take it or it is already being compressed
+     */
+    static CompressedResponse compress(HttpServletRequest request, HttpServletResponse response) {
+        if (LEVEL <= 0 || request.getAttribute(NEGOTIATED) != null) {
+            return null;
+        }
+        request.setAttribute(NEGOTIATED, Boolean.TRUE);
+        // Whether or not this one is compressed, the body depends on the header
+        response.addHeader("Vary", "Accept-Encoding");
+
+        String encoding = negotiate(request.getHeader("Accept-Encoding"));
+        return encoding == null ? null : new CompressedResponse(response, encoding);
+    }
+
+    /**
+     * <p>Picks the encoding from an Accept-Encoding header, e.g. <i>gzip, deflate;q=0.5</i>.</p>
+     *
+     * @return {@link CompressingStream#GZIP}, {@link CompressingStream#DEFLATE}; or null if the client takes neither
+     */
+    static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        float gzip = -1;
+        float deflate = -1;
+        float any = -1;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ENGLISH);
+            float q = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Float.parseFloat(param.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if (CompressingStream.GZIP.equals(name) || "x-gzip".equals(name)) {
+                gzip = q;
+            } else if (CompressingStream.DEFLATE.equals(name)) {
+                deflate = q;
+            } else if ("*".equals(name)) {
+                any = q;
+            }
+        }
+        // The codings that are not listed get the q of *, if there is one
+        if (gzip < 0) {
+            gzip = any;
+        }
+        if (deflate < 0) {
+            deflate = any;
+        }
+        if (gzip > 0 && gzip >= deflate) {
+            return CompressingStream.GZIP;
+        }
+        return deflate > 0 ? CompressingStream.DEFLATE : null;
+    }
+
+    /**
+     * <p>The response of a client that takes a compressed body. The decision to compress is made when the body
+     * outgrows the threshold, at which point the JAX-RS request has set the status and the headers.</p>
+     *
+     * <p>The content length that is set on it only holds for the uncompressed body, so it is held back and only set if
+     * the body goes out as it is.</p>
+     */
+    static final class CompressedResponse extends HttpServletResponseWrapper {
+
+        private final String encoding;
+
+        private CompressingStream out;
+
+        private PrintWriter writer;
+
+        private String contentLength;
+
+        CompressedResponse(HttpServletResponse response, String encoding) {
+            super(response);
+            this.encoding = encoding;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (writer != null) {
+                throw new IllegalStateException("getWriter() has already been called");
+            }
+            return stream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                if (out != null) {
+                    throw new IllegalStateException("getOutputStream() has already been called");
+                }
+                writer = new PrintWriter(new OutputStreamWriter(stream(), getCharacterEncoding()));
+            }
+            return writer;
+        }
+
+        @Override
+        public void setContentLength(int len) {
+            contentLength = Integer.toString(len);
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            if ("Content-Length".equalsIgnoreCase(name)) {
+                contentLength = value;
+                return;
+            }
+            super.setHeader(name, value);
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            if ("Content-Length".equalsIgnoreCase(name)) {
+                contentLength = value;
+                return;
+            }
+            super.addHeader(name, value);
+        }
+
+        @Override
+        public void setIntHeader(String name, int value) {
+            if ("Content-Length".equalsIgnoreCase(name)) {
+                contentLength = Integer.toString(value);
+                return;
+            }
+            super.setIntHeader(name, value);
+        }
+
+        @Override
+        public void addIntHeader(String name, int value) {
+            if ("Content-Length".equalsIgnoreCase(name)) {
+                contentLength = Integer.toString(value);
+                return;
+            }
+            super.addIntHeader(name, value);
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            // Until the body outgrows the threshold it is not known whether it is compressed, which the headers tell
+            if (out == null || out.isStarted()) {
+                if (out != null) {
+                    out.flush();
+                }
+                super.flushBuffer();
+            }
+        }
+
+        @Override
+        public void reset() {
+            super.reset();
+            if (out != null) {
+                out.reset();
+            }
+            contentLength = null;
+            addHeader("Vary", "Accept-Encoding");
+        }
+
+        @Override
+        public void resetBuffer() {
+            super.resetBuffer();
+            if (out != null) {
+                out.reset();
+            }
+        }
+
+        /**
+         * <p>Writes what is left of the body once the request was processed.</p>
+         */
+        void finish() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (out != null) {
+                out.finish();
+            }
+        }
+
+        /**
+         * <p>Releases the compressor, see {@link CompressingStream#end()}.</p>
+         */
+        void end() {
+            if (out != null) {
+                out.end();
+            }
+        }
+
+        private CompressingStream stream() throws IOException {
+            if (out == null) {
+                out = new CompressingStream(getResponse().getOutputStream(), encoding, LEVEL, THRESHOLD) {
+                    @Override
+                    protected boolean compress() {
+                        if (isCommitted() || containsHeader("Content-Encoding") || !isCompressible(getContentType())) {
+                            return false;
+                        }
+                        CompressedResponse.super.setHeader("Content-Encoding", encoding);
+                        return true;
+                    }
+
+                    @Override
+                    protected void uncompressed(int length) {
+                        if (contentLength != null) {
+                            CompressedResponse.super.setHeader("Content-Length", contentLength);
+                        } else if (length > 0) {
+                            CompressedResponse.super.setContentLength(length);
+                        }
+                    }
+                };
+            }
+            return out;
+        }
+
+        private static boolean isCompressible(String contentType) {
+            if (contentType == null) {
+                return false;
+            }
+            String type = contentType.toLowerCase(Locale.ENGLISH);
+            return type.startsWith("text/") || type.startsWith("application/json")
+                || type.startsWith("application/javascript") || type.startsWith("application/x-ndjson")
+                || type.startsWith("application/xml") || type.contains("+json") || type.contains("+xml");
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.util.Date;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+
+/**
+ * <p>Conditional requests on a single {@link Versioned} entity: the ETag is its version and the Last-Modified its last
+ * modification time.</p>
+ *
+ * <p>A GET answers with both, and with <code>Cache-Control: no-cache</code> so that clients keep the entity but check
+ * it again before using it. Their If-None-Match or If-Modified-Since is then answered with a 304 by
+ * {@link #notModified(Request, HttpHeaders, Versioned)}, which only needs the {@link EntityVersion} of the entity. A PUT
+ * may send If-Match or If-Unmodified-Since, checked by {@link #checkUnchanged(Request, HttpHeaders, Versioned)}, to
+ * only apply if nobody else changed the entity in between.</p>
+ *
+ * <p>The bookings embed the entities they refer to, so their validators are an {@link EntityVersion} that covers those
+ * as well, given to {@link #ok(Object, Versioned)} and taken from their FIND_VERSION queries.</p>
+ */
+public final class ConditionalRequests {
+
+    private static final CacheControl REVALIDATE = new CacheControl();
+
+    static {
+        REVALIDATE.setNoCache(true);
+    }
+
+    private ConditionalRequests() {
+    }
+
+    /**
+     * @param headers The headers of a GET
+     * @return true if the client sent If-None-Match or If-Modified-Since, that is if it has a copy of the entity
+     */
+    public static boolean isConditional(HttpHeaders headers) {
+        return headers.getRequestHeader(HttpHeaders.IF_NONE_MATCH) != null
+            || headers.getRequestHeader(HttpHeaders.IF_MODIFIED_SINCE) != null;
+    }
+
+    /**
+     * <p>Returns a 304 (Not Modified) if the copy of the client is still the current one.</p>
+     *
+     * @param request The request, to evaluate its preconditions
+     * @param headers The headers of the request
+     * @param current The current version of the entity; or null if there is no such entity
+     * @return A 304 Response; or null if the entity has to be sent
+     */
+    public static Response notModified(Request request, HttpHeaders headers, Versioned current) {
+        if (current == null) {
+            return null;
+        }
+        Response.ResponseBuilder builder = evaluate(request, headers, HttpHeaders.IF_NONE_MATCH, current);
+        return builder == null ? null : revalidate(builder, current).build();
+    }
+
+    /**
+     * <p>Checks the If-Match or If-Unmodified-Since of an update against the current version of the entity.</p>
+     *
+     * @param request The request, to evaluate its preconditions
+     * @param headers The headers of the request
+     * @param current The entity as it is now
+     * @throws WebApplicationException with a 412 (Precondition Failed) if the entity has changed since the client read it
+     */
+    public static void checkUnchanged(Request request, HttpHeaders headers, Versioned current) {
+        Response.ResponseBuilder builder = evaluate(request, headers, HttpHeaders.IF_MATCH, current);
+        if (builder != null) {
+            throw new WebApplicationException(revalidate(builder, current).build());
+        }
+    }
+
+    /**
+     * @param entity The entity to send
+     * @return A 200 (OK) with the entity, its ETag and Last-Modified
+     */
+    public static Response.ResponseBuilder ok(Versioned entity) {
+        return revalidate(Response.ok(entity), entity);
+    }
+
+    /**
+     * @param entity The entity to send
+     * @param version The version of its representation, e.g. {@link EntityVersion#of(Versioned, Versioned...)}
+     * @return A 200 (OK) with the entity, and the ETag and Last-Modified of the version
+     */
+    public static Response.ResponseBuilder ok(Object entity, Versioned version) {
+        return revalidate(Response.ok(entity), version);
+    }
+
+    /**
+     * @param entity The entity, or its version
+     * @return The ETag of its current version
+     */
+    public static EntityTag tag(Versioned entity) {
+        if (entity instanceof EntityVersion) {
+            return new EntityTag(((EntityVersion) entity).getTag());
+        }
+        return new EntityTag(Long.toString(entity.getVersion()));
+    }
+
+    // The ETag condition wins over the date, when both are sent (RFC 7232, section 6): the date is only accurate to the
+    // second, so it would miss a second update within the same second.
+    private static Response.ResponseBuilder evaluate(Request request, HttpHeaders headers, String tagHeader, Versioned current) {
+        if (headers.getRequestHeader(tagHeader) != null) {
+            return request.evaluatePreconditions(tag(current));
+        }
+        return request.evaluatePreconditions(lastModified(current));
+    }
+
+    private static Response.ResponseBuilder revalidate(Response.ResponseBuilder builder, Versioned entity) {
+        return builder.tag(tag(entity)).lastModified(lastModified(entity)).cacheControl(REVALIDATE);
+    }
+
+    // HTTP dates have no milliseconds, so compare with what the client was sent
+    private static Date lastModified(Versioned entity) {
+        return new Date(entity.getLastModified().getTime() / 1000 * 1000);
+    }
+}
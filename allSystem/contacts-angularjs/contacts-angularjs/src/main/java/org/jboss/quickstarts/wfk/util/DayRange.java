@@ -0,0 +1,98 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.util.Date;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+
+/**
+ * <p>A range of days, as asked for by the <i>from</i> and <i>to</i> query parameters (<i>yyyy-MM-dd</i>, both
+ * inclusive) of the availability endpoints.</p>
+ *
+ * <p>A range may be at most <i>wfk.availability.maxDays</i> days long (default 366).</p>
+ *
+ * @see AvailabilityRESTService
+ */
+public final class DayRange {
+
+    public static final int MAX_DAYS = Integer.getInteger("wfk.availability.maxDays", 366);
+
+    private final long first;
+    private final long last;
+
+    private DayRange(long first, long last) {
+        this.first = first;
+        this.last = last;
+    }
+
+    /**
+     * <p>Reads the range from the query parameters.</p>
+     *
+     * @param from The first day as yyyy-MM-dd; or null for today
+     * @param to The last day as yyyy-MM-dd; or null for the default length
+     * @param days The number of days in the range if to is null
+     * @return the DayRange
+     * @throws WebApplicationException 400 (bad request) if a day cannot be read, to is before from or the range is too long
+     */
+    public static DayRange parse(String from, String to, int days) {
+        long first = from == null ? AvailabilityIndex.day(new Date()) : parseDay(from);
+        long last = to == null ? first + days - 1 : parseDay(to);
+        if (last < first || last - first >= MAX_DAYS) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+        return new DayRange(first, last);
+    }
+
+    private static long parseDay(String text) {
+        String day = text.trim();
+        long epochDay = BookingDateModule.parse(day.toCharArray(), 0, day.length());
+        if (epochDay == Long.MIN_VALUE) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+        return epochDay;
+    }
+
+    /**
+     * @return the first day, in days since 1970-01-01
+     */
+    public long getFirst() {
+        return first;
+    }
+
+    /**
+     * @return the last day, in days since 1970-01-01
+     */
+    public long getLast() {
+        return last;
+    }
+
+    /**
+     * @return the first day as the Date a booking on it has
+     */
+    public Date getFirstDate() {
+        return AvailabilityIndex.date(first);
+    }
+
+    /**
+     * @return the last day as the Date a booking on it has
+     */
+    public Date getLastDate() {
+        return AvailabilityIndex.date(last);
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.Path;
+
+/**
+ * <p>Request count by status, latency histogram and in-flight gauge of a single REST endpoint, i.e. one resource
+ * method identified by its HTTP method and path template (<i>GET /taxis/{id:[0-9]+}</i>).</p>
+ *
+ * <p>The instances live in a static registry for the lifetime of the application. Recording a request only touches a
+ * few atomic counters, there is no lock and nothing is allocated once the endpoint has served its first request: the
+ * count by status is an array with a slot per status from {@link #FIRST_STATUS} to {@link #LAST_STATUS}, so that the
+ * status is not boxed into a map key.</p>
+ *
+ * @see MetricsInterceptor
+ * @see MetricsFilter
+ * @see MetricsRESTService
+ */
+public class EndpointMetrics {
+
+    /** Upper bounds of the latency histogram buckets, in seconds. Anything slower only counts towards +Inf. */
+    static final double[] BUCKETS = {0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+    /** The range of the statuses counted; anything outside of it is not an HTTP status and only counts in the total. */
+    static final int FIRST_STATUS = 100;
+    static final int LAST_STATUS = 599;
+
+    private static final long[] BUCKET_NANOS = new long[BUCKETS.length];
+    static {
+        for (int i = 0; i < BUCKETS.length; i++) {
+            BUCKET_NANOS[i] = (long) (BUCKETS[i] * 1000000000L);
+        }
+    }
+
+    /** Stands for "not a resource method" in {@link #BY_METHOD}, which cannot hold null. */
+    private static final EndpointMetrics NONE = new EndpointMetrics(null, null);
+
+    private static final ConcurrentMap<String, EndpointMetrics> REGISTRY = new ConcurrentHashMap<String, EndpointMetrics>();
+
+    private static final ConcurrentMap<Method, EndpointMetrics> BY_METHOD = new ConcurrentHashMap<Method, EndpointMetrics>();
+
+    /** The endpoint the request on the current thread was dispatched to, see {@link MetricsFilter}. */
+    private static final ThreadLocal<EndpointMetrics> CURRENT = new ThreadLocal<EndpointMetrics>();
+
+    private final String httpMethod;
+    private final String path;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS.length);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sumNanos = new AtomicLong();
+    private final AtomicLongArray statuses = new AtomicLongArray(LAST_STATUS - FIRST_STATUS + 1);
+
+    private EndpointMetrics(String httpMethod, String path) {
+        this.httpMethod = httpMethod;
+        this.path = path;
+    }
+
+    /**
+     * <p>Returns the metrics of the endpoint served by the given resource method, creating them on first use.</p>
+     *
+     * @param method A method of a class annotated with @Path
+     * @return the endpoint metrics; or null if the method is not a resource method (it has no HTTP method annotation)
+     */
+    static EndpointMetrics of(Method method) {
+        EndpointMetrics metrics = BY_METHOD.get(method);
+        if (metrics == null) {
+            metrics = lookup(method);
+            BY_METHOD.putIfAbsent(method, metrics);
+        }
+        return metrics == NONE ? null : metrics;
+    }
+
+    private static EndpointMetrics lookup(Method method) {
+        String httpMethod = null;
+        for (Annotation annotation : method.getAnnotations()) {
+            HttpMethod designator = annotation.annotationType().getAnnotation(HttpMethod.class);
+            if (designator != null) {
+                httpMethod = designator.value();
+            }
+        }
+        if (httpMethod == null) {
+            return NONE;
+        }
+
+        StringBuilder path = new StringBuilder();
+        Path classPath = method.getDeclaringClass().getAnnotation(Path.class);
+        if (classPath != null) {
+            path.append(classPath.value());
+        }
+        Path methodPath = method.getAnnotation(Path.class);
+        if (methodPath != null) {
+            if (!methodPath.value().startsWith("/")) {
+                path.append('/');
+            }
+            path.append(methodPath.value());
+        }
+
+        String key = httpMethod + " " + path;
+        EndpointMetrics metrics = REGISTRY.get(key);
+        if (metrics == null) {
+            REGISTRY.putIfAbsent(key, new EndpointMetrics(httpMethod, path.toString()));
+            metrics = REGISTRY.get(key);
+        }
+        return metrics;
+    }
+
+    /**
+     * <p>Returns every endpoint that has been called at least once, ordered by path and HTTP method.</p>
+     *
+     * @return the endpoint metrics
+     */
+    static List<EndpointMetrics> all() {
+        List<EndpointMetrics> all = new ArrayList<EndpointMetrics>(REGISTRY.size());
+        for (Map.Entry<String, EndpointMetrics> entry : REGISTRY.entrySet()) {
+            all.add(entry.getValue());
+        }
+        Collections.sort(all, new Comparator<EndpointMetrics>() {
+            @Override
+            public int compare(EndpointMetrics a, EndpointMetrics b) {
+                int byPath = a.path.compareTo(b.path);
+                return byPath != 0 ? byPath : a.httpMethod.compareTo(b.httpMethod);
+            }
+        });
+        return all;
+    }
+
+    static void setCurrent(EndpointMetrics metrics) {
+        CURRENT.set(metrics);
+    }
+
+    static EndpointMetrics takeCurrent() {
+        EndpointMetrics metrics = CURRENT.get();
+        CURRENT.remove();
+        return metrics;
+    }
+
+    void enter() {
+        inFlight.incrementAndGet();
+    }
+
+    void exit() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * <p>Records one finished request.</p>
+     *
+     * @param nanos How long the request took
+     * @param status The HTTP status sent back
+     */
+    void record(long nanos, int status) {
+        for (int i = 0; i < BUCKET_NANOS.length; i++) {
+            if (nanos <= BUCKET_NANOS[i]) {
+                buckets.incrementAndGet(i);
+                break;
+            }
+        }
+        count.incrementAndGet();
+        sumNanos.addAndGet(nanos);
+        if (status >= FIRST_STATUS && status <= LAST_STATUS) {
+            statuses.incrementAndGet(status - FIRST_STATUS);
+        }
+    }
+
+    String getHttpMethod() {
+        return httpMethod;
+    }
+
+    String getPath() {
+        return path;
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+
+    /** @return the number of requests that took at most {@link #BUCKETS}[i] seconds, but longer than the bucket before */
+    long getBucket(int i) {
+        return buckets.get(i);
+    }
+
+    long getCount() {
+        return count.get();
+    }
+
+    long getSumNanos() {
+        return sumNanos.get();
+    }
+
+    /** @return the number of requests answered with the status, from {@link #FIRST_STATUS} to {@link #LAST_STATUS} */
+    long getStatusCount(int status) {
+        return statuses.get(status - FIRST_STATUS);
+    }
+}
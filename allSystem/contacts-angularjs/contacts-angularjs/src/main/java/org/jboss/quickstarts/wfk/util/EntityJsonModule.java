@@ -0,0 +1,61 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import org.codehaus.jackson.Version;
+import org.codehaus.jackson.map.module.SimpleModule;
+import org.jboss.quickstarts.wfk.booking.Booking;
+import org.jboss.quickstarts.wfk.booking.BookingSerializer;
+import org.jboss.quickstarts.wfk.bookingflight.BookingFlight;
+import org.jboss.quickstarts.wfk.bookingflight.BookingFlightSerializer;
+import org.jboss.quickstarts.wfk.bookinghotel.BookingHotel;
+import org.jboss.quickstarts.wfk.bookinghotel.BookingHotelSerializer;
+import org.jboss.quickstarts.wfk.bookingtaxi.BookingTaxi;
+import org.jboss.quickstarts.wfk.bookingtaxi.BookingTaxiSerializer;
+import org.jboss.quickstarts.wfk.contact.Contact;
+import org.jboss.quickstarts.wfk.contact.ContactSerializer;
+import org.jboss.quickstarts.wfk.contact.Hotel;
+import org.jboss.quickstarts.wfk.contact.HotelSerializer;
+import org.jboss.quickstarts.wfk.flight.Flight;
+import org.jboss.quickstarts.wfk.flight.FlightSerializer;
+import org.jboss.quickstarts.wfk.taxi.Taxi;
+import org.jboss.quickstarts.wfk.taxi.TaxiSerializer;
+
+/**
+ * <p>Jackson module with the hand-written serializers of the REST entities, which write the same JSON as Jackson's
+ * reflective bean serializers without going through reflection for every property.</p>
+ *
+ * <p>JacksonConfig registers it unless the system property <i>wfk.json.reflective</i> is true. When a property is
+ * added to or renamed on an entity, its serializer has to follow; EntitySerializationBenchmark checks at setup that both
+ * still write the same JSON.</p>
+ *
+ * @see EntitySerializer
+ */
+public class EntityJsonModule extends SimpleModule {
+
+    public EntityJsonModule() {
+        super("EntityJsonModule", new Version(1, 0, 0, null));
+        addSerializer(Contact.class, ContactSerializer.INSTANCE);
+        addSerializer(Hotel.class, HotelSerializer.INSTANCE);
+        addSerializer(Flight.class, FlightSerializer.INSTANCE);
+        addSerializer(Taxi.class, TaxiSerializer.INSTANCE);
+        addSerializer(Booking.class, BookingSerializer.INSTANCE);
+        addSerializer(BookingFlight.class, BookingFlightSerializer.INSTANCE);
+        addSerializer(BookingHotel.class, BookingHotelSerializer.INSTANCE);
+        addSerializer(BookingTaxi.class, BookingTaxiSerializer.INSTANCE);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.io.IOException;
+import java.util.Date;
+
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.io.SerializedString;
+import org.codehaus.jackson.map.JsonSerializer;
+import org.codehaus.jackson.map.SerializerProvider;
+
+/**
+ * <p>Base class of the hand-written serializers of the REST entities, see {@link EntityJsonModule}.</p>
+ *
+ * <p>A subclass writes the properties in {@link #serializeFields}, with the helpers here. The property names are
+ * {@link SerializedString}s, which Jackson keeps quoted and encoded, so a field name is copied rather than escaped
+ * every time.</p>
+ *
+ * @param <T> The entity type
+ */
+public abstract class EntitySerializer<T> extends JsonSerializer<T> {
+
+    @Override
+    public void serialize(T value, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+        jgen.writeStartObject();
+        serializeFields(value, jgen, provider);
+        jgen.writeEndObject();
+    }
+
+    /**
+     * <p>Writes the properties of the entity, in between the braces of its object.</p>
+     */
+    protected abstract void serializeFields(T value, JsonGenerator jgen, SerializerProvider provider)
+        throws IOException;
+
+    protected static void writeNumber(JsonGenerator jgen, SerializedString name, Long value) throws IOException {
+        jgen.writeFieldName(name);
+        if (value == null) {
+            jgen.writeNull();
+        } else {
+            jgen.writeNumber(value.longValue());
+        }
+    }
+
+    protected static void writeString(JsonGenerator jgen, SerializedString name, String value) throws IOException {
+        jgen.writeFieldName(name);
+        if (value == null) {
+            jgen.writeNull();
+        } else {
+            jgen.writeString(value);
+        }
+    }
+
+    /**
+     * <p>Writes a date with whatever serializer the ObjectMapper has for it (see {@link BookingDateModule}).</p>
+     */
+    protected static void writeDate(JsonGenerator jgen, SerializedString name, Date value, SerializerProvider provider)
+        throws IOException {
+        jgen.writeFieldName(name);
+        provider.defaultSerializeValue(value, jgen);
+    }
+
+    /**
+     * <p>Writes a referenced entity as a nested object.</p>
+     */
+    protected static <E> void writeEntity(JsonGenerator jgen, SerializedString name, E value,
+        EntitySerializer<E> serializer, SerializerProvider provider) throws IOException {
+        jgen.writeFieldName(name);
+        if (value == null) {
+            jgen.writeNull();
+        } else {
+            serializer.serialize(value, jgen, provider);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.util.Date;
+
+/**
+ * <p>The version and last modification time of an entity, without the entity itself. Each versioned entity has a
+ * FIND_VERSION named query that selects one with a constructor expression, so that a conditional GET can be answered
+ * from a single row of a single table, instead of loading the entity and everything it refers to.</p>
+ *
+ * <p>The representation of a booking embeds the customer, hotel, taxi or flight it refers to, and changes when they do.
+ * Its FIND_VERSION also selects their versions and times, which go into the {@link #getTag() tag} and the last
+ * modification time, so that renaming a taxi is a change of every booking of it. {@link #of(Versioned, Versioned...)}
+ * does the same from the loaded entities.</p>
+ *
+ * @see ConditionalRequests
+ */
+public class EntityVersion implements Versioned {
+
+    private final long version;
+
+    private final Date lastModified;
+
+    private final String tag;
+
+    public EntityVersion(long version, Date lastModified) {
+        this.version = version;
+        this.lastModified = lastModified;
+        this.tag = Long.toString(version);
+    }
+
+    /**
+     * <p>The version of an entity that refers to two others, e.g. the customer and taxi of a booking. A reference that
+     * is null has a null version and time.</p>
+     */
+    public EntityVersion(long version, Date lastModified, Long firstVersion, Date firstModified, Long secondVersion,
+            Date secondModified) {
+        this(version, lastModified, new Long[] {firstVersion, secondVersion},
+            new Date[] {firstModified, secondModified});
+    }
+
+    /**
+     * <p>The version of an entity that refers to four others, e.g. the customer, hotel, taxi and flight of a
+     * booking.</p>
+     */
+    public EntityVersion(long version, Date lastModified, Long firstVersion, Date firstModified, Long secondVersion,
+            Date secondModified, Long thirdVersion, Date thirdModified, Long fourthVersion, Date fourthModified) {
+        this(version, lastModified, new Long[] {firstVersion, secondVersion, thirdVersion, fourthVersion},
+            new Date[] {firstModified, secondModified, thirdModified, fourthModified});
+    }
+
+    // Not public, so that it is not a candidate for the constructor expressions
+    private EntityVersion(long version, Date lastModified, Long[] referenceVersions, Date[] referenceModified) {
+        StringBuilder tag = new StringBuilder().append(version);
+        Date latest = lastModified;
+        for (int i = 0; i < referenceVersions.length; i++) {
+            // A reference that is set and one that is not must not give the same tag
+            tag.append('.').append(referenceVersions[i] == null ? "-" : referenceVersions[i].toString());
+            if (referenceModified[i] != null && (latest == null || referenceModified[i].after(latest))) {
+                latest = referenceModified[i];
+            }
+        }
+        this.version = version;
+        this.lastModified = latest;
+        this.tag = tag.toString();
+    }
+
+    /**
+     * <p>Returns the version of a loaded entity together with the entities it refers to, the same as its FIND_VERSION
+     * query gives.</p>
+     *
+     * @param entity The entity
+     * @param references The entities it refers to, in the order of its FIND_VERSION query; null for a reference that is
+     * not set
+     * @return The EntityVersion
+     */
+    public static EntityVersion of(Versioned entity, Versioned... references) {
+        Long[] versions = new Long[references.length];
+        Date[] modified = new Date[references.length];
+        for (int i = 0; i < references.length; i++) {
+            if (references[i] != null) {
+                versions[i] = references[i].getVersion();
+                modified[i] = references[i].getLastModified();
+            }
+        }
+        return new EntityVersion(entity.getVersion(), entity.getLastModified(), versions, modified);
+    }
+
+    /**
+     * @return The version of the entity itself
+     */
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return The last modification time of the entity, or of one it refers to if that is later
+     */
+    @Override
+    public Date getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return The version of the entity, followed by those of the entities it refers to if any, as the ETag value
+     */
+    public String getTag() {
+        return tag;
+    }
+}
@@ -16,9 +16,10 @@
  */
 package org.jboss.quickstarts.wfk.util;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
 import java.util.regex.Pattern;
 
 import javax.servlet.Filter;
@@ -81,39 +82,31 @@ public class JSONPRequestFilter implements Filter {
                 throw new ServletException("JSONP Callback method '" + CALLBACK_METHOD + "' parameter not valid function");
             }
 
-            // Will stream updated response
-            final ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-
-            // Create a custom response wrapper to adding in the padding
-            HttpServletResponseWrapper responseWrapper = new HttpServletResponseWrapper(httpResponse) {
-
-                @Override
-                public ServletOutputStream getOutputStream() throws IOException {
-                    return new ServletOutputStream() {
-                        @Override
-                        public void write(int b) throws IOException {
-                            byteStream.write(b);
-                        }
-                    };
-                }
+            // Override response content and encoding, before the JAX-RS request can commit the response
+            response.setContentType(CONTENT_TYPE);
+            response.setCharacterEncoding("UTF-8");
 
-                @Override
-                public PrintWriter getWriter() throws IOException {
-                    return new PrintWriter(byteStream);
-                }
-            };
+            // The padding is part of the body, so if the response is compressed it has to be compressed too. Unless
+            // the CompressionFilter already did, that happens here, outside of the padding.
+            CompressionFilter.CompressedResponse compressed = CompressionFilter.compress(httpRequest, httpResponse);
 
-            // Process the rest of the filter chain, including the JAX-RS request
-            chain.doFilter(request, responseWrapper);
+            // Create a custom response wrapper to adding in the padding, as the body streams through it
+            PaddedResponse responseWrapper =
+                new PaddedResponse(compressed != null ? compressed : httpResponse, callback);
 
-            // Override response content and encoding
-            response.setContentType(CONTENT_TYPE);
-            response.setCharacterEncoding("UTF-8");
+            try {
+                // Process the rest of the filter chain, including the JAX-RS request
+                chain.doFilter(request, responseWrapper);
 
-            // Write the padded updates to the output stream.
-            response.getOutputStream().write((callback + "(").getBytes());
-            response.getOutputStream().write(byteStream.toByteArray());
-            response.getOutputStream().write(");".getBytes());
+                responseWrapper.finish();
+                if (compressed != null) {
+                    compressed.finish();
+                }
+            } finally {
+                if (compressed != null) {
+                    compressed.end();
+                }
+            }
         }
     }
 
@@ -130,4 +123,187 @@ public class JSONPRequestFilter implements Filter {
     public void destroy() {
         // Nothing to do
     }
+
+    /**
+     * <p>Passes the body straight through to the response, with the callback written in front of its first byte and
+     * the closing parenthesis after its last, so a JSONP response is never held in memory.</p>
+     *
+     * <p>The content type was set by the filter and stays <i>application/javascript</i>. The content length is dropped,
+     * the padding makes the body longer than whoever set it knew.</p>
+     */
+    private static final class PaddedResponse extends HttpServletResponseWrapper {
+
+        private static final byte[] SUFFIX = bytes(");");
+
+        private final byte[] prefix;
+
+        private ServletOutputStream out;
+
+        private PrintWriter writer;
+
+        private boolean started;
+
+        PaddedResponse(HttpServletResponse response, String callback) {
+            super(response);
+            this.prefix = bytes(callback + "(");
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (writer != null) {
+                throw new IllegalStateException("getWriter() has already been called");
+            }
+            return stream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                if (out != null) {
+                    throw new IllegalStateException("getOutputStream() has already been called");
+                }
+                writer = new PrintWriter(new OutputStreamWriter(stream(), "UTF-8"));
+            }
+            return writer;
+        }
+
+        @Override
+        public void setContentType(String type) {
+            // Stays application/javascript
+        }
+
+        @Override
+        public void setCharacterEncoding(String charset) {
+            // Stays UTF-8
+        }
+
+        @Override
+        public void setContentLength(int len) {
+            // Dropped, see above
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            if (isPaddingHeader(name)) {
+                return;
+            }
+            super.setHeader(name, value);
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            if (isPaddingHeader(name)) {
+                return;
+            }
+            super.addHeader(name, value);
+        }
+
+        @Override
+        public void setIntHeader(String name, int value) {
+            if (isPaddingHeader(name)) {
+                return;
+            }
+            super.setIntHeader(name, value);
+        }
+
+        @Override
+        public void addIntHeader(String name, int value) {
+            if (isPaddingHeader(name)) {
+                return;
+            }
+            super.addIntHeader(name, value);
+        }
+
+        @Override
+        public void reset() {
+            super.reset();
+            // That cleared the content type, and the prefix if it was written but not sent yet
+            getResponse().setContentType(CONTENT_TYPE);
+            getResponse().setCharacterEncoding("UTF-8");
+            started = false;
+        }
+
+        @Override
+        public void resetBuffer() {
+            super.resetBuffer();
+            started = false;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            start();
+            super.flushBuffer();
+        }
+
+        /**
+         * <p>Writes whatever the callback still misses once the request was processed: the prefix if there was no body,
+         * and the suffix.</p>
+         */
+        void finish() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            start();
+            getResponse().getOutputStream().write(SUFFIX);
+        }
+
+        private ServletOutputStream stream() {
+            if (out == null) {
+                out = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        start();
+                        getResponse().getOutputStream().write(b);
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        if (len == 0) {
+                            return;
+                        }
+                        start();
+                        getResponse().getOutputStream().write(b, off, len);
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        start();
+                        getResponse().getOutputStream().flush();
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        // The suffix still has to go out, the container closes the stream after it
+                    }
+                };
+            }
+            return out;
+        }
+
+        /*
+         * The prefix goes out with the first byte of the body rather than up front, so that the status and the headers
+         * can still be set until then.
+         */
+        private void start() throws IOException {
+            if (!started) {
+                started = true;
+                getResponse().getOutputStream().write(prefix);
+            }
+        }
+
+        private static boolean isPaddingHeader(String name) {
+            return "Content-Type".equalsIgnoreCase(name) || "Content-Length".equalsIgnoreCase(name);
+        }
+
+        private static byte[] bytes(String text) {
+            try {
+                return text.getBytes("UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
 }
@@ -16,8 +16,6 @@
  */
 package org.jboss.quickstarts.wfk.util;
 
-import java.text.SimpleDateFormat;
-
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.ext.ContextResolver;
@@ -35,12 +33,35 @@ import org.codehaus.jackson.map.ObjectMapper;
 @Provider
 @Produces(MediaType.APPLICATION_JSON)
 public class JacksonConfig implements ContextResolver<ObjectMapper> {
+    // Set to go back to Jackson's reflective bean serializers for the entities instead of the ones in EntityJsonModule.
+    private static final boolean REFLECTIVE = Boolean.getBoolean("wfk.json.reflective");
+
+    // Shared with the writers that produce JSON outside of RESTEasy (see JsonExporter), so both agree on the format.
+    private static final ObjectMapper OBJECT_MAPPER = createObjectMapper();
+
     private ObjectMapper objectMapper;
 
-    // Configure the Date coming from the client to be in ISO-8601 instead of milliseconds from the epoch. 
     public JacksonConfig() throws Exception {
-        this.objectMapper = new ObjectMapper();
-        this.objectMapper.setDateFormat(new SimpleDateFormat("yyyy-MM-dd"));
+        this.objectMapper = OBJECT_MAPPER;
+    }
+
+    // Configure the Date coming from the client to be in ISO-8601 instead of milliseconds from the epoch. 
+    private static ObjectMapper createObjectMapper() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new BookingDateModule());
+        if (!REFLECTIVE) {
+            objectMapper.registerModule(new EntityJsonModule());
+        }
+        return objectMapper;
+    }
+
+    /**
+     * <p>Returns the ObjectMapper handed to RESTEasy, for code that writes JSON itself.</p>
+     *
+     * @return the configured ObjectMapper
+     */
+    static ObjectMapper objectMapper() {
+        return OBJECT_MAPPER;
     }
 
     @Override
@@ -0,0 +1,133 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Resource;
+import javax.ejb.SessionContext;
+import javax.ejb.Stateless;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.persistence.EntityManager;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+
+/**
+ * <p>Writes the result of a named query as a JSON array straight to the response, row by row.</p>
+ *
+ * <p>Returning a List from a REST method makes RESTEasy/Jackson build the whole document in memory before the first
+ * byte goes out. The {@link StreamingOutput} returned by {@link #stream(String)} instead reads the rows through a
+ * forward-only Hibernate cursor and serializes each one as soon as it arrives, clearing the persistence context every
+ * {@link #FETCH_SIZE} rows, so the export starts at once and its memory use does not grow with the table.</p>
+ *
+ * <p>The JSON is produced by the same ObjectMapper that {@link JacksonConfig} gives to RESTEasy, so dates and
+ * everything else look exactly as they do in the paged responses.</p>
+ *
+ * <p>Example:</p>
+ *
+ * <code>
+ * return Response.ok(exporter.stream(Booking.FIND_ALL)).build();
+ * </code>
+ *
+ * @see javax.ws.rs.core.StreamingOutput
+ */
+@Stateless
+public class JsonExporter {
+
+    /** Number of rows fetched from the database at a time, and kept in the persistence context at most. */
+    static final int FETCH_SIZE = Integer.getInteger("wfk.export.fetchSize", 500);
+
+    @Inject
+    private @Named("logger") Logger log;
+
+    @Inject
+    private EntityManager em;
+
+    @Resource
+    private SessionContext context;
+
+    /**
+     * <p>Returns a StreamingOutput that writes every row of the given named query as a JSON array.</p>
+     *
+     * <p>Nothing is read yet: the query runs when RESTEasy writes the response, in a transaction of its own, since
+     * the one of the REST method is over by then.</p>
+     *
+     * @param namedQuery The name of a query selecting a single entity, or constructor expression, per row
+     * @return the StreamingOutput to put in the Response
+     */
+    public StreamingOutput stream(final String namedQuery) {
+        // Go through the container so that write() gets its transaction and persistence context
+        final JsonExporter exporter = context.getBusinessObject(JsonExporter.class);
+        return new StreamingOutput() {
+            @Override
+            public void write(OutputStream output) throws IOException, WebApplicationException {
+                exporter.write(namedQuery, output);
+            }
+        };
+    }
+
+    /**
+     * <p>Runs the named query and writes its rows to the given stream as a JSON array.</p>
+     *
+     * @param namedQuery The name of a query selecting a single entity, or constructor expression, per row
+     * @param output The stream to write to; it is flushed but not closed
+     * @throws IOException If writing to the stream fails, e.g. because the client went away
+     */
+    public void write(String namedQuery, OutputStream output) throws IOException {
+        ObjectMapper mapper = JacksonConfig.objectMapper();
+        Session session = em.unwrap(Session.class);
+        ScrollableResults rows = session.getNamedQuery(namedQuery)
+            .setReadOnly(true)
+            .setFetchSize(FETCH_SIZE)
+            .setCacheMode(CacheMode.IGNORE)
+            .scroll(ScrollMode.FORWARD_ONLY);
+        long count = 0;
+        try {
+            JsonGenerator generator = mapper.getJsonFactory().createJsonGenerator(output, JsonEncoding.UTF8);
+            // The mapper flushes after every value; keep that from reaching the response, which would send a chunk per row
+            generator.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+            generator.writeStartArray();
+            while (rows.next()) {
+                mapper.writeValue(generator, rows.get(0));
+                if (++count % FETCH_SIZE == 0) {
+                    // Send what we have and let go of the rows (and the customers, hotels... they loaded) written so far
+                    generator.flush();
+                    output.flush();
+                    session.clear();
+                }
+            }
+            generator.writeEndArray();
+            generator.flush();
+            output.flush();
+        } finally {
+            rows.close();
+        }
+        log.log(Level.INFO, "JsonExporter.write() - Exported {0} rows of {1}", new Object[] {count, namedQuery});
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+
+/**
+ * <p>Configures the loggers handed out by {@link Resources#produceLog}, once when the application starts.</p>
+ *
+ * <p>Everything logged under <i>org.jboss.quickstarts.wfk</i> goes through an {@link AsyncLogHandler} instead of
+ * straight to the server's handlers. Its buffer holds <i>wfk.log.bufferSize</i> records (default 8192).</p>
+ *
+ * <p>Levels are set per package with system properties named <i>wfk.log.level.</i> followed by the package, e.g.
+ * <i>-Dwfk.log.level.org.jboss.quickstarts.wfk.bookingtaxi=FINE</i>. The request tracing is logged at FINE, so it is
+ * only built for the packages it is turned on for. Note that the server's own handlers have a level too (INFO for the
+ * console by default), which has to be lowered as well to actually see FINE records.</p>
+ *
+ * @see AsyncLogHandler
+ */
+@Singleton
+@Startup
+public class LoggingConfig {
+
+    static final String ROOT = "org.jboss.quickstarts.wfk";
+
+    static final String LEVEL_PREFIX = "wfk.log.level.";
+
+    private static final int BUFFER_SIZE = Integer.getInteger("wfk.log.bufferSize", 8192);
+
+    /** java.util.logging only keeps weak references to loggers, these hold on to the levels set here. */
+    private final List<Logger> configured = new ArrayList<Logger>();
+
+    private Logger root;
+    private AsyncLogHandler handler;
+
+    @PostConstruct
+    void start() {
+        for (Map.Entry<Object, Object> property : System.getProperties().entrySet()) {
+            String name = property.getKey().toString();
+            if (name.startsWith(LEVEL_PREFIX)) {
+                Logger logger = Logger.getLogger(name.substring(LEVEL_PREFIX.length()));
+                logger.setLevel(Level.parse(property.getValue().toString().trim()));
+                configured.add(logger);
+            }
+        }
+
+        root = Logger.getLogger(ROOT);
+        handler = new AsyncLogHandler(root, BUFFER_SIZE);
+        root.addHandler(handler);
+        root.setUseParentHandlers(false);
+    }
+
+    @PreDestroy
+    void stop() {
+        root.setUseParentHandlers(true);
+        root.removeHandler(handler);
+        handler.close();
+        for (Logger logger : configured) {
+            logger.setLevel(null);
+        }
+    }
+}
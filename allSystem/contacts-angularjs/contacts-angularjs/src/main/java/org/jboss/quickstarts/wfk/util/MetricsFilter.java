@@ -0,0 +1,70 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.io.IOException;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * <p>This filter times every REST call and records it, with the status sent back, against the endpoint that
+ * {@link MetricsInterceptor} says served it.</p>
+ *
+ * <p>Requests that never reach a resource method (an unknown path, a body that cannot be read) are not recorded.</p>
+ *
+ * @see EndpointMetrics
+ */
+@WebFilter("/rest/*")
+public class MetricsFilter implements Filter {
+
+    @Override
+    public void init(FilterConfig config) throws ServletException {
+        // Nothing needed
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException,
+        ServletException {
+
+        EndpointMetrics.takeCurrent();
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            chain.doFilter(request, response);
+            failed = false;
+        } finally {
+            EndpointMetrics metrics = EndpointMetrics.takeCurrent();
+            if (metrics != null) {
+                int status = failed || !(response instanceof HttpServletResponse) ? 500
+                    : ((HttpServletResponse) response).getStatus();
+                metrics.record(System.nanoTime() - start, status);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        // Nothing to do
+    }
+}
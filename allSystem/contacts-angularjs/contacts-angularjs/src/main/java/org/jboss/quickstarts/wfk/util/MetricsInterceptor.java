@@ -0,0 +1,50 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import javax.interceptor.AroundInvoke;
+import javax.interceptor.InvocationContext;
+
+/**
+ * <p>EJB interceptor that tells the metrics which endpoint a REST call was dispatched to, and counts the calls currently
+ * inside each resource method.</p>
+ *
+ * <p>The RESTful resources are stateless EJBs and pick it up with <i>@Interceptors(MetricsInterceptor.class)</i>. The
+ * latency and status are not taken here but in {@link MetricsFilter}: the container commits the transaction after this
+ * interceptor has returned, so only the filter sees the response the client actually gets, including a failed commit
+ * and the time spent writing the JSON.</p>
+ *
+ * @see EndpointMetrics
+ */
+public class MetricsInterceptor {
+
+    @AroundInvoke
+    public Object measure(InvocationContext invocation) throws Exception {
+        EndpointMetrics metrics = EndpointMetrics.of(invocation.getMethod());
+        if (metrics == null) {
+            return invocation.proceed();
+        }
+
+        EndpointMetrics.setCurrent(metrics);
+        metrics.enter();
+        try {
+            return invocation.proceed();
+        } finally {
+            metrics.exit();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.util.List;
+
+import javax.ejb.Stateless;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+
+/**
+ * <p>Serves the metrics of every REST endpoint in the Prometheus text exposition format.</p>
+ *
+ * <p>Full path for accessing the metrics is rest/metrics . Per endpoint (labels <i>method</i> and <i>path</i>) it
+ * reports:</p>
+ * <ul>
+ * <li><i>wfk_http_requests_total</i>, a counter per response <i>status</i>; the errors are the statuses from 400 up</li>
+ * <li><i>wfk_http_request_duration_seconds</i>, a latency histogram</li>
+ * <li><i>wfk_http_requests_in_flight</i>, a gauge of the calls currently inside the resource method</li>
+ * </ul>
+ *
+ * @see EndpointMetrics
+ */
+@Path("/metrics")
+@Stateless
+public class MetricsRESTService {
+
+    @GET
+    @Produces("text/plain; version=0.0.4")
+    public String retrieveMetrics() {
+        List<EndpointMetrics> endpoints = EndpointMetrics.all();
+        StringBuilder out = new StringBuilder(256 + endpoints.size() * 1024);
+
+        out.append("# HELP wfk_http_requests_total Requests served, by response status.\n");
+        out.append("# TYPE wfk_http_requests_total counter\n");
+        for (EndpointMetrics endpoint : endpoints) {
+            for (int status = EndpointMetrics.FIRST_STATUS; status <= EndpointMetrics.LAST_STATUS; status++) {
+                // Only the statuses the endpoint has answered with
+                long requests = endpoint.getStatusCount(status);
+                if (requests == 0) {
+                    continue;
+                }
+                out.append("wfk_http_requests_total{");
+                labels(out, endpoint).append(",status=\"").append(status).append("\"} ")
+                    .append(requests).append('\n');
+            }
+        }
+
+        out.append("# HELP wfk_http_request_duration_seconds Time from receiving the request to sending the response.\n");
+        out.append("# TYPE wfk_http_request_duration_seconds histogram\n");
+        for (EndpointMetrics endpoint : endpoints) {
+            long cumulative = 0;
+            for (int i = 0; i < EndpointMetrics.BUCKETS.length; i++) {
+                cumulative += endpoint.getBucket(i);
+                out.append("wfk_http_request_duration_seconds_bucket{");
+                labels(out, endpoint).append(",le=\"").append(EndpointMetrics.BUCKETS[i]).append("\"} ")
+                    .append(cumulative).append('\n');
+            }
+            long count = endpoint.getCount();
+            out.append("wfk_http_request_duration_seconds_bucket{");
+            labels(out, endpoint).append(",le=\"+Inf\"} ").append(count).append('\n');
+            out.append("wfk_http_request_duration_seconds_sum{");
+            labels(out, endpoint).append("} ").append(endpoint.getSumNanos() / 1e9).append('\n');
+            out.append("wfk_http_request_duration_seconds_count{");
+            labels(out, endpoint).append("} ").append(count).append('\n');
+        }
+
+        out.append("# HELP wfk_http_requests_in_flight Requests currently inside the resource method.\n");
+        out.append("# TYPE wfk_http_requests_in_flight gauge\n");
+        for (EndpointMetrics endpoint : endpoints) {
+            out.append("wfk_http_requests_in_flight{");
+            labels(out, endpoint).append("} ").append(endpoint.getInFlight()).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static StringBuilder labels(StringBuilder out, EndpointMetrics endpoint) {
+        out.append("method=\"").append(endpoint.getHttpMethod()).append("\",path=\"");
+        String path = endpoint.getPath();
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '\\' || c == '"') {
+                out.append('\\');
+            }
+            out.append(c);
+        }
+        return out.append('"');
+    }
+}
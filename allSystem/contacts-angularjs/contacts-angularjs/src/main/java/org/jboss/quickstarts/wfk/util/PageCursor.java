@@ -0,0 +1,185 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+
+/**
+ * <p>Helpers for keyset ("seek") pagination of the collection resources.</p>
+ *
+ * <p>Rather than skipping rows with an OFFSET, which gets slower the further the client pages, each page is selected
+ * with a WHERE clause that starts right after the last row of the previous page, in the order of the entity's
+ * FIND_ALL query. The values of that row's sort columns are handed to the client as an opaque cursor. Every ordering
+ * ends with the id, so the sort key is unique and the last value of a cursor is always that id.</p>
+ *
+ * <p>The list endpoints accept <i>?limit=</i> (page size, capped at {@link #MAX_LIMIT}) and <i>?cursor=</i>, return
+ * the page as the usual JSON array, and put the cursor for the following page in the {@value #NEXT_CURSOR_HEADER}
+ * response header. The header is absent on the last page.</p>
+ *
+ * <p>The default and maximum page sizes can be changed with the <i>wfk.page.defaultLimit</i> and
+ * <i>wfk.page.maxLimit</i> system properties.</p>
+ *
+ * @see Page
+ */
+public final class PageCursor {
+
+    /** Response header holding the cursor of the next page. */
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    public static final int DEFAULT_LIMIT = Integer.getInteger("wfk.page.defaultLimit", 100);
+
+    public static final int MAX_LIMIT = Integer.getInteger("wfk.page.maxLimit", 1000);
+
+    private static final char SEPARATOR = '\n';
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private PageCursor() {
+    }
+
+    /**
+     * <p>Returns the page size to use for the requested limit.</p>
+     *
+     * @param limit The <i>limit</i> query parameter; or null
+     * @return the requested limit, capped at {@link #MAX_LIMIT}, or {@link #DEFAULT_LIMIT} if none was requested
+     * @throws WebApplicationException 400 (bad request) if the limit is not positive
+     */
+    public static int limit(Integer limit) {
+        if (limit == null) {
+            return Math.min(DEFAULT_LIMIT, MAX_LIMIT);
+        }
+        if (limit < 1) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+        return Math.min(limit, MAX_LIMIT);
+    }
+
+    /**
+     * <p>Builds the page from the rows a repository fetched. Repositories ask for one row more than the page size; if
+     * that row came back there is a next page, and its cursor is made from the last row of this one.</p>
+     *
+     * @param rows The rows fetched, at most limit + 1
+     * @param limit The page size
+     * @param keys Extracts the sort key of a row
+     * @return the Page
+     */
+    public static <T> Page<T> page(List<T> rows, int limit, SortKey<T> keys) {
+        if (rows.size() <= limit) {
+            return new Page<T>(rows, null);
+        }
+        List<T> items = new ArrayList<T>(rows.subList(0, limit));
+        return new Page<T>(items, encode(keys.of(items.get(limit - 1))));
+    }
+
+    /**
+     * <p>Encodes the sort key of a row as an opaque, URL safe, cursor.</p>
+     *
+     * @param values The values of the sort columns, ending with the id
+     * @return the cursor
+     */
+    public static String encode(Object... values) {
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                key.append(SEPARATOR);
+            }
+            key.append(String.valueOf(values[i]));
+        }
+        byte[] bytes;
+        try {
+            bytes = key.toString().getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        char[] cursor = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            cursor[2 * i] = HEX[(bytes[i] >> 4) & 0xf];
+            cursor[2 * i + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(cursor);
+    }
+
+    /**
+     * <p>Decodes a cursor made by {@link #encode(Object...)}.</p>
+     *
+     * @param cursor The <i>cursor</i> query parameter; or null
+     * @param size The number of values expected
+     * @return the values of the sort columns; or null if no cursor was given (i.e. the first page)
+     * @throws WebApplicationException 400 (bad request) if the cursor is malformed
+     */
+    public static String[] decode(String cursor, int size) {
+        if (cursor == null || cursor.length() == 0) {
+            return null;
+        }
+        try {
+            if (cursor.length() % 2 != 0) {
+                throw new IllegalArgumentException("Odd cursor length");
+            }
+            byte[] bytes = new byte[cursor.length() / 2];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = (byte) Integer.parseInt(cursor.substring(2 * i, 2 * i + 2), 16);
+            }
+            List<String> values = new ArrayList<String>(size);
+            String key = new String(bytes, "UTF-8");
+            int start = 0;
+            for (int end = key.indexOf(SEPARATOR); end >= 0; end = key.indexOf(SEPARATOR, start)) {
+                values.add(key.substring(start, end));
+                start = end + 1;
+            }
+            values.add(key.substring(start));
+            if (values.size() != size) {
+                throw new IllegalArgumentException("Expected " + size + " values");
+            }
+            // Every sort key ends with the id
+            if (!isLong(values.get(size - 1))) {
+                throw new IllegalArgumentException("Expected an id");
+            }
+            return values.toArray(new String[size]);
+        } catch (IllegalArgumentException e) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * <p>Checks a numeric value of a decoded cursor, before it is turned into a query parameter.</p>
+     *
+     * @param value The value
+     * @return true if it is a long
+     */
+    public static boolean isLong(String value) {
+        try {
+            Long.parseLong(value);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * <p>Extracts the values of the sort columns, ending with the id, from a row.</p>
+     */
+    public interface SortKey<T> {
+        Object[] of(T row);
+    }
+}
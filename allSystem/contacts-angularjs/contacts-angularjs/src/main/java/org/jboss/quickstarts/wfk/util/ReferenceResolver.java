@@ -0,0 +1,252 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.enterprise.context.RequestScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.persistence.Cache;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceUnitUtil;
+import javax.persistence.Query;
+
+/**
+ * <p>Resolves the entities a booking refers to (its Contact, Hotel, Taxi, Flight...) and remembers the answer for the
+ * rest of the request.</p>
+ *
+ * <p>The booking validators used to look every reference up with its own em.find(), several times over in the same
+ * if-chain. Instead they now hand all of a booking's references to {@link #resolve(Reference...)}, which fetches them
+ * together with a single query, and then ask {@link #exists(Class, Long)} / {@link #find(Class, Long)} as often as
+ * they like without going back to the database. References that are not found are remembered too.</p>
+ *
+ * <p>Example:</p>
+ *
+ * <code>
+ * resolver.resolve(ReferenceResolver.ref(Contact.class, customerId), ReferenceResolver.ref(Taxi.class, taxiId));<br/>
+ * if (!resolver.exists(Contact.class, customerId)) { ... }
+ * </code>
+ *
+ * @see Reference
+ */
+@RequestScoped
+public class ReferenceResolver {
+
+    /** Remembered answer for a reference that does not exist. */
+    private static final Object NOT_FOUND = new Object();
+
+    @Inject
+    private @Named("logger") Logger log;
+
+    @Inject
+    private EntityManager em;
+
+    private final Map<Reference, Object> resolved = new HashMap<Reference, Object>();
+
+    /**
+     * <p>Creates a reference to the entity of the given type with the given id.</p>
+     *
+     * @param type The entity class
+     * @param id The id of the entity; may be null, in which case the reference never exists
+     * @return the Reference
+     */
+    public static Reference ref(Class<?> type, Long id) {
+        return new Reference(type, id);
+    }
+
+    /**
+     * <p>Loads every given reference that has not been resolved yet during this request.</p>
+     *
+     * <p>References already in the second-level cache are taken from it. For the others, the happy path (all
+     * references exist) is one query that selects all of them at once. Only when that comes back empty, i.e. at least
+     * one of them is missing, are the outstanding references looked up individually to find out which.</p>
+     *
+     * @param references The references to resolve
+     */
+    public void resolve(Reference... references) {
+        List<Reference> pending = new ArrayList<Reference>();
+        for (Reference reference : references) {
+            if (reference.getId() == null) {
+                resolved.put(reference, NOT_FOUND);
+            } else if (!resolved.containsKey(reference) && !pending.contains(reference)) {
+                pending.add(reference);
+            }
+        }
+
+        // Entities held by the second-level cache are found without any SQL, only query for the others
+        Cache cache = em.getEntityManagerFactory().getCache();
+        for (Iterator<Reference> it = pending.iterator(); it.hasNext();) {
+            Reference reference = it.next();
+            if (cache.contains(reference.getType(), reference.getId())) {
+                Object entity = em.find(reference.getType(), reference.getId());
+                resolved.put(reference, entity == null ? NOT_FOUND : entity);
+                it.remove();
+            }
+        }
+
+        if (pending.size() > 1) {
+            Object[] row = findAll(pending);
+            if (row != null) {
+                for (int i = 0; i < pending.size(); i++) {
+                    resolved.put(pending.get(i), row[i]);
+                }
+                return;
+            }
+            log.log(Level.FINE, "ReferenceResolver.resolve() - At least one of {0} does not exist, resolving them one by one", pending);
+        }
+        for (Reference reference : pending) {
+            Object entity = em.find(reference.getType(), reference.getId());
+            resolved.put(reference, entity == null ? NOT_FOUND : entity);
+        }
+    }
+
+    /**
+     * <p>Loads every given entity of one type that has not been resolved yet during this request, for a whole bulk
+     * batch at once: one query per {@value BulkBatch#IN_LIST_SIZE} ids rather than one per item. Ids that are not
+     * found are remembered as missing, like with {@link #resolve(Reference...)}.</p>
+     *
+     * @param type The entity class
+     * @param ids The ids of the entities; nulls are ignored
+     */
+    public void resolveAll(Class<?> type, Collection<Long> ids) {
+        Set<Long> unresolved = new LinkedHashSet<Long>();
+        for (Long id : ids) {
+            if (id != null && !resolved.containsKey(new Reference(type, id))) {
+                unresolved.add(id);
+            }
+        }
+        List<Long> pending = new ArrayList<Long>(unresolved);
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        PersistenceUnitUtil util = em.getEntityManagerFactory().getPersistenceUnitUtil();
+        for (List<Long> part : BulkBatch.partition(pending, BulkBatch.IN_LIST_SIZE)) {
+            for (Long id : part) {
+                resolved.put(new Reference(type, id), NOT_FOUND);
+            }
+            List<?> entities = em.createQuery("SELECT e FROM " + type.getSimpleName() + " e WHERE e.id IN :ids")
+                .setParameter("ids", part).getResultList();
+            for (Object entity : entities) {
+                resolved.put(new Reference(type, (Long) util.getIdentifier(entity)), entity);
+            }
+        }
+        log.log(Level.FINE, "ReferenceResolver.resolveAll() - Resolved {0} {1} ids", new Object[] { pending.size(), type.getSimpleName() });
+    }
+
+    /**
+     * <p>Returns whether the referenced entity exists, resolving it first if needed.</p>
+     *
+     * @param type The entity class
+     * @param id The id of the entity
+     * @return true if the entity exists
+     */
+    public boolean exists(Class<?> type, Long id) {
+        return find(type, id) != null;
+    }
+
+    /**
+     * <p>Returns the referenced entity, resolving it first if needed.</p>
+     *
+     * @param type The entity class
+     * @param id The id of the entity
+     * @return the entity; or null if it does not exist
+     */
+    public <T> T find(Class<T> type, Long id) {
+        Reference reference = new Reference(type, id);
+        if (!resolved.containsKey(reference)) {
+            resolve(reference);
+        }
+        Object entity = resolved.get(reference);
+        return entity == NOT_FOUND ? null : type.cast(entity);
+    }
+
+    /*
+     * Selects all the references in one row, e.g.
+     *   SELECT e0, e1 FROM Contact e0, Taxi e1 WHERE e0.id = :id0 AND e1.id = :id1
+     * which only returns a row if every one of them exists.
+     */
+    private Object[] findAll(List<Reference> references) {
+        StringBuilder select = new StringBuilder("SELECT ");
+        StringBuilder from = new StringBuilder(" FROM ");
+        StringBuilder where = new StringBuilder(" WHERE ");
+        for (int i = 0; i < references.size(); i++) {
+            String sep = i == 0 ? "" : ", ";
+            select.append(sep).append("e").append(i);
+            from.append(sep).append(references.get(i).getType().getSimpleName()).append(" e").append(i);
+            where.append(i == 0 ? "" : " AND ").append("e").append(i).append(".id = :id").append(i);
+        }
+        Query query = em.createQuery(select.append(from).append(where).toString());
+        for (int i = 0; i < references.size(); i++) {
+            query.setParameter("id" + i, references.get(i).getId());
+        }
+        List<?> rows = query.getResultList();
+        return rows.isEmpty() ? null : (Object[]) rows.get(0);
+    }
+
+    /**
+     * <p>A (entity class, id) pair, as referenced by a booking.</p>
+     */
+    public static final class Reference {
+
+        private final Class<?> type;
+
+        private final Long id;
+
+        Reference(Class<?> type, Long id) {
+            this.type = type;
+            this.id = id;
+        }
+
+        public Class<?> getType() {
+            return type;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Reference)) {
+                return false;
+            }
+            Reference other = (Reference) obj;
+            return type.equals(other.type) && (id == null ? other.id == null : id.equals(other.id));
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * type.hashCode() + (id == null ? 0 : id.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return type.getSimpleName() + "#" + id;
+        }
+    }
+}
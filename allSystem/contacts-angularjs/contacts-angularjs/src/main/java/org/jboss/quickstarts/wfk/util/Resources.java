@@ -46,6 +46,11 @@ public class Resources {
 
     private static final CloseableHttpClient HTTP_CLIENT = HttpClients.createDefault();
 
+    /**
+     * <p>Produces the logger of the class it is injected into. The levels and the asynchronous handler of these
+     * loggers are set up by {@link LoggingConfig}; log with parameters (<i>log.log(Level.FINE, "... {0}", x)</i>) so
+     * the message is only built when the level is enabled.</p>
+     */
     @Produces
     @Named("logger")
     public Logger produceLog(InjectionPoint injectionPoint) {
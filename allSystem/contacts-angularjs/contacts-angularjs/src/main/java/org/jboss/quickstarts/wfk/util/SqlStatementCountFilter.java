@@ -0,0 +1,73 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * <p>This filter logs how many SQL statements each REST call issued, as counted by {@link SqlStatementCounter}.</p>
+ *
+ * <p>For example creating a taxi booking logs <i>POST /rest/bookingtaxis issued 3 SQL statements</i>: resolving the
+ * customer and taxi, checking availability, and the insert.</p>
+ *
+ * @see SqlStatementCounter
+ */
+@WebFilter("/rest/*")
+public class SqlStatementCountFilter implements Filter {
+
+    @Inject
+    private @Named("logger") Logger log;
+
+    @Override
+    public void init(FilterConfig config) throws ServletException {
+        // Nothing needed
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException,
+        ServletException {
+
+        SqlStatementCounter.reset();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (request instanceof HttpServletRequest) {
+                HttpServletRequest httpRequest = (HttpServletRequest) request;
+                log.log(Level.FINE, "{0} {1} issued {2} SQL statements",
+                    new Object[] {httpRequest.getMethod(), httpRequest.getRequestURI(), SqlStatementCounter.get()});
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        // Nothing to do
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.EmptyInterceptor;
+
+/**
+ * <p>Hibernate interceptor that counts the SQL statements the application prepares, per thread.</p>
+ *
+ * <p>It is registered for the whole persistence unit with the <i>hibernate.ejb.interceptor</i> property in
+ * persistence.xml, so a single instance is shared by every session. A request is served by a single thread (including
+ * the commit at the end of the EJB method), so the per-thread count between {@link #reset()} and {@link #get()} is the
+ * number of statements that request issued. {@link SqlStatementCountFilter} does that for every REST call.</p>
+ *
+ * <p>Statements Hibernate runs on its own connection (e.g. allocating ids from the hibernate_sequences table) do not go
+ * through the session and are not counted.</p>
+ *
+ * @see SqlStatementCountFilter
+ */
+public class SqlStatementCounter extends EmptyInterceptor {
+    /** Default value included to remove warning. Remove or modify at will. **/
+    private static final long serialVersionUID = 1L;
+
+    private static final ThreadLocal<int[]> COUNT = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1];
+        }
+    };
+
+    private static final AtomicLong TOTAL = new AtomicLong();
+
+    @Override
+    public String onPrepareStatement(String sql) {
+        COUNT.get()[0]++;
+        TOTAL.incrementAndGet();
+        return sql;
+    }
+
+    /**
+     * <p>Starts counting from zero on the current thread.</p>
+     */
+    public static void reset() {
+        COUNT.get()[0] = 0;
+    }
+
+    /**
+     * <p>Returns the number of statements prepared on the current thread since the last {@link #reset()}.</p>
+     *
+     * @return the statement count
+     */
+    public static int get() {
+        return COUNT.get()[0];
+    }
+
+    /**
+     * <p>Returns the number of statements prepared by all threads since the application started.</p>
+     *
+     * @return the total statement count
+     */
+    public static long total() {
+        return TOTAL.get();
+    }
+}
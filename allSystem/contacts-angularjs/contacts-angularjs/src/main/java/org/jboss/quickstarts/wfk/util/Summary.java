@@ -0,0 +1,70 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.util.Date;
+
+/**
+ * <p>The summary view of a booking (see {@link View#SUMMARY}): its id and date, and the id and name of its customer.
+ * Each kind of booking adds the id and name of what it books.</p>
+ *
+ * <p>Summaries are selected with a constructor expression, e.g.
+ * <code>SELECT NEW ...BookingTaxiSummary(b.id, b.taxidate, c.id, c.firstName, c.lastName, t.id, t.registration)</code>,
+ * so a page of them is a single statement over the booking table and the tables it refers to, and no entity is loaded
+ * into the persistence context.</p>
+ *
+ * <p>Each summary also tells its kind of booking, as the name of its REST resource, so that the bookings of all kinds
+ * can be listed together (see the itinerary of a contact).</p>
+ */
+public abstract class Summary {
+
+    private final Long id;
+
+    private final Date date;
+
+    private final Long customerId;
+
+    private final String customerName;
+
+    protected Summary(Long id, Date date, Long customerId, String firstName, String lastName) {
+        this.id = id;
+        this.date = date;
+        this.customerId = customerId;
+        this.customerName = firstName == null ? lastName : lastName == null ? firstName : firstName + " " + lastName;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Date getDate() {
+        return date;
+    }
+
+    public Long getCustomerId() {
+        return customerId;
+    }
+
+    public String getCustomerName() {
+        return customerName;
+    }
+
+    /**
+     * @return The kind of booking, e.g. "bookingtaxis"
+     */
+    public abstract String getType();
+}
@@ -0,0 +1,38 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.util.Date;
+
+/**
+ * <p>An entity that keeps a version number, bumped by every update, and the time of its last change. They are what
+ * {@link ConditionalRequests} turns into the ETag and Last-Modified of its representation.</p>
+ *
+ * @see EntityVersion
+ */
+public interface Versioned {
+
+    /**
+     * @return the version of the entity, incremented by JPA on every update
+     */
+    long getVersion();
+
+    /**
+     * @return when the entity was created or last updated
+     */
+    Date getLastModified();
+}
@@ -0,0 +1,65 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+
+/**
+ * <p>How much of each booking a booking list returns.</p>
+ *
+ * <p>The full view is the bookings themselves, each with the whole customer, hotel, taxi or flight it refers to. The
+ * summary view is one row per booking with only the ids, the date and the names to show, selected by a constructor
+ * expression in a single statement, without loading any entity.</p>
+ */
+public enum View {
+    /** The bookings with everything they refer to; the default. */
+    FULL("full"),
+    /** The ids, date and display names of each booking. */
+    SUMMARY("summary");
+
+    private final String value;
+
+    private View(String value) {
+        this.value = value;
+    }
+
+    /**
+     * <p>Parses the view query parameter of a booking list.</p>
+     *
+     * @param value <i>full</i>, <i>summary</i>, or null for the default
+     * @return the View
+     * @throws WebApplicationException with a 400 (Bad Request) response if the value is not a view
+     */
+    public static View of(String value) {
+        if (value == null) {
+            return FULL;
+        }
+        for (View view : values()) {
+            if (view.value.equalsIgnoreCase(value)) {
+                return view;
+            }
+        }
+        throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST)
+            .entity("view must be full or summary").build());
+    }
+
+    @Override
+    public String toString() {
+        return value;
+    }
+}
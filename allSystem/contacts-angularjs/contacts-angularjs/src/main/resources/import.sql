@@ -19,12 +19,12 @@
 -- Since the database doesn't know to increase the Sequence to match what is manually loaded here it starts at 1 and tries
 --  to enter a record with the same PK and create an error.  If we use a high we don't interfere with the sequencing (at least until later).
 -- NOTE: this file should be removed for production systems. 
-insert into Contact (id, first_name, last_name, email, phone_number) values (10001, 'John', 'Smith', 'john.smith@mailinator.com', '(012) 5555-1212')
-insert into Contact (id, first_name, last_name, email, phone_number) values (10002, 'Davey', 'Jones', 'davey.jones@locker.com', '(012) 5555-3333',)
-insert into Hotel (id, hotel_name, phone_number, postcode) values (20001, 'Hilton', '(077) 5432-1234', 'ABCCBA')
-insert into Hotel (id, hotel_name, phone_number, postcode) values (20002, 'Collingwood', '(077) 9999-9999', 'DH13LT')
-insert into Taxi (id, registration, seat) values (30001,'sdge001','2')
-insert into Flight (id, flight_number, flight_departure, flight_destination) values (40001, 'YT888', 'HKG', 'LHR')
-insert into Flight (id, flight_number, flight_departure, flight_destination) values (40002, 'LY666', 'NCL', 'AMS')
-insert into Booking (id, customerId, hotelId, taxi_id, flight_ID, booking_date) values (60001, 10001, 20002, 30001, 40001 '2015-08-07')
-insert into Booking (id, customerId, hotelId, taxi_id, flight_ID , booking_date) values (60002, 10002, 20001, 30001, 40002 '2015-09-21')
\ No newline at end of file
+insert into Contact (id, version, last_modified, first_name, last_name, email, phone_number) values (10001, 0, CURRENT_TIMESTAMP, 'John', 'Smith', 'john.smith@mailinator.com', '(012) 5555-1212')
+insert into Contact (id, version, last_modified, first_name, last_name, email, phone_number) values (10002, 0, CURRENT_TIMESTAMP, 'Davey', 'Jones', 'davey.jones@locker.com', '(012) 5555-3333',)
+insert into Hotel (id, version, last_modified, hotel_name, phone_number, postcode) values (20001, 0, CURRENT_TIMESTAMP, 'Hilton', '(077) 5432-1234', 'ABCCBA')
+insert into Hotel (id, version, last_modified, hotel_name, phone_number, postcode) values (20002, 0, CURRENT_TIMESTAMP, 'Collingwood', '(077) 9999-9999', 'DH13LT')
+insert into Taxi (id, version, last_modified, registration, seat) values (30001, 0, CURRENT_TIMESTAMP, 'sdge001','2')
+insert into Flight (id, version, last_modified, flight_number, flight_departure, flight_destination) values (40001, 0, CURRENT_TIMESTAMP, 'YT888', 'HKG', 'LHR')
+insert into Flight (id, version, last_modified, flight_number, flight_departure, flight_destination) values (40002, 0, CURRENT_TIMESTAMP, 'LY666', 'NCL', 'AMS')
+insert into Booking (id, version, last_modified, customerId, hotelId, taxi_id, flight_ID, booking_date) values (60001, 0, CURRENT_TIMESTAMP, 10001, 20002, 30001, 40001 '2015-08-07')
+insert into Booking (id, version, last_modified, customerId, hotelId, taxi_id, flight_ID , booking_date) values (60002, 0, CURRENT_TIMESTAMP, 10002, 20001, 30001, 40002 '2015-09-21')
\ No newline at end of file
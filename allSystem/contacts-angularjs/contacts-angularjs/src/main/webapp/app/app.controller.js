@@ -44,25 +44,49 @@
             return headings;
         };
 
-        //Upon initial loading of the controller, populate a list of Contacts and their letter headings
-        $scope.contacts.data = $scope.contacts.query(
+        //The list is served a page at a time, the cursor of the next page comes back in the X-Next-Cursor header
+        $scope.pageSize = 50;
+        $scope.nextCursor = null;
+
+        //Report the errors of a failed query
+        var showErrors = function(result) {
+            for(var error in result.data){
+                $scope.messages.push('danger', result.data[error]);
+            }
+        };
+
+        //Upon initial loading of the controller, populate the first page of Contacts and their letter headings
+        $scope.contacts.data = $scope.contacts.query({limit: $scope.pageSize},
             //Successful query
-            function(data) {
+            function(data, headers) {
                 $scope.contacts.data = data;
+                $scope.nextCursor = headers('X-Next-Cursor');
                 $scope.contactsList = getHeadings($scope.contacts.data);
                 //Keep the contacts list headings in sync with the underlying contacts
                 $scope.$watchCollection('contacts.data', function(newContacts, oldContacts) {
-                    $scope.contactsList = getHeadings(newContacts);
+                    $scope.contactsList = getHeadings($filter('filter')(newContacts, $scope.search));
                 });
             },
             //Error
-            function(result) {
-                for(var error in result.data){
-                    $scope.messages.push('danger', result.data[error]);
-                }
-            }
+            showErrors
         );
 
+        //Append the next page, if there is one, to the contacts already listed
+        $scope.loadMore = function() {
+            if (!$scope.nextCursor) {
+                return;
+            }
+            $scope.contacts.query({cursor: $scope.nextCursor, limit: $scope.pageSize},
+                //Successful query
+                function(data, headers) {
+                    $scope.nextCursor = headers('X-Next-Cursor');
+                    $scope.contacts.data.push.apply($scope.contacts.data, data);
+                },
+                //Error
+                showErrors
+            );
+        };
+
         //Boolean flag representing whether the details of the contacts are expanded inline
         $scope.details = false;
 
@@ -106,25 +130,49 @@
             return headings;
         };
 
-        //Upon initial loading of the controller, populate a list of Contacts and their letter headings
-        $scope.contacts.data = $scope.contacts.query(
+        //The list is served a page at a time, the cursor of the next page comes back in the X-Next-Cursor header
+        $scope.pageSize = 50;
+        $scope.nextCursor = null;
+
+        //Report the errors of a failed query
+        var showErrors = function(result) {
+            for(var error in result.data){
+                $scope.messages.push('danger', result.data[error]);
+            }
+        };
+
+        //Upon initial loading of the controller, populate the first page of Contacts and their letter headings
+        $scope.contacts.data = $scope.contacts.query({limit: $scope.pageSize},
             //Successful query
-            function(data) {
+            function(data, headers) {
                 $scope.contacts.data = data;
+                $scope.nextCursor = headers('X-Next-Cursor');
                 $scope.contactsList = getHeadings($scope.contacts.data);
                 //Keep the contacts list headings in sync with the underlying contacts
                 $scope.$watchCollection('contacts.data', function(newContacts, oldContacts) {
-                    $scope.contactsList = getHeadings(newContacts);
+                    $scope.contactsList = getHeadings($filter('filter')(newContacts, $scope.search));
                 });
             },
             //Error
-            function(result) {
-                for(var error in result.data){
-                    $scope.messages.push('danger', result.data[error]);
-                }
-            }
+            showErrors
         );
 
+        //Append the next page, if there is one, to the contacts already listed
+        $scope.loadMore = function() {
+            if (!$scope.nextCursor) {
+                return;
+            }
+            $scope.contacts.query({cursor: $scope.nextCursor, limit: $scope.pageSize},
+                //Successful query
+                function(data, headers) {
+                    $scope.nextCursor = headers('X-Next-Cursor');
+                    $scope.contacts.data.push.apply($scope.contacts.data, data);
+                },
+                //Error
+                showErrors
+            );
+        };
+
         //Boolean flag representing whether the details of the contacts are expanded inline
         $scope.details = false;
 
@@ -168,25 +216,49 @@
             return headings;
         };
 
-        //Upon initial loading of the controller, populate a list of Contacts and their letter headings
-        $scope.contacts.data = $scope.contacts.query(
+        //The list is served a page at a time, the cursor of the next page comes back in the X-Next-Cursor header
+        $scope.pageSize = 50;
+        $scope.nextCursor = null;
+
+        //Report the errors of a failed query
+        var showErrors = function(result) {
+            for(var error in result.data){
+                $scope.messages.push('danger', result.data[error]);
+            }
+        };
+
+        //Upon initial loading of the controller, populate the first page of Contacts and their letter headings
+        $scope.contacts.data = $scope.contacts.query({limit: $scope.pageSize},
             //Successful query
-            function(data) {
+            function(data, headers) {
                 $scope.contacts.data = data;
+                $scope.nextCursor = headers('X-Next-Cursor');
                 $scope.contactsList = getHeadings($scope.contacts.data);
                 //Keep the contacts list headings in sync with the underlying contacts
                 $scope.$watchCollection('contacts.data', function(newContacts, oldContacts) {
-                    $scope.contactsList = getHeadings(newContacts);
+                    $scope.contactsList = getHeadings($filter('filter')(newContacts, $scope.search));
                 });
             },
             //Error
-            function(result) {
-                for(var error in result.data){
-                    $scope.messages.push('danger', result.data[error]);
-                }
-            }
+            showErrors
         );
 
+        //Append the next page, if there is one, to the contacts already listed
+        $scope.loadMore = function() {
+            if (!$scope.nextCursor) {
+                return;
+            }
+            $scope.contacts.query({cursor: $scope.nextCursor, limit: $scope.pageSize},
+                //Successful query
+                function(data, headers) {
+                    $scope.nextCursor = headers('X-Next-Cursor');
+                    $scope.contacts.data.push.apply($scope.contacts.data, data);
+                },
+                //Error
+                showErrors
+            );
+        };
+
         //Boolean flag representing whether the details of the contacts are expanded inline
         $scope.details = false;
 
@@ -24,8 +24,8 @@
     config.$inject = ['$httpProvider', '$routeProvider'];
 
     function config($httpProvider, $routeProvider) {
-        //Use a HTTP interceptor to add a nonce to every GET request to prevent MSIE from caching responses.
-        $httpProvider.interceptors.push('ajaxNonceInterceptor');
+        //Use a HTTP interceptor to keep the resources read, and only download them again when they have changed.
+        $httpProvider.interceptors.push('revalidatingCacheInterceptor');
 
         //Note that this app is a single page app, composed of multiple 'views'
         //Each 'view' is some combination of a template and a controller
@@ -1,39 +0,0 @@
-/*
- * JBoss, Home of Professional Open Source
- * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
- * contributors by the @authors tag. See the copyright.txt in the
- * distribution for a full listing of individual contributors.
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- * http://www.apache.org/licenses/LICENSE-2.0
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-(function() {
-    'use strict';
-    angular
-        .module('app.util')
-        //Defines the ajaxNonceInterceptor factory, gets invoked for each request
-        .factory('ajaxNonceInterceptor', ajaxNonceInterceptor);
-
-    //ajaxNonceInterceptor factory function, gets called after each http request
-    function ajaxNonceInterceptor() {
-        // This interceptor is equivalent to the behavior induced by jQuery's $.ajaxSetup({cache:false});
-        var param_start = /\?/;
-
-        return {
-            request: function (config) {
-                if (config.method == 'GET') {
-                    // Add a query parameter named '_' to the URL, with a value equal to the current timestamp
-                    config.url += (param_start.test(config.url) ? "&" : "?") + '_=' + new Date().getTime();
-                }
-                return config;
-            }
-        }
-    }
-})();
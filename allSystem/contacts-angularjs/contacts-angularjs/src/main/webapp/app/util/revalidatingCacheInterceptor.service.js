@@ -0,0 +1,83 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+(function() {
+    'use strict';
+    angular
+        .module('app.util')
+        //Defines the revalidatingCacheInterceptor factory, gets invoked for each request
+        .factory('revalidatingCacheInterceptor', revalidatingCacheInterceptor);
+
+    revalidatingCacheInterceptor.$inject = ['$cacheFactory', '$q'];
+
+    //revalidatingCacheInterceptor factory function, gets called for each http request and response
+    function revalidatingCacheInterceptor($cacheFactory, $q) {
+        // The last response of each resource that came with an ETag or a Last-Modified, least recently used go first
+        var cache = $cacheFactory('revalidatingCache', {capacity: 200});
+
+        function keyOf(config) {
+            return config.url + (config.params ? '?' + angular.toJson(config.params) : '');
+        }
+
+        return {
+            request: function (config) {
+                if (config.cache) {
+                    // Templates and the like are kept by Angular itself
+                    return config;
+                }
+                if (config.method == 'GET') {
+                    var cached = cache.get(keyOf(config));
+                    // Have MSIE check with the server instead of reusing its own copy
+                    config.headers['Cache-Control'] = 'no-cache';
+                    if (cached && cached.etag) {
+                        config.headers['If-None-Match'] = cached.etag;
+                    }
+                    if (cached && cached.lastModified) {
+                        config.headers['If-Modified-Since'] = cached.lastModified;
+                    }
+                } else {
+                    // The resource is about to change, so our copy will be of no use
+                    cache.remove(keyOf(config));
+                }
+                return config;
+            },
+            response: function (response) {
+                var config = response.config;
+                if (config.method == 'GET' && !config.cache) {
+                    var etag = response.headers('ETag');
+                    var lastModified = response.headers('Last-Modified');
+                    if (etag || lastModified) {
+                        cache.put(keyOf(config), {etag: etag, lastModified: lastModified, data: angular.copy(response.data)});
+                    }
+                }
+                return response;
+            },
+            responseError: function (rejection) {
+                var cached = rejection.status === 304 && cache.get(keyOf(rejection.config));
+                if (cached) {
+                    // Not Modified: answer with our copy, as if the server had sent it again
+                    return {
+                        data: angular.copy(cached.data),
+                        status: 200,
+                        headers: rejection.headers,
+                        config: rejection.config
+                    };
+                }
+                return $q.reject(rejection);
+            }
+        };
+    }
+})();
@@ -0,0 +1,255 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.booking;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import javax.ejb.EJBException;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceUnitUtil;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.quickstarts.wfk.contact.Contact;
+import org.jboss.quickstarts.wfk.contact.ContactRESTService;
+import org.jboss.quickstarts.wfk.contact.Hotel;
+import org.jboss.quickstarts.wfk.contact.HotelRESTService;
+import org.jboss.quickstarts.wfk.flight.Flight;
+import org.jboss.quickstarts.wfk.flight.FlightRESTService;
+import org.jboss.quickstarts.wfk.taxi.Taxi;
+import org.jboss.quickstarts.wfk.taxi.TaxiRESTService;
+import org.jboss.quickstarts.wfk.util.SqlStatementCounter;
+import org.jboss.quickstarts.wfk.util.WholeApplication;
+import org.jboss.shrinkwrap.api.Archive;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * <p>Tests, run with {@link org.jboss.arquillian Arquillian}, how many SQL statements the reads of Bookings cost, as
+ * counted by {@link SqlStatementCounter}: the customer, hotel, taxi and flight of a Booking are loaded lazily, and the
+ * REST reads fetch them in the same query as the Bookings, whatever the number of Bookings. A page of the summary view
+ * (<i>view=summary</i>) is a single statement too, and tells the same as the full view of the same Bookings.</p>
+ *
+ * <p>The second-level cache is emptied before every read, so that a reference found there does not hide a query.</p>
+ */
+@RunWith(Arquillian.class)
+public class BookingQueryCountTest {
+
+    /** The Bookings of the customer, each on its own day. */
+    private static final int BOOKINGS = 5;
+
+    @Deployment
+    public static Archive<?> createTestArchive() {
+        return WholeApplication.deployment("query-count-test.war");
+    }
+
+    @Inject
+    ContactRESTService contactRESTService;
+
+    @Inject
+    HotelRESTService hotelRESTService;
+
+    @Inject
+    TaxiRESTService taxiRESTService;
+
+    @Inject
+    FlightRESTService flightRESTService;
+
+    @Inject
+    BookingRESTService bookingRESTService;
+
+    @Inject
+    BookingService bookingService;
+
+    @Inject
+    EntityManager em;
+
+    private static Contact customer;
+
+    private static Booking booking;
+
+    /**
+     * <p>Books the hotel, a taxi and a flight for the customer on {@link #BOOKINGS} days, once for all the tests.</p>
+     */
+    @Before
+    public void createBookings() {
+        if (customer != null) {
+            return;
+        }
+        Contact contact = new Contact();
+        contact.setFirstName("Query");
+        contact.setLastName("Count");
+        contact.setEmail("query.count@mailinator.com");
+        contact.setPhoneNumber("(012) 5555-1234");
+        assertEquals("Unexpected status of the customer", 201, contactRESTService.createContact(contact).getStatus());
+
+        Hotel hotel = new Hotel();
+        hotel.setHotelName("Countington");
+        hotel.setPhoneNumber("(012) 5555-5678");
+        hotel.setPostcode("NE17RU");
+        assertEquals("Unexpected status of the hotel", 201, hotelRESTService.createHotel(hotel).getStatus());
+
+        Taxi taxi = new Taxi();
+        taxi.setRegistration("COUNT01");
+        taxi.setSeat("4");
+        assertEquals("Unexpected status of the taxi", 201, taxiRESTService.createTaxi(taxi).getStatus());
+
+        Flight flight = new Flight();
+        flight.setFlightNumber("QC001");
+        flight.setFlightDeparture("NCL");
+        flight.setFlightDestination("AMS");
+        assertEquals("Unexpected status of the flight", 201, flightRESTService.createFlight(flight).getStatus());
+
+        for (int i = 1; i <= BOOKINGS; i++) {
+            Booking next = new Booking();
+            next.setCustomer(contact);
+            next.setHotel(hotel);
+            next.setTaxiid(taxi);
+            next.setFlightID(flight);
+            next.setBookingDate(WholeApplication.daysFromNow(i));
+            assertEquals("Unexpected status of the booking", 201, bookingRESTService.createBooking(next).getStatus());
+            booking = next;
+        }
+        customer = contact;
+    }
+
+    @Test
+    public void testFindByIdLeavesReferencesUnloaded() {
+        startCounting();
+        Booking found = bookingService.findById(booking.getId());
+
+        assertNotNull("The booking should be found", found);
+        assertEquals("Only the booking should be read", 1, SqlStatementCounter.get());
+        PersistenceUnitUtil util = em.getEntityManagerFactory().getPersistenceUnitUtil();
+        assertFalse("The customer should not be loaded", util.isLoaded(found.getCustomer()));
+        assertFalse("The hotel should not be loaded", util.isLoaded(found.getHotel()));
+        assertFalse("The taxi should not be loaded", util.isLoaded(found.getTaxiid()));
+        assertFalse("The flight should not be loaded", util.isLoaded(found.getFlightID()));
+    }
+
+    @Test
+    public void testFindWithReferencesIsOneQuery() {
+        startCounting();
+        Booking found = bookingService.findWithReferences(booking.getId());
+
+        assertNotNull("The booking should be found", found);
+        assertEquals("The booking and its references should be read at once", 1, SqlStatementCounter.get());
+        assertReferencesLoaded(found);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRetrieveAllBookingsIsOneQuery() {
+        startCounting();
+        Response response = bookingRESTService.retrieveAllBookings(null, null, false, null);
+
+        assertEquals("Unexpected response status", 200, response.getStatus());
+        assertEquals("The page should be read at once", 1, SqlStatementCounter.get());
+        List<Booking> bookings = (List<Booking>) response.getEntity();
+        assertEquals("Unexpected number of bookings", BOOKINGS, bookings.size());
+        for (Booking each : bookings) {
+            assertReferencesLoaded(each);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRetrieveBookingByCustomerIsOneQuery() {
+        startCounting();
+        Response response = bookingRESTService.retrieveBookingByCustomer(customer.getId());
+
+        assertEquals("Unexpected response status", 200, response.getStatus());
+        assertEquals("The bookings of the customer should be read at once", 1, SqlStatementCounter.get());
+        List<Booking> bookings = (List<Booking>) response.getEntity();
+        assertEquals("Unexpected number of bookings", BOOKINGS, bookings.size());
+        for (Booking each : bookings) {
+            assertReferencesLoaded(each);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSummaryPageIsOneQuery() {
+        startCounting();
+        Response response = bookingRESTService.retrieveAllBookings(null, null, false, "summary");
+
+        assertEquals("Unexpected response status", 200, response.getStatus());
+        assertEquals("The page of summaries should be read at once", 1, SqlStatementCounter.get());
+        assertEquals("Unexpected number of summaries", BOOKINGS, ((List<BookingSummary>) response.getEntity()).size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSummaryMatchesFullView() {
+        List<Booking> bookings = (List<Booking>) bookingRESTService.retrieveAllBookings(null, null, false, "full")
+            .getEntity();
+        List<BookingSummary> summaries = (List<BookingSummary>) bookingRESTService
+            .retrieveAllBookings(null, null, false, "summary").getEntity();
+
+        // Both views page in the order of the ids
+        assertEquals("Unexpected number of summaries", bookings.size(), summaries.size());
+        for (int i = 0; i < bookings.size(); i++) {
+            Booking each = bookings.get(i);
+            BookingSummary summary = summaries.get(i);
+            assertEquals("Unexpected id", each.getId(), summary.getId());
+            assertEquals("Unexpected type", BookingSummary.TYPE, summary.getType());
+            assertEquals("Unexpected date", each.getBookingDate().getTime(), summary.getDate().getTime());
+            assertEquals("Unexpected customer", each.getCustomer().getId(), summary.getCustomerId());
+            assertEquals("Unexpected customer name",
+                each.getCustomer().getFirstName() + " " + each.getCustomer().getLastName(), summary.getCustomerName());
+            assertEquals("Unexpected hotel", each.getHotel().getId(), summary.getHotelId());
+            assertEquals("Unexpected hotel name", each.getHotel().getHotelName(), summary.getHotelName());
+            assertEquals("Unexpected taxi", each.getTaxiid().getId(), summary.getTaxiId());
+            assertEquals("Unexpected taxi registration", each.getTaxiid().getRegistration(),
+                summary.getTaxiRegistration());
+            assertEquals("Unexpected flight", each.getFlightID().getId(), summary.getFlightId());
+            assertEquals("Unexpected flight number", each.getFlightID().getFlightNumber(), summary.getFlightNumber());
+        }
+    }
+
+    @Test
+    public void testUnknownViewIsBadRequest() {
+        int status;
+        try {
+            status = bookingRESTService.retrieveAllBookings(null, null, false, "brief").getStatus();
+        } catch (EJBException e) {
+            // Thrown from an EJB, the WebApplicationException reaches a local caller wrapped
+            status = ((WebApplicationException) e.getCause()).getResponse().getStatus();
+        }
+        assertEquals("Unexpected response status", 400, status);
+    }
+
+    private void startCounting() {
+        em.getEntityManagerFactory().getCache().evictAll();
+        SqlStatementCounter.reset();
+    }
+
+    private void assertReferencesLoaded(Booking found) {
+        PersistenceUnitUtil util = em.getEntityManagerFactory().getPersistenceUnitUtil();
+        assertTrue("The customer should be loaded", util.isLoaded(found.getCustomer()));
+        assertTrue("The hotel should be loaded", util.isLoaded(found.getHotel()));
+        assertTrue("The taxi should be loaded", util.isLoaded(found.getTaxiid()));
+        assertTrue("The flight should be loaded", util.isLoaded(found.getFlightID()));
+    }
+}
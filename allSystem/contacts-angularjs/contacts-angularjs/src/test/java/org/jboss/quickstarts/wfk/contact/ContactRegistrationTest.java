@@ -19,22 +19,67 @@ package org.jboss.quickstarts.wfk.contact;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
+import javax.ejb.EJBException;
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Response;
 import org.jboss.arquillian.container.test.api.Deployment;
 import org.jboss.arquillian.junit.Arquillian;
 import org.jboss.arquillian.junit.InSequence;
+import org.jboss.quickstarts.wfk.booking.Booking;
+import org.jboss.quickstarts.wfk.booking.BookingSerializer;
+import org.jboss.quickstarts.wfk.booking.BookingSummary;
+import org.jboss.quickstarts.wfk.bookingflight.BookingFlight;
+import org.jboss.quickstarts.wfk.bookingflight.BookingFlightSerializer;
+import org.jboss.quickstarts.wfk.bookingflight.BookingFlightSummary;
+import org.jboss.quickstarts.wfk.bookinghotel.BookingHotel;
+import org.jboss.quickstarts.wfk.bookinghotel.BookingHotelSerializer;
+import org.jboss.quickstarts.wfk.bookinghotel.BookingHotelSummary;
+import org.jboss.quickstarts.wfk.bookingtaxi.BookingTaxi;
+import org.jboss.quickstarts.wfk.bookingtaxi.BookingTaxiSerializer;
+import org.jboss.quickstarts.wfk.bookingtaxi.BookingTaxiSummary;
 import org.jboss.quickstarts.wfk.contact.Contact;
 import org.jboss.quickstarts.wfk.contact.ContactRepository;
 import org.jboss.quickstarts.wfk.contact.ContactRESTService;
+import org.jboss.quickstarts.wfk.contact.ContactSerializer;
 import org.jboss.quickstarts.wfk.contact.ContactService;
 import org.jboss.quickstarts.wfk.contact.ContactValidator;
+import org.jboss.quickstarts.wfk.contact.Hotel;
+import org.jboss.quickstarts.wfk.contact.HotelSerializer;
+import org.jboss.quickstarts.wfk.flight.Flight;
+import org.jboss.quickstarts.wfk.flight.FlightSerializer;
+import org.jboss.quickstarts.wfk.taxi.Taxi;
+import org.jboss.quickstarts.wfk.taxi.TaxiSerializer;
+import org.jboss.quickstarts.wfk.util.AvailabilityIndex;
+import org.jboss.quickstarts.wfk.util.BookingDateModule;
+import org.jboss.quickstarts.wfk.util.BulkBatch;
+import org.jboss.quickstarts.wfk.util.BulkMode;
+import org.jboss.quickstarts.wfk.util.BulkResult;
+import org.jboss.quickstarts.wfk.util.BulkWriter;
+import org.jboss.quickstarts.wfk.util.ConditionalRequests;
+import org.jboss.quickstarts.wfk.util.EndpointMetrics;
+import org.jboss.quickstarts.wfk.util.EntityJsonModule;
+import org.jboss.quickstarts.wfk.util.EntitySerializer;
+import org.jboss.quickstarts.wfk.util.EntityVersion;
+import org.jboss.quickstarts.wfk.util.JacksonConfig;
+import org.jboss.quickstarts.wfk.util.JsonExporter;
+import org.jboss.quickstarts.wfk.util.MetricsInterceptor;
+import org.jboss.quickstarts.wfk.util.Page;
+import org.jboss.quickstarts.wfk.util.PageCursor;
+import org.jboss.quickstarts.wfk.util.PooledIdGenerator;
 import org.jboss.quickstarts.wfk.util.Resources;
+import org.jboss.quickstarts.wfk.util.SqlStatementCounter;
+import org.jboss.quickstarts.wfk.util.Summary;
+import org.jboss.quickstarts.wfk.util.Versioned;
 import org.jboss.shrinkwrap.api.Archive;
 import org.jboss.shrinkwrap.api.ShrinkWrap;
 import org.jboss.shrinkwrap.api.asset.EmptyAsset;
@@ -79,7 +124,38 @@ public class ContactRegistrationTest {
                         ContactRepository.class, 
                         ContactValidator.class, 
                         ContactService.class, 
-                        Resources.class)
+                        ItineraryRepository.class,
+                        Resources.class,
+                        SqlStatementCounter.class,
+                        Page.class,
+                        PageCursor.class,
+                        JsonExporter.class,
+                        JacksonConfig.class,
+                        PooledIdGenerator.class,
+                        MetricsInterceptor.class,
+                        EndpointMetrics.class,
+                        BookingDateModule.class,
+                        BulkBatch.class,
+                        BulkBatch.Key.class,
+                        BulkMode.class,
+                        BulkResult.class,
+                        BulkWriter.class,
+                        Versioned.class,
+                        EntityVersion.class,
+                        ConditionalRequests.class,
+                        AvailabilityIndex.class,
+                        Summary.class,
+                        // JacksonConfig registers the serializers of all the entities
+                        EntityJsonModule.class,
+                        EntitySerializer.class,
+                        ContactSerializer.class,
+                        Hotel.class, HotelSerializer.class,
+                        Flight.class, FlightSerializer.class,
+                        Taxi.class, TaxiSerializer.class,
+                        Booking.class, BookingSerializer.class, BookingSummary.class,
+                        BookingFlight.class, BookingFlightSerializer.class, BookingFlightSummary.class,
+                        BookingHotel.class, BookingHotelSerializer.class, BookingHotelSummary.class,
+                        BookingTaxi.class, BookingTaxiSerializer.class, BookingTaxiSummary.class)
             .addAsLibraries(libs)
             .addAsResource("META-INF/test-persistence.xml", "META-INF/persistence.xml")
             .addAsWebInfResource("arquillian-ds.xml")
@@ -182,6 +258,68 @@ public class ContactRegistrationTest {
     }
     
 
+    @SuppressWarnings("unchecked")
+    @Test
+    @InSequence(7)
+    public void testBulkRegisterBestEffort() throws Exception {
+        List<Contact> contacts = Arrays.asList(
+            createContactInstance("Mary", "Doe", "mary@mailinator.com", "(012) 5557-1234"),
+            createContactInstance("", "", "", ""),
+            // Registered by testRegister()
+            createContactInstance("Jack", "Roe", "jack@mailinator.com", "(012) 5558-1234"));
+        Response response = contactRESTService.createContacts(contacts, "bestEffort");
+
+        assertEquals("Unexpected response status", 207, response.getStatus());
+        Map<String, Object> body = (Map<String, Object>) response.getEntity();
+        assertEquals("Unexpected number of created contacts", 1, body.get("created"));
+        List<BulkResult> items = (List<BulkResult>) body.get("items");
+        assertEquals("Unexpected status of the valid contact", 201, items.get(0).getStatus());
+        assertNotNull("The created contact should have an id", items.get(0).getId());
+        assertEquals("Unexpected status of the invalid contact", 400, items.get(1).getStatus());
+        assertEquals("Unexpected status of the duplicate contact", 409, items.get(2).getStatus());
+        log.info("Bulk register in best effort mode returned status " + response.getStatus());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    @InSequence(8)
+    public void testBulkRegisterAtomicDuplicateEmail() throws Exception {
+        List<Contact> contacts = Arrays.asList(
+            createContactInstance("Anna", "Doe", "anna@mailinator.com", "(012) 5559-1234"),
+            createContactInstance("Anne", "Doe", "anna@mailinator.com", "(012) 5560-1234"));
+        Response response = contactRESTService.createContacts(contacts, null);
+
+        assertEquals("Unexpected response status", 409, response.getStatus());
+        Map<String, Object> body = (Map<String, Object>) response.getEntity();
+        assertEquals("Nothing should be created", 0, body.get("created"));
+        List<BulkResult> items = (List<BulkResult>) body.get("items");
+        assertEquals("Unexpected status of the first contact", 424, items.get(0).getStatus());
+        assertEquals("Unexpected status of the duplicate contact", 409, items.get(1).getStatus());
+        log.info("Bulk register in atomic mode failed with return code " + response.getStatus());
+    }
+
+    @Test
+    @InSequence(9)
+    public void testBulkRegisterNothing() throws Exception {
+        int status;
+        try {
+            status = contactRESTService.createContacts(Collections.<Contact>emptyList(), "bestEffort").getStatus();
+        } catch (EJBException e) {
+            // Thrown from an EJB, the WebApplicationException reaches a local caller wrapped
+            status = ((WebApplicationException) e.getCause()).getResponse().getStatus();
+        }
+        assertEquals("Unexpected response status of an empty list", 400, status);
+
+        try {
+            status = contactRESTService.createContactsFromNdjson(
+                new ByteArrayInputStream("\n  \n".getBytes("UTF-8")), null).getStatus();
+        } catch (EJBException e) {
+            status = ((WebApplicationException) e.getCause()).getResponse().getStatus();
+        }
+        assertEquals("Unexpected response status of a blank body", 400, status);
+        log.info("Bulk register of no contacts failed with return code " + status);
+    }
+
     /**
      * <p>A utility method to construct a {@link org.jboss.quickstarts.wfk.contact.Contact Contact} object for use in
      * testing. This object is not persisted.</p>
@@ -0,0 +1,198 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.contact;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import javax.ejb.EJBException;
+import javax.inject.Inject;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.quickstarts.wfk.booking.Booking;
+import org.jboss.quickstarts.wfk.booking.BookingRESTService;
+import org.jboss.quickstarts.wfk.booking.BookingSummary;
+import org.jboss.quickstarts.wfk.bookingflight.BookingFlight;
+import org.jboss.quickstarts.wfk.bookingflight.BookingFlightRESTService;
+import org.jboss.quickstarts.wfk.bookingflight.BookingFlightSummary;
+import org.jboss.quickstarts.wfk.bookinghotel.BookingHotel;
+import org.jboss.quickstarts.wfk.bookinghotel.BookingHotelRESTService;
+import org.jboss.quickstarts.wfk.bookinghotel.BookingHotelSummary;
+import org.jboss.quickstarts.wfk.bookingtaxi.BookingTaxi;
+import org.jboss.quickstarts.wfk.bookingtaxi.BookingTaxiRESTService;
+import org.jboss.quickstarts.wfk.bookingtaxi.BookingTaxiSummary;
+import org.jboss.quickstarts.wfk.flight.Flight;
+import org.jboss.quickstarts.wfk.flight.FlightRESTService;
+import org.jboss.quickstarts.wfk.taxi.Taxi;
+import org.jboss.quickstarts.wfk.taxi.TaxiRESTService;
+import org.jboss.quickstarts.wfk.util.PageCursor;
+import org.jboss.quickstarts.wfk.util.Summary;
+import org.jboss.quickstarts.wfk.util.WholeApplication;
+import org.jboss.shrinkwrap.api.Archive;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * <p>Tests, run with {@link org.jboss.arquillian Arquillian}, that the itinerary of a contact lists its bookings of
+ * every kind in one timeline, sorted by date, then by type and id, and that paging through it neither skips nor
+ * repeats a booking.</p>
+ */
+@RunWith(Arquillian.class)
+public class ItineraryTest {
+
+    @Deployment
+    public static Archive<?> createTestArchive() {
+        return WholeApplication.deployment("itinerary-test.war");
+    }
+
+    @Inject
+    ContactRESTService contactRESTService;
+
+    @Inject
+    HotelRESTService hotelRESTService;
+
+    @Inject
+    TaxiRESTService taxiRESTService;
+
+    @Inject
+    FlightRESTService flightRESTService;
+
+    @Inject
+    BookingRESTService bookingRESTService;
+
+    @Inject
+    BookingFlightRESTService bookingFlightRESTService;
+
+    @Inject
+    BookingHotelRESTService bookingHotelRESTService;
+
+    @Inject
+    BookingTaxiRESTService bookingTaxiRESTService;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testItineraryIsOneTimeline() throws Exception {
+        Contact customer = new Contact();
+        customer.setFirstName("Itinerary");
+        customer.setLastName("Traveller");
+        customer.setEmail("itinerary.traveller@mailinator.com");
+        customer.setPhoneNumber("(012) 5555-2468");
+        assertEquals("Unexpected status of the customer", 201, contactRESTService.createContact(customer).getStatus());
+
+        Hotel hotel = new Hotel();
+        hotel.setHotelName("Timeline");
+        hotel.setPhoneNumber("(012) 5555-1357");
+        hotel.setPostcode("NE18ST");
+        assertEquals("Unexpected status of the hotel", 201, hotelRESTService.createHotel(hotel).getStatus());
+
+        Taxi taxi = new Taxi();
+        taxi.setRegistration("ITIN001");
+        taxi.setSeat("4");
+        assertEquals("Unexpected status of the taxi", 201, taxiRESTService.createTaxi(taxi).getStatus());
+
+        Flight flight = new Flight();
+        flight.setFlightNumber("IT001");
+        flight.setFlightDeparture("NCL");
+        flight.setFlightDestination("AMS");
+        assertEquals("Unexpected status of the flight", 201, flightRESTService.createFlight(flight).getStatus());
+
+        // Booked out of order: the flight on day 3, a taxi on days 2 and 1, the hotel on day 1 and the package on day 2
+        BookingFlight bookingFlight = new BookingFlight();
+        bookingFlight.setCustomerID(customer);
+        bookingFlight.setFlightID(flight);
+        bookingFlight.setBookingFlightDate(WholeApplication.daysFromNow(3));
+        assertEquals(201, bookingFlightRESTService.createBookingFlight(bookingFlight).getStatus());
+
+        BookingTaxi secondTaxi = bookTaxi(customer, taxi, WholeApplication.daysFromNow(2));
+        BookingTaxi firstTaxi = bookTaxi(customer, taxi, WholeApplication.daysFromNow(1));
+
+        BookingHotel bookingHotel = new BookingHotel();
+        bookingHotel.setCustomer(customer);
+        bookingHotel.setHotel(hotel);
+        bookingHotel.setBookingHotelDate(WholeApplication.daysFromNow(1));
+        assertEquals(201, bookingHotelRESTService.createBookingHotel(bookingHotel).getStatus());
+
+        Booking booking = new Booking();
+        booking.setCustomer(customer);
+        booking.setHotel(hotel);
+        booking.setBookingDate(WholeApplication.daysFromNow(2));
+        assertEquals(201, bookingRESTService.createBooking(booking).getStatus());
+
+        // A customer may have any number of taxi bookings
+        Response taxis = bookingTaxiRESTService.retrieveBookingTaxiByCustomerId(customer.getId());
+        assertEquals("Unexpected number of taxi bookings", 2, ((List<BookingTaxi>) taxis.getEntity()).size());
+
+        // Two entries a page, so that a page ends between two bookings of the same day
+        List<String> timeline = new ArrayList<String>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            Response response = contactRESTService.retrieveItinerary(customer.getId(), cursor, 2);
+            assertEquals("Unexpected response status", 200, response.getStatus());
+            for (Summary summary : (List<Summary>) response.getEntity()) {
+                assertEquals("Unexpected customer", customer.getId(), summary.getCustomerId());
+                timeline.add(summary.getType() + "/" + summary.getId());
+            }
+            cursor = (String) response.getMetadata().getFirst(PageCursor.NEXT_CURSOR_HEADER);
+            pages++;
+        } while (cursor != null);
+
+        assertEquals("Unexpected itinerary", Arrays.asList(
+            BookingHotelSummary.TYPE + "/" + bookingHotel.getId(),
+            BookingTaxiSummary.TYPE + "/" + firstTaxi.getId(),
+            BookingSummary.TYPE + "/" + booking.getId(),
+            BookingTaxiSummary.TYPE + "/" + secondTaxi.getId(),
+            BookingFlightSummary.TYPE + "/" + bookingFlight.getId()), timeline);
+        assertEquals("Unexpected number of pages", 3, pages);
+    }
+
+    @Test
+    public void testMalformedCursorIsBadRequest() throws Exception {
+        // The cursor is checked before the customer is looked up, so any id will do
+        assertEquals("Day is not a number", 400, statusOf(PageCursor.encode("x", BookingTaxiSummary.TYPE, 1L)));
+        assertEquals("Day is out of range", 400,
+            statusOf(PageCursor.encode("99999999999999999999", BookingTaxiSummary.TYPE, 1L)));
+        assertEquals("Id is not a number", 400, statusOf(PageCursor.encode(0L, BookingTaxiSummary.TYPE, "x")));
+        assertEquals("Missing value", 400, statusOf(PageCursor.encode(0L, 1L)));
+        assertEquals("Not hexadecimal", 400, statusOf("zz"));
+    }
+
+    private int statusOf(String cursor) {
+        try {
+            return contactRESTService.retrieveItinerary(0L, cursor, 2).getStatus();
+        } catch (EJBException e) {
+            // Thrown from an EJB, the WebApplicationException reaches a local caller wrapped
+            return ((WebApplicationException) e.getCause()).getResponse().getStatus();
+        } catch (WebApplicationException e) {
+            return e.getResponse().getStatus();
+        }
+    }
+
+    private BookingTaxi bookTaxi(Contact customer, Taxi taxi, Date day) {
+        BookingTaxi bookingTaxi = new BookingTaxi();
+        bookingTaxi.setCustomer(customer);
+        bookingTaxi.setTaxiid(taxi);
+        bookingTaxi.setTaxidate(day);
+        assertEquals(201, bookingTaxiRESTService.createBookingTaxi(bookingTaxi).getStatus());
+        return bookingTaxi;
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * <p>Tests the lookups of {@link AvailabilityIndex}, and that its changes wait for their transaction to commit, on a
+ * calendar of its own with a stand-in for the transaction manager.</p>
+ *
+ * <p>These are plain unit tests, no container is needed.</p>
+ */
+public class AvailabilityIndexTest {
+
+    private static final Long TAXI = 10L;
+    private static final Long OTHER_TAXI = 11L;
+
+    /** 2026-06-01 */
+    private static final long DAY = 20605;
+
+    private AvailabilityIndex calendar;
+
+    private Transaction transaction;
+
+    @Before
+    public void createCalendar() {
+        calendar = new AvailabilityIndex();
+        transaction = new Transaction();
+        AvailabilityIndex.registry = transaction;
+    }
+
+    @After
+    public void resetRegistry() {
+        AvailabilityIndex.registry = null;
+    }
+
+    @Test
+    public void testIsTaken() {
+        calendar.load(rows(row(1L, TAXI, DAY), row(2L, TAXI, DAY + 2), row(3L, OTHER_TAXI, DAY + 1)));
+
+        assertTrue(calendar.isReady());
+        assertTrue(calendar.isTaken(TAXI, AvailabilityIndex.date(DAY), null));
+        assertFalse("Taken by another taxi", calendar.isTaken(TAXI, AvailabilityIndex.date(DAY + 1), null));
+        assertTrue(calendar.isTaken(TAXI, AvailabilityIndex.date(DAY + 2), null));
+        assertFalse(calendar.isTaken(TAXI, AvailabilityIndex.date(DAY - 1), null));
+        assertFalse("Nobody else has the day of the booking being updated",
+            calendar.isTaken(TAXI, AvailabilityIndex.date(DAY), 1L));
+        assertTrue(calendar.isTaken(TAXI, AvailabilityIndex.date(DAY), 2L));
+        assertFalse(calendar.isTaken(12L, AvailabilityIndex.date(DAY), null));
+    }
+
+    @Test
+    public void testFreeDays() {
+        calendar.load(rows(row(1L, TAXI, DAY), row(2L, TAXI, DAY + 2)));
+        AvailabilityIndex other = new AvailabilityIndex();
+        other.load(rows(row(3L, TAXI, DAY + 3), row(4L, TAXI, DAY + 100)));
+
+        assertEquals(dates(DAY + 1, DAY + 3, DAY + 4), AvailabilityIndex.freeDays(TAXI, DAY, DAY + 4, calendar));
+        assertEquals(dates(DAY + 1, DAY + 4), AvailabilityIndex.freeDays(TAXI, DAY, DAY + 4, calendar, other));
+        assertEquals("Days before the first booked one are free", dates(DAY - 2, DAY - 1),
+            AvailabilityIndex.freeDays(TAXI, DAY - 2, DAY, calendar));
+        assertEquals(dates(DAY, DAY + 1), AvailabilityIndex.freeDays(OTHER_TAXI, DAY, DAY + 1, calendar));
+    }
+
+    @Test
+    public void testClaimAndReleaseAfterCommit() {
+        calendar.load(rows());
+
+        calendar.claimAfterCommit(1L, TAXI, AvailabilityIndex.date(DAY));
+        assertFalse("Claimed before the commit", calendar.isTaken(TAXI, AvailabilityIndex.date(DAY), null));
+        transaction.complete(Status.STATUS_COMMITTED);
+        assertTrue(calendar.isTaken(TAXI, AvailabilityIndex.date(DAY), null));
+
+        // Moving the booking to another day frees the one it had
+        calendar.claimAfterCommit(1L, TAXI, AvailabilityIndex.date(DAY + 1));
+        transaction.complete(Status.STATUS_COMMITTED);
+        assertFalse(calendar.isTaken(TAXI, AvailabilityIndex.date(DAY), null));
+        assertTrue(calendar.isTaken(TAXI, AvailabilityIndex.date(DAY + 1), null));
+
+        calendar.releaseAfterCommit(1L);
+        assertTrue("Released before the commit", calendar.isTaken(TAXI, AvailabilityIndex.date(DAY + 1), null));
+        transaction.complete(Status.STATUS_COMMITTED);
+        assertFalse(calendar.isTaken(TAXI, AvailabilityIndex.date(DAY + 1), null));
+    }
+
+    @Test
+    public void testRollbackDoesNotClaim() {
+        calendar.load(rows(row(1L, TAXI, DAY)));
+
+        calendar.claimAfterCommit(2L, TAXI, AvailabilityIndex.date(DAY + 1));
+        transaction.complete(Status.STATUS_ROLLEDBACK);
+        assertFalse(calendar.isTaken(TAXI, AvailabilityIndex.date(DAY + 1), null));
+
+        calendar.releaseAfterCommit(1L);
+        transaction.complete(Status.STATUS_ROLLEDBACK);
+        assertTrue(calendar.isTaken(TAXI, AvailabilityIndex.date(DAY), null));
+    }
+
+    @Test
+    public void testChangesOutsideOfATransactionApplyAtOnce() {
+        AvailabilityIndex.registry = new Transaction() {
+            @Override
+            public Object getTransactionKey() {
+                return null;
+            }
+        };
+        calendar.load(rows());
+
+        calendar.claimAfterCommit(1L, TAXI, AvailabilityIndex.date(DAY));
+        assertTrue(calendar.isTaken(TAXI, AvailabilityIndex.date(DAY), null));
+        calendar.releaseAfterCommit(1L);
+        assertFalse(calendar.isTaken(TAXI, AvailabilityIndex.date(DAY), null));
+    }
+
+    @Test
+    public void testLoadKeepsTheDaysClaimedMeanwhile() {
+        // Booking 1 moved to another day after the rows were read
+        calendar.claimAfterCommit(1L, TAXI, AvailabilityIndex.date(DAY + 5));
+        transaction.complete(Status.STATUS_COMMITTED);
+        assertFalse(calendar.isReady());
+
+        assertEquals(1, calendar.load(rows(row(1L, TAXI, DAY), row(2L, TAXI, DAY + 1))));
+
+        assertFalse(calendar.isTaken(TAXI, AvailabilityIndex.date(DAY), null));
+        assertTrue(calendar.isTaken(TAXI, AvailabilityIndex.date(DAY + 1), null));
+        assertTrue(calendar.isTaken(TAXI, AvailabilityIndex.date(DAY + 5), null));
+    }
+
+    @Test
+    public void testLoadLeavesOutTheBookingsReleasedMeanwhile() {
+        // Booking 1 was deleted after the rows were read
+        calendar.releaseAfterCommit(1L);
+        transaction.complete(Status.STATUS_COMMITTED);
+
+        assertEquals(1, calendar.load(rows(row(1L, TAXI, DAY), row(2L, TAXI, DAY + 1))));
+
+        assertFalse(calendar.isTaken(TAXI, AvailabilityIndex.date(DAY), null));
+        assertTrue(calendar.isTaken(TAXI, AvailabilityIndex.date(DAY + 1), null));
+
+        // Once loaded the calendar forgets them; a later claim of the same id is a change like any other
+        calendar.claimAfterCommit(1L, TAXI, AvailabilityIndex.date(DAY + 2));
+        transaction.complete(Status.STATUS_COMMITTED);
+        assertTrue(calendar.isTaken(TAXI, AvailabilityIndex.date(DAY + 2), null));
+    }
+
+    private static Object[] row(Long bookingId, Long resource, long day) {
+        return new Object[] {bookingId, resource, AvailabilityIndex.date(day)};
+    }
+
+    private static List<Object[]> rows(Object[]... rows) {
+        return Arrays.asList(rows);
+    }
+
+    private static List<Date> dates(long... days) {
+        List<Date> dates = new ArrayList<Date>();
+        for (long day : days) {
+            dates.add(AvailabilityIndex.date(day));
+        }
+        return dates;
+    }
+
+    /**
+     * <p>Stands in for the transaction of the current thread: holds the changes registered with it until
+     * {@link #complete(int)}.</p>
+     */
+    private static class Transaction implements TransactionSynchronizationRegistry {
+
+        private final List<Synchronization> synchronizations = new ArrayList<Synchronization>();
+
+        void complete(int status) {
+            List<Synchronization> registered = new ArrayList<Synchronization>(synchronizations);
+            synchronizations.clear();
+            for (Synchronization synchronization : registered) {
+                synchronization.beforeCompletion();
+                synchronization.afterCompletion(status);
+            }
+        }
+
+        @Override
+        public Object getTransactionKey() {
+            return this;
+        }
+
+        @Override
+        public void registerInterposedSynchronization(Synchronization synchronization) {
+            synchronizations.add(synchronization);
+        }
+
+        @Override
+        public int getTransactionStatus() {
+            return Status.STATUS_ACTIVE;
+        }
+
+        @Override
+        public void putResource(Object key, Object value) {
+        }
+
+        @Override
+        public Object getResource(Object key) {
+            return null;
+        }
+
+        @Override
+        public void setRollbackOnly() {
+        }
+
+        @Override
+        public boolean getRollbackOnly() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+/**
+ * <p>Tests the day arithmetic of {@link BookingDateModule} against SimpleDateFormat, which it replaced, in time zones
+ * with and without daylight saving time: Asia/Beirut and Asia/Tehran (whose clocks skipped midnight when DST started),
+ * Europe/London, Australia/Sydney and UTC.</p>
+ */
+public class BookingDateModuleTest {
+
+    private static final String[] ZONES = {"Asia/Beirut", "Asia/Tehran", "Europe/London", "Australia/Sydney", "UTC"};
+
+    /** 2000-01-01 */
+    private static final long FIRST_DAY = 10957;
+
+    /** 2040-01-01 */
+    private static final long LAST_DAY = 25567;
+
+    @Test
+    public void testFormatAndParseMatchSimpleDateFormat() throws Exception {
+        SimpleDateFormat format = format(TimeZone.getTimeZone("UTC"));
+        char[] text = new char[10];
+        for (long day = FIRST_DAY; day < LAST_DAY; day++) {
+            BookingDateModule.format(day, text);
+            String expected = format.format(new Date(day * 24 * 60 * 60 * 1000));
+            assertEquals("Unexpected text of day " + day, expected, new String(text));
+            assertEquals("Unexpected day of " + expected, day, BookingDateModule.parse(text, 0, text.length));
+        }
+    }
+
+    @Test
+    public void testStartOfDayIsTheFirstInstantOfTheDay() throws Exception {
+        char[] text = new char[10];
+        for (String id : ZONES) {
+            TimeZone zone = TimeZone.getTimeZone(id);
+            SimpleDateFormat format = format(zone);
+            for (long day = FIRST_DAY; day < LAST_DAY; day++) {
+                BookingDateModule.format(day, text);
+                String expected = new String(text);
+                long start = BookingDateModule.startOfDay(day, zone);
+                assertEquals("Start of " + expected + " in " + id + " is on another day",
+                    expected, format.format(new Date(start)));
+                assertFalse("Start of " + expected + " in " + id + " is not the first instant of the day",
+                    expected.equals(format.format(new Date(start - 1))));
+            }
+        }
+    }
+
+    @Test
+    public void testStartOfDayWhereTheClocksSkipMidnight() throws Exception {
+        // DST starts at midnight in Beirut: 2026-03-29 begins at 01:00, the instant the clocks jump
+        TimeZone beirut = TimeZone.getTimeZone("Asia/Beirut");
+        long start = BookingDateModule.startOfDay(parse("2026-03-29"), beirut);
+        assertEquals("2026-03-29", format(beirut).format(new Date(start)));
+        assertEquals(beirut.getOffset(start - 1) + 60 * 60 * 1000, beirut.getOffset(start));
+    }
+
+    @Test
+    public void testStartOfDayMatchesSimpleDateFormat() throws Exception {
+        char[] text = new char[10];
+        for (String id : ZONES) {
+            TimeZone zone = TimeZone.getTimeZone(id);
+            SimpleDateFormat format = format(zone);
+            // Around the DST changes of both hemispheres, where midnight happens once (or is skipped)
+            for (String day : new String[] {"2015-03-29", "2015-06-30", "2015-10-04", "2015-10-25", "2016-02-29"}) {
+                long epochDay = parse(day);
+                BookingDateModule.format(epochDay, text);
+                assertEquals(day, new String(text));
+                assertEquals("Unexpected start of " + day + " in " + id,
+                    format.parse(day).getTime(), BookingDateModule.startOfDay(epochDay, zone));
+            }
+        }
+    }
+
+    private static long parse(String day) {
+        return BookingDateModule.parse(day.toCharArray(), 0, day.length());
+    }
+
+    private static SimpleDateFormat format(TimeZone zone) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+        format.setTimeZone(zone);
+        return format;
+    }
+}
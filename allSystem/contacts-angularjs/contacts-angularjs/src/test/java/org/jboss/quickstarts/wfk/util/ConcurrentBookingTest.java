@@ -0,0 +1,183 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.ws.rs.core.Response;
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.quickstarts.wfk.bookingflight.BookingFlight;
+import org.jboss.quickstarts.wfk.bookingflight.BookingFlightRESTService;
+import org.jboss.quickstarts.wfk.bookingtaxi.BookingTaxi;
+import org.jboss.quickstarts.wfk.bookingtaxi.BookingTaxiRESTService;
+import org.jboss.quickstarts.wfk.contact.Contact;
+import org.jboss.quickstarts.wfk.contact.ContactRESTService;
+import org.jboss.quickstarts.wfk.flight.Flight;
+import org.jboss.quickstarts.wfk.flight.FlightRESTService;
+import org.jboss.quickstarts.wfk.taxi.Taxi;
+import org.jboss.quickstarts.wfk.taxi.TaxiRESTService;
+import org.jboss.shrinkwrap.api.Archive;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * <p>Tests, run with {@link org.jboss.arquillian Arquillian}, that the same taxi or flight cannot be booked twice for the
+ * same day however many requests try at once: they all pass validation, and only the unique constraint behind
+ * {@link Claims} decides.</p>
+ *
+ * @see Claims
+ */
+@RunWith(Arquillian.class)
+public class ConcurrentBookingTest {
+
+    /** The bookings fired at the same slot. */
+    private static final int BOOKINGS = 200;
+
+    /** The requests in flight at once. */
+    private static final int THREADS = 50;
+
+    @Deployment
+    public static Archive<?> createTestArchive() {
+        return WholeApplication.deployment("concurrency-test.war");
+    }
+
+    @Inject
+    ContactRESTService contactRESTService;
+
+    @Inject
+    TaxiRESTService taxiRESTService;
+
+    @Inject
+    FlightRESTService flightRESTService;
+
+    @Inject
+    BookingTaxiRESTService bookingTaxiRESTService;
+
+    @Inject
+    BookingFlightRESTService bookingFlightRESTService;
+
+    @Inject
+    @Named("logger") Logger log;
+
+    @Test
+    public void testConcurrentTaxiBookings() throws Exception {
+        final Contact customer = createCustomer("taxi.racer@mailinator.com");
+        final Taxi taxi = new Taxi();
+        taxi.setRegistration("RACE001");
+        taxi.setSeat("4");
+        assertEquals("Unexpected status of the taxi", 201, taxiRESTService.createTaxi(taxi).getStatus());
+        final Date day = WholeApplication.daysFromNow(1);
+
+        List<Integer> statuses = race(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                BookingTaxi bookingTaxi = new BookingTaxi();
+                bookingTaxi.setCustomer(customer);
+                bookingTaxi.setTaxiid(taxi);
+                bookingTaxi.setTaxidate(day);
+                return bookingTaxiRESTService.createBookingTaxi(bookingTaxi).getStatus();
+            }
+        });
+
+        assertEquals("Exactly one booking should get the taxi", 1, Collections.frequency(statuses, 201));
+        assertEquals("All the other bookings should conflict", BOOKINGS - 1, Collections.frequency(statuses, 409));
+        log.info("Concurrent taxi bookings: " + BOOKINGS + " tried, 1 created");
+    }
+
+    @Test
+    public void testConcurrentFlightBookings() throws Exception {
+        final Contact customer = createCustomer("flight.racer@mailinator.com");
+        final Flight flight = new Flight();
+        flight.setFlightNumber("RC001");
+        flight.setFlightDeparture("NCL");
+        flight.setFlightDestination("AMS");
+        assertEquals("Unexpected status of the flight", 201, flightRESTService.createFlight(flight).getStatus());
+        final Date day = WholeApplication.daysFromNow(1);
+
+        List<Integer> statuses = race(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                BookingFlight bookingFlight = new BookingFlight();
+                bookingFlight.setCustomerID(customer);
+                bookingFlight.setFlightID(flight);
+                bookingFlight.setBookingFlightDate(day);
+                return bookingFlightRESTService.createBookingFlight(bookingFlight).getStatus();
+            }
+        });
+
+        assertEquals("Exactly one booking should get the flight", 1, Collections.frequency(statuses, 201));
+        assertEquals("All the other bookings should conflict", BOOKINGS - 1, Collections.frequency(statuses, 409));
+        log.info("Concurrent flight bookings: " + BOOKINGS + " tried, 1 created");
+    }
+
+    /**
+     * <p>Runs the booking {@link #BOOKINGS} times, {@link #THREADS} at a time, all released together.</p>
+     *
+     * @param booking Makes one booking and returns the status of the response
+     * @return The statuses of all the bookings
+     */
+    private List<Integer> race(final Callable<Integer> booking) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        final CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+            for (int i = 0; i < BOOKINGS; i++) {
+                futures.add(pool.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        start.await();
+                        return booking.call();
+                    }
+                }));
+            }
+            start.countDown();
+
+            List<Integer> statuses = new ArrayList<Integer>();
+            for (Future<Integer> future : futures) {
+                statuses.add(future.get(2, TimeUnit.MINUTES));
+            }
+            return statuses;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private Contact createCustomer(String email) {
+        Contact contact = new Contact();
+        contact.setFirstName("Race");
+        contact.setLastName("Condition");
+        contact.setEmail(email);
+        contact.setPhoneNumber("(012) 5555-4321");
+        Response response = contactRESTService.createContact(contact);
+        assertEquals("Unexpected status of the customer", 201, response.getStatus());
+        return contact;
+    }
+}
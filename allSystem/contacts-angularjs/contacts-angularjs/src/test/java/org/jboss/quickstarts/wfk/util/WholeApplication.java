@@ -0,0 +1,73 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.io.File;
+import java.util.Calendar;
+import java.util.Date;
+
+import org.jboss.quickstarts.wfk.contact.ContactRegistrationTest;
+import org.jboss.shrinkwrap.api.Filters;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+import org.jboss.shrinkwrap.resolver.api.maven.Maven;
+
+/**
+ * <p>What the Arquillian tests that deploy the whole application share: the deployment itself, and the booking days.
+ * A booking goes through the contact, hotel, taxi and flight code as well, so these tests deploy every package but
+ * {@link ContactRegistrationTest}, which has its own micro deployment.</p>
+ */
+public final class WholeApplication {
+
+    private WholeApplication() {
+    }
+
+    /**
+     * @param name The name of the war, e.g. "itinerary-test.war"
+     * @return The test war of the whole application, to be deployed and executed
+     */
+    public static WebArchive deployment(String name) {
+        //HttpComponents and org.JSON are required by the Services
+        File[] libs = Maven.resolver().loadPomFromFile("pom.xml").resolve(
+                "org.apache.httpcomponents:httpclient:4.3.2",
+                "org.json:json:20140107"
+        ).withTransitivity().asFile();
+
+        return ShrinkWrap
+            .create(WebArchive.class, name)
+            .addPackages(true, Filters.exclude(ContactRegistrationTest.class), "org.jboss.quickstarts.wfk")
+            .addAsLibraries(libs)
+            .addAsResource("META-INF/test-persistence.xml", "META-INF/persistence.xml")
+            .addAsWebInfResource("arquillian-ds.xml")
+            .addAsWebInfResource(EmptyAsset.INSTANCE, "beans.xml");
+    }
+
+    /**
+     * @param days The number of days from today
+     * @return The midnight that day starts at, as a booking date
+     */
+    public static Date daysFromNow(int days) {
+        Calendar day = Calendar.getInstance();
+        day.add(Calendar.DAY_OF_MONTH, days);
+        day.set(Calendar.HOUR_OF_DAY, 0);
+        day.set(Calendar.MINUTE, 0);
+        day.set(Calendar.SECOND, 0);
+        day.set(Calendar.MILLISECOND, 0);
+        return day.getTime();
+    }
+}
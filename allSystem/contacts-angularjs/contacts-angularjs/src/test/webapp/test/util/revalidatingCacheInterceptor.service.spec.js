@@ -0,0 +1,82 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+(function() {
+    'use strict';
+    //Unit tests that cover the basic functionality of revalidatingCacheInterceptor.service.js
+    //Initialise Angular.js dependency injection and perform other setup
+    var injector = angular.injector(['ng', 'app.util', 'app.specs']);
+    var interceptor = injector.get('revalidatingCacheInterceptor');
+    var cache = injector.get('$cacheFactory').get('revalidatingCache');
+
+    //Create test data
+    var url = 'rest/contacts/10001';
+    var testContact = {id: 10001, firstName: 'John', lastName: 'Smith'};
+    var testHeaders = {'ETag': '"3"', 'Last-Modified': 'Sat, 17 Oct 2026 10:00:00 GMT'};
+
+    function config(method) {
+        return {method: method, url: url, headers: {}};
+    }
+
+    function headers(values) {
+        return function(name) {
+            return values[name] || null;
+        };
+    }
+
+    //Perform per-test setup
+    var init = {
+        setup: function() {
+            cache.removeAll();
+            interceptor.response({config: config('GET'), status: 200, data: testContact, headers: headers(testHeaders)});
+        },
+        teardown: function() {
+            cache.removeAll();
+        }
+    };
+
+    //revalidatingCacheInterceptor.service.js tests module
+    QUnit.module('revalidatingCacheInterceptor Service spec', init);
+
+    QUnit.test('Sends the validators of a stored resource', function(assert) {
+        var request = interceptor.request(config('GET'));
+        assert.equal(request.headers['If-None-Match'], testHeaders['ETag']);
+        assert.equal(request.headers['If-Modified-Since'], testHeaders['Last-Modified']);
+    });
+
+    QUnit.test('Answers a 304 with a copy of the stored resource', function(assert) {
+        var response = interceptor.responseError({config: config('GET'), status: 304, headers: headers({})});
+        assert.equal(response.status, 200);
+        assert.deepEqual(response.data, testContact);
+        assert.notStrictEqual(response.data, testContact);
+    });
+
+    QUnit.test('Forgets a resource that is updated', function(assert) {
+        interceptor.request(config('PUT'));
+        var request = interceptor.request(config('GET'));
+        assert.equal(request.headers['If-None-Match'], undefined);
+        assert.equal(request.headers['Cache-Control'], 'no-cache');
+    });
+
+    QUnit.test('Does not store responses without validators', function(assert) {
+        var list = {method: 'GET', url: 'rest/contacts', headers: {}};
+        interceptor.response({config: list, status: 200, data: [testContact], headers: headers({})});
+        var request = interceptor.request(list);
+        assert.equal(request.headers['If-None-Match'], undefined);
+        assert.equal(request.headers['If-Modified-Since'], undefined);
+    });
+
+})();
@@ -17,15 +17,7 @@
 package org.jboss.quickstarts.wfk.contact;
 
 
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.client.utils.HttpClientUtils;
-import org.apache.http.client.utils.URIBuilder;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.util.EntityUtils;
-import org.json.JSONArray;
-import org.json.JSONObject;
+import org.jboss.quickstarts.wfk.util.AreaCodeLookup;
 
 import javax.enterprise.context.Dependent;
 import javax.inject.Inject;
@@ -33,8 +25,8 @@ import javax.inject.Named;
 import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
 
-import java.net.URI;
 import java.util.List;
+import java.util.concurrent.Future;
 
 import java.util.logging.Logger;
 
@@ -66,7 +58,7 @@ public class ContactService {
     private ContactRepository crud;
 
     @Inject
-    private @Named("httpClient") CloseableHttpClient httpClient;
+    private AreaCodeLookup areaCodes;
     
     /**
      * <p>Returns a List of all persisted {@link Contact} objects, sorted alphabetically by last name.<p/>
@@ -135,25 +127,15 @@ public class ContactService {
     Contact create(Contact contact) throws ConstraintViolationException, ValidationException, Exception {
         log.info("ContactService.create() - Creating " + contact.getFirstName() + " " + contact.getLastName());
         
+        // Look up the state of the contact's area code in the background while the contact is validated; most of
+        // them are answered from the cache, and the allareacodes.com API is only called if wfk.areacode.enabled.
+        Future<String> state = areaCodes.stateOfAsync(contact.getPhoneNumber());
+
         // Check to make sure the data fits with the parameters in the Contact model and passes validation.
         validator.validateContact(contact);
 
-        //Perform a rest call to get the state of the contact from the allareacodes.com API
-       /* URI uri = new URIBuilder()
-                .setScheme("http")
-                .setHost("www.allareacodes.com")
-                .setPath("/api/1.0/api.json")
-                .setParameter("npa", contact.getPhoneNumber().substring(1,4))
-                .setParameter("tracking_email", "h.firth@ncl.ac.uk")
-                .setParameter("tracking_url", "http://www.ncl.ac.uk/undergraduate/modules/module/CSC8104")
-                .build();
-        HttpGet req = new HttpGet(uri);
-        CloseableHttpResponse response = httpClient.execute(req);
-        String responseBody = EntityUtils.toString(response.getEntity());
-        JSONObject responseJson = new JSONObject(responseBody);
-        JSONArray areaCodes = responseJson.getJSONArray("area_codes");
-        contact.setState(areaCodes.getJSONObject(0).getString("state"));
-        HttpClientUtils.closeQuietly(response);*/
+        // If the API can't be reached in time the state is left unset.
+        contact.setState(areaCodes.await(state));
 
 
         // Write the contact to the database.
@@ -172,26 +154,15 @@ public class ContactService {
     Contact update(Contact contact) throws ConstraintViolationException, ValidationException, Exception {
         log.info("ContactService.update() - Updating " + contact.getFirstName() + " " + contact.getLastName());
         
+        // Look up the state of the contact's area code in the background while the contact is validated; most of
+        // them are answered from the cache, and the allareacodes.com API is only called if wfk.areacode.enabled.
+        Future<String> state = areaCodes.stateOfAsync(contact.getPhoneNumber());
+
         // Check to make sure the data fits with the parameters in the Contact model and passes validation.
         validator.validateContact(contact);
 
-        //Perform a rest call to get the state of the contact from the allareacodes.com API
-       /* URI uri = new URIBuilder()
-                .setScheme("http")
-                .setHost("www.allareacodes.com")
-                .setPath("/api/1.0/api.json")
-                .setParameter("npa", contact.getPhoneNumber().substring(1,4))
-                .setParameter("tracking_email", "h.firth@ncl.ac.uk")
-                .setParameter("tracking_url", "http://www.ncl.ac.uk/undergraduate/modules/module/CSC8104")
-                .build();
-        HttpGet req = new HttpGet(uri);
-        CloseableHttpResponse response = httpClient.execute(req);
-        String responseBody = EntityUtils.toString(response.getEntity());
-        JSONObject responseJson = new JSONObject(responseBody);
-        JSONArray areaCodes = responseJson.getJSONArray("area_codes");
-        contact.setState(areaCodes.getJSONObject(0).getString("state"));
-        HttpClientUtils.closeQuietly(response);
-        contact.setState("unknown");*/
+        // If the API can't be reached in time the state is left unset.
+        contact.setState(areaCodes.await(state));
         // Either update the contact or add it if it can't be found.
         return crud.update(contact);
     }
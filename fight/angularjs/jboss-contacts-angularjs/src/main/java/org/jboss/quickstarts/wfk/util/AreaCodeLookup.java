@@ -0,0 +1,416 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.HttpClientUtils;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * <p>Looks up the state of a phone number's area code (NPA) with the allareacodes.com API, and caches the answer.</p>
+ *
+ * <p>There are less than a thousand area codes, so nearly every lookup has been made before. Answers are kept for
+ * {@link #TTL_SECONDS} in an LRU cache of at most {@link #MAX_SIZE} entries, and the cache can be filled at start up
+ * from the bundled npa-states.properties table, so that most writes never leave the JVM.</p>
+ *
+ * <p>A lookup that fails (the API is down, answers garbage...) is not cached and gives null, leaving the state unset
+ * rather than failing the write. An area code the API does not know is cached as unknown like any other answer.</p>
+ *
+ * <p>Calls to the API go through a {@link CircuitBreaker}: after a few failures in a row lookups give null at once for
+ * a while, instead of each one waiting for the timeouts of {@link HttpClientPool}. {@link #stateOfAsync(String)} runs
+ * the lookup on the background pool of HttpClientPool, so that it can overlap with the validation of the write, and
+ * {@link #await(Future)} collects its answer, giving up after {@link #WAIT_MILLIS}.</p>
+ *
+ * <p>The API is only called once it is enabled with -Dwfk.areacode.enabled=true. Until then lookups are answered
+ * from the preloaded table alone, an area code missing from it has no state, and a write never leaves the JVM.</p>
+ *
+ * <p>It is configured with system properties:</p>
+ * <ul>
+ * <li>wfk.areacode.enabled - whether area codes missing from the cache are asked to the API (default false)</li>
+ * <li>wfk.areacode.url - the API endpoint (default http://www.allareacodes.com/api/1.0/api.json)</li>
+ * <li>wfk.areacode.ttlSeconds - how long an answer is kept (default one day)</li>
+ * <li>wfk.areacode.maxSize - how many area codes are kept at most (default 1000)</li>
+ * <li>wfk.areacode.preload - whether to fill the cache from npa-states.properties (default true)</li>
+ * <li>wfk.areacode.waitMillis - how long {@link #await(Future)} waits for a background lookup (default 2000)</li>
+ * <li>wfk.areacode.breakerFailures - failures in a row that open the circuit breaker (default 5)</li>
+ * <li>wfk.areacode.breakerOpenSeconds - how long the open breaker fails lookups fast (default 30)</li>
+ * </ul>
+ *
+ * @author Yutong Liu
+ */
+@ApplicationScoped
+public class AreaCodeLookup {
+
+    static final boolean ENABLED = Boolean.getBoolean("wfk.areacode.enabled");
+    static final String URL = System.getProperty("wfk.areacode.url", "http://www.allareacodes.com/api/1.0/api.json");
+    static final long TTL_SECONDS = Long.getLong("wfk.areacode.ttlSeconds", 24 * 60 * 60);
+    static final int MAX_SIZE = Integer.getInteger("wfk.areacode.maxSize", 1000);
+    static final boolean PRELOAD = Boolean.valueOf(System.getProperty("wfk.areacode.preload", "true"));
+    static final long WAIT_MILLIS = Long.getLong("wfk.areacode.waitMillis", 2000);
+    static final int BREAKER_FAILURES = Integer.getInteger("wfk.areacode.breakerFailures", 5);
+    static final long BREAKER_OPEN_SECONDS = Long.getLong("wfk.areacode.breakerOpenSeconds", 30);
+
+    /** The bundled NPA to state table, one npa=state line per area code. */
+    static final String PRELOAD_TABLE = "/npa-states.properties";
+
+    /** The answer remembered for an area code the API does not know about. */
+    private static final String UNKNOWN = "";
+
+    @Inject
+    private @Named("logger") Logger log;
+
+    @Inject
+    private @Named("httpClient") CloseableHttpClient httpClient;
+
+    @Inject
+    private @Named("httpExecutor") ExecutorService executor;
+
+    private CircuitBreaker breaker = new CircuitBreaker("allareacodes.com", BREAKER_FAILURES, BREAKER_OPEN_SECONDS * 1000);
+    private boolean enabled = ENABLED;
+    private String url = URL;
+    private long ttlMillis = TTL_SECONDS * 1000;
+    private Cache cache = new Cache(MAX_SIZE);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public AreaCodeLookup() {
+    }
+
+    /**
+     * <p>Creates a lookup outside of CDI, e.g. for a test against a stub server.</p>
+     */
+    AreaCodeLookup(CloseableHttpClient httpClient, ExecutorService executor, CircuitBreaker breaker, boolean enabled,
+            String url, long ttlMillis, int maxSize) {
+        this.log = Logger.getLogger(AreaCodeLookup.class.getName());
+        this.enabled = enabled;
+        this.httpClient = httpClient;
+        this.executor = executor;
+        this.breaker = breaker;
+        this.url = url;
+        this.ttlMillis = ttlMillis;
+        this.cache = new Cache(maxSize);
+    }
+
+    @PostConstruct
+    void init() {
+        if (PRELOAD) {
+            preload();
+        }
+        if (!enabled) {
+            log.info("AreaCodeLookup.init() - The allareacodes.com API is disabled, set -Dwfk.areacode.enabled=true to"
+                + " look up the area codes missing from " + PRELOAD_TABLE);
+        }
+    }
+
+    /**
+     * <p>Fills the cache from the bundled npa-states.properties table.</p>
+     *
+     * @return the number of area codes loaded
+     */
+    int preload() {
+        InputStream in = AreaCodeLookup.class.getResourceAsStream(PRELOAD_TABLE);
+        if (in == null) {
+            log.warning("AreaCodeLookup.preload() - " + PRELOAD_TABLE + " not found, starting with an empty cache");
+            return 0;
+        }
+        Properties table = new Properties();
+        try {
+            table.load(in);
+        } catch (IOException e) {
+            log.warning("AreaCodeLookup.preload() - Could not read " + PRELOAD_TABLE + ": " + e);
+            return 0;
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+        for (String npa : table.stringPropertyNames()) {
+            put(npa, table.getProperty(npa).trim());
+        }
+        log.info("AreaCodeLookup.preload() - Loaded " + table.size() + " area codes");
+        return table.size();
+    }
+
+    /**
+     * <p>Returns the state of the area code of the given phone number, e.g. "(212) 555-12345".</p>
+     *
+     * @param phoneNumber The phone number, with its area code between brackets
+     * @return the state; or null if the phone number has no area code, the API does not know it or could not be asked
+     */
+    public String stateOf(String phoneNumber) {
+        if (phoneNumber == null || phoneNumber.length() < 4) {
+            return null;
+        }
+        return stateOfNpa(phoneNumber.substring(1, 4));
+    }
+
+    /**
+     * <p>Returns the state of the given 3 digit area code, from the cache if possible.</p>
+     *
+     * @param npa The area code
+     * @return the state; or null if the API does not know it, could not be asked or is disabled
+     */
+    public String stateOfNpa(String npa) {
+        String state = get(npa);
+        if (state != null) {
+            hits.incrementAndGet();
+            return UNKNOWN.equals(state) ? null : state;
+        }
+        misses.incrementAndGet();
+        if (!enabled) {
+            // Only the preloaded table answers, and it doesn't know this one
+            return null;
+        }
+        if (!breaker.allowRequest()) {
+            // The API has been failing, don't make this write wait for it too
+            failures.incrementAndGet();
+            return null;
+        }
+        try {
+            state = fetch(npa);
+            breaker.recordSuccess();
+        } catch (Exception e) {
+            breaker.recordFailure();
+            failures.incrementAndGet();
+            log.warning("AreaCodeLookup.stateOfNpa() - Lookup of " + npa + " failed, leaving the state unset: " + e
+                + " " + breaker);
+            return null;
+        }
+        put(npa, state == null ? UNKNOWN : state);
+        return state;
+    }
+
+    /**
+     * <p>Starts looking up the state of the area code of the given phone number in the background.</p>
+     *
+     * <p>A cached answer, or any answer while the API is disabled, is returned at once, without using a thread. If the
+     * background pool is saturated the lookup is given up and the Future holds null.</p>
+     *
+     * @param phoneNumber The phone number, with its area code between brackets
+     * @return the Future state, to be passed to {@link #await(Future)}
+     */
+    public Future<String> stateOfAsync(final String phoneNumber) {
+        if (!enabled || phoneNumber == null || phoneNumber.length() < 4 || get(phoneNumber.substring(1, 4)) != null) {
+            return done(stateOf(phoneNumber));
+        }
+        try {
+            return executor.submit(new Callable<String>() {
+                @Override
+                public String call() {
+                    return stateOf(phoneNumber);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            failures.incrementAndGet();
+            log.warning("AreaCodeLookup.stateOfAsync() - No thread available, leaving the state unset");
+            return done(null);
+        }
+    }
+
+    /**
+     * <p>Waits at most {@link #WAIT_MILLIS} for a lookup started by {@link #stateOfAsync(String)}.</p>
+     *
+     * @param state The Future state
+     * @return the state; or null if the lookup gave nothing or took too long
+     */
+    public String await(Future<String> state) {
+        try {
+            return state.get(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            state.cancel(true);
+            failures.incrementAndGet();
+            log.warning("AreaCodeLookup.await() - Lookup took more than " + WAIT_MILLIS + " ms, leaving the state unset");
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private static Future<String> done(String state) {
+        FutureTask<String> future = new FutureTask<String>(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }, state);
+        future.run();
+        return future;
+    }
+
+    /**
+     * <p>Asks the API for the state of the given area code.</p>
+     */
+    private String fetch(String npa) throws Exception {
+        URI uri = new URIBuilder(url)
+                .setParameter("npa", npa)
+                .setParameter("tracking_email", "h.firth@ncl.ac.uk")
+                .setParameter("tracking_url", "http://www.ncl.ac.uk/undergraduate/modules/module/CSC8104")
+                .build();
+        CloseableHttpResponse response = httpClient.execute(new HttpGet(uri));
+        try {
+            int status = response.getStatusLine().getStatusCode();
+            if (status != 200) {
+                throw new IOException("HTTP " + status + " from " + uri);
+            }
+            JSONObject responseJson = new JSONObject(EntityUtils.toString(response.getEntity()));
+            JSONArray areaCodes = responseJson.optJSONArray("area_codes");
+            if (areaCodes == null || areaCodes.length() == 0) {
+                return null;
+            }
+            return areaCodes.getJSONObject(0).getString("state");
+        } catch (JSONException e) {
+            throw new IOException("Unexpected answer from " + uri + ": " + e.getMessage());
+        } finally {
+            HttpClientUtils.closeQuietly(response);
+        }
+    }
+
+    private String get(String npa) {
+        synchronized (cache) {
+            Entry entry = cache.get(npa);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expires <= now()) {
+                cache.remove(npa);
+                return null;
+            }
+            return entry.state;
+        }
+    }
+
+    private void put(String npa, String state) {
+        synchronized (cache) {
+            cache.put(npa, new Entry(state, now() + ttlMillis));
+        }
+    }
+
+    /** The current time, in milliseconds; tests override it to move the clock. */
+    long now() {
+        return System.currentTimeMillis();
+    }
+
+    /** Number of lookups answered from the cache. */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /** Number of lookups that had to ask the API. */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /** Number of lookups that gave no state because the API failed, was too slow, or the breaker was open. */
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /** Number of area codes in the cache, including expired ones not looked at since. */
+    public int getSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * <p>Describes the use of the cache and of the API, for logs and monitoring. {@link HttpClientPool} logs it with
+     * its own statistics.</p>
+     *
+     * @return the statistics, as text
+     */
+    public String getStats() {
+        return "area codes hits=" + getHits() + " misses=" + getMisses() + " failures=" + getFailures()
+            + " size=" + getSize() + " enabled=" + enabled + ", " + breaker;
+    }
+
+    /** Whether area codes missing from the cache are asked to the API. */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public CircuitBreaker getBreaker() {
+        return breaker;
+    }
+
+    /** Empties the cache; the statistics are kept. */
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    private static final class Entry {
+        final String state;
+        final long expires;
+
+        Entry(String state, long expires) {
+            this.state = state;
+            this.expires = expires;
+        }
+    }
+
+    /** Least recently used area codes go first once maxSize is reached. */
+    private static final class Cache extends LinkedHashMap<String, Entry> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxSize;
+
+        Cache(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > maxSize;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+/**
+ * <p>A minimal circuit breaker for calls to an external service.</p>
+ *
+ * <p>After {@code failureThreshold} failures in a row the breaker opens and {@link #allowRequest()} answers false for
+ * {@code openMillis}, so callers fail fast instead of waiting on a service that is down or slow. Once that time is up
+ * a single trial call is let through: if it succeeds the breaker closes again, if it fails it stays open for another
+ * {@code openMillis}.</p>
+ *
+ * <p>Example:</p>
+ *
+ * <code>
+ * if (!breaker.allowRequest()) { return null; }<br/>
+ * try { ...; breaker.recordSuccess(); } catch (IOException e) { breaker.recordFailure(); }
+ * </code>
+ *
+ * @author Yutong Liu
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openMillis;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+    private long rejected;
+
+    /**
+     * @param name The name of the protected service, used in log messages
+     * @param failureThreshold The number of failures in a row that opens the breaker
+     * @param openMillis How long the breaker stays open before letting a trial call through
+     */
+    public CircuitBreaker(String name, int failureThreshold, long openMillis) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * <p>Tells whether a call may be made now.</p>
+     *
+     * @return true if the call may go ahead; false if it should fail fast
+     */
+    public synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (now() - openedAt >= openMillis) {
+                    // Let this one call through to see whether the service is back
+                    state = State.HALF_OPEN;
+                    return true;
+                }
+                rejected++;
+                return false;
+            default:
+                // A trial call is already under way
+                rejected++;
+                return false;
+        }
+    }
+
+    /** Records that a call succeeded, closing the breaker. */
+    public synchronized void recordSuccess() {
+        failures = 0;
+        state = State.CLOSED;
+    }
+
+    /** Records that a call failed or timed out, opening the breaker if it was the trial call or one too many. */
+    public synchronized void recordFailure() {
+        failures++;
+        if (state == State.HALF_OPEN || failures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = now();
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /** Number of calls refused because the breaker was open. */
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+    /** The current time, in milliseconds; tests override it to move the clock. */
+    long now() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "CircuitBreaker[" + name + " " + state + ", " + failures + " failures, " + rejected + " rejected]";
+    }
+}
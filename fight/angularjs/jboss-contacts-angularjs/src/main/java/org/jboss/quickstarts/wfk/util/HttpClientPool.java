@@ -0,0 +1,185 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Instance;
+import javax.inject.Inject;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+
+/**
+ * <p>The HTTP client used for calls to external services (such as the allareacodes.com lookup), together with the
+ * pool of threads that runs those calls in the background.</p>
+ *
+ * <p>HttpClients.createDefault() allows only 2 connections per host and has no timeouts, so under load requests queue
+ * up behind a slow service and can wait forever. This client pools connections, bounds every wait, and closes
+ * connections left idle by a daemon thread. Calls made through {@link #getExecutor()} run on a bounded pool; when it is
+ * full new calls are rejected at once instead of piling up.</p>
+ *
+ * <p>Every {@link #IDLE_SECONDS} the statistics of the pool, and those of the {@link AreaCodeLookup} when the
+ * deployment has one, are logged at FINE.</p>
+ *
+ * <p>There is one pool per deployment, created by CDI when it is first used. Its threads and connections are released
+ * by {@link #shutdown()} when the application is undeployed, so that a redeploy doesn't leave them behind.</p>
+ *
+ * <p>It is configured with system properties:</p>
+ * <ul>
+ * <li>wfk.http.maxTotal - connections in the pool (default 50)</li>
+ * <li>wfk.http.maxPerRoute - connections to one host (default 20)</li>
+ * <li>wfk.http.connectTimeoutMillis - to open a connection (default 2000)</li>
+ * <li>wfk.http.socketTimeoutMillis - between two packets of an answer (default 3000)</li>
+ * <li>wfk.http.requestTimeoutMillis - to get a connection from the pool (default 1000)</li>
+ * <li>wfk.http.idleSeconds - after which an unused connection is closed (default 30)</li>
+ * <li>wfk.http.asyncThreads - threads running calls in the background (default 8)</li>
+ * <li>wfk.http.asyncQueue - calls waiting for one of those threads (default 100)</li>
+ * </ul>
+ *
+ * @author Yutong Liu
+ * @see Resources
+ */
+@ApplicationScoped
+public class HttpClientPool {
+
+    static final int MAX_TOTAL = Integer.getInteger("wfk.http.maxTotal", 50);
+    static final int MAX_PER_ROUTE = Integer.getInteger("wfk.http.maxPerRoute", 20);
+    static final int CONNECT_TIMEOUT = Integer.getInteger("wfk.http.connectTimeoutMillis", 2000);
+    static final int SOCKET_TIMEOUT = Integer.getInteger("wfk.http.socketTimeoutMillis", 3000);
+    static final int REQUEST_TIMEOUT = Integer.getInteger("wfk.http.requestTimeoutMillis", 1000);
+    static final int IDLE_SECONDS = Integer.getInteger("wfk.http.idleSeconds", 30);
+    static final int ASYNC_THREADS = Integer.getInteger("wfk.http.asyncThreads", 8);
+    static final int ASYNC_QUEUE = Integer.getInteger("wfk.http.asyncQueue", 100);
+
+    private static final Logger log = Logger.getLogger(HttpClientPool.class.getName());
+
+    // An Instance, as the lookup uses this pool and isn't part of every deployment (e.g. the test archives)
+    @Inject
+    private Instance<AreaCodeLookup> areaCodes;
+
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient client;
+    private ThreadPoolExecutor executor;
+    private ScheduledExecutorService evictor;
+
+    // Not in the constructor, which CDI also runs for the client proxy of the bean
+    @PostConstruct
+    void start() {
+        connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(MAX_TOTAL);
+        connectionManager.setDefaultMaxPerRoute(MAX_PER_ROUTE);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+            .setConnectTimeout(CONNECT_TIMEOUT)
+            .setSocketTimeout(SOCKET_TIMEOUT)
+            .setConnectionRequestTimeout(REQUEST_TIMEOUT)
+            .build();
+        client = HttpClients.custom()
+            .setConnectionManager(connectionManager)
+            .setDefaultRequestConfig(requestConfig)
+            .build();
+
+        executor = new ThreadPoolExecutor(ASYNC_THREADS, ASYNC_THREADS, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<Runnable>(ASYNC_QUEUE), daemonThreads("http-async"),
+            new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+
+        evictor = Executors.newSingleThreadScheduledExecutor(daemonThreads("http-evictor"));
+        evictor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                connectionManager.closeExpiredConnections();
+                connectionManager.closeIdleConnections(IDLE_SECONDS, TimeUnit.SECONDS);
+                if (log.isLoggable(Level.FINE)) {
+                    String stats = getStats();
+                    if (areaCodes != null && !areaCodes.isUnsatisfied()) {
+                        stats += ", " + areaCodes.get().getStats();
+                    }
+                    log.fine("HttpClientPool - " + stats);
+                }
+            }
+        }, IDLE_SECONDS, IDLE_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public CloseableHttpClient getClient() {
+        return client;
+    }
+
+    /**
+     * <p>Returns the bounded pool to run HTTP calls on in the background. It throws a RejectedExecutionException when
+     * all its threads are busy and its queue is full.</p>
+     *
+     * @return the ExecutorService
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * <p>Describes the use of the connection pool and of the background threads, for logs and monitoring.</p>
+     *
+     * @return the statistics, as text
+     */
+    public String getStats() {
+        PoolStats pool = connectionManager.getTotalStats();
+        return "connections leased=" + pool.getLeased() + " available=" + pool.getAvailable()
+            + " pending=" + pool.getPending() + " max=" + pool.getMax()
+            + ", async active=" + executor.getActiveCount() + " queued=" + executor.getQueue().size()
+            + " completed=" + executor.getCompletedTaskCount();
+    }
+
+    /** Stops the background threads and closes all connections. */
+    @PreDestroy
+    public void shutdown() {
+        evictor.shutdownNow();
+        executor.shutdownNow();
+        try {
+            client.close();
+        } catch (IOException e) {
+            log.warning("HttpClientPool.shutdown() - " + e);
+        }
+    }
+
+    private static ThreadFactory daemonThreads(final String name) {
+        final AtomicInteger count = new AtomicInteger();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
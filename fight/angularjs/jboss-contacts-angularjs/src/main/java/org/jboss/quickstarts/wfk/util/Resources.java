@@ -17,7 +17,7 @@
 package org.jboss.quickstarts.wfk.util;
 
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
+import java.util.concurrent.ExecutorService;
 import java.util.logging.Logger;
 import javax.enterprise.inject.Produces;
 import javax.enterprise.inject.spi.InjectionPoint;
@@ -44,18 +44,23 @@ public class Resources {
     @PersistenceContext(unitName = "contacts_pu")
     private EntityManager em;
 
-    private static final CloseableHttpClient HTTP_CLIENT = HttpClients.createDefault();
-
     @Produces
     @Named("logger")
     public Logger produceLog(InjectionPoint injectionPoint) {
         return Logger.getLogger(injectionPoint.getMember().getDeclaringClass().getName());
     }
 
+    // Pooled and timeout bounded, see HttpClientPool for the settings. The pool owns and closes them.
     @Produces
     @Named("httpClient")
-    public CloseableHttpClient produceHttpClient() {
-        return HTTP_CLIENT;
+    public CloseableHttpClient produceHttpClient(HttpClientPool pool) {
+        return pool.getClient();
+    }
+
+    @Produces
+    @Named("httpExecutor")
+    public ExecutorService produceHttpExecutor(HttpClientPool pool) {
+        return pool.getExecutor();
     }
 
 }
@@ -32,6 +32,9 @@ import org.jboss.quickstarts.wfk.flight.FlightRESTService;
 import org.jboss.quickstarts.wfk.flight.FlightRepository;
 import org.jboss.quickstarts.wfk.flight.FlightService;
 import org.jboss.quickstarts.wfk.flight.FlightValidator;
+import org.jboss.quickstarts.wfk.util.AreaCodeLookup;
+import org.jboss.quickstarts.wfk.util.CircuitBreaker;
+import org.jboss.quickstarts.wfk.util.HttpClientPool;
 import org.jboss.quickstarts.wfk.util.Resources;
 import org.jboss.shrinkwrap.api.Archive;
 import org.jboss.shrinkwrap.api.ShrinkWrap;
@@ -87,9 +90,13 @@ public class BookingRegistrationTest {
                         BookingRepository.class, 
                         BookingValidator.class, 
                         BookingService.class, 
+                        AreaCodeLookup.class,
+                        HttpClientPool.class,
+                        CircuitBreaker.class,
                         Resources.class)
             .addAsLibraries(libs)
             .addAsResource("META-INF/test-persistence.xml", "META-INF/persistence.xml")
+            .addAsResource("npa-states.properties")
             .addAsWebInfResource("arquillian-ds.xml")
             .addAsWebInfResource(EmptyAsset.INSTANCE, "beans.xml");
         
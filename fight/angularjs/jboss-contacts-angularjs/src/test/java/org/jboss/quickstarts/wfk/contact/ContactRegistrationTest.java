@@ -34,6 +34,9 @@ import org.jboss.quickstarts.wfk.contact.ContactRepository;
 import org.jboss.quickstarts.wfk.contact.ContactRESTService;
 import org.jboss.quickstarts.wfk.contact.ContactService;
 import org.jboss.quickstarts.wfk.contact.ContactValidator;
+import org.jboss.quickstarts.wfk.util.AreaCodeLookup;
+import org.jboss.quickstarts.wfk.util.CircuitBreaker;
+import org.jboss.quickstarts.wfk.util.HttpClientPool;
 import org.jboss.quickstarts.wfk.util.Resources;
 import org.jboss.shrinkwrap.api.Archive;
 import org.jboss.shrinkwrap.api.ShrinkWrap;
@@ -79,9 +82,13 @@ public class ContactRegistrationTest {
                         ContactRepository.class, 
                         ContactValidator.class, 
                         ContactService.class, 
+                        AreaCodeLookup.class,
+                        HttpClientPool.class,
+                        CircuitBreaker.class,
                         Resources.class)
             .addAsLibraries(libs)
             .addAsResource("META-INF/test-persistence.xml", "META-INF/persistence.xml")
+            .addAsResource("npa-states.properties")
             .addAsWebInfResource("arquillian-ds.xml")
             .addAsWebInfResource(EmptyAsset.INSTANCE, "beans.xml");
         
@@ -20,6 +20,7 @@ import org.jboss.quickstarts.wfk.flight.FlightRepository;
 import org.jboss.quickstarts.wfk.flight.FlightRESTService;
 import org.jboss.quickstarts.wfk.flight.FlightService;
 import org.jboss.quickstarts.wfk.flight.FlightValidator;
+import org.jboss.quickstarts.wfk.util.HttpClientPool;
 import org.jboss.quickstarts.wfk.util.Resources;
 import org.jboss.shrinkwrap.api.Archive;
 import org.jboss.shrinkwrap.api.ShrinkWrap;
@@ -64,6 +65,7 @@ public class FlightRegistrationTest {
                         FlightRepository.class, 
                         FlightValidator.class, 
                         FlightService.class, 
+                        HttpClientPool.class,
                         Resources.class)
             .addAsLibraries(libs)
             .addAsResource("META-INF/test-persistence.xml", "META-INF/persistence.xml")
@@ -0,0 +1,283 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * <p>Tests the caching, circuit breaker and background lookups of {@link AreaCodeLookup} against a stub of the
+ * allareacodes.com API, served from this JVM.</p>
+ *
+ * <p>These are plain unit tests, no container is needed.</p>
+ *
+ * @author Yutong Liu
+ * @see AreaCodeLookup
+ */
+public class AreaCodeLookupTest {
+
+    private static final long TTL = 60 * 1000;
+    private static final int BREAKER_FAILURES = 3;
+    private static final long BREAKER_OPEN = 10 * 1000;
+
+    private HttpServer server;
+    private CloseableHttpClient httpClient;
+    private ExecutorService executor;
+    private String url;
+
+    /** Number of requests the stub has served. */
+    private final AtomicInteger requests = new AtomicInteger();
+
+    /** The HTTP status the stub answers with. */
+    private volatile int status = 200;
+
+    /** Holds the stub's answers back until counted down. */
+    private volatile CountDownLatch release = new CountDownLatch(0);
+
+    /** The current time of the lookup under test and of its breaker. */
+    private long now = 1000000;
+
+    @Before
+    public void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/1.0/api.json", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requests.incrementAndGet();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                String query = exchange.getRequestURI().getQuery();
+                String body;
+                if (query.contains("npa=212")) {
+                    body = "{\"area_codes\":[{\"npa\":\"212\",\"state\":\"NY\"}]}";
+                } else if (query.contains("npa=415")) {
+                    body = "{\"area_codes\":[{\"npa\":\"415\",\"state\":\"CA\"}]}";
+                } else {
+                    body = "{\"area_codes\":[]}";
+                }
+                byte[] bytes = body.getBytes("UTF-8");
+                exchange.sendResponseHeaders(status, bytes.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(bytes);
+                out.close();
+            }
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/api/1.0/api.json";
+        httpClient = HttpClients.createDefault();
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void stopStub() throws IOException {
+        release.countDown();
+        executor.shutdownNow();
+        httpClient.close();
+        server.stop(0);
+    }
+
+    private AreaCodeLookup lookup(long ttl, int maxSize) {
+        return lookup(true, ttl, maxSize);
+    }
+
+    private AreaCodeLookup lookup(boolean enabled, long ttl, int maxSize) {
+        CircuitBreaker breaker = new CircuitBreaker("stub", BREAKER_FAILURES, BREAKER_OPEN) {
+            @Override
+            long now() {
+                return now;
+            }
+        };
+        return new AreaCodeLookup(httpClient, executor, breaker, enabled, url, ttl, maxSize) {
+            @Override
+            long now() {
+                return now;
+            }
+        };
+    }
+
+    @Test
+    public void testRepeatedLookupIsServedFromCache() {
+        AreaCodeLookup lookup = lookup(TTL, 10);
+
+        assertEquals("NY", lookup.stateOf("(212) 555-12345"));
+        assertEquals("NY", lookup.stateOf("(212) 555-67890"));
+        assertEquals("NY", lookup.stateOfNpa("212"));
+
+        assertEquals("Only the first lookup should reach the API", 1, requests.get());
+        assertEquals(2, lookup.getHits());
+        assertEquals(1, lookup.getMisses());
+    }
+
+    @Test
+    public void testExpiredEntryIsLookedUpAgain() {
+        AreaCodeLookup lookup = lookup(TTL, 10);
+
+        lookup.stateOfNpa("212");
+        now += TTL - 1;
+        lookup.stateOfNpa("212");
+        assertEquals(1, requests.get());
+
+        now += 1;
+        assertEquals("NY", lookup.stateOfNpa("212"));
+        assertEquals("An expired entry should be fetched again", 2, requests.get());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() {
+        AreaCodeLookup lookup = lookup(TTL, 2);
+
+        lookup.stateOfNpa("212");
+        lookup.stateOfNpa("415");
+        // Touch 212 so that 415 is the least recently used one
+        lookup.stateOfNpa("212");
+        lookup.stateOfNpa("999");
+        assertEquals(2, lookup.getSize());
+        assertEquals(3, requests.get());
+
+        lookup.stateOfNpa("212");
+        assertEquals("212 should still be cached", 3, requests.get());
+        lookup.stateOfNpa("415");
+        assertEquals("415 should have been evicted", 4, requests.get());
+    }
+
+    @Test
+    public void testUnknownAreaCodeIsCachedAsNull() {
+        AreaCodeLookup lookup = lookup(TTL, 10);
+
+        assertNull(lookup.stateOfNpa("999"));
+        assertNull(lookup.stateOfNpa("999"));
+        assertEquals(1, requests.get());
+        assertEquals(1, lookup.getHits());
+    }
+
+    @Test
+    public void testFailedLookupLeavesStateUnsetAndIsNotCached() {
+        AreaCodeLookup lookup = lookup(TTL, 10);
+
+        status = 503;
+        assertNull(lookup.stateOfNpa("212"));
+        assertEquals(1, lookup.getFailures());
+
+        status = 200;
+        assertEquals("NY", lookup.stateOfNpa("212"));
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void testPreloadedAreaCodesNeverReachTheApi() {
+        AreaCodeLookup lookup = lookup(TTL, 1000);
+
+        assertTrue("The bundled table should not be empty", lookup.preload() > 0);
+        assertEquals("NY", lookup.stateOfNpa("212"));
+        assertEquals("CA", lookup.stateOfNpa("415"));
+        assertEquals(0, requests.get());
+    }
+
+    @Test
+    public void testDisabledApiIsNeverCalled() throws Exception {
+        AreaCodeLookup lookup = lookup(false, TTL, 1000);
+        lookup.preload();
+
+        assertFalse(lookup.isEnabled());
+        assertEquals("NY", lookup.stateOf("(212) 555-12345"));
+        assertEquals("CA", lookup.await(lookup.stateOfAsync("(415) 555-12345")));
+        assertNull("An area code missing from the table has no state", lookup.stateOfNpa("999"));
+        assertNull(lookup.await(lookup.stateOfAsync("(999) 555-12345")));
+        assertEquals(0, requests.get());
+        assertEquals(0, lookup.getFailures());
+    }
+
+    @Test
+    public void testPhoneNumberWithoutAreaCode() {
+        AreaCodeLookup lookup = lookup(TTL, 10);
+
+        assertNull(lookup.stateOf(null));
+        assertNull(lookup.stateOf("12"));
+        assertEquals(0, requests.get());
+    }
+
+    @Test
+    public void testOpenBreakerFailsFastUntilTheTrialCallSucceeds() {
+        AreaCodeLookup lookup = lookup(TTL, 10);
+
+        status = 503;
+        for (int i = 0; i < BREAKER_FAILURES; i++) {
+            assertNull(lookup.stateOfNpa("212"));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, lookup.getBreaker().getState());
+
+        status = 200;
+        assertNull("An open breaker should not let the lookup through", lookup.stateOfNpa("212"));
+        assertEquals(BREAKER_FAILURES, requests.get());
+
+        now += BREAKER_OPEN;
+        assertEquals("NY", lookup.stateOfNpa("212"));
+        assertEquals(CircuitBreaker.State.CLOSED, lookup.getBreaker().getState());
+    }
+
+    @Test
+    public void testBackgroundLookup() throws Exception {
+        AreaCodeLookup lookup = lookup(TTL, 10);
+        release = new CountDownLatch(1);
+
+        Future<String> state = lookup.stateOfAsync("(212) 555-12345");
+        assertFalse("The lookup should not block the caller", state.isDone());
+        release.countDown();
+        assertEquals("NY", lookup.await(state));
+
+        Future<String> cached = lookup.stateOfAsync("(212) 555-67890");
+        assertTrue("A cached state should be answered at once", cached.isDone());
+        assertEquals("NY", lookup.await(cached));
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void testSlowBackgroundLookupLeavesStateUnset() {
+        AreaCodeLookup lookup = lookup(TTL, 10);
+        release = new CountDownLatch(1);
+
+        long start = System.currentTimeMillis();
+        assertNull(lookup.await(lookup.stateOfAsync("(212) 555-12345")));
+        assertTrue(System.currentTimeMillis() - start < AreaCodeLookup.WAIT_MILLIS + 1000);
+        assertEquals(1, lookup.getFailures());
+    }
+}